@@ -26,7 +26,9 @@ import com.ealva.ealvalog.Markers
 import com.ealva.ealvalog.core.ExtLogRecord
 import com.ealva.ealvalog.java.JLoggers
 import com.nhaarman.expect.expect
+import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.argumentCaptor
+import com.nhaarman.mockitokotlin2.doAnswer
 import com.nhaarman.mockitokotlin2.mock
 import com.nhaarman.mockitokotlin2.times
 import com.nhaarman.mockitokotlin2.verify
@@ -34,6 +36,7 @@ import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
 import java.lang.RuntimeException
+import java.util.logging.LogRecord
 
 /**
  * Created by Eric A. Snell on 9/29/18.
@@ -76,9 +79,14 @@ class AndroidLoggerTest {
   fun testPrintLogHandlerWantsLocation() {
     // Given
     val ex = RuntimeException("MyException")
+    var thrownWhenLogged: Throwable? = null // records are cleared when closed
     val mockHandler = mock<LogHandler> {
       on { isLoggable(TAG, LogLevel.WARN, null, ex) }.thenReturn(true)
       on { shouldIncludeLocation(TAG, Log.WARN, null, ex) }.thenReturn(true)
+      on { prepareLog(any<LogRecord>()) }.doAnswer {
+        thrownWhenLogged = it.getArgument<LogRecord>(0).thrown
+        Unit
+      }
     }
     AndroidLogger.setHandler(mockHandler)
     val logger = JLoggers.get(AndroidLoggerTest::class.java)
@@ -94,7 +102,7 @@ class AndroidLoggerTest {
     expect(record.loggerName).toBe(AndroidLoggerTest::class.java.name)
     expect(record.logLevel).toBe(LogLevel.WARN)
     expect(record.message).toBe(msg)
-    expect(record.thrown).toBe(ex)
+    expect(thrownWhenLogged).toBe(ex)
     expect(record.marker).toBeNull()
     expect(record.location).toNotBeNull()
   }
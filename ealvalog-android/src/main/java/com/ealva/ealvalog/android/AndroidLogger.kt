@@ -86,8 +86,14 @@ class AndroidLogger internal constructor(
   }
 
   override fun logImmediate(entry: LogEntry) {
-    ExtLogRecord.fromLogEntry(entry).use { record ->
+    // LogHandler takes a LogRecord, which getLogEntry already provides. Only an entry from
+    // elsewhere is copied
+    val record = ExtLogRecord.fromLogEntry(entry)
+    try {
       logHandler.get().prepareLog(record)
+    } finally {
+      // entry is closed by whoever obtained it
+      if (record !== entry) record.close()
     }
   }
 
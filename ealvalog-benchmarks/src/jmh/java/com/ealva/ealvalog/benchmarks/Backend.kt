@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.benchmarks
+
+import com.ealva.ealvalog.FilterResult
+import com.ealva.ealvalog.LogLevel
+import com.ealva.ealvalog.Logger
+import com.ealva.ealvalog.LoggerFilter
+import com.ealva.ealvalog.Marker
+import com.ealva.ealvalog.async.AsyncLoggerFactory
+import com.ealva.ealvalog.core.BasicMarkerFactory
+import com.ealva.ealvalog.filter.CompoundFilter
+import com.ealva.ealvalog.filter.MarkerFilter
+import com.ealva.ealvalog.jul.JdkLoggerFactory
+import com.ealva.ealvalog.log4j.Log4jLoggerFactory
+import com.ealva.ealvalog.log4j.Log4jMarkerFactory
+import com.ealva.ealvalog.stdout.StdoutLoggerFactory
+import org.apache.logging.log4j.Level
+import org.apache.logging.log4j.LogManager
+import org.apache.logging.log4j.core.LoggerContext
+import org.apache.logging.log4j.core.appender.NullAppender
+import java.io.OutputStream
+import java.io.PrintStream
+import java.util.logging.Handler
+import java.util.logging.LogRecord
+
+/** Every benchmark logger is configured at this level, so TRACE/DEBUG are disabled */
+val THRESHOLD = LogLevel.INFO
+
+const val MARKER_NAME = "BenchmarkMarker"
+
+/**
+ * How the benchmark logger is configured and called
+ */
+enum class Variant {
+  /** No marker passed and no filter beyond the level check */
+  PLAIN,
+  /** A marker is passed on every call, no filter */
+  MARKER,
+  /** A marker is passed on every call and the logger filter is a [MarkerFilter] for it */
+  MARKER_FILTER
+}
+
+/**
+ * A configured logger for a particular backend. [tearDown] restores any global state changed
+ * during setup
+ */
+interface Fixture {
+  val logger: Logger
+  val marker: Marker?
+  fun tearDown()
+}
+
+/**
+ * The logging backends under test. Each is configured so that enabled records travel the full
+ * path to the backend and end in a handler/appender which does nothing, so the numbers reflect
+ * the cost of the facade and the backend's dispatch rather than any I/O.
+ */
+enum class Backend {
+  STDOUT {
+    override fun install(loggerName: String, variant: Variant): Fixture {
+      val savedOut = System.out
+      System.setOut(PrintStream(NullOutputStream))
+      val marker = if (variant == Variant.PLAIN) null else BasicMarkerFactory()[MARKER_NAME]
+      // StdoutLogger does not gate on logLevel, only on its filter
+      val logger = StdoutLoggerFactory.get(loggerName).apply {
+        logLevel = THRESHOLD
+        filter = if (variant == Variant.MARKER_FILTER)
+          CompoundFilter(ThresholdFilter(THRESHOLD), MarkerFilter(marker!!))
+        else
+          ThresholdFilter(THRESHOLD)
+      }
+      return object : Fixture {
+        override val logger = logger
+        override val marker = marker
+        override fun tearDown() {
+          System.setOut(savedOut)
+        }
+      }
+    }
+  },
+  JDK {
+    override fun install(loggerName: String, variant: Variant): Fixture {
+      JdkLoggerFactory.reset(true)
+      val root = JdkLoggerFactory.root
+      root.logLevel = THRESHOLD
+      root.addHandler(NullHandler)
+      val marker = if (variant == Variant.PLAIN) null else BasicMarkerFactory()[MARKER_NAME]
+      val logger = JdkLoggerFactory.get(loggerName).apply {
+        if (variant == Variant.MARKER_FILTER) filter = MarkerFilter(marker!!)
+      }
+      return object : Fixture {
+        override val logger = logger
+        override val marker = marker
+        override fun tearDown() {
+          JdkLoggerFactory.reset(true)
+        }
+      }
+    }
+  },
+  /** [JDK] with records handed to a background thread by an [AsyncLoggerFactory] */
+  JDK_ASYNC {
+    override fun install(loggerName: String, variant: Variant): Fixture {
+      val fixture = JDK.install(loggerName, variant)
+      val factory = AsyncLoggerFactory(JdkLoggerFactory)
+      return object : Fixture {
+        override val logger = factory.get(loggerName)
+        override val marker = fixture.marker
+        override fun tearDown() {
+          factory.close()
+          fixture.tearDown()
+        }
+      }
+    }
+  },
+  LOG4J {
+    override fun install(loggerName: String, variant: Variant): Fixture {
+      // Configure Log4j before the factory creates any bridges, as bridges capture LoggerConfigs
+      val context = LogManager.getContext(false) as LoggerContext
+      val rootConfig = context.configuration.rootLogger
+      val savedAppenders = rootConfig.appenders.values.toList()
+      val savedLevel = rootConfig.level
+      savedAppenders.forEach { rootConfig.removeAppender(it.name) }
+      val appender = NullAppender.createAppender("BenchmarkNull").apply { start() }
+      rootConfig.addAppender(appender, null, null)
+      rootConfig.level = Level.INFO
+      context.updateLoggers()
+
+      val marker = if (variant == Variant.PLAIN) null else Log4jMarkerFactory[MARKER_NAME]
+      val logger = Log4jLoggerFactory.get(loggerName).apply {
+        if (variant == Variant.MARKER_FILTER) filter = MarkerFilter(marker!!)
+      }
+      return object : Fixture {
+        override val logger = logger
+        override val marker = marker
+        override fun tearDown() {
+          rootConfig.removeAppender(appender.name)
+          savedAppenders.forEach { rootConfig.addAppender(it, null, null) }
+          rootConfig.level = savedLevel
+          context.updateLoggers()
+          Log4jLoggerFactory.reset()
+        }
+      }
+    }
+  };
+
+  abstract fun install(loggerName: String, variant: Variant): Fixture
+}
+
+/** Denies anything below [threshold], otherwise neutral */
+private class ThresholdFilter(private val threshold: LogLevel) : LoggerFilter {
+  override fun isLoggable(
+    loggerName: String,
+    logLevel: LogLevel,
+    marker: Marker?,
+    throwable: Throwable?
+  ) = if (logLevel.isAtLeast(threshold)) FilterResult.NEUTRAL else FilterResult.DENY
+}
+
+private object NullHandler : Handler() {
+  override fun publish(record: LogRecord?) {}
+  override fun flush() {}
+  override fun close() {}
+}
+
+private object NullOutputStream : OutputStream() {
+  override fun write(b: Int) {}
+  override fun write(b: ByteArray, off: Int, len: Int) {}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.benchmarks
+
+import com.ealva.ealvalog.Logger
+import com.ealva.ealvalog.i
+import com.ealva.ealvalog.invoke
+import com.ealva.ealvalog.util.CacheStrategy
+import com.ealva.ealvalog.util.ObjectCache
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OperationsPerInvocation
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+/** Log calls made by each short lived thread */
+private const val CALLS_PER_THREAD = 4
+
+/**
+ * Measures log calls made from short lived threads, each of which logs [CALLS_PER_THREAD] times
+ * and exits, under each [CacheStrategy]. Run with the gc profiler to see allocation per call:
+ *
+ *     ./gradlew :ealvalog-benchmarks:jmh -PjmhInclude=CacheStrategy -PjmhProfilers=gc
+ *
+ * or add `-prof gc` when running the jar. [ThreadType.VIRTUAL] requires a JVM with virtual
+ * threads, on older JVMs those benchmarks fail in setup. Thread creation is included in every
+ * result, so compare strategies for the same thread type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class CacheStrategyBenchmark {
+  @Param("STDOUT", "JDK")
+  @JvmField var backend: Backend = Backend.STDOUT
+
+  @Param("AUTO", "THREAD_LOCAL", "SHARED")
+  @JvmField var strategy: CacheStrategy = CacheStrategy.AUTO
+
+  @Param("PLATFORM", "VIRTUAL")
+  @JvmField var threadType: ThreadType = ThreadType.PLATFORM
+
+  private lateinit var fixture: Fixture
+  private lateinit var logger: Logger
+  private val name = "Value"
+  private val value = 1000
+  private val task = Runnable {
+    for (i in 0 until CALLS_PER_THREAD) {
+      logger.i { it("Value %s=%d", name, value) }
+    }
+  }
+
+  @Setup(Level.Trial)
+  fun setup() {
+    threadType.checkAvailable()
+    ObjectCache.setStrategy(strategy)
+    fixture = backend.install(javaClass.name, Variant.PLAIN)
+    logger = fixture.logger
+  }
+
+  @TearDown(Level.Trial)
+  fun tearDown() {
+    fixture.tearDown()
+    ObjectCache.setStrategy(CacheStrategy.AUTO)
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CALLS_PER_THREAD)
+  fun logFromNewThread() {
+    threadType.start(task).join()
+  }
+}
+
+/** The kind of thread [CacheStrategyBenchmark] logs from */
+enum class ThreadType {
+  PLATFORM {
+    override fun start(task: Runnable): Thread = Thread(task).apply { start() }
+  },
+  VIRTUAL {
+    override fun start(task: Runnable): Thread =
+      startVirtualThread!!.invoke(null, task) as Thread
+  };
+
+  abstract fun start(task: Runnable): Thread
+
+  fun checkAvailable() {
+    if (this == VIRTUAL && startVirtualThread == null) {
+      throw UnsupportedOperationException("Virtual threads require a JVM which supports them")
+    }
+  }
+}
+
+private val startVirtualThread = try {
+  Thread::class.java.getMethod("startVirtualThread", Runnable::class.java)
+} catch (e: NoSuchMethodException) {
+  null
+}
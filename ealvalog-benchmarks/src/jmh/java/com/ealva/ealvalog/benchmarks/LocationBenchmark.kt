@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.benchmarks
+
+import com.ealva.ealvalog.util.LogUtil
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures finding a caller's location, as done for every record when a logger includes
+ * location. [throwableStackTrace] is how the location was found before StackWalker was used and
+ * is what [LogUtil.getCallerLocation] still does on Java 8.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class LocationBenchmark {
+  @Param("false", "true")
+  @JvmField var cache: Boolean = false
+
+  @Setup(Level.Trial)
+  fun setup() {
+    LogUtil.setCacheCallerLocations(cache)
+  }
+
+  @TearDown(Level.Trial)
+  fun tearDown() {
+    LogUtil.setCacheCallerLocations(false)
+  }
+
+  @Benchmark
+  fun callerLocation(): StackTraceElement = LogUtil.getCallerLocation(0)
+
+  @Benchmark
+  fun throwableStackTrace(): StackTraceElement = Throwable().stackTrace[0]
+}
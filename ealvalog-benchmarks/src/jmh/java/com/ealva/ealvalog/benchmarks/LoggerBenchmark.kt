@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.benchmarks
+
+import com.ealva.ealvalog.LogLevel
+import com.ealva.ealvalog.Logger
+import com.ealva.ealvalog.Marker
+import com.ealva.ealvalog.d
+import com.ealva.ealvalog.e
+import com.ealva.ealvalog.i
+import com.ealva.ealvalog.invoke
+import com.ealva.ealvalog.t
+import com.ealva.ealvalog.w
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Threads
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+private const val FORMAT = "Value %s=%d"
+private const val MESSAGE = "A message which is neither very short nor very long"
+
+/**
+ * Measures the [Logger] hot path, [CoreLogger][com.ealva.ealvalog.core.CoreLogger] ->
+ * [Bridge][com.ealva.ealvalog.core.Bridge] -> backend for each [Backend], both calling [Logger]
+ * directly and through the inline extension functions in Loggers.kt.
+ *
+ * Every logger is set to [THRESHOLD] (INFO), so the trace/debug benchmarks measure the disabled
+ * path and info/warn/error measure the enabled path into a no-op handler. The logger is shared
+ * by all benchmark threads, see the concrete subclasses for 1, 4, and 16 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+abstract class LoggerBenchmark {
+  @Param("STDOUT", "JDK", "JDK_ASYNC", "LOG4J")
+  @JvmField var backend: Backend = Backend.STDOUT
+
+  @Param("PLAIN", "MARKER", "MARKER_FILTER")
+  @JvmField var variant: Variant = Variant.PLAIN
+
+  private lateinit var fixture: Fixture
+  private lateinit var logger: Logger
+  private var marker: Marker? = null
+  private val name = "Value"
+  private val value = 1000
+
+  @Setup(Level.Trial)
+  fun setup() {
+    fixture = backend.install(javaClass.name, variant)
+    logger = fixture.logger
+    marker = fixture.marker
+  }
+
+  @TearDown(Level.Trial)
+  fun tearDown() {
+    fixture.tearDown()
+  }
+
+  @Benchmark
+  fun isLoggableDisabled(): Boolean = logger.isLoggable(LogLevel.DEBUG, marker, null)
+
+  @Benchmark
+  fun isLoggableEnabled(): Boolean = logger.isLoggable(LogLevel.INFO, marker, null)
+
+  @Benchmark
+  fun getLogEntry(): Long =
+    logger.getLogEntry(LogLevel.INFO, marker, null, null).use { entry -> entry.sequenceNumber }
+
+  @Benchmark
+  fun logImmediate() {
+    logger.getLogEntry(LogLevel.INFO, marker, null, null).use { entry ->
+      entry.append(MESSAGE)
+      logger.logImmediate(entry)
+    }
+  }
+
+  @Benchmark
+  fun traceDisabled() {
+    logger.t(marker = marker) { it(FORMAT, name, value) }
+  }
+
+  @Benchmark
+  fun debugDisabled() {
+    logger.d(marker = marker) { it(FORMAT, name, value) }
+  }
+
+  @Benchmark
+  fun infoEnabled() {
+    logger.i(marker = marker) { it(FORMAT, name, value) }
+  }
+
+  @Benchmark
+  fun warnEnabled() {
+    logger.w(marker = marker) { it(FORMAT, name, value) }
+  }
+
+  @Benchmark
+  fun errorEnabled() {
+    logger.e(marker = marker) { it(FORMAT, name, value) }
+  }
+
+  @Benchmark
+  fun infoEnabledAppend() {
+    logger.i(marker = marker) { it.append(MESSAGE) }
+  }
+}
+
+@Threads(1)
+open class SingleThreadLoggerBenchmark : LoggerBenchmark()
+
+@Threads(4)
+open class FourThreadLoggerBenchmark : LoggerBenchmark()
+
+@Threads(16)
+open class SixteenThreadLoggerBenchmark : LoggerBenchmark()
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.callsite;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Applies {@link CallSiteTransformer} to every class file under one or more directories,
+ * replacing files in place. Run after compilation and before packaging, for example in Gradle:
+ * <pre>{@code
+ * configurations { callsite }
+ * dependencies { callsite "com.ealva:ealvalog-callsite:$ealvalog_version" }
+ * compileJava.doLast {
+ *   javaexec {
+ *     classpath = configurations.callsite
+ *     main = 'com.ealva.ealvalog.callsite.CallSiteInjector'
+ *     args destinationDir
+ *   }
+ * }
+ * }</pre>
+ * Do the same for compileKotlin. Transformed classes need a version of ealvalog with
+ * LogEntry.addLocation(StackTraceElement), and of ealvalog-java with JLoggerCallSites, at runtime.
+ * JLogger calls are only supported on the loggers JLoggerFactory makes; another JLogger
+ * implementation which finds location by stack depth would report JLoggerCallSites as the caller.
+ */
+public final class CallSiteInjector {
+  /**
+   * @param args directories containing class files
+   */
+  public static void main(final String[] args) throws IOException {
+    int transformed = 0;
+    for (String dir : args) {
+      transformed += inject(Paths.get(dir));
+    }
+    System.out.println("Injected call sites into " + transformed + " classes");
+  }
+
+  /**
+   * Transform every class file under {@code dir}
+   *
+   * @return the number of class files rewritten
+   */
+  public static int inject(final @NotNull Path dir) throws IOException {
+    final List<Path> classFiles;
+    try (Stream<Path> paths = Files.walk(dir)) {
+      classFiles = paths.filter(path -> path.toString().endsWith(".class"))
+                        .collect(Collectors.toList());
+    }
+    int transformed = 0;
+    for (Path path : classFiles) {
+      final byte[] result = CallSiteTransformer.transform(Files.readAllBytes(path));
+      if (result != null) {
+        Files.write(path, result);
+        transformed++;
+      }
+    }
+    return transformed;
+  }
+
+  private CallSiteInjector() {
+  }
+}
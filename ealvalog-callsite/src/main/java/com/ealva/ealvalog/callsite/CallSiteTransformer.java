@@ -0,0 +1,292 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.callsite;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites calls which would find their source location by examining the call stack so they pass
+ * a location computed at build time instead. Each call site gets a private static final
+ * StackTraceElement, holding the class, method, source file, and line of the call, initialized in
+ * the class's static initializer. Rewritten calls:
+ * <ul>
+ * <li>{@code +it}, LogEntryKt.unaryPlus(LogEntry), becomes
+ * {@code it.addLocation(site)}</li>
+ * <li>JLogger log, caught, and throwing become the method of the same name in JLoggerCallSites,
+ * with the logger as the first argument and the site as the last. Whether the receiver is a
+ * JLoggerImpl is only known at runtime, so calls on any JLogger are rewritten. Only the
+ * JLoggerFactory implementations are supported, see JLoggerCallSites.</li>
+ * </ul>
+ * A transformed class is recognized and not transformed again.
+ */
+public final class CallSiteTransformer {
+  /** Prefix of the name of the static field added for each call site */
+  static final String FIELD_PREFIX = "ealvalog$site$";
+
+  private static final String LOG_ENTRY = "com/ealva/ealvalog/LogEntry";
+  private static final String LOG_ENTRY_KT = "com/ealva/ealvalog/LogEntryKt";
+  private static final String UNARY_PLUS_DESC = "(L" + LOG_ENTRY + ";)V";
+  private static final String JLOGGER = "com/ealva/ealvalog/java/JLogger";
+  private static final String JLOGGER_IMPL = "com/ealva/ealvalog/java/JLoggerImpl";
+  private static final String JLOGGER_CALL_SITES = "com/ealva/ealvalog/java/JLoggerCallSites";
+  private static final String ELEMENT = "java/lang/StackTraceElement";
+  private static final String ELEMENT_DESC = "L" + ELEMENT + ";";
+  private static final String ADD_LOCATION_DESC = "(" + ELEMENT_DESC + ")L" + LOG_ENTRY + ";";
+  private static final String CLASS_INIT = "<clinit>";
+
+  /**
+   * @param classBytes the contents of a class file
+   *
+   * @return the transformed class, or null if there are no call sites to rewrite or the class was
+   * already transformed
+   */
+  public static @Nullable byte[] transform(final @NotNull byte[] classBytes) {
+    final ClassReader reader = new ClassReader(classBytes);
+    final Scanner scanner = new Scanner();
+    reader.accept(scanner, 0);
+    if (scanner.transformed || scanner.sites.isEmpty() || isTarget(scanner.className)) {
+      return null;
+    }
+    final ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+    reader.accept(new Rewriter(writer, scanner), 0);
+    return writer.toByteArray();
+  }
+
+  /** Calls within the call targets are never rewritten */
+  private static boolean isTarget(final String className) {
+    return JLOGGER_CALL_SITES.equals(className) || JLOGGER_IMPL.equals(className);
+  }
+
+  private static boolean isUnaryPlus(final int opcode,
+                                     final String owner,
+                                     final String name,
+                                     final String descriptor) {
+    return opcode == Opcodes.INVOKESTATIC &&
+        LOG_ENTRY_KT.equals(owner) &&
+        "unaryPlus".equals(name) &&
+        UNARY_PLUS_DESC.equals(descriptor);
+  }
+
+  private static boolean isJLoggerLog(final int opcode, final String owner, final String name) {
+    return ((opcode == Opcodes.INVOKEINTERFACE && JLOGGER.equals(owner)) ||
+        (opcode == Opcodes.INVOKEVIRTUAL && JLOGGER_IMPL.equals(owner))) &&
+        ("log".equals(name) || "caught".equals(name) || "throwing".equals(name));
+  }
+
+  private static boolean isCallSite(final int opcode,
+                                    final String owner,
+                                    final String name,
+                                    final String descriptor) {
+    return isUnaryPlus(opcode, owner, name, descriptor) || isJLoggerLog(opcode, owner, name);
+  }
+
+  private static final class Site {
+    final String methodName;
+    final int line;
+
+    Site(final String methodName, final int line) {
+      this.methodName = methodName;
+      this.line = line;
+    }
+  }
+
+  /** First pass, find the call sites so the static initializer can be written */
+  private static final class Scanner extends ClassVisitor {
+    final List<Site> sites = new ArrayList<>();
+    String className = "";
+    @Nullable String sourceFile;
+    boolean isInterface;
+    boolean transformed;
+
+    Scanner() {
+      super(Opcodes.ASM9);
+    }
+
+    @Override public void visit(final int version,
+                                final int access,
+                                final String name,
+                                final String signature,
+                                final String superName,
+                                final String[] interfaces) {
+      className = name;
+      isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
+    }
+
+    @Override public void visitSource(final String source, final String debug) {
+      sourceFile = source;
+    }
+
+    @Override public FieldVisitor visitField(final int access,
+                                             final String name,
+                                             final String descriptor,
+                                             final String signature,
+                                             final Object value) {
+      if (name.startsWith(FIELD_PREFIX)) {
+        transformed = true;
+      }
+      return null;
+    }
+
+    @Override public MethodVisitor visitMethod(final int access,
+                                               final String name,
+                                               final String descriptor,
+                                               final String signature,
+                                               final String[] exceptions) {
+      return new MethodVisitor(Opcodes.ASM9) {
+        int line = -1;
+
+        @Override public void visitLineNumber(final int lineNumber, final Label start) {
+          line = lineNumber;
+        }
+
+        @Override public void visitMethodInsn(final int opcode,
+                                              final String owner,
+                                              final String methodName,
+                                              final String methodDescriptor,
+                                              final boolean isInterface) {
+          if (isCallSite(opcode, owner, methodName, methodDescriptor)) {
+            sites.add(new Site(name, line));
+          }
+        }
+      };
+    }
+  }
+
+  /** Second pass, rewrite the calls found by the {@link Scanner} and initialize their sites */
+  private static final class Rewriter extends ClassVisitor {
+    private final Scanner scanner;
+    private int nextSite;
+    private boolean sawClassInit;
+
+    Rewriter(final ClassVisitor next, final Scanner scanner) {
+      super(Opcodes.ASM9, next);
+      this.scanner = scanner;
+    }
+
+    @Override public MethodVisitor visitMethod(final int access,
+                                               final String name,
+                                               final String descriptor,
+                                               final String signature,
+                                               final String[] exceptions) {
+      final MethodVisitor next = super.visitMethod(access, name, descriptor, signature, exceptions);
+      final boolean isClassInit = CLASS_INIT.equals(name);
+      sawClassInit |= isClassInit;
+      return new MethodVisitor(Opcodes.ASM9, next) {
+        @Override public void visitCode() {
+          super.visitCode();
+          if (isClassInit) {
+            initializeSites(mv);
+          }
+        }
+
+        @Override public void visitMethodInsn(final int opcode,
+                                              final String owner,
+                                              final String methodName,
+                                              final String methodDescriptor,
+                                              final boolean isInterface) {
+          if (isUnaryPlus(opcode, owner, methodName, methodDescriptor)) {
+            loadSite(mv);
+            super.visitMethodInsn(Opcodes.INVOKEINTERFACE,
+                                  LOG_ENTRY,
+                                  "addLocation",
+                                  ADD_LOCATION_DESC,
+                                  true);
+            super.visitInsn(Opcodes.POP);
+          } else if (isJLoggerLog(opcode, owner, methodName)) {
+            loadSite(mv);
+            final int argsEnd = methodDescriptor.indexOf(')');
+            super.visitMethodInsn(Opcodes.INVOKESTATIC,
+                                  JLOGGER_CALL_SITES,
+                                  methodName,
+                                  "(L" + JLOGGER + ";" +
+                                      methodDescriptor.substring(1, argsEnd) +
+                                      ELEMENT_DESC +
+                                      methodDescriptor.substring(argsEnd),
+                                  false);
+          } else {
+            super.visitMethodInsn(opcode, owner, methodName, methodDescriptor, isInterface);
+          }
+        }
+      };
+    }
+
+    @Override public void visitEnd() {
+      final int access = (scanner.isInterface ? Opcodes.ACC_PUBLIC : Opcodes.ACC_PRIVATE) |
+          Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC;
+      for (int i = 0, size = scanner.sites.size(); i < size; i++) {
+        super.visitField(access, FIELD_PREFIX + i, ELEMENT_DESC, null, null).visitEnd();
+      }
+      if (!sawClassInit) {
+        final MethodVisitor init =
+            super.visitMethod(Opcodes.ACC_STATIC, CLASS_INIT, "()V", null, null);
+        init.visitCode();
+        initializeSites(init);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+      }
+      super.visitEnd();
+    }
+
+    private void loadSite(final MethodVisitor mv) {
+      mv.visitFieldInsn(Opcodes.GETSTATIC,
+                        scanner.className,
+                        FIELD_PREFIX + nextSite++,
+                        ELEMENT_DESC);
+    }
+
+    private void initializeSites(final MethodVisitor mv) {
+      final String declaringClass = scanner.className.replace('/', '.');
+      final List<Site> sites = scanner.sites;
+      for (int i = 0, size = sites.size(); i < size; i++) {
+        final Site site = sites.get(i);
+        mv.visitTypeInsn(Opcodes.NEW, ELEMENT);
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitLdcInsn(declaringClass);
+        mv.visitLdcInsn(site.methodName);
+        if (scanner.sourceFile != null) {
+          mv.visitLdcInsn(scanner.sourceFile);
+        } else {
+          mv.visitInsn(Opcodes.ACONST_NULL);
+        }
+        mv.visitLdcInsn(site.line);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL,
+                           ELEMENT,
+                           "<init>",
+                           "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;I)V",
+                           false);
+        mv.visitFieldInsn(Opcodes.PUTSTATIC, scanner.className, FIELD_PREFIX + i, ELEMENT_DESC);
+      }
+    }
+  }
+
+  private CallSiteTransformer() {
+  }
+}
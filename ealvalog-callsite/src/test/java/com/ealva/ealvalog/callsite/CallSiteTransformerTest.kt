@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.callsite
+
+import com.ealva.ealvalog.LogEntry
+import com.ealva.ealvalog.LogLevel
+import com.ealva.ealvalog.Logger
+import com.ealva.ealvalog.Marker
+import com.ealva.ealvalog.core.BasicLogEntry
+import com.ealva.ealvalog.java.JLogger
+import com.ealva.ealvalog.java.JLoggerImpl
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.anyOrNull
+import com.nhaarman.mockitokotlin2.doAnswer
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import org.hamcrest.CoreMatchers.equalTo
+import org.hamcrest.CoreMatchers.`is`
+import org.hamcrest.CoreMatchers.notNullValue
+import org.hamcrest.CoreMatchers.nullValue
+import org.hamcrest.CoreMatchers.sameInstance
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.Test
+import java.nio.file.Files
+import java.util.function.Consumer
+
+class CallSiteTransformerTest {
+  private val locations = mutableListOf<StackTraceElement?>()
+  private val logger = mock<Logger> {
+    on { isLoggable(any(), anyOrNull(), anyOrNull()) } doReturn true
+    on { shouldIncludeLocation(any(), anyOrNull(), anyOrNull()) } doReturn true
+    on { getLogEntry(any(), anyOrNull(), anyOrNull(), anyOrNull()) } doAnswer {
+      BasicLogEntry.get(
+        "fqcn",
+        it.getArgument(0),
+        "name",
+        it.getArgument<Marker?>(1),
+        it.getArgument<Throwable?>(2),
+        null,
+        null
+      )
+    }
+    on { logImmediate(any()) } doAnswer {
+      locations.add(it.getArgument<LogEntry>(0).location)
+      Unit
+    }
+  }
+
+  @Test
+  fun testJavaCallSitesMatchStackLocations() {
+    val expected = runJava(JavaSample())
+    val actual = runJava(newTransformed(JavaSample::class.java))
+    assertThat(expected.size, `is`(4))
+    assertSameLocations(actual, expected)
+  }
+
+  @Test
+  fun testKotlinCallSitesMatchStackLocations() {
+    val expected = runKotlin(KotlinSample())
+    val actual = runKotlin(newTransformed(KotlinSample::class.java))
+    assertThat(expected.size, `is`(2))
+    assertSameLocations(actual, expected)
+  }
+
+  @Test
+  fun testSiteIsBuiltOnce() {
+    val sample = newTransformed<Consumer<Logger>>(KotlinSample::class.java)
+    val first = runKotlin(sample)
+    val second = runKotlin(sample)
+    assertThat(second[0], `is`(sameInstance(first[0])))
+    assertThat(second[1], `is`(sameInstance(first[1])))
+  }
+
+  @Test
+  fun testClassWithoutCallSitesNotTransformed() {
+    assertThat(CallSiteTransformer.transform(bytesOf(CallSiteInjector::class.java)), `is`(nullValue()))
+  }
+
+  @Test
+  fun testTransformedClassNotTransformedAgain() {
+    val transformed = CallSiteTransformer.transform(bytesOf(JavaSample::class.java))
+    assertThat(transformed, `is`(notNullValue()))
+    assertThat(CallSiteTransformer.transform(transformed!!), `is`(nullValue()))
+  }
+
+  @Test
+  fun testInjectorRewritesDirectory() {
+    val dir = Files.createTempDirectory("CallSiteInjector")
+    try {
+      listOf(JavaSample::class.java, KotlinSample::class.java, CallSiteInjector::class.java)
+        .forEach { Files.write(dir.resolve(it.simpleName + ".class"), bytesOf(it)) }
+      assertThat(CallSiteInjector.inject(dir), `is`(2))
+      assertThat(CallSiteInjector.inject(dir), `is`(0))
+    } finally {
+      dir.toFile().deleteRecursively()
+    }
+  }
+
+  private fun runJava(sample: Consumer<JLogger>): List<StackTraceElement?> {
+    locations.clear()
+    sample.accept(JLoggerImpl(logger))
+    return locations.toList()
+  }
+
+  private fun runKotlin(sample: Consumer<Logger>): List<StackTraceElement?> {
+    locations.clear()
+    sample.accept(logger)
+    return locations.toList()
+  }
+
+  /** Compare the parts of the location the transform supplies */
+  private fun assertSameLocations(
+    actual: List<StackTraceElement?>,
+    expected: List<StackTraceElement?>
+  ) {
+    assertThat(actual.size, `is`(expected.size))
+    actual.zip(expected).forEach { (actualElement, expectedElement) ->
+      val a = actualElement!!
+      val e = expectedElement!!
+      assertThat(a.className, `is`(equalTo(e.className)))
+      assertThat(a.methodName, `is`(equalTo(e.methodName)))
+      assertThat(a.fileName, `is`(equalTo(e.fileName)))
+      assertThat(a.lineNumber, `is`(equalTo(e.lineNumber)))
+    }
+  }
+
+  private fun <T> newTransformed(type: Class<*>): T {
+    val bytes = CallSiteTransformer.transform(bytesOf(type))!!
+    @Suppress("UNCHECKED_CAST")
+    return TransformedLoader(type.name, bytes, javaClass.classLoader)
+      .loadClass(type.name)
+      .newInstance() as T
+  }
+
+  private fun bytesOf(type: Class<*>): ByteArray =
+    type.getResourceAsStream(type.simpleName + ".class").use { it.readBytes() }
+
+  /** Defines the transformed class, delegating everything else to the parent */
+  private class TransformedLoader(
+    private val className: String,
+    private val bytes: ByteArray,
+    parent: ClassLoader
+  ) : ClassLoader(parent) {
+    override fun loadClass(name: String, resolve: Boolean): Class<*> {
+      if (name != className) return super.loadClass(name, resolve)
+      synchronized(getClassLoadingLock(name)) {
+        return findLoadedClass(name) ?: defineClass(name, bytes, 0, bytes.size)
+      }
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.callsite;
+
+import com.ealva.ealvalog.LogLevel;
+import com.ealva.ealvalog.java.JLogger;
+
+import java.util.function.Consumer;
+
+/**
+ * Logs through a JLogger, transformed by {@link CallSiteTransformerTest}
+ */
+public class JavaSample implements Consumer<JLogger> {
+  @Override public void accept(final JLogger logger) {
+    logger.log(LogLevel.INFO, "message");
+    logger.log(LogLevel.INFO, "%s %s", "format", "args");
+    final IllegalStateException ex = logger.throwing(LogLevel.WARN, new IllegalStateException());
+    logger.caught(LogLevel.WARN, ex);
+  }
+}
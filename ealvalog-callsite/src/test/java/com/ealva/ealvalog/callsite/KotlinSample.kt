@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.callsite
+
+import com.ealva.ealvalog.Logger
+import com.ealva.ealvalog.i
+import com.ealva.ealvalog.invoke
+import com.ealva.ealvalog.unaryPlus
+import com.ealva.ealvalog.w
+import java.util.function.Consumer
+
+/**
+ * Logs through the Logger extension functions, transformed by [CallSiteTransformerTest]
+ */
+class KotlinSample : Consumer<Logger> {
+  override fun accept(logger: Logger) {
+    logger.i { +it; it("message") }
+    logger.w {
+      +it
+      it("%s %s", "format", "args")
+    }
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.async
+
+import com.ealva.ealvalog.LogEntry
+import com.ealva.ealvalog.LogLevel
+import com.ealva.ealvalog.Logger
+import com.ealva.ealvalog.core.BasicLogEntry
+import com.ealva.ealvalog.core.ExtLogRecord
+import com.ealva.ealvalog.metrics.LogCounter
+import com.ealva.ealvalog.metrics.LogMetrics
+import java.io.Closeable
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Moves the work of [Logger.logImmediate] (formatting and I/O) off of the logging thread. Each
+ * [LogEntry] is copied into the record held by a slot of a preallocated [RingBuffer], and a single
+ * background thread drains the buffer to the [Logger] which would have logged it. A slot's record
+ * is created the first time the slot is used, or when the type of entry changes, so a dispatcher
+ * serving a single kind of [Logger] stops allocating once every slot has been used. The background
+ * thread gives each slot it empties the record it logged last, so it never logs a record which a
+ * producer may be refilling. Records at or above
+ * [priorityLevel] use a separate queue which the background thread always drains first, so they
+ * never wait behind a flood of lower level records. Records are not ordered across the 2 queues.
+ *
+ * Arguments given to [LogEntry.setFormatAndArgs] are formatted on the background thread, so they
+ * should not be mutated after being logged. Likewise, any context an underlying framework reads
+ * from the current thread at log time (eg. a Log4j ThreadContext) is read on the background
+ * thread. Pass an [com.ealva.ealvalog.MdcContext] when logging to carry MDC/NDC across.
+ *
+ * The background thread is a daemon. [close] stops the thread after it drains both queues, after
+ * which records are logged on the calling thread. Anything thrown while logging a record is
+ * passed to the background thread's uncaught exception handler and the thread continues. Should
+ * the thread die regardless, the dispatcher closes itself and callers log, and drain the queues,
+ * on their own thread.
+ */
+class AsyncDispatcher @JvmOverloads constructor(
+  queueSize: Int = DEFAULT_QUEUE_SIZE,
+  val waitStrategy: WaitStrategy = WaitStrategy.PARK,
+  val overflowPolicy: OverflowPolicy = OverflowPolicy.BLOCK,
+  /** With [OverflowPolicy.DROP_BELOW_LEVEL], records below this level are dropped */
+  val dropLevel: LogLevel = LogLevel.WARN,
+  val priorityLevel: LogLevel = LogLevel.ERROR,
+  priorityQueueSize: Int = DEFAULT_PRIORITY_QUEUE_SIZE,
+  threadName: String = DEFAULT_THREAD_NAME
+) : Closeable {
+  private val queue = RingBuffer<Logger, LogEntry>(queueSize)
+  private val priorityQueue = RingBuffer<Logger, LogEntry>(priorityQueueSize)
+  private val dropped = AtomicLong()
+  @field:Volatile private var closed = false
+  @field:Volatile private var dispatcherParked = false
+
+  /** The record the background thread last logged, which it gives to the next slot it empties */
+  private var spare: LogEntry? = null
+
+  /** Used by the background thread, taking ownership of each record for use as the next spare */
+  private val logSink = object : RingBuffer.Sink<Logger, LogEntry> {
+    override fun accept(target: Logger, element: LogEntry) {
+      spare = element
+      log(target, element)
+    }
+  }
+
+  /** Used by any thread draining the queues after close */
+  private val drainSink = object : RingBuffer.Sink<Logger, LogEntry> {
+    override fun accept(target: Logger, element: LogEntry) {
+      log(target, element)
+    }
+  }
+
+  private val discardSink = object : RingBuffer.Sink<Logger, LogEntry> {
+    override fun accept(target: Logger, element: LogEntry) {
+      dropped.incrementAndGet()
+      LogMetrics.count(element.loggerName, element.logLevel, LogCounter.DROPPED)
+    }
+  }
+
+  private val thread = Thread({ dispatch() }, threadName).apply {
+    isDaemon = true
+    start()
+  }
+
+  /** Capacity of the queue for records below [priorityLevel] */
+  val queueCapacity: Int
+    get() = queue.capacity
+
+  /** Capacity of the queue for records at or above [priorityLevel] */
+  val priorityQueueCapacity: Int
+    get() = priorityQueue.capacity
+
+  /** Approximate number of records waiting to be logged, below [priorityLevel] */
+  val queueDepth: Int
+    get() = queue.size
+
+  /** Approximate number of records waiting to be logged, at or above [priorityLevel] */
+  val priorityQueueDepth: Int
+    get() = priorityQueue.size
+
+  /** Number of records discarded due to the [overflowPolicy] */
+  val droppedCount: Long
+    get() = dropped.get()
+
+  val isClosed: Boolean
+    get() = closed
+
+  /**
+   * Queue a copy of [entry] to be logged by [logger] on the background thread. If this dispatcher
+   * is closed, or this is called from the background thread, [logger] logs [entry] immediately.
+   */
+  fun dispatch(logger: Logger, entry: LogEntry) {
+    if (closed || Thread.currentThread() === thread) {
+      logger.logImmediate(entry)
+      return
+    }
+    val level = entry.logLevel
+    if (level.isAtLeast(priorityLevel)) {
+      enqueue(priorityQueue, OverflowPolicy.BLOCK, level, logger, entry)
+    } else {
+      enqueue(queue, overflowPolicy, level, logger, entry)
+    }
+  }
+
+  private fun enqueue(
+    queue: RingBuffer<Logger, LogEntry>,
+    policy: OverflowPolicy,
+    level: LogLevel,
+    logger: Logger,
+    entry: LogEntry
+  ) {
+    while (!queue.offer(logger, entry, SlotCopier)) {
+      when (policy) {
+        OverflowPolicy.BLOCK -> waitForSpace()
+        OverflowPolicy.DROP_BELOW_LEVEL -> {
+          if (!level.isAtLeast(dropLevel)) {
+            dropped.incrementAndGet()
+            LogMetrics.count(entry.loggerName, level, LogCounter.DROPPED)
+            return
+          }
+          waitForSpace()
+        }
+        OverflowPolicy.DROP_OLDEST -> queue.poll(discardSink)
+      }
+    }
+    if (dispatcherParked) {
+      LockSupport.unpark(thread)
+    }
+    if (closed) {
+      // raced with close and the background thread may have already exited
+      drain()
+    }
+  }
+
+  private fun log(target: Logger, element: LogEntry) {
+    try {
+      target.logImmediate(element)
+    } catch (e: Throwable) {
+      // an Error must not stop the thread, or producers blocked on a full queue would hang
+      val thread = Thread.currentThread()
+      thread.uncaughtExceptionHandler?.uncaughtException(thread, e)
+    } finally {
+      // the record belongs to this dispatcher, loggers only close copies they make. Closing
+      // drops its references to arguments and throwable until it is refilled
+      element.close()
+    }
+  }
+
+  private fun waitForSpace() {
+    if (closed) {
+      // the background thread may be gone, make room instead of waiting for it
+      drain()
+      return
+    }
+    when (waitStrategy) {
+      WaitStrategy.SPIN -> {
+      }
+      WaitStrategy.YIELD -> Thread.yield()
+      WaitStrategy.PARK -> LockSupport.parkNanos(this, PRODUCER_PARK_NANOS)
+    }
+  }
+
+  private fun dispatch() {
+    try {
+      dispatchUntilClosed()
+    } finally {
+      // if the thread dies unexpectedly, callers log on their own thread instead of queueing
+      closed = true
+    }
+  }
+
+  private fun dispatchUntilClosed() {
+    while (true) {
+      if (priorityQueue.poll(logSink, spare) || queue.poll(logSink, spare)) {
+        continue
+      }
+      if (closed) {
+        if (priorityQueue.isEmpty && queue.isEmpty) {
+          return
+        }
+        continue
+      }
+      when (waitStrategy) {
+        WaitStrategy.SPIN -> {
+        }
+        WaitStrategy.YIELD -> Thread.yield()
+        WaitStrategy.PARK -> {
+          dispatcherParked = true
+          if (priorityQueue.isEmpty && queue.isEmpty && !closed) {
+            LockSupport.parkNanos(this, DISPATCHER_PARK_NANOS)
+          }
+          dispatcherParked = false
+        }
+      }
+    }
+  }
+
+  private fun drain() {
+    while (priorityQueue.poll(drainSink) || queue.poll(drainSink)) {
+    }
+  }
+
+  /**
+   * Stop accepting records, wait for the background thread to log everything queued, and then
+   * stop the background thread. Subsequent records are logged on the calling thread.
+   */
+  override fun close() {
+    if (closed) return
+    closed = true
+    LockSupport.unpark(thread)
+    if (Thread.currentThread() !== thread) {
+      var interrupted = false
+      while (thread.isAlive) {
+        try {
+          thread.join()
+        } catch (e: InterruptedException) {
+          interrupted = true
+        }
+      }
+      drain()
+      if (interrupted) Thread.currentThread().interrupt()
+    }
+  }
+
+  /**
+   * Copies an entry into the record a slot already holds, if it's the same type, else into a new
+   * record which the slot then holds
+   */
+  private object SlotCopier : RingBuffer.Translator<LogEntry, LogEntry> {
+    override fun translate(held: LogEntry?, source: LogEntry): LogEntry {
+      if (held != null && held.javaClass === source.javaClass) {
+        when (held) {
+          is BasicLogEntry -> return held.copyFrom(source as BasicLogEntry)
+          is ExtLogRecord -> return held.copyFrom(source as ExtLogRecord)
+        }
+      }
+      return if (source is BasicLogEntry) source.copyOf() else ExtLogRecord.copyOf(source)
+    }
+  }
+
+  companion object {
+    const val DEFAULT_QUEUE_SIZE = 8192
+    const val DEFAULT_PRIORITY_QUEUE_SIZE = 1024
+    const val DEFAULT_THREAD_NAME = "ealvalog-async"
+    private const val PRODUCER_PARK_NANOS = 50_000L
+    private const val DISPATCHER_PARK_NANOS = 1_000_000L
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.async
+
+import com.ealva.ealvalog.LogEntry
+import com.ealva.ealvalog.Logger
+
+/**
+ * A [Logger] which hands [logImmediate] to an [AsyncDispatcher]. Everything else is answered by
+ * the wrapped [delegate], so level checks and filtering still happen on the calling thread.
+ */
+class AsyncLogger internal constructor(
+  val delegate: Logger,
+  private val dispatcher: AsyncDispatcher
+) : Logger by delegate {
+  override fun logImmediate(entry: LogEntry) {
+    dispatcher.dispatch(delegate, entry)
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.async
+
+import com.ealva.ealvalog.Logger
+import com.ealva.ealvalog.LoggerFactory
+import com.ealva.ealvalog.Marker
+import java.io.Closeable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
+
+/**
+ * Wraps another [LoggerFactory] so the [Logger]s it returns log via [dispatcher]. Any factory may
+ * be wrapped, the underlying Bridge implementations are unaware. eg.
+ * ```
+ * Loggers.setFactory(AsyncLoggerFactory(JdkLoggerFactory))
+ * ```
+ * Closing this factory closes the dispatcher, flushing any queued records.
+ */
+class AsyncLoggerFactory @JvmOverloads constructor(
+  private val delegate: LoggerFactory,
+  val dispatcher: AsyncDispatcher = AsyncDispatcher()
+) : LoggerFactory, Closeable {
+  private val loggerMap: ConcurrentMap<Logger, AsyncLogger> = ConcurrentHashMap()
+
+  override fun get(name: String, marker: Marker?, includeLocation: Boolean): AsyncLogger {
+    return wrap(delegate.get(name, marker, includeLocation))
+  }
+
+  override fun get(name: String): AsyncLogger {
+    return wrap(delegate.get(name))
+  }
+
+  private fun wrap(logger: Logger): AsyncLogger {
+    return loggerMap.getOrPut(logger) { AsyncLogger(logger, dispatcher) }
+  }
+
+  override fun close() {
+    dispatcher.close()
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.async
+
+/**
+ * What an [AsyncDispatcher] does with a record when its queue is full. Records at or above the
+ * dispatcher's priority level go to their own queue and always [BLOCK], they are never dropped.
+ */
+enum class OverflowPolicy {
+  /** The logging thread waits, per the [WaitStrategy], until there is space */
+  BLOCK,
+  /** Records below the dispatcher's drop level are discarded, others [BLOCK] */
+  DROP_BELOW_LEVEL,
+  /** The oldest queued record is discarded to make room */
+  DROP_OLDEST
+}
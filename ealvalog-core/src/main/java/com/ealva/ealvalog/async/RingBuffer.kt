@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.async
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * A bounded, preallocated, lock-free multi-producer/multi-consumer ring buffer of (target,
+ * element) pairs. Each slot carries a sequence number which producers and consumers use to claim
+ * and publish the slot, so neither [offer] nor [poll] ever locks or allocates.
+ *
+ * Capacity is rounded up to a power of 2.
+ *
+ * Elements may also be reused rather than allocated: a consumer polls with a spare element, which
+ * the slot keeps in place of the element it hands over, and [offer] with a [Translator] refills
+ * whatever element the slot holds.
+ */
+class RingBuffer<T : Any, E : Any>(capacity: Int) {
+  /** Receives the contents of a slot removed by [poll] */
+  interface Sink<in T, in E> {
+    fun accept(target: T, element: E)
+  }
+
+  /** Fills the element of a slot claimed by [offer] from a source */
+  interface Translator<in S, E : Any> {
+    /**
+     * @param held the element the slot holds, a spare given to [poll], which may be refilled from
+     *             [source] and returned
+     *
+     * @return the element to place in the slot
+     */
+    fun translate(held: E?, source: S): E
+  }
+
+  private val mask: Int
+  private val targets: Array<Any?>
+  private val elements: Array<Any?>
+  private val sequences: AtomicLongArray
+  private val head = AtomicLong()
+  private val tail = AtomicLong()
+
+  init {
+    require(capacity in 1..MAX_CAPACITY) { "capacity must be in 1..$MAX_CAPACITY" }
+    val size = Integer.highestOneBit(capacity).let { if (it < capacity) it shl 1 else it }
+    mask = size - 1
+    targets = arrayOfNulls(size)
+    elements = arrayOfNulls(size)
+    sequences = AtomicLongArray(size).apply {
+      for (i in 0 until size) {
+        set(i, i.toLong())
+      }
+    }
+  }
+
+  val capacity: Int
+    get() = mask + 1
+
+  /** Approximate number of elements in the buffer */
+  val size: Int
+    get() = (tail.get() - head.get()).coerceIn(0L, capacity.toLong()).toInt()
+
+  val isEmpty: Boolean
+    get() = size == 0
+
+  /**
+   * Add [target] and [element] to the tail of the buffer
+   *
+   * @return false if the buffer is full
+   */
+  fun offer(target: T, element: E): Boolean {
+    var pos = tail.get()
+    while (true) {
+      val index = (pos and mask.toLong()).toInt()
+      val diff = sequences.get(index) - pos
+      if (diff == 0L) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          targets[index] = target
+          elements[index] = element
+          sequences.lazySet(index, pos + 1)   // publish
+          return true
+        }
+        pos = tail.get()
+      } else if (diff < 0L) {
+        return false
+      } else {
+        pos = tail.get()
+      }
+    }
+  }
+
+  /**
+   * Add [target] and the element [translator] makes from [source] to the tail of the buffer. The
+   * translator is only called once a slot is claimed, so nothing is translated if the buffer is
+   * full.
+   *
+   * @return false if the buffer is full
+   */
+  fun <S> offer(target: T, source: S, translator: Translator<S, E>): Boolean {
+    var pos = tail.get()
+    while (true) {
+      val index = (pos and mask.toLong()).toInt()
+      val diff = sequences.get(index) - pos
+      if (diff == 0L) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          try {
+            @Suppress("UNCHECKED_CAST") val held = elements[index] as E?
+            elements[index] = translator.translate(held, source)
+            targets[index] = target
+          } finally {
+            // publish even if translate threw, the slot then has no target and is skipped
+            sequences.lazySet(index, pos + 1)
+          }
+          return true
+        }
+        pos = tail.get()
+      } else if (diff < 0L) {
+        return false
+      } else {
+        pos = tail.get()
+      }
+    }
+  }
+
+  /**
+   * Remove the head of the buffer and pass it to [sink]
+   *
+   * @return false if the buffer was empty
+   */
+  fun poll(sink: Sink<T, E>): Boolean {
+    return poll(sink, null)
+  }
+
+  /**
+   * Remove the head of the buffer and pass it to [sink], leaving [spare] in the slot for an
+   * [offer] with a [Translator] to refill. [sink] then owns the element, which it may give as the
+   * spare of a later poll once done with it. A spare must not be given to more than one poll.
+   *
+   * @return false if the buffer was empty
+   */
+  fun poll(sink: Sink<T, E>, spare: E?): Boolean {
+    var pos = head.get()
+    while (true) {
+      val index = (pos and mask.toLong()).toInt()
+      val diff = sequences.get(index) - (pos + 1)
+      if (diff == 0L) {
+        if (head.compareAndSet(pos, pos + 1)) {
+          @Suppress("UNCHECKED_CAST") val target = targets[index] as T?
+          @Suppress("UNCHECKED_CAST") val element = elements[index] as E?
+          targets[index] = null
+          elements[index] = if (target == null) element else spare
+          sequences.lazySet(index, pos + mask + 1)   // release the slot for the next lap
+          if (target != null && element != null) {
+            sink.accept(target, element)
+          }
+          return true
+        }
+        pos = head.get()
+      } else if (diff < 0L) {
+        return false
+      } else {
+        pos = head.get()
+      }
+    }
+  }
+
+  companion object {
+    const val MAX_CAPACITY = 1 shl 30
+  }
+}
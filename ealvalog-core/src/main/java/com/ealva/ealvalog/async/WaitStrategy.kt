@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.async
+
+/**
+ * How an [AsyncDispatcher] thread waits for records, and how logging threads wait for space when
+ * the queue is full and the [OverflowPolicy] is to block
+ */
+enum class WaitStrategy {
+  /** Busy spin. Lowest latency, but burns a core while idle */
+  SPIN,
+  /** Call [Thread.yield] between checks */
+  YIELD,
+  /** Park the waiting thread. Logging threads wake a parked dispatcher. Least CPU while idle */
+  PARK
+}
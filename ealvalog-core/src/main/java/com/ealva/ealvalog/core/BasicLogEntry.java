@@ -0,0 +1,535 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.core;
+
+import com.ealva.ealvalog.LogEntry;
+import com.ealva.ealvalog.LogLevel;
+import com.ealva.ealvalog.Marker;
+import com.ealva.ealvalog.metrics.LogMetrics;
+import com.ealva.ealvalog.metrics.LogStage;
+import com.ealva.ealvalog.util.LogUtil;
+import com.ealva.ealvalog.util.MessageStyle;
+import com.ealva.ealvalog.util.MessageTemplate;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link LogEntry} with a flat field layout which, unlike {@link ExtLogRecord}, does not extend
+ * java.util.logging.LogRecord. Used by loggers whose backend is not java.util.logging so they
+ * neither load JUL nor pay for LogRecord's fields and bookkeeping. Not thread safe.
+ * <p>
+ * Reuse follows {@link ExtLogRecord}: {@link #get(String, LogLevel, String, Marker, Throwable,
+ * Map, List)} returns an entry from the current thread's {@link RecordPool} which must be
+ * {@link #close()}ed to be reused, and must be copied, via {@link #copyOf()}, to be handed to
+ * another thread or used after close. Loggers which format or hand off a LogRecord, such as the
+ * stdout and Android loggers, should create {@link ExtLogRecord}s instead, as
+ * {@link ExtLogRecord#fromLogEntry(LogEntry)} must copy a BasicLogEntry into a LogRecord.
+ * <p>
+ * Don't use the {@link #getParameters()} array length as the actual number of parameters. Use
+ * {@link #getParameterCount()} instead.
+ */
+@SuppressWarnings({"WeakerAccess"})
+public class BasicLogEntry implements LogEntry {
+  private static final long serialVersionUID = -3287455367018455123L;
+  private static final AtomicLong sequenceNumberGenerator = new AtomicLong(1);
+  private static final Object[] NO_PARAMETERS = new Object[0];
+  private static final RecordPool<BasicLogEntry> pool = new RecordPool<BasicLogEntry>() {
+    @NotNull @Override protected BasicLogEntry newRecord() {
+      return new BasicLogEntry(null);
+    }
+
+    @Override protected boolean isReserved(@NotNull final BasicLogEntry record) {
+      return record.isReserved();
+    }
+  };
+
+  private @NotNull LogLevel logLevel;
+  private @NotNull String loggerName;
+  private @NotNull String loggerFQCN;
+  private @NotNull String threadName;
+  private int threadID;
+  private int threadPriority;
+  private long sequenceNumber;
+  private long millis;
+  private long nanoTime;
+  private @Nullable Marker marker;
+  private @Nullable Throwable thrown;
+  private @Nullable StackTraceElement location;
+  private @Nullable Map<String, String> mdc;
+  private @Nullable List<String> ndc;
+  private @NotNull MessageStyle messageStyle;
+  private @NotNull StringBuilder builder;
+  private transient @NotNull Object[] parameters;  // written as Strings, as LogRecord does
+  private int parameterCount;
+  private transient @Nullable Formatter formatter;
+  private transient boolean reserved;
+  private transient boolean pooled;
+
+  public static BasicLogEntry get(final @NotNull String loggerFQCN,
+                                  final @NotNull LogLevel level,
+                                  final @NotNull String loggerName,
+                                  final @Nullable Marker marker,
+                                  final @Nullable Throwable throwable,
+                                  final @Nullable Map<String, String> mdc,
+                                  final @Nullable List<String> ndc) {
+    final boolean timed = LogMetrics.shouldTime();
+    final long start = timed ? System.nanoTime() : 0L;
+    final BasicLogEntry entry = reserveEntry();
+    entry.setLogLevel(level);
+    entry.setMarker(marker);
+    entry.setThrown(throwable);
+    entry.setLoggerName(loggerName);
+    entry.setLoggerFQCN(loggerFQCN);
+    entry.setMdc(mdc);
+    entry.setNdc(ndc);
+    if (timed) {
+      LogMetrics.recordLatency(loggerName, LogStage.RECORD, System.nanoTime() - start);
+    }
+    return entry;
+  }
+
+  private static BasicLogEntry reserveEntry() {
+    return pool.get().reserve();
+  }
+
+  @TestOnly
+  public static void clearCachedEntry() {
+    pool.clear();
+  }
+
+  /**
+   * Entry is never closed, it belongs to whoever obtained it.
+   *
+   * @param entry the LogEntry, which should already be a BasicLogEntry
+   *
+   * @return entry if it is a BasicLogEntry, otherwise a new BasicLogEntry copied from entry
+   */
+  public static BasicLogEntry fromLogEntry(final @NotNull LogEntry entry) {
+    if (entry instanceof BasicLogEntry) {
+      return (BasicLogEntry)entry;
+    }
+    return new BasicLogEntry(entry);
+  }
+
+  protected BasicLogEntry(final @Nullable LogEntry entry) {
+    builder = new StringBuilder(ExtLogRecord.DEFAULT_STRING_BUILDER_SIZE);
+    parameters = NO_PARAMETERS;
+    if (entry != null) {
+      logLevel = entry.getLogLevel();
+      loggerName = entry.getLoggerName();
+      loggerFQCN = entry.getLoggerFQCN();
+      threadName = entry.getThreadName();
+      threadID = entry.getThreadID();
+      threadPriority = entry.getThreadPriority();
+      sequenceNumber = entry.getSequenceNumber();
+      millis = entry.getMillis();
+      nanoTime = entry.getNanoTime();
+      marker = entry.getMarker();
+      thrown = entry.getThrown();
+      location = entry.getLocation();
+      mdc = entry.getMdc();
+      ndc = entry.getNdc();
+      if (entry instanceof BasicLogEntry) {
+        final BasicLogEntry other = (BasicLogEntry)entry;
+        messageStyle = other.messageStyle;
+        builder.append(other.builder);
+        setParameters(other.parameters, other.parameterCount);
+      } else if (entry instanceof ExtLogRecord) {
+        final ExtLogRecord other = (ExtLogRecord)entry;
+        messageStyle = other.getMessageStyle();
+        builder.append(other.getMessage());
+        final Object[] otherParameters = other.getParameters();
+        if (otherParameters != null) {
+          setParameters(otherParameters, other.getParameterCount());
+        }
+      } else {
+        messageStyle = MessageStyle.PRINTF;
+        builder.append(entry.getMessage());
+      }
+    } else {
+      logLevel = LogLevel.ERROR;
+      loggerName = "";
+      loggerFQCN = "";
+      threadName = Thread.currentThread().getName();
+      messageStyle = MessageStyle.PRINTF;
+    }
+  }
+
+  public boolean isReserved() {
+    return reserved;
+  }
+
+  /**
+   * Marks this entry in use and resets the message, parameters, location, event time, sequence
+   * number, thread info, and {@link MessageStyle#PRINTF} message style.
+   *
+   * @return this entry for single use
+   */
+  protected BasicLogEntry reserve() {
+    reserved = true;
+    pooled = true;
+    if (builder.capacity() > ExtLogRecord.getMaxStringBuilderSize()) {
+      builder.setLength(ExtLogRecord.getMaxStringBuilderSize());
+      builder.trimToSize();
+    }
+    builder.setLength(0);
+    setParameters(NO_PARAMETERS, 0);
+    location = null;
+    millis = System.currentTimeMillis();
+    nanoTime = System.nanoTime();
+    sequenceNumber = sequenceNumberGenerator.getAndIncrement();
+    final Thread currentThread = Thread.currentThread();
+    threadName = currentThread.getName();
+    threadID = (int)currentThread.getId();
+    threadPriority = currentThread.getPriority();
+    messageStyle = MessageStyle.PRINTF;
+    return this;
+  }
+
+  /**
+   * Releases this entry for reuse. Parameters, throwable, MDC, and NDC are cleared so the entry
+   * does not keep them reachable. Once released a pooled entry may be reserved again, possibly by
+   * another thread, so only the first close of a reservation has any effect.
+   */
+  @Override public void close() {
+    if (pooled && !reserved) {
+      return;
+    }
+    clear();
+    if (reserved) {
+      reserved = false;
+      releaseToPool();
+    }
+  }
+
+  /** Clear the references dropped by {@link #close()}. Subclasses with more such state override */
+  protected void clear() {
+    setParameters(NO_PARAMETERS, 0);
+    setThrown(null);
+    mdc = null;
+    ndc = null;
+  }
+
+  /**
+   * Make this entry a copy of {@code other}, reusing this entry's message builder and parameter
+   * array, so an entry which is held for reuse, such as by a queue slot, is refilled without
+   * allocating
+   *
+   * @return this entry
+   */
+  public @NotNull BasicLogEntry copyFrom(final @NotNull BasicLogEntry other) {
+    logLevel = other.logLevel;
+    loggerName = other.loggerName;
+    loggerFQCN = other.loggerFQCN;
+    threadName = other.threadName;
+    threadID = other.threadID;
+    threadPriority = other.threadPriority;
+    sequenceNumber = other.sequenceNumber;
+    millis = other.millis;
+    nanoTime = other.nanoTime;
+    marker = other.marker;
+    setThrown(other.thrown);
+    location = other.location;
+    mdc = other.mdc;
+    ndc = other.ndc;
+    messageStyle = other.messageStyle;
+    builder.setLength(0);
+    builder.append(other.builder);
+    setParameters(other.parameters, other.parameterCount);
+    return this;
+  }
+
+  /** Return this closed entry to the pool it was obtained from. Subclasses with a pool override */
+  protected void releaseToPool() {
+    pool.release(this);
+  }
+
+  /**
+   * @return a copy of this entry, including any parameters, which may be handed to another thread.
+   * Subclasses return a copy of their own type
+   */
+  public BasicLogEntry copyOf() {
+    return new BasicLogEntry(this);
+  }
+
+  @Override public @NotNull LogLevel getLogLevel() {
+    return logLevel;
+  }
+
+  public void setLogLevel(final @NotNull LogLevel logLevel) {
+    this.logLevel = logLevel;
+  }
+
+  @Override public @NotNull String getLoggerName() {
+    return loggerName;
+  }
+
+  public void setLoggerName(final @NotNull String loggerName) {
+    this.loggerName = loggerName;
+  }
+
+  @Override public @NotNull String getLoggerFQCN() {
+    return loggerFQCN;
+  }
+
+  protected void setLoggerFQCN(final @NotNull String loggerFQCN) {
+    this.loggerFQCN = loggerFQCN;
+  }
+
+  @Override public @NotNull String getThreadName() {
+    return threadName;
+  }
+
+  @Override public int getThreadID() {
+    return threadID;
+  }
+
+  @Override public int getThreadPriority() {
+    return threadPriority;
+  }
+
+  @Override public long getSequenceNumber() {
+    return sequenceNumber;
+  }
+
+  @Override public long getMillis() {
+    return millis;
+  }
+
+  @Override public long getNanoTime() {
+    return nanoTime;
+  }
+
+  @Override public @Nullable Marker getMarker() {
+    return marker;
+  }
+
+  @Override public void setMarker(final @Nullable Marker marker) {
+    this.marker = marker;
+  }
+
+  @Override public @Nullable Throwable getThrown() {
+    return thrown;
+  }
+
+  public void setThrown(final @Nullable Throwable thrown) {
+    this.thrown = thrown;
+  }
+
+  @Override public @Nullable StackTraceElement getLocation() {
+    return location;
+  }
+
+  public void setLocation(final @Nullable StackTraceElement location) {
+    this.location = location;
+  }
+
+  /** @return the class name of the {@link #getLocation()}, or "" if no location */
+  @Override public @NotNull String getSourceClassName() {
+    final StackTraceElement location = this.location;
+    return location == null ? "" : location.getClassName();
+  }
+
+  /** @return the method name of the {@link #getLocation()}, or "" if no location */
+  @Override public @NotNull String getSourceMethodName() {
+    final StackTraceElement location = this.location;
+    return location == null ? "" : location.getMethodName();
+  }
+
+  @Override public @Nullable Map<String, String> getMdc() {
+    return mdc;
+  }
+
+  public void setMdc(final @Nullable Map<String, String> mdc) {
+    this.mdc = mdc;
+  }
+
+  @Override public @Nullable List<String> getNdc() {
+    return ndc;
+  }
+
+  public void setNdc(final @Nullable List<String> ndc) {
+    this.ndc = ndc;
+  }
+
+  /**
+   * @return how the format and args given to {@link #setFormatAndArgs(String, Object...)} are to
+   * be combined
+   */
+  public @NotNull MessageStyle getMessageStyle() {
+    return messageStyle;
+  }
+
+  public void setMessageStyle(final @NotNull MessageStyle messageStyle) {
+    this.messageStyle = messageStyle;
+  }
+
+  @Override public @NotNull String getMessage() {
+    return builder.toString();
+  }
+
+  /**
+   * @return the builder containing the message, which may be read without creating a String.
+   * Contents are only valid until the entry is reused
+   */
+  protected @NotNull StringBuilder getMessageBuilder() {
+    return builder;
+  }
+
+  /**
+   * @return the parameters given to {@link #setFormatAndArgs(String, Object...)}. The array may
+   * be longer than {@link #getParameterCount()}, with nulls following the parameters
+   */
+  public @NotNull Object[] getParameters() {
+    return parameters;
+  }
+
+  /** @return the number of parameters given to {@link #setFormatAndArgs(String, Object...)} */
+  public int getParameterCount() {
+    return parameterCount;
+  }
+
+  private void setParameters(final @NotNull Object[] source, final int count) {
+    Object[] target = parameters;
+    if (target.length < count) {
+      target = parameters = new Object[count];
+    }
+    System.arraycopy(source, 0, target, 0, count);
+    if (parameterCount > count) {
+      Arrays.fill(target, count, parameterCount, null);
+    }
+    parameterCount = count;
+  }
+
+  @NotNull @Override public LogEntry reset() {
+    builder.setLength(0);
+    return this;
+  }
+
+  @NotNull @Override public LogEntry append(final char c) {
+    builder.append(c);
+    return this;
+  }
+
+  @NotNull @Override public LogEntry append(final CharSequence csq) {
+    builder.append(csq);
+    return this;
+  }
+
+  @NotNull @Override
+  public LogEntry append(final CharSequence csq, final int start, final int end) {
+    builder.append(csq, start, end);
+    return this;
+  }
+
+  @NotNull @Override public LogEntry append(@NotNull final String str) {
+    builder.append(str);
+    return this;
+  }
+
+  @NotNull @Override public LogEntry append(boolean b) {
+    builder.append(b);
+    return this;
+  }
+
+  @NotNull @Override public LogEntry append(int i) {
+    builder.append(i);
+    return this;
+  }
+
+  @NotNull @Override public LogEntry append(long lng) {
+    builder.append(lng);
+    return this;
+  }
+
+  @NotNull @Override public LogEntry append(float f) {
+    builder.append(f);
+    return this;
+  }
+
+  @NotNull @Override public LogEntry append(double d) {
+    builder.append(d);
+    return this;
+  }
+
+  @NotNull @Override public LogEntry format(@NotNull final String format,
+                                            final Object @NotNull ... args) {
+    return format(Locale.getDefault(), format, args);
+  }
+
+  @NotNull @Override public LogEntry format(@NotNull Locale locale,
+                                            @NotNull final String format,
+                                            final Object @NotNull ... args) {
+    if (args.length > 0) {
+      Formatter formatter = this.formatter;
+      if (formatter == null) {
+        formatter = this.formatter = new Formatter(builder);
+      }
+      MessageTemplate.get(format).format(formatter, builder, locale, args);
+    } else {
+      builder.append(format);
+    }
+    return this;
+  }
+
+  @NotNull @Override public LogEntry addLocation(final int stackDepth) {
+    location = LogUtil.getCallerLocation(stackDepth + 1);
+    return this;
+  }
+
+  @NotNull @Override public LogEntry addLocation(final @NotNull StackTraceElement location) {
+    this.location = location;
+    return this;
+  }
+
+  @NotNull @Override
+  public LogEntry setFormatAndArgs(@NotNull final String format, final Object @NotNull ... args) {
+    setParameters(args, args.length);
+    builder.setLength(0);
+    builder.append(format);
+    return this;
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    for (int i = 0; i < parameterCount; i++) {
+      out.writeObject(String.valueOf(parameters[i]));
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    parameters = new Object[parameterCount];
+    for (int i = 0; i < parameterCount; i++) {
+      parameters[i] = in.readObject();
+    }
+  }
+}
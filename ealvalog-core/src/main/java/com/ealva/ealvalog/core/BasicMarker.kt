@@ -34,27 +34,56 @@ import java.util.concurrent.CopyOnWriteArraySet
  *
  * Created by Eric A. Snell on 2/28/17.
  */
-open class BasicMarker(override var name: String) : Marker {
+open class BasicMarker(name: String) : Marker {
+  override var name: String = name
+    set(value) {
+      field = value
+      id = MarkerIndex.idOf(value)
+      MarkerIndex.changed()
+    }
+
   private var containedMarkers = CopyOnWriteArraySet<Marker>()
 
+  /** Dense id of [name], the index of this marker in every [closure] */
+  @Transient internal var id: Int = MarkerIndex.idOf(name)
+    private set
+
+  /** Ids of this marker and all markers it references, directly or transitively */
+  @Transient @Volatile private var closure: MarkerIndex.Closure? = null
+
   private// threadLocalStringBuilder.get(); Not thread local builder until we know we're logging markers a lot
   val stringBuilder: StringBuilder
     get() = StringBuilder()
 
   override fun add(marker: Marker): Boolean {
-    return containedMarkers.add(marker)
+    return containedMarkers.add(marker).also { added -> if (added) MarkerIndex.changed() }
   }
 
   override fun remove(marker: Marker): Boolean {
-    return containedMarkers.remove(marker)
+    return containedMarkers.remove(marker).also { removed -> if (removed) MarkerIndex.changed() }
   }
 
+  /**
+   * @return true if this instance is [marker] or [marker] is reachable through this instance's
+   * references, however deeply nested. Markers are matched by name.
+   */
   override fun isOrContains(marker: Marker): Boolean {
-    return this == marker || containedMarkers.contains(marker)
+    return this == marker ||
+      currentClosure().contains(if (marker is BasicMarker) marker.id else MarkerIndex.find(marker.name))
   }
 
+  /**
+   * @return true if this instance is named [markerName] or a marker named [markerName] is
+   * reachable through this instance's references, however deeply nested
+   */
   override fun isOrContains(markerName: String): Boolean {
-    return name == markerName || containedMarkers.find { it.name == markerName  } != null
+    return name == markerName || currentClosure().contains(MarkerIndex.find(markerName))
+  }
+
+  private fun currentClosure(): MarkerIndex.Closure {
+    val current = closure
+    if (current != null && current.version == MarkerIndex.version) return current
+    return MarkerIndex.closureOf(this).also { closure = it }
   }
 
   override fun iterator(): Iterator<Marker> {
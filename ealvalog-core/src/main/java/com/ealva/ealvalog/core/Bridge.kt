@@ -54,6 +54,14 @@ interface Bridge : LoggerFilter {
 
   fun shouldIncludeLocation(level: LogLevel, marker: Marker?, throwable: Throwable?): Boolean
 
+  /**
+   * Summarize this bridge for the [CoreLogger] level cache. Set [LevelCache.levelBit] for each
+   * level [isLoggable] might accept, plus any of [LevelCache.LEVELS_ONLY],
+   * [LevelCache.INCLUDE_LOCATION], and [LevelCache.EXCLUDE_LOCATION] which hold. Implementations
+   * must call [LevelCache.invalidate] when anything summarized here changes.
+   */
+  fun levelCacheBits(): Int
+
   fun willLogToParent(loggerName: String): Boolean
 
   var logToParent: Boolean
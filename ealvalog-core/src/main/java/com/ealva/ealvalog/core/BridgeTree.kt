@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.core
+
+import com.ealva.ealvalog.Logger
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.locks.ReentrantLock
+
+/**
+ * The [Bridge]s and [Logger]s of a factory organized as a trie of logger name segments, eg.
+ * "com" -> "com.ealva" -> "com.ealva.Foo". Every node caches the nearest bridge at or above it,
+ * so [getBridge] is a single hash lookup for any name with a node and a walk of at most depth
+ * segments otherwise, without creating substrings.
+ *
+ * Reads are lock free. Adding a bridge or logger is done under a lock and only the subtree below
+ * the new bridge is re-linked: bridge parents are set via [setParent] and loggers whose nearest
+ * bridge changed are passed to [updateLogger]. Modifying or adding a bridge invalidates the
+ * [LevelCache].
+ */
+class BridgeTree<B : Bridge, L : Logger>(
+  private val rootBridge: B,
+  private val setParent: (bridge: B, parent: B) -> Unit,
+  private val updateLogger: (logger: L) -> Unit
+) {
+  private val lock = ReentrantLock()
+  private val nodes = ConcurrentHashMap<String, Node<B, L>>()
+  private val root = Node<B, L>(rootBridge.name, null, rootBridge).apply { bridge = rootBridge }
+
+  /**
+   * Get the bridge configured for [name] or, if there is none, the nearest ancestor bridge
+   */
+  fun getBridge(name: String): B {
+    nodes[name]?.let { return it.nearest }
+    return nearestNode(name).nearest
+  }
+
+  /**
+   * Get the bridge configured for exactly [name], null if [name] inherits its bridge
+   */
+  fun getExactBridge(name: String): B? {
+    return if (name == root.name) root.bridge else nodes[name]?.bridge
+  }
+
+  fun getLogger(name: String): L? {
+    return nodes[name]?.logger
+  }
+
+  /**
+   * If a bridge is configured for [name] pass it to [modify], else make one with [make] and
+   * link it into the tree. The new bridge is returned after being linked.
+   */
+  fun modifyOrMake(name: String, modify: (B) -> Unit, make: () -> B): B {
+    lock.lock()
+    try {
+      val existing = getExactBridge(name)
+      if (existing != null) {
+        modify(existing)
+        return existing
+      }
+      val node = nodeFor(name)
+      val bridge = make()
+      node.bridge = bridge
+      setParent(bridge, node.parent?.nearest ?: rootBridge)
+      relink(node, bridge)
+      return bridge
+    } finally {
+      LevelCache.invalidate()
+      lock.unlock()
+    }
+  }
+
+  /**
+   * Get the logger registered for [name] or make one with [make]. [make] is invoked, and
+   * [onMade] is called with the new logger, while holding the tree lock.
+   */
+  fun getOrMakeLogger(name: String, make: () -> L, onMade: (L) -> Unit): L {
+    getLogger(name)?.let { return it }
+    lock.lock()
+    try {
+      val node = nodeFor(name)
+      node.logger?.let { return it }
+      val logger = make()
+      node.logger = logger
+      onMade(logger)
+      return logger
+    } finally {
+      lock.unlock()
+    }
+  }
+
+  fun forEachBridge(action: (B) -> Unit) {
+    for (node in nodes.values) {
+      node.bridge?.let(action)
+    }
+  }
+
+  /**
+   * Remove all bridges, except the root, and all loggers. Loggers previously handed out are not
+   * updated.
+   */
+  fun clear() {
+    lock.lock()
+    try {
+      nodes.clear()
+      root.children = emptyArray()
+    } finally {
+      LevelCache.invalidate()
+      lock.unlock()
+    }
+  }
+
+  private fun relink(node: Node<B, L>, nearest: B) {
+    node.nearest = nearest
+    node.logger?.let(updateLogger)
+    for (child in node.children) {
+      val childBridge = child.bridge
+      if (childBridge != null) {
+        setParent(childBridge, nearest)
+      } else {
+        relink(child, nearest)
+      }
+    }
+  }
+
+  /**
+   * Deepest existing node along the path of [name], walking down from the root. The walk stops at
+   * an empty segment, as names with one are never on the path of another name.
+   */
+  private fun nearestNode(name: String): Node<B, L> {
+    var node = root
+    var start = 0
+    while (start < name.length) {
+      val end = name.indexOf('.', start).let { if (it < 0) name.length else it }
+      if (end == start) return node
+      node = node.findChild(name, start, end) ?: return node
+      start = end + 1
+    }
+    return node
+  }
+
+  /**
+   * Must hold [lock]. A name with an empty segment, such as "com.acme.", ".foo" or "a..b", gets a
+   * node named exactly [name] below the node of the segments before the empty one, so it is
+   * distinct from that node and inherits its bridge.
+   */
+  private fun nodeFor(name: String): Node<B, L> {
+    if (name == root.name) return root
+    nodes[name]?.let { return it }
+    var node = root
+    var start = 0
+    while (true) {
+      val end = name.indexOf('.', start).let { if (it < 0) name.length else it }
+      if (end == start) {
+        return node.addChild(name).also { nodes[name] = it }
+      }
+      node = node.findChild(name, start, end) ?: node.addChild(name.substring(0, end)).also {
+        nodes[it.name] = it
+      }
+      if (end == name.length) return node
+      start = end + 1
+    }
+  }
+
+  private class Node<B : Bridge, L : Logger>(
+    val name: String,
+    val parent: Node<B, L>?,
+    @field:Volatile var nearest: B
+  ) {
+    @field:Volatile var bridge: B? = null
+    @field:Volatile var logger: L? = null
+    /** Copy on write so readers may walk it without the lock */
+    @field:Volatile var children: Array<Node<B, L>> = emptyArray()
+
+    /**
+     * Find the child whose full name is the first [end] chars of [fullName]. The chars before
+     * [start] already matched this node.
+     */
+    fun findChild(fullName: String, start: Int, end: Int): Node<B, L>? {
+      for (child in children) {
+        val childName = child.name
+        if (childName.length == end &&
+          childName.regionMatches(start, fullName, start, end - start)) {
+          return child
+        }
+      }
+      return null
+    }
+
+    fun addChild(childName: String): Node<B, L> {
+      return Node(childName, this, nearest).also { children = children + it }
+    }
+  }
+}
@@ -23,6 +23,11 @@ import com.ealva.ealvalog.LogLevel
 import com.ealva.ealvalog.Logger
 import com.ealva.ealvalog.LoggerFilter
 import com.ealva.ealvalog.Marker
+import com.ealva.ealvalog.metrics.LogCounter
+import com.ealva.ealvalog.metrics.LogMetrics
+import com.ealva.ealvalog.metrics.LogStage
+import com.ealva.ealvalog.metrics.LoggerCounters
+import com.ealva.ealvalog.util.MessageStyle
 
 /**
  * This logger delegates to a [Bridge] implementation to perform most operations. The
@@ -39,6 +44,15 @@ abstract class CoreLogger<T : Bridge> protected constructor(
 ) : Logger {
   @field:Volatile protected open var bridge: T = config.getBridge(loggerName)
 
+  /**
+   * The bits of [bridge] as of a [LevelCache.generation]. Not volatile, [LevelState] is immutable
+   * and a stale read only causes a refresh
+   */
+  private var levelState = LevelState.UNSET
+
+  /** Looked up the first time this logger counts or is timed */
+  private var counters: LoggerCounters? = null
+
   override var logLevel: LogLevel?
     get() = bridge.getLevelForLogger(this)
     set(logLevel) = config.setLogLevel(this, logLevel ?: LogLevel.NONE)
@@ -55,7 +69,12 @@ abstract class CoreLogger<T : Bridge> protected constructor(
     marker: Marker?,
     throwable: Throwable?
   ): Boolean {
-    return bridge.shouldIncludeLocation(logLevel, resolveMarker(marker), throwable)
+    val bits = levelCacheBits()
+    return when {
+      (bits and LevelCache.INCLUDE_LOCATION) != 0 -> true
+      (bits and LevelCache.EXCLUDE_LOCATION) != 0 -> false
+      else -> bridge.shouldIncludeLocation(logLevel, resolveMarker(marker), throwable)
+    }
   }
 
   override fun isLoggable(
@@ -63,7 +82,24 @@ abstract class CoreLogger<T : Bridge> protected constructor(
     marker: Marker?,
     throwable: Throwable?
   ): Boolean {
-    return bridge.isLoggable(name, level, resolveMarker(marker), throwable).shouldProceed
+    val mode = LogMetrics.mode
+    if (mode == 0) return checkLoggable(level, marker, throwable)
+    val timed = LogMetrics.shouldTime(mode)
+    val start = if (timed) System.nanoTime() else 0L
+    val loggable = checkLoggable(level, marker, throwable)
+    if (timed) counters().recordLatency(LogStage.FILTER, System.nanoTime() - start)
+    if ((mode and LogMetrics.COUNTING) != 0) counters().checked(level, loggable)
+    return loggable
+  }
+
+  /** With metrics off a disabled level costs the [LevelCache.generation] read and a bit test */
+  private fun checkLoggable(level: LogLevel, marker: Marker?, throwable: Throwable?): Boolean {
+    val bits = levelCacheBits()
+    return when {
+      (bits and LevelCache.levelBit(level)) == 0 -> false
+      (bits and LevelCache.LEVELS_ONLY) != 0 -> true
+      else -> bridge.isLoggable(name, level, resolveMarker(marker), throwable).shouldProceed
+    }
   }
 
   var logToParent: Boolean
@@ -76,16 +112,50 @@ abstract class CoreLogger<T : Bridge> protected constructor(
       config.setLoggerFilter(this, value)
     }
 
+  /** The [MessageStyle] to set into records obtained from this logger */
+  protected val messageStyle: MessageStyle
+    get() = config.messageStyle
+
   fun willLogToParent(): Boolean {
     return bridge.willLogToParent(name)
   }
 
   override fun logImmediate(entry: LogEntry) {
-    bridge.log(entry)
+    val mode = LogMetrics.mode
+    if ((mode and LogMetrics.COUNTING) != 0) {
+      counters().increment(LogCounter.EMITTED, entry.logLevel)
+    }
+    if (LogMetrics.shouldTime(mode)) {
+      val start = System.nanoTime()
+      bridge.log(entry)
+      counters().recordLatency(LogStage.PUBLISH, System.nanoTime() - start)
+    } else {
+      bridge.log(entry)
+    }
   }
 
   protected fun resolveMarker(marker: Marker?): Marker? {
     return marker ?: this.marker
   }
 
+  private fun counters(): LoggerCounters {
+    return counters ?: LogMetrics.countersFor(name).also { counters = it }
+  }
+
+  private fun levelCacheBits(): Int {
+    val generation = LevelCache.generation
+    val state = levelState
+    if (state.generation == generation) {
+      return state.bits
+    }
+    // generation is read before the bridge so a concurrent change leaves this state stale
+    return bridge.levelCacheBits().also { levelState = LevelState(generation, it) }
+  }
+
+  private class LevelState(val generation: Int, val bits: Int) {
+    companion object {
+      val UNSET = LevelState(Int.MIN_VALUE, 0)
+    }
+  }
+
 }
@@ -22,15 +22,22 @@ import com.ealva.ealvalog.LogEntry;
 import com.ealva.ealvalog.LogLevel;
 import com.ealva.ealvalog.Marker;
 import com.ealva.ealvalog.NullMarker;
+import com.ealva.ealvalog.metrics.LogMetrics;
+import com.ealva.ealvalog.metrics.LogStage;
 import com.ealva.ealvalog.util.LogUtil;
+import com.ealva.ealvalog.util.MessageStyle;
+import com.ealva.ealvalog.util.MessageTemplate;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OptionalDataException;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Formatter;
@@ -46,8 +53,9 @@ import java.util.logging.LogRecord;
  * Subclass of LogRecord adding the extra info we need. Not thread safe.
  * <p>
  * Use {@link #reserveRecord()} to obtain an ExtLogRecord which is associated with a thread and needs
- * to be {@link #close()}ed to be properly reused. Lower layers of the logging framework
- * need to copy this ExtLogRecord if it's to be passed to another thread.
+ * to be {@link #close()}ed to be properly reused. Records are pooled per thread, see
+ * {@link RecordPool}, so nested logging does not allocate. Lower layers of the logging framework
+ * need to copy this ExtLogRecord if it's to be passed to another thread or used after close.
  * <p>
  * Don't use the {@link #getParameters()} array length as the actual number of parameters. Use
  * {@link #getParameterCount()} instead. There might be nulls at the end of the array due to reuse
@@ -58,7 +66,15 @@ import java.util.logging.LogRecord;
 public class ExtLogRecord extends LogRecord implements LogEntry {
   private static final long serialVersionUID = 936230097973648802L;
   private static final AtomicLong sequenceNumber = new AtomicLong(1);
-  private static final ThreadLocal<ExtLogRecord> threadLocalRecord = new ThreadLocal<>();
+  private static final RecordPool<ExtLogRecord> pool = new RecordPool<ExtLogRecord>() {
+    @NotNull @Override protected ExtLogRecord newRecord() {
+      return new ExtLogRecord(null);
+    }
+
+    @Override protected boolean isReserved(@NotNull final ExtLogRecord record) {
+      return record.isReserved();
+    }
+  };
   /** The default, and minimum, size of cached string builders. This is a per thread cost */
   public static final int DEFAULT_STRING_BUILDER_SIZE = 1024;
   /** The default maximum size of cached string builders */
@@ -73,10 +89,13 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
   private transient int parameterCount;   // actual number of parameters, array might be over-sized
   private transient int threadPriority;
   private transient long nanoTime;
+  private transient long millis;
   private transient @NotNull String loggerFQCN;
   private transient @Nullable Map<String, String> mdc;
   private transient @Nullable List<String> ndc;
+  private transient @NotNull MessageStyle messageStyle;
   private transient boolean reserved;
+  private transient boolean pooled;
   private transient @NotNull StringBuilder builder;
   private transient @NotNull Formatter formatter;
 
@@ -110,6 +129,8 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
                                  final @Nullable Throwable throwable,
                                  final @Nullable Map<String, String> mdc,
                                  final @Nullable List<String> ndc) {
+    final boolean timed = LogMetrics.shouldTime();
+    final long start = timed ? System.nanoTime() : 0L;
     final ExtLogRecord logRecord = reserveRecord();
     logRecord.setLogLevel(level);  // sets LogLevel and java.util.logging.Level
     logRecord.setMarker(marker);
@@ -118,39 +139,102 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
     logRecord.setLoggerFQCN(loggerFQCN);
     logRecord.setMdc(mdc);
     logRecord.setNdc(ndc);
+    if (timed) {
+      LogMetrics.recordLatency(loggerName, LogStage.RECORD, System.nanoTime() - start);
+    }
     return logRecord;
   }
 
   private static ExtLogRecord reserveRecord() {
-    ExtLogRecord result = threadLocalRecord.get();
-    if (result == null) {
-      result = new ExtLogRecord(null);
-      threadLocalRecord.set(result);
-    }
-    return result.isReserved() ? new ExtLogRecord(null).reserve() : result.reserve();
+    return pool.get().reserve();
   }
 
   /**
-   * If entry is an ExtLogRecord it is returned, otherwise a new ExtLogRecord will be created.
-   * Currently, new object creation is only necessary if someone sends a LogEntry into a Logger
-   * from which it did not originate.
+   * If entry is an ExtLogRecord it is returned. A {@link BasicLogEntry} is copied into this
+   * thread's reusable record, which is how loggers using BasicLogEntry hand a LogRecord to
+   * java.util.logging components. Otherwise a new ExtLogRecord will be created, which is only
+   * necessary if someone sends a LogEntry into a Logger from which it did not originate.
+   * <p>
+   * Entry is never closed, it belongs to whoever obtained it. If the result is not entry, the
+   * caller must close the result.
    *
-   * @param entry the LogEntry, which should already be an ExtLogRecord
+   * @param entry the LogEntry, which should already be an ExtLogRecord or a BasicLogEntry
    *
-   * @return entry if it is an ExtLogRecord or a new ExtLogRecord if entry must be converted
+   * @return entry if it is an ExtLogRecord or an ExtLogRecord if entry must be converted
    */
   public static ExtLogRecord fromLogEntry(@NotNull final LogEntry entry) {
     if (ExtLogRecord.class.isAssignableFrom(entry.getClass())) {
       return (ExtLogRecord)entry;
+    } else if (entry instanceof BasicLogEntry) {
+      return reserveRecord().copyFrom((BasicLogEntry)entry);
     } else {
-      entry.close();
       return new ExtLogRecord(entry);
     }
   }
 
+  private ExtLogRecord copyFrom(final @NotNull BasicLogEntry entry) {
+    setLogLevel(entry.getLogLevel());
+    setLoggerName(entry.getLoggerName());
+    loggerFQCN = entry.getLoggerFQCN();
+    threadName = entry.getThreadName();
+    setThreadID(entry.getThreadID());
+    threadPriority = entry.getThreadPriority();
+    setSequenceNumber(entry.getSequenceNumber());
+    millis = entry.getMillis();
+    nanoTime = entry.getNanoTime();
+    marker = entry.getMarker();
+    setThrown(entry.getThrown());
+    location = entry.getLocation();
+    // there are no java.util.logging.Logger frames to infer a caller from, so never infer
+    setSourceClassName(location == null ? null : location.getClassName());
+    setSourceMethodName(location == null ? null : location.getMethodName());
+    mdc = entry.getMdc();
+    ndc = entry.getNdc();
+    messageStyle = entry.getMessageStyle();
+    builder.append(entry.getMessageBuilder());
+    setParameters(entry.getParameters(), entry.getParameterCount());
+    return this;
+  }
+
+  /**
+   * Make this record a copy of {@code other}, reusing this record's message builder and parameter
+   * array, so a record which is held for reuse, such as by a queue slot, is refilled without
+   * allocating
+   *
+   * @return this record
+   */
+  public @NotNull ExtLogRecord copyFrom(final @NotNull ExtLogRecord other) {
+    setLogLevel(other.logLevel);
+    setLoggerName(other.getLoggerName());
+    loggerFQCN = other.loggerFQCN;
+    threadName = other.threadName;
+    setThreadID(other.getThreadID());
+    threadPriority = other.threadPriority;
+    setSequenceNumber(other.getSequenceNumber());
+    millis = other.millis;
+    nanoTime = other.nanoTime;
+    marker = other.marker;
+    setThrown(other.getThrown());
+    location = other.location;
+    setSourceClassName(other.getSourceClassName());
+    setSourceMethodName(other.getSourceMethodName());
+    mdc = other.mdc;
+    ndc = other.ndc;
+    messageStyle = other.messageStyle;
+    builder.setLength(0);
+    builder.append(other.builder);
+    final Object[] otherParameters = other.getParameters();
+    if (otherParameters != null) {
+      setParameters(otherParameters, other.parameterCount);
+    } else {
+      setParameters(null);
+    }
+    return this;
+  }
+
   @TestOnly
   public static void clearCachedRecord() {
-    threadLocalRecord.set(null);
+    pool.clear();
   }
 
   @NotNull @Override public String getSourceClassName() {
@@ -182,8 +266,12 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
     super(entry == null ? Level.SEVERE : entry.getLogLevel().getJdkLevel(),
           entry == null ? "" : entry.getMessage());
     parameterCount = 0;
+    millis = super.getMillis();
     builder = new StringBuilder(DEFAULT_STRING_BUILDER_SIZE);
     formatter = new Formatter(builder);
+    messageStyle = entry instanceof ExtLogRecord
+                   ? ((ExtLogRecord)entry).getMessageStyle()
+                   : MessageStyle.PRINTF;
     if (entry != null) {
       logLevel = entry.getLogLevel();
       setLevel(logLevel.getJdkLevel());
@@ -203,6 +291,13 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
       loggerFQCN = entry.getLoggerFQCN();
       mdc = entry.getMdc();
       ndc = entry.getNdc();
+      if (entry instanceof ExtLogRecord) {
+        final ExtLogRecord record = (ExtLogRecord)entry;
+        if (record.parameterCount > 0) {
+          parameterCount = record.parameterCount;
+          super.setParameters(Arrays.copyOf(record.getParameters(), parameterCount));
+        }
+      }
     } else {
       logLevel = LogLevel.ERROR;
       setLevel(logLevel.getJdkLevel());
@@ -230,12 +325,14 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
    * <li>{@link #setThreadID(int)}</li>
    * <li>{@link #setThreadPriority(int)}</li>
    * <li>{@link #setNanoTime(long)}</li>
+   * <li>{@link #setMessageStyle(MessageStyle)} to {@link MessageStyle#PRINTF}</li>
    * <li>trim the builder if necessary and set length to 0</li>
    * </ul>
    * @return the ExtLogRecord for single use
    */
   protected ExtLogRecord reserve() {
     reserved = true;
+    pooled = true;
     super.setMessage(null);
     setParameters(null);
     location = null;
@@ -246,6 +343,7 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
     setThreadID((int)currentThread.getId());
     threadPriority = currentThread.getPriority();
     nanoTime = System.nanoTime();
+    messageStyle = MessageStyle.PRINTF;
     if (builder.capacity() > maxBuilderSize) {
       builder.setLength(maxBuilderSize);
       builder.trimToSize();
@@ -258,11 +356,51 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
     this.location = location;
   }
 
+  @Override public long getMillis() {
+    return millis;
+  }
+
+  /**
+   * Event time is kept here rather than in LogRecord, which from Java 9 allocates an Instant on
+   * every call to setMillis
+   */
+  @Override public void setMillis(final long millis) {
+    this.millis = millis;
+  }
+
+  /** Overrides LogRecord.getInstant() on Java 9+ so JUL formatters see {@link #getMillis()} */
+  @SuppressWarnings("unused")
+  public @NotNull Instant getInstant() {
+    return Instant.ofEpochMilli(millis);
+  }
+
+  /** Overrides LogRecord.setInstant() on Java 9+. Sub-millisecond precision is not kept */
+  @SuppressWarnings("unused")
+  public void setInstant(final @NotNull Instant instant) {
+    millis = instant.toEpochMilli();
+  }
+
 
   @NotNull @Override public String getMessage() {
     return builder.toString();
   }
 
+  /**
+   * @return the message without creating a String, as {@link #getMessage()} does. Contents are only
+   * valid until the record is reused
+   */
+  public @NotNull CharSequence getMessageChars() {
+    return builder;
+  }
+
+  /**
+   * @return the builder containing the message, which subclasses may read without creating a
+   * String. Contents are only valid until the record is reused
+   */
+  protected @NotNull StringBuilder getMessageBuilder() {
+    return builder;
+  }
+
   @Override public void setMessage(final @Nullable String message) {
     StringBuilder builder = this.builder;
     builder.setLength(0);
@@ -270,20 +408,10 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
   }
 
   @Override public void setParameters(final @Nullable Object[] parameters) {
-    final Object[] existingParameters = getParameters();
     if (parameters != null) {
-      parameterCount = parameters.length;
-      if (existingParameters != null && existingParameters.length >= parameters.length) {
-        System.arraycopy(parameters, 0, existingParameters, 0, parameters.length);
-        if (existingParameters.length > parameters.length) {
-          Arrays.fill(existingParameters, parameters.length, existingParameters.length, null);
-        }
-        // in current impl this is redundant, but let's not assume LogRecord never changes
-        super.setParameters(existingParameters);
-      } else {
-        super.setParameters(Arrays.copyOf(parameters, parameters.length));
-      }
+      setParameters(parameters, parameters.length);
     } else {
+      final Object[] existingParameters = getParameters();
       parameterCount = 0;
       if (existingParameters != null && existingParameters.length > 0) {
         Arrays.fill(existingParameters, null);
@@ -291,6 +419,22 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
     }
   }
 
+  /** Set the first count of parameters, reusing the current array if it is large enough */
+  private void setParameters(final @NotNull Object[] parameters, final int count) {
+    final Object[] existingParameters = getParameters();
+    parameterCount = count;
+    if (existingParameters != null && existingParameters.length >= count) {
+      System.arraycopy(parameters, 0, existingParameters, 0, count);
+      if (existingParameters.length > count) {
+        Arrays.fill(existingParameters, count, existingParameters.length, null);
+      }
+      // in current impl this is redundant, but let's not assume LogRecord never changes
+      super.setParameters(existingParameters);
+    } else {
+      super.setParameters(Arrays.copyOf(parameters, count));
+    }
+  }
+
   @Override public @NotNull LogLevel getLogLevel() {
     return logLevel;
   }
@@ -378,8 +522,35 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
     this.ndc = ndc;
   }
 
+  /**
+   * @return how the format and args given to {@link #setFormatAndArgs(String, Object...)} are to
+   * be combined
+   */
+  public @NotNull MessageStyle getMessageStyle() {
+    return messageStyle;
+  }
+
+  public void setMessageStyle(final @NotNull MessageStyle messageStyle) {
+    this.messageStyle = messageStyle;
+  }
+
+  /**
+   * Releases this record for reuse. Parameters, throwable, MDC, and NDC are cleared so the record
+   * does not keep them reachable. Once released a pooled record may be reserved again, possibly by
+   * another thread, so only the first close of a reservation has any effect.
+   */
   @Override public void close() {
-    reserved = false;
+    if (pooled && !reserved) {
+      return;
+    }
+    setParameters(null);
+    setThrown(null);
+    mdc = null;
+    ndc = null;
+    if (reserved) {
+      reserved = false;
+      pool.release(this);
+    }
   }
 
   @SuppressWarnings("unchecked")
@@ -395,11 +566,32 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
     loggerFQCN = in.readUTF();
     mdc = (Map<String, String>)in.readObject();
     ndc = (List<String>)in.readObject();
+    readAddedFields(in);
     reserved = false;
     builder = new StringBuilder(DEFAULT_STRING_BUILDER_SIZE);
     formatter = new Formatter(builder);
   }
 
+  /**
+   * The message style and millis were appended to the serialized form after it was first released.
+   * Records written before then end with the ndc, so default the style to
+   * {@link MessageStyle#PRINTF} and the millis to those LogRecord read.
+   */
+  private void readAddedFields(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    messageStyle = MessageStyle.PRINTF;
+    millis = super.getMillis();
+    try {
+      messageStyle = (MessageStyle)in.readObject();
+      millis = in.readLong();
+    } catch (OptionalDataException e) {
+      if (!e.eof) {
+        throw e;
+      }
+    } catch (EOFException e) {
+      // written with the message style but before millis
+    }
+  }
+
   private void writeObject(ObjectOutputStream out) throws IOException {
     out.defaultWriteObject();
     out.writeObject(logLevel);
@@ -412,13 +604,30 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
     out.writeUTF(loggerFQCN);
     out.writeObject(mdc);
     out.writeObject(ndc);
+    out.writeObject(messageStyle);
+    out.writeLong(millis);
   }
 
-  @SuppressWarnings("unused")
+  /**
+   * @return a copy of this record, including any parameters, which may be handed to another
+   * thread. Subclasses return a copy of their own type
+   */
   public ExtLogRecord copyOf() {
     return new ExtLogRecord(this);
   }
 
+  /**
+   * Copy entry so it may outlive the caller's use of it, such as when handing it to another thread.
+   * An ExtLogRecord is copied via {@link #copyOf()}
+   *
+   * @param entry the LogEntry to copy
+   *
+   * @return a new ExtLogRecord which is not associated with any thread
+   */
+  public static ExtLogRecord copyOf(@NotNull final LogEntry entry) {
+    return entry instanceof ExtLogRecord ? ((ExtLogRecord)entry).copyOf() : new ExtLogRecord(entry);
+  }
+
   @NotNull @Override public LogEntry reset() {
     builder.setLength(0);
     return this;
@@ -479,7 +688,7 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
                                             @NotNull final String format,
                                             final Object @NotNull ... args) {
     if (args.length > 0) {
-      formatter.format(locale, format, args);
+      MessageTemplate.get(format).format(formatter, builder, locale, args);
     } else {
       builder.append(format);
     }
@@ -491,6 +700,11 @@ public class ExtLogRecord extends LogRecord implements LogEntry {
     return this;
   }
 
+  @NotNull @Override public LogEntry addLocation(final @NotNull StackTraceElement location) {
+    this.location = location;
+    return this;
+  }
+
   @NotNull @Override
   public LogEntry setFormatAndArgs(@NotNull final String format, final Object @NotNull ... args) {
     if (args.length > 0) {
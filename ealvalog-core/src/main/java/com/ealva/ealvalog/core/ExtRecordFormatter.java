@@ -19,12 +19,13 @@
 package com.ealva.ealvalog.core;
 
 
-import com.ealva.ealvalog.LogLevel;
-import com.ealva.ealvalog.Marker;
-import com.ealva.ealvalog.NullMarker;
-import com.ealva.ealvalog.util.FormattableStackTraceElement;
-import com.ealva.ealvalog.util.FormattableThrowable;
+import com.ealva.ealvalog.metrics.LogCounter;
+import com.ealva.ealvalog.metrics.LogMetrics;
+import com.ealva.ealvalog.metrics.LogStage;
 import com.ealva.ealvalog.util.LogMessageFormatterImpl;
+import com.ealva.ealvalog.util.MessageStyle;
+import com.ealva.ealvalog.util.ObjectCache;
+import com.ealva.ealvalog.util.Slf4jMessageFormatter;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -117,6 +118,13 @@ import java.util.logging.LogRecord;
  * <p><sup>2</sup> Log call site
  * <p><sup>3</sup> # flag includes class name in location
  * <p>
+ * The format is parsed once, when set, into a layout which appends most fields directly to a
+ * reusable per thread StringBuilder. Date/time conversions are rendered by a
+ * {@link TimestampFormat}, which caches the text of the current second. Conversions the layout
+ * doesn't handle directly, such as markers, are formatted with a {@link java.util.Formatter}.
+ * Either way the output is the same as {@link String#format(String, Object...)} given the
+ * arguments above.
+ * <p>
  * Created by Eric A. Snell on 3/4/17.
  */
 @SuppressWarnings({"WeakerAccess", "unused"})
@@ -156,8 +164,6 @@ public class ExtRecordFormatter extends Formatter {
   public static final int NDC_POSITION = NDC_INDEX + 1;
   public static final int LAST_POSITION = NDC_POSITION; // update if adding more formatter arguments
 
-  private static final int ARG_COUNT = LAST_POSITION;
-
   private static final String DATE_ARG = "%" + Integer.toString(DATE_POSITION);
 
   /** Of the form: "2017-03-05 14:33:15.098" */
@@ -185,22 +191,15 @@ public class ExtRecordFormatter extends Formatter {
   public static final String TYPICAL_FORMAT =
       DATE_TIME_FORMAT + " %4$s [%10$s] %3$s - %1$s %6$#s%n";
   public static final String TYPICAL_ANDROID_FORMAT = "[%10$s]%9$s %1$s";
-  private static final ThreadLocal<ExtLogMessageFormatter> threadLocalFormatter =
-      new ThreadLocal<ExtLogMessageFormatter>() {
-        @Override
-        protected ExtLogMessageFormatter initialValue() {
+  private static final ObjectCache<ExtLogMessageFormatter> formatterCache =
+      new ObjectCache<ExtLogMessageFormatter>() {
+        @NotNull @Override protected ExtLogMessageFormatter newObject() {
           return new ExtLogMessageFormatter();
         }
-
-        @Override
-        public ExtLogMessageFormatter get() {
-          ExtLogMessageFormatter lmf = super.get();
-          lmf.reset();
-          return lmf;
-        }
       };
 
   private @NotNull String format;
+  private volatile @NotNull RecordLayout layout;
   private boolean logErrors;
 
   public ExtRecordFormatter() {
@@ -213,6 +212,7 @@ public class ExtRecordFormatter extends Formatter {
 
   public ExtRecordFormatter(final @NotNull String format, final boolean logErrors) {
     this.format = format;
+    this.layout = RecordLayout.compile(format);
     this.logErrors = logErrors;
   }
 
@@ -234,22 +234,46 @@ public class ExtRecordFormatter extends Formatter {
    * @see #setLogErrors(boolean)
    */
   @Override public String format(final LogRecord record) throws IllegalFormatConversionException {
+    final ExtLogMessageFormatter formatter = formatterCache.acquire();
+    formatter.reset();
+    final RecordLayout.Context context = formatter.layoutContext;
     try {
-      final ExtLogMessageFormatter formatter = threadLocalFormatter.get();
-      final String msg = formatClientMessage(record, formatter);
-      formatter.reset();
-      if (record instanceof ExtLogRecord) {
-        setArgs((ExtLogRecord)record, msg, formatter.formatterArgs);
+      if (LogMetrics.shouldTime()) {
+        final long start = System.nanoTime();
+        final String message = formatClientMessage(record, formatter);
+        LogMetrics.recordLatency(record.getLoggerName(),
+                                 LogStage.CLIENT_FORMAT,
+                                 System.nanoTime() - start);
+        context.set(record, message);
+      } else {
+        context.set(record, formatClientMessage(record, formatter));
+      }
+      if (LogMetrics.shouldTime()) {
+        final long start = System.nanoTime();
+        layout.format(context);
+        LogMetrics.recordLatency(record.getLoggerName(),
+                                 LogStage.LAYOUT_FORMAT,
+                                 System.nanoTime() - start);
       } else {
-        setArgs(record, msg, formatter.formatterArgs);
+        layout.format(context);
+      }
+      final StringBuilder builder = context.builder;
+      if (LogMetrics.isEnabled()) {
+        LogMetrics.count(record.getLoggerName(),
+                         LogRecordExtKt.getLogLevel(record),
+                         LogCounter.FORMATTED_CHARS,
+                         builder.length());
       }
-      return formatter.append(getFormat(), formatter.formatterArgs).toString();
+      return builder.toString();
     } catch (IllegalFormatConversionException e) {
       if (logErrors) {
         return e.getMessage();
       } else {
         throw e;
       }
+    } finally {
+      context.clear();
+      formatterCache.release(formatter);
     }
   }
 
@@ -258,7 +282,9 @@ public class ExtRecordFormatter extends Formatter {
   }
 
   public void setFormat(final @Nullable String format) {
-    this.format = format == null ? TYPICAL_FORMAT : format;
+    final String newFormat = format == null ? TYPICAL_FORMAT : format;
+    this.format = newFormat;
+    this.layout = RecordLayout.compile(newFormat);
   }
 
   protected String formatClientMessage(final LogRecord record,
@@ -266,12 +292,19 @@ public class ExtRecordFormatter extends Formatter {
     try {
       // Any logging client can send a LogRecord so make sure check the parameters
       final Object[] parameters = record.getParameters();
-      int parameterCount = getParameterCount(parameters);
-      if (parameterCount > 0) {
+      if (isSlf4jStyle(record)) {
+        // null is a valid SLF4J argument, so use the record's count
+        final int parameterCount = ((ExtLogRecord)record).getParameterCount();
+        if (parameters != null && parameterCount > 0) {
+          return formatter.slf4jFormatter.reset()
+                                         .append(record.getMessage(), parameters, parameterCount)
+                                         .toString();
+        }
+      } else if (getParameterCount(parameters) > 0) {
         return formatter.append(record.getMessage(), parameters).toString();
-      } else {
-        return formatter.append(record.getMessage()).toString();
       }
+      final String message = record.getMessage();
+      return message == null ? "null" : message;
     } catch (IllegalFormatConversionException e) {
       if (logErrors) {
         return e.getMessage();
@@ -281,6 +314,11 @@ public class ExtRecordFormatter extends Formatter {
     }
   }
 
+  private static boolean isSlf4jStyle(final LogRecord record) {
+    return record instanceof ExtLogRecord &&
+        ((ExtLogRecord)record).getMessageStyle() == MessageStyle.SLF4J;
+  }
+
   /**
    * Return the actual number of parameters given the array may be null or contain nulls.
    *
@@ -297,47 +335,8 @@ public class ExtRecordFormatter extends Formatter {
     return parameters.length;
   }
 
-  private void setArgs(final ExtLogRecord record, final String msg, final Object[] formatterArgs) {
-    setBaseArgs(record, msg, formatterArgs);
-    ((FormattableStackTraceElement)formatterArgs[LOCATION_INDEX]).setElement(record.getLocation());
-    formatterArgs[THREAD_NAME_INDEX] = record.getThreadName();
-    final Marker marker = record.getMarker();
-    formatterArgs[MARKER_INDEX] = marker == null ? NullMarker.INSTANCE : marker;
-    formatterArgs[THREAD_PRIORITY_INDEX] = record.getThreadPriority();
-    formatterArgs[NANO_INDEX] = record.getNanoTime();
-    formatterArgs[LOGGER_FQCN_INDEX] = record.getLoggerFQCN();
-  }
-
-  private void setArgs(final LogRecord record, final String msg, final Object[] formatterArgs) {
-    setBaseArgs(record, msg, formatterArgs);
-    ((FormattableStackTraceElement)formatterArgs[LOCATION_INDEX]).setElement(null);
-    formatterArgs[THREAD_NAME_INDEX] = "";
-    formatterArgs[MARKER_INDEX] = NullMarker.INSTANCE;
-    formatterArgs[THREAD_PRIORITY_INDEX] = Long.MIN_VALUE;
-    formatterArgs[NANO_INDEX] = Integer.MIN_VALUE;
-    formatterArgs[LOGGER_FQCN_INDEX] = "Unknown";
-  }
-
-  private void setBaseArgs(@NotNull final LogRecord record,
-                           @NotNull final String message,
-                           @NotNull final Object[] formatterArgs) {
-    formatterArgs[MESSAGE_INDEX] = message;
-    formatterArgs[THREAD_ID_INDEX] = record.getThreadID();
-    formatterArgs[LOGGER_NAME_INDEX] = record.getLoggerName();
-    formatterArgs[LOG_LEVEL_INDEX] = LogLevel.Companion.fromLevel(record.getLevel(), LogLevel.NONE);
-    formatterArgs[DATE_INDEX] = record.getMillis();
-    ((FormattableThrowable)formatterArgs[THROWN_INDEX]).setRealThrowable(record.getThrown());
-    formatterArgs[CLASS_NAME_INDEX] = record.getSourceClassName();
-    formatterArgs[METHOD_NAME_INDEX] = record.getSourceMethodName();
-  }
-
   private static class ExtLogMessageFormatter extends LogMessageFormatterImpl {
-    final Object[] formatterArgs = new Object[ARG_COUNT];
-
-    ExtLogMessageFormatter() {
-      // we want to prefill certain indices and then do sets
-      formatterArgs[THROWN_INDEX] = FormattableThrowable.make(null);
-      formatterArgs[LOCATION_INDEX] = FormattableStackTraceElement.make(null);
-    }
+    final RecordLayout.Context layoutContext = new RecordLayout.Context();
+    final Slf4jMessageFormatter slf4jFormatter = new Slf4jMessageFormatter();
   }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.core
+
+import com.ealva.ealvalog.LogLevel
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Bits a [Bridge] reports via [Bridge.levelCacheBits] and a global configuration generation.
+ * Each [CoreLogger] caches its bridge's bits along with the generation they were read at, so a
+ * disabled level costs a volatile read of [generation] and a bit test. Anything that changes
+ * bridge configuration calls [invalidate] so every logger re-reads its bridge on next use.
+ *
+ * Changing the underlying framework directly, eg. setting a java.util.logging.Logger level, is
+ * not seen by the cache. Call [invalidate] after doing so. Factories invalidate on the framework
+ * configuration changes they can observe.
+ */
+object LevelCache {
+  /** [Bridge.isLoggable] depends on nothing but level, so the level bits are definitive */
+  const val LEVELS_ONLY = 1 shl 8
+  /** [Bridge.shouldIncludeLocation] is true regardless of its arguments */
+  const val INCLUDE_LOCATION = 1 shl 9
+  /** [Bridge.shouldIncludeLocation] is false regardless of its arguments */
+  const val EXCLUDE_LOCATION = 1 shl 10
+  /** All level bits, for a bridge that cannot cheaply rule out any level */
+  const val ALL_LEVELS = (1 shl 8) - 1
+
+  private val counter = AtomicInteger()
+
+  /** Current configuration generation */
+  @JvmStatic
+  val generation: Int
+    get() = counter.get()
+
+  /** The bit of [level] in [Bridge.levelCacheBits] */
+  @JvmStatic
+  fun levelBit(level: LogLevel): Int = 1 shl level.ordinal
+
+  /** Start a new generation, forcing all [CoreLogger]s to refresh their cached bits */
+  @JvmStatic
+  fun invalidate() {
+    counter.incrementAndGet()
+  }
+}
@@ -21,6 +21,7 @@ package com.ealva.ealvalog.core
 import com.ealva.ealvalog.LogLevel
 import com.ealva.ealvalog.Logger
 import com.ealva.ealvalog.LoggerFilter
+import com.ealva.ealvalog.util.MessageStyle
 
 /**
  * Created by Eric A. Snell on 8/24/18.
@@ -31,4 +32,8 @@ interface LoggerConfiguration<T: Bridge> {
   fun setLogToParent(logger: Logger, logToParent: Boolean)
   fun setIncludeLocation(logger: Logger, includeLocation: Boolean)
   fun getBridge(loggerClassName: String): T
+
+  /** The [MessageStyle] of the records created by configured loggers */
+  val messageStyle: MessageStyle
+    get() = MessageStyle.PRINTF
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.core
+
+import com.ealva.ealvalog.Marker
+import java.util.ArrayDeque
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Assigns each marker name a dense integer id and tracks a version which is bumped whenever any
+ * [BasicMarker] gains or loses a reference. A [BasicMarker] caches the set of ids reachable from
+ * it, and the version tells it when that set must be rebuilt. Ids are by name because marker
+ * identity is the name: [BasicMarkerFactory] returns one marker per name.
+ */
+internal object MarkerIndex {
+  private const val NOT_FOUND = -1
+
+  private val nameToId = ConcurrentHashMap<String, Int>()
+  private val nextId = AtomicInteger(0)
+  private val modifications = AtomicInteger(0)
+
+  /** Current version of all marker references */
+  val version: Int
+    get() = modifications.get()
+
+  /** Note that some marker's references changed, invalidating all cached closures */
+  fun changed() {
+    modifications.incrementAndGet()
+  }
+
+  /** The id for [name], assigning the next id if [name] has not been seen */
+  fun idOf(name: String): Int {
+    nameToId[name]?.let { return it }
+    // losing the putIfAbsent race wastes an id, which only leaves a hole in the bitsets
+    val id = nextId.getAndIncrement()
+    return nameToId.putIfAbsent(name, id) ?: id
+  }
+
+  /** The id for [name] or -1 if no marker has been given [name] */
+  fun find(name: String): Int = nameToId[name] ?: NOT_FOUND
+
+  /**
+   * Build the set of ids of [root] and every marker it references, directly or through other
+   * markers. Reference cycles are allowed.
+   */
+  fun closureOf(root: Marker): Closure {
+    val version = version
+    var bits = LongArray(wordsFor(nextId.get()))
+    val pending = ArrayDeque<Marker>()
+    pending.add(root)
+    while (pending.isNotEmpty()) {
+      val marker = pending.poll()
+      val id = if (marker is BasicMarker) marker.id else idOf(marker.name)
+      val word = id ushr 6
+      if (word >= bits.size) bits = bits.copyOf(wordsFor(id + 1))
+      val bit = 1L shl id
+      if (bits[word] and bit == 0L) {
+        bits[word] = bits[word] or bit
+        marker.forEach { pending.add(it) }
+      }
+    }
+    return Closure(version, bits)
+  }
+
+  private fun wordsFor(idCount: Int) = (idCount + 63) ushr 6
+
+  /** Ids reachable from a marker as of [version] */
+  class Closure(val version: Int, private val bits: LongArray) {
+    operator fun contains(id: Int): Boolean {
+      val word = id ushr 6
+      return id >= 0 && word < bits.size && (bits[word] and (1L shl id)) != 0L
+    }
+  }
+}
@@ -0,0 +1,595 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.core;
+
+import com.ealva.ealvalog.LogLevel;
+import com.ealva.ealvalog.Marker;
+import com.ealva.ealvalog.NullMarker;
+import com.ealva.ealvalog.util.FormattableStackTraceElement;
+import com.ealva.ealvalog.util.FormattableThrowable;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static com.ealva.ealvalog.core.ExtRecordFormatter.CLASS_NAME_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.DATE_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.LAST_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.LOCATION_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.LOGGER_FQCN_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.LOGGER_NAME_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.LOG_LEVEL_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.MARKER_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.MDC_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.MESSAGE_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.METHOD_NAME_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.NANO_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.NDC_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.THREAD_ID_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.THREAD_NAME_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.THREAD_PRIORITY_POSITION;
+import static com.ealva.ealvalog.core.ExtRecordFormatter.THROWN_POSITION;
+import static java.util.FormattableFlags.ALTERNATE;
+import static java.util.FormattableFlags.LEFT_JUSTIFY;
+
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+import java.util.logging.LogRecord;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An {@link ExtRecordFormatter} format string parsed once into a sequence of segments. Literal
+ * text and the common "s" and "d" conversions of the record fields are appended directly to the
+ * destination StringBuilder, without boxing and without parsing the format string on every
+ * record. Consecutive date/time conversions of the record time, and the text between them, are
+ * rendered by a {@link TimestampFormat}, which caches everything but the milliseconds for the
+ * current second. Any other conversion (markers, uppercase, numeric flags, ...) is handed to a
+ * {@link Formatter} one specifier at a time, so the output is the same as formatting the entire
+ * string with a Formatter, including the exceptions thrown for bad formats.
+ * <p>
+ * Instances are immutable and may be shared across threads. All per-format state is in a
+ * {@link Context}, which is confined to a single thread.
+ */
+final class RecordLayout {
+  /** Same syntax {@link Formatter} accepts */
+  private static final Pattern SPECIFIER =
+      Pattern.compile("%(\\d+\\$)?([-#+ 0,(<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])");
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+
+  private final @NotNull Segment[] segments;
+
+  private RecordLayout(final @NotNull List<Segment> segments) {
+    this.segments = segments.toArray(new Segment[0]);
+  }
+
+  void format(final @NotNull Context context) {
+    for (Segment segment : segments) {
+      segment.append(context);
+    }
+  }
+
+  /**
+   * Parse {@code format} into a RecordLayout. Never throws for a malformed format, instead the
+   * exception {@link Formatter} would throw is thrown when a record is formatted.
+   */
+  static @NotNull RecordLayout compile(final @NotNull String format) {
+    final List<Segment> segments = new ArrayList<>();
+    final StringBuilder literal = new StringBuilder();
+    final StringBuilder timestamp = new StringBuilder();
+    final List<Segment> timestampFallback = new ArrayList<>();
+    final Matcher matcher = SPECIFIER.matcher(format);
+    final int length = format.length();
+    int ordinaryPosition = 0;
+    int lastPosition = 0;
+    int i = 0;
+    while (i < length) {
+      final int percent = format.indexOf('%', i);
+      if (percent < 0) {
+        literal.append(format, i, length);
+        break;
+      }
+      literal.append(format, i, percent);
+      matcher.region(percent, length);
+      if (!matcher.lookingAt()) {
+        // let Formatter report the problem
+        addTimestamp(segments, timestamp, timestampFallback);
+        addLiteral(segments, literal);
+        segments.add(new FormatterSegment(format.substring(percent), 0));
+        break;
+      }
+      i = matcher.end();
+
+      final String spec = matcher.group();
+      final char conversion = matcher.group(6).charAt(0);
+      if ("%%".equals(spec)) {
+        literal.append('%');
+        continue;
+      } else if ("%n".equals(spec)) {
+        literal.append(LINE_SEPARATOR);
+        continue;
+      }
+
+      if (conversion == '%' || conversion == 'n') {
+        addTimestamp(segments, timestamp, timestampFallback);
+        addLiteral(segments, literal);
+        segments.add(new FormatterSegment(spec, 0));
+        continue;
+      }
+
+      final String flagsGroup = matcher.group(2);
+      final String flags = flagsGroup == null ? "" : flagsGroup.replace("<", "");
+      final int position;
+      if (flagsGroup != null && flagsGroup.indexOf('<') >= 0) {
+        position = lastPosition;
+      } else if (matcher.group(1) != null) {
+        final String index = matcher.group(1);
+        final int explicit = Integer.parseInt(index.substring(0, index.length() - 1));
+        position = explicit == 0 ? ++ordinaryPosition : explicit;
+      } else {
+        position = ++ordinaryPosition;
+      }
+      lastPosition = position;
+
+      final String widthGroup = matcher.group(3);
+      final String precisionGroup = matcher.group(4);
+      final String dateGroup = matcher.group(5);
+      final FormatterSegment fallback = new FormatterSegment('%' +
+                                                                 flags +
+                                                                 (widthGroup == null ? "" : widthGroup) +
+                                                                 (precisionGroup == null ? "" : precisionGroup) +
+                                                                 (dateGroup == null ? "" : dateGroup) +
+                                                                 conversion, position);
+      if (dateGroup != null && position == DATE_POSITION) {
+        // extend the current run of timestamp conversions, including the text in between
+        if (timestamp.length() > 0) {
+          appendEscaped(timestamp, literal);
+          timestampFallback.add(new LiteralSegment(literal.toString()));
+          literal.setLength(0);
+        } else {
+          addLiteral(segments, literal);
+        }
+        timestamp.append(fallback.spec);
+        timestampFallback.add(fallback);
+        continue;
+      }
+
+      addTimestamp(segments, timestamp, timestampFallback);
+      addLiteral(segments, literal);
+      if (position < 1 || position > LAST_POSITION) {
+        segments.add(new MissingArgumentSegment(spec));
+      } else if (dateGroup != null) {
+        segments.add(fallback);
+      } else {
+        final int width = widthGroup == null ? -1 : Integer.parseInt(widthGroup);
+        final int precision =
+            precisionGroup == null ? -1 : Integer.parseInt(precisionGroup.substring(1));
+        segments.add(makeSegment(position, flags, width, precision, conversion, fallback));
+      }
+    }
+    addTimestamp(segments, timestamp, timestampFallback);
+    addLiteral(segments, literal);
+    return new RecordLayout(segments);
+  }
+
+  private static @NotNull Segment makeSegment(final int position,
+                                              final @NotNull String flags,
+                                              final int width,
+                                              final int precision,
+                                              final char conversion,
+                                              final @NotNull FormatterSegment fallback) {
+    // Formatter requires a width with '-' and only accepts '-' on strings and '-', '#' on Formattables
+    final boolean leftJustify = flags.indexOf('-') >= 0;
+    if (conversion != 's' && conversion != 'd' || leftJustify && width == -1) {
+      return fallback;
+    }
+    final boolean plainFlags = flags.isEmpty() || "-".equals(flags);
+    switch (position) {
+      case MESSAGE_POSITION:
+      case LOGGER_NAME_POSITION:
+      case LOG_LEVEL_POSITION:
+      case CLASS_NAME_POSITION:
+      case METHOD_NAME_POSITION:
+      case THREAD_NAME_POSITION:
+      case LOGGER_FQCN_POSITION:
+        return conversion == 's' && plainFlags
+               ? new TextSegment(position, leftJustify, width, precision)
+               : fallback;
+      case THREAD_ID_POSITION:
+      case THREAD_PRIORITY_POSITION:
+      case NANO_POSITION:
+        return plainFlags && precision == -1
+               ? new NumberSegment(position, conversion == 'd', leftJustify, width, fallback)
+               : fallback;
+      case THROWN_POSITION:
+      case LOCATION_POSITION:
+        if (conversion == 's' && precision != 0 && isFormattableFlags(flags)) {
+          int formattableFlags = leftJustify ? LEFT_JUSTIFY : 0;
+          if (flags.indexOf('#') >= 0) {
+            formattableFlags |= ALTERNATE;
+          }
+          return position == THROWN_POSITION
+                 ? new ThrownSegment(formattableFlags, width, precision)
+                 : new LocationSegment(formattableFlags, width, precision);
+        }
+        return fallback;
+      default:
+        return fallback;
+    }
+  }
+
+  private static boolean isFormattableFlags(final @NotNull String flags) {
+    switch (flags) {
+      case "":
+      case "-":
+      case "#":
+      case "-#":
+      case "#-":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Add a {@link TimestampSegment} for the run of timestamp conversions, or the individual
+   * segments of the run if TimestampFormat rejects it
+   */
+  private static void addTimestamp(final @NotNull List<Segment> segments,
+                                   final @NotNull StringBuilder timestamp,
+                                   final @NotNull List<Segment> timestampFallback) {
+    if (timestamp.length() > 0) {
+      try {
+        segments.add(new TimestampSegment(TimestampFormat.make(timestamp.toString())));
+      } catch (IllegalArgumentException e) {
+        segments.addAll(timestampFallback);
+      }
+      timestamp.setLength(0);
+      timestampFallback.clear();
+    }
+  }
+
+  private static void appendEscaped(final @NotNull StringBuilder builder,
+                                    final @NotNull CharSequence text) {
+    for (int i = 0, length = text.length(); i < length; i++) {
+      final char c = text.charAt(i);
+      builder.append(c);
+      if (c == '%') {
+        builder.append('%');
+      }
+    }
+  }
+
+  private static void addLiteral(final @NotNull List<Segment> segments,
+                                 final @NotNull StringBuilder literal) {
+    if (literal.length() > 0) {
+      segments.add(new LiteralSegment(literal.toString()));
+      literal.setLength(0);
+    }
+  }
+
+  private static void pad(final @NotNull StringBuilder builder, final int offset, final int count) {
+    if (offset == builder.length()) {
+      for (int i = 0; i < count; i++) {
+        builder.append(' ');
+      }
+    } else {
+      for (int i = 0; i < count; i++) {
+        builder.insert(offset, ' ');
+      }
+    }
+  }
+
+  /**
+   * Holds the record being formatted, the destination builder, and a Formatter writing to the same
+   * builder for the specifiers not handled directly. Not thread safe, typically one per thread.
+   */
+  static final class Context {
+    final @NotNull StringBuilder builder = new StringBuilder(1024);
+    private final @NotNull Formatter formatter = new Formatter(builder);
+    private final @NotNull FormattableThrowable thrown = FormattableThrowable.make(null);
+    private final @NotNull FormattableStackTraceElement location =
+        FormattableStackTraceElement.make(null);
+    private @Nullable LogRecord record;
+    private @Nullable ExtLogRecord extRecord;
+    private @NotNull String message = "";
+    private @Nullable Locale locale;
+    private boolean asciiDigits;
+
+    /**
+     * Prepare to format {@code record}, with {@code message} being the already formatted client
+     * message, and clear the builder
+     */
+    void set(final @NotNull LogRecord record, final @NotNull String message) {
+      this.record = record;
+      this.extRecord = record instanceof ExtLogRecord ? (ExtLogRecord)record : null;
+      this.message = message;
+      final Locale current = Locale.getDefault();
+      if (current != locale) {
+        locale = current;
+        asciiDigits = DecimalFormatSymbols.getInstance(current).getZeroDigit() == '0';
+      }
+      builder.setLength(0);
+    }
+
+    /** Release references to the last record formatted */
+    void clear() {
+      record = null;
+      extRecord = null;
+      message = "";
+      thrown.setRealThrowable(null);
+      location.setElement(null);
+    }
+
+    private @NotNull Locale locale() {
+      final Locale current = locale;
+      return current == null ? Locale.getDefault() : current;
+    }
+
+    private @NotNull LogRecord record() {
+      final LogRecord current = record;
+      if (current == null) {
+        throw new IllegalStateException("No record set");
+      }
+      return current;
+    }
+
+    private @Nullable String text(final int position) {
+      final LogRecord record = record();
+      switch (position) {
+        case MESSAGE_POSITION:
+          return message;
+        case LOGGER_NAME_POSITION:
+          return record.getLoggerName();
+        case LOG_LEVEL_POSITION:
+          return LogLevel.Companion.fromLevel(record.getLevel(), LogLevel.NONE).toString();
+        case CLASS_NAME_POSITION:
+          return record.getSourceClassName();
+        case METHOD_NAME_POSITION:
+          return record.getSourceMethodName();
+        case THREAD_NAME_POSITION:
+          return extRecord != null ? extRecord.getThreadName() : "";
+        case LOGGER_FQCN_POSITION:
+          return extRecord != null ? extRecord.getLoggerFQCN() : "Unknown";
+        default:
+          throw new IllegalArgumentException("Not a text position " + position);
+      }
+    }
+
+    private long number(final int position) {
+      switch (position) {
+        case THREAD_ID_POSITION:
+          return record().getThreadID();
+        case THREAD_PRIORITY_POSITION:
+          return extRecord != null ? extRecord.getThreadPriority() : Integer.MIN_VALUE;
+        case NANO_POSITION:
+          return extRecord != null ? extRecord.getNanoTime() : Long.MIN_VALUE;
+        default:
+          throw new IllegalArgumentException("Not a number position " + position);
+      }
+    }
+
+    /** The argument {@link Formatter} would be given for {@code position} */
+    private @Nullable Object value(final int position) {
+      final LogRecord record = record();
+      switch (position) {
+        case THREAD_ID_POSITION:
+          return record.getThreadID();
+        case THREAD_PRIORITY_POSITION:
+          return extRecord != null ? extRecord.getThreadPriority() : Integer.MIN_VALUE;
+        case NANO_POSITION:
+          return extRecord != null ? extRecord.getNanoTime() : Long.MIN_VALUE;
+        case LOG_LEVEL_POSITION:
+          return LogLevel.Companion.fromLevel(record.getLevel(), LogLevel.NONE);
+        case DATE_POSITION:
+          return record.getMillis();
+        case THROWN_POSITION:
+          thrown.setRealThrowable(record.getThrown());
+          return thrown;
+        case LOCATION_POSITION:
+          location.setElement(extRecord != null ? extRecord.getLocation() : null);
+          return location;
+        case MARKER_POSITION:
+          final Marker marker = extRecord != null ? extRecord.getMarker() : null;
+          return marker == null ? NullMarker.INSTANCE : marker;
+        case MDC_POSITION:
+          return extRecord != null ? extRecord.getMdc() : null;
+        case NDC_POSITION:
+          return extRecord != null ? extRecord.getNdc() : null;
+        default:
+          return text(position);
+      }
+    }
+  }
+
+  private static abstract class Segment {
+    abstract void append(@NotNull Context context);
+  }
+
+  private static final class LiteralSegment extends Segment {
+    private final @NotNull String text;
+
+    LiteralSegment(final @NotNull String text) {
+      this.text = text;
+    }
+
+    @Override void append(final @NotNull Context context) {
+      context.builder.append(text);
+    }
+  }
+
+  private static final class TimestampSegment extends Segment {
+    private final @NotNull TimestampFormat timestampFormat;
+
+    TimestampSegment(final @NotNull TimestampFormat timestampFormat) {
+      this.timestampFormat = timestampFormat;
+    }
+
+    @Override void append(final @NotNull Context context) {
+      timestampFormat.format(context.record().getMillis(), context.locale(), context.builder);
+    }
+  }
+
+  /** A "%s" of a String field with an optional width, precision, and '-' flag */
+  private static final class TextSegment extends Segment {
+    private final int position;
+    private final boolean leftJustify;
+    private final int width;
+    private final int precision;
+
+    TextSegment(final int position, final boolean leftJustify, final int width, final int precision) {
+      this.position = position;
+      this.leftJustify = leftJustify;
+      this.width = width;
+      this.precision = precision;
+    }
+
+    @Override void append(final @NotNull Context context) {
+      final StringBuilder builder = context.builder;
+      final String value = context.text(position);
+      final String text = value == null ? "null" : value;
+      final int length = precision != -1 && precision < text.length() ? precision : text.length();
+      final int padAmount = width - length;
+      if (!leftJustify && padAmount > 0) {
+        pad(builder, builder.length(), padAmount);
+      }
+      builder.append(text, 0, length);
+      if (leftJustify && padAmount > 0) {
+        pad(builder, builder.length(), padAmount);
+      }
+    }
+  }
+
+  /**
+   * A "%d" or "%s" of an integral field with an optional width and '-' flag. Delegates to a
+   * Formatter if "%d" would use localized digits
+   */
+  private static final class NumberSegment extends Segment {
+    private final int position;
+    private final boolean decimal;
+    private final boolean leftJustify;
+    private final int width;
+    private final @NotNull FormatterSegment fallback;
+
+    NumberSegment(final int position,
+                  final boolean decimal,
+                  final boolean leftJustify,
+                  final int width,
+                  final @NotNull FormatterSegment fallback) {
+      this.position = position;
+      this.decimal = decimal;
+      this.leftJustify = leftJustify;
+      this.width = width;
+      this.fallback = fallback;
+    }
+
+    @Override void append(final @NotNull Context context) {
+      if (decimal && !context.asciiDigits) {
+        fallback.append(context);
+        return;
+      }
+      final StringBuilder builder = context.builder;
+      final int start = builder.length();
+      builder.append(context.number(position));
+      final int padAmount = width - (builder.length() - start);
+      if (padAmount > 0) {
+        pad(builder, leftJustify ? builder.length() : start, padAmount);
+      }
+    }
+  }
+
+  private static final class ThrownSegment extends Segment {
+    private final int flags;
+    private final int width;
+    private final int precision;
+
+    ThrownSegment(final int flags, final int width, final int precision) {
+      this.flags = flags;
+      this.width = width;
+      this.precision = precision;
+    }
+
+    @Override void append(final @NotNull Context context) {
+      FormattableThrowable.appendTo(context.builder,
+                                    context.record().getThrown(),
+                                    flags,
+                                    width,
+                                    precision);
+    }
+  }
+
+  private static final class LocationSegment extends Segment {
+    private final int flags;
+    private final int width;
+    private final int precision;
+
+    LocationSegment(final int flags, final int width, final int precision) {
+      this.flags = flags;
+      this.width = width;
+      this.precision = precision;
+    }
+
+    @Override void append(final @NotNull Context context) {
+      final ExtLogRecord extRecord = context.extRecord;
+      FormattableStackTraceElement.appendTo(context.builder,
+                                            extRecord != null ? extRecord.getLocation() : null,
+                                            flags,
+                                            width,
+                                            precision);
+    }
+  }
+
+  /**
+   * Formats a single specifier, with its argument index removed, using the Context's Formatter.
+   * A position of 0 indicates the specifier takes no argument.
+   */
+  private static final class FormatterSegment extends Segment {
+    private final @NotNull String spec;
+    private final int position;
+
+    FormatterSegment(final @NotNull String spec, final int position) {
+      this.spec = spec;
+      this.position = position;
+    }
+
+    @Override void append(final @NotNull Context context) {
+      if (position == 0) {
+        context.formatter.format(context.locale, spec);
+      } else {
+        context.formatter.format(context.locale, spec, context.value(position));
+      }
+    }
+  }
+
+  /** Mirrors Formatter when the specifier refers to an argument that doesn't exist */
+  private static final class MissingArgumentSegment extends Segment {
+    private final @NotNull String spec;
+
+    MissingArgumentSegment(final @NotNull String spec) {
+      this.spec = spec;
+    }
+
+    @Override void append(final @NotNull Context context) {
+      throw new MissingFormatArgumentException(spec);
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.core;
+
+import com.ealva.ealvalog.util.CacheStrategy;
+import com.ealva.ealvalog.util.ObjectCache;
+import com.ealva.ealvalog.util.SharedPool;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.TestOnly;
+
+import java.util.Arrays;
+
+/**
+ * A small per-thread stack of reusable records. Logging from within a log call, such as from a
+ * toString() of a parameter, reserves a second record while the first is still in use. Such
+ * nested reservations are served from the pool, up to {@link #getMaxDepth()} deep, after which
+ * unpooled records are created.
+ * <p>
+ * Virtual threads, or every thread if so configured, instead take records from a
+ * {@link SharedPool} as thread locals would be discarded along with the short lived thread. See
+ * {@link ObjectCache#setStrategy(CacheStrategy)}.
+ * <p>
+ * Subclasses create records and report if a record is currently reserved. The caller reserves the
+ * record returned by {@link #get()} and the record's close() makes it available again, calling
+ * {@link #release(Object)}.
+ *
+ * @param <T> the type of pooled record
+ */
+public abstract class RecordPool<T> {
+  /** The default number of records pooled per thread */
+  public static final int DEFAULT_MAX_DEPTH = 4;
+  private static volatile int maxDepth = DEFAULT_MAX_DEPTH;
+
+  private final ThreadLocal<Object[]> threadRecords = new ThreadLocal<Object[]>() {
+    @Override protected Object[] initialValue() {
+      return new Object[1];
+    }
+  };
+  private final SharedPool<T> sharedPool = new SharedPool<>();
+
+  /**
+   * Sets the maximum number of records of each type pooled per thread. Records beyond the depth
+   * are created as needed and become garbage after use.
+   *
+   * @param depth the maximum number of pooled records per thread, at least 1
+   *
+   * @return the new max depth
+   */
+  @SuppressWarnings("unused")
+  public static int setMaxDepth(final int depth) {
+    maxDepth = Math.max(1, depth);
+    return maxDepth;
+  }
+
+  /** @return the maximum number of records of each type pooled per thread */
+  public static int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /** @return a new record, not yet reserved */
+  protected abstract @NotNull T newRecord();
+
+  /** @return true if record is reserved and not available for reuse */
+  protected abstract boolean isReserved(@NotNull T record);
+
+  /**
+   * @return the first unreserved record in this thread's pool, creating one if the pool is not
+   * full, else a new unpooled record. The record must be reserved by the caller
+   */
+  @SuppressWarnings("unchecked")
+  public @NotNull T get() {
+    if (ObjectCache.useSharedPool()) {
+      final T record = sharedPool.poll();
+      return record != null ? record : newRecord();
+    }
+    Object[] records = threadRecords.get();
+    final int depth = maxDepth;
+    for (int i = 0; i < depth; i++) {
+      if (i == records.length) {
+        records = Arrays.copyOf(records, Math.min(depth, records.length * 2));
+        threadRecords.set(records);
+      }
+      T record = (T)records[i];
+      if (record == null) {
+        record = newRecord();
+        records[i] = record;
+        return record;
+      }
+      if (!isReserved(record)) {
+        return record;
+      }
+    }
+    return newRecord();
+  }
+
+  /**
+   * Called when a reserved record is closed. Records in a thread's pool need no further action,
+   * others are returned to the shared pool
+   */
+  public void release(final @NotNull T record) {
+    if (ObjectCache.useSharedPool()) {
+      sharedPool.offer(record);
+    }
+  }
+
+  /** Drops the current thread's pooled records and empties the shared pool */
+  @TestOnly
+  public void clear() {
+    threadRecords.remove();
+    sharedPool.clear();
+  }
+}
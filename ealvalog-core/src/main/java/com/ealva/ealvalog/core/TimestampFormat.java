@@ -0,0 +1,256 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders a timestamp given a pattern of {@link Formatter} date/time specifiers, without argument
+ * indices, which all refer to the same instant. eg. "%tF %tT.%tL"
+ * <p>
+ * Everything except the sub-second conversions ('L', 'N', and 'Q') is rendered once per second
+ * and cached, so formatting a timestamp within the cached second only appends the cached text
+ * and patches in the milliseconds. The current and previous seconds are cached so records
+ * arriving slightly out of order, from different threads, don't thrash the cache.
+ * <p>
+ * Thread safe. The cache is an immutable snapshot replaced when the second or {@link Locale}
+ * changes. The default {@link java.util.TimeZone} is only read when a second is rendered, so a
+ * change to the default zone may take up to a second to be reflected.
+ */
+public final class TimestampFormat {
+  private static final Pattern SPECIFIER =
+      Pattern.compile("%([-#+ 0,(<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])");
+
+  private final @NotNull String pattern;
+  /** Formatter patterns for the text between sub-second conversions, args index 1 */
+  private final @NotNull String[] chunks;
+  /** The sub-second conversions between chunks, one fewer than chunks */
+  private final @NotNull Hole[] holes;
+  private volatile @NotNull Second current = Second.NONE;
+  private volatile @NotNull Second previous = Second.NONE;
+
+  private TimestampFormat(final @NotNull String pattern,
+                          final @NotNull List<String> chunks,
+                          final @NotNull List<Hole> holes) {
+    this.pattern = pattern;
+    this.chunks = chunks.toArray(new String[0]);
+    this.holes = holes.toArray(new Hole[0]);
+  }
+
+  /**
+   * @param pattern date/time specifiers, such as "%tF %tT.%tL", with no argument index, and
+   *                literal text. "%%" and "%n" are also accepted
+   *
+   * @return a TimestampFormat for {@code pattern}
+   *
+   * @throws IllegalArgumentException if {@code pattern} contains anything else or a specifier
+   *                                  {@link Formatter} would reject
+   */
+  public static @NotNull TimestampFormat make(final @NotNull String pattern) {
+    final List<String> chunks = new ArrayList<>();
+    final List<Hole> holes = new ArrayList<>();
+    final StringBuilder chunk = new StringBuilder();
+    final Matcher matcher = SPECIFIER.matcher(pattern);
+    final int length = pattern.length();
+    int i = 0;
+    while (i < length) {
+      final int percent = pattern.indexOf('%', i);
+      if (percent < 0) {
+        appendEscaped(chunk, pattern, i, length);
+        break;
+      }
+      appendEscaped(chunk, pattern, i, percent);
+      matcher.region(percent, length);
+      if (!matcher.lookingAt()) {
+        throw new IllegalArgumentException("Invalid specifier at " + percent + " in " + pattern);
+      }
+      i = matcher.end();
+      final String spec = matcher.group();
+      if ("%%".equals(spec) || "%n".equals(spec)) {
+        chunk.append(spec);
+        continue;
+      }
+      if (matcher.group(4) == null || (matcher.group(1) != null && matcher.group(1).indexOf('<') >= 0)) {
+        throw new IllegalArgumentException("Not a date/time specifier " + spec + " in " + pattern);
+      }
+      final String indexed = "%1$" + spec.substring(1);
+      validate(indexed, pattern);
+      final char conversion = matcher.group(5).charAt(0);
+      if (isSubSecond(conversion)) {
+        chunks.add(chunk.toString());
+        chunk.setLength(0);
+        holes.add(new Hole(conversion, spec.length() == 3 && spec.charAt(1) == 't', indexed));
+      } else {
+        chunk.append(indexed);
+      }
+    }
+    chunks.add(chunk.toString());
+    return new TimestampFormat(pattern, chunks, holes);
+  }
+
+  public @NotNull String getPattern() {
+    return pattern;
+  }
+
+  /** Append {@code millis} to {@code builder} formatted with the default Locale */
+  public void format(final long millis, final @NotNull StringBuilder builder) {
+    format(millis, Locale.getDefault(), builder);
+  }
+
+  /** Append {@code millis} to {@code builder} formatted with {@code locale} */
+  public void format(final long millis,
+                     final @NotNull Locale locale,
+                     final @NotNull StringBuilder builder) {
+    final long second = Math.floorDiv(millis, 1000L);
+    Second cached = current;
+    if (cached.second != second || cached.locale != locale) {
+      cached = previous;
+      if (cached.second != second || cached.locale != locale) {
+        cached = render(millis, second, locale);
+        if (second > current.second || current.locale != locale) {
+          previous = current;
+          current = cached;
+        } else {
+          previous = cached;
+        }
+      }
+    }
+    final String[] pieces = cached.pieces;
+    final Hole[] holes = this.holes;
+    builder.append(pieces[0]);
+    for (int i = 0; i < holes.length; i++) {
+      holes[i].append(millis, locale, cached.zeroDigit, builder);
+      builder.append(pieces[i + 1]);
+    }
+  }
+
+  /** @return {@code millis} formatted with the default Locale */
+  public @NotNull String format(final long millis) {
+    final StringBuilder builder = new StringBuilder(32);
+    format(millis, builder);
+    return builder.toString();
+  }
+
+  @Override public String toString() {
+    return "TimestampFormat{" + pattern + '}';
+  }
+
+  private @NotNull Second render(final long millis, final long second, final @NotNull Locale locale) {
+    final StringBuilder builder = new StringBuilder(32);
+    final Formatter formatter = new Formatter(builder);
+    final String[] pieces = new String[chunks.length];
+    for (int i = 0; i < chunks.length; i++) {
+      builder.setLength(0);
+      formatter.format(locale, chunks[i], millis);
+      pieces[i] = builder.toString();
+    }
+    return new Second(second, locale, pieces, DecimalFormatSymbols.getInstance(locale).getZeroDigit());
+  }
+
+  private static boolean isSubSecond(final char conversion) {
+    return conversion == 'L' || conversion == 'N' || conversion == 'Q';
+  }
+
+  private static void validate(final @NotNull String spec, final @NotNull String pattern) {
+    try {
+      new Formatter(new StringBuilder()).format(Locale.ROOT, spec, 0L);
+    } catch (IllegalFormatException e) {
+      throw new IllegalArgumentException("Invalid specifier " + spec + " in " + pattern, e);
+    }
+  }
+
+  private static void appendEscaped(final @NotNull StringBuilder builder,
+                                    final @NotNull String text,
+                                    final int start,
+                                    final int end) {
+    for (int i = start; i < end; i++) {
+      final char c = text.charAt(i);
+      builder.append(c);
+      if (c == '%') {
+        builder.append('%');
+      }
+    }
+  }
+
+  private static final class Second {
+    static final Second NONE = new Second(Long.MIN_VALUE, null, new String[0], '0');
+
+    final long second;
+    final Locale locale;
+    final @NotNull String[] pieces;
+    final char zeroDigit;
+
+    Second(final long second,
+           final Locale locale,
+           final @NotNull String[] pieces,
+           final char zeroDigit) {
+      this.second = second;
+      this.locale = locale;
+      this.pieces = pieces;
+      this.zeroDigit = zeroDigit;
+    }
+  }
+
+  /** A sub-second conversion. "%tL" and "%tN" are appended directly, others use a Formatter */
+  private static final class Hole {
+    private final char conversion;
+    private final boolean plain;
+    private final @NotNull String spec;
+
+    Hole(final char conversion, final boolean plain, final @NotNull String spec) {
+      this.conversion = conversion;
+      this.plain = plain;
+      this.spec = spec;
+    }
+
+    void append(final long millis,
+                final @NotNull Locale locale,
+                final char zeroDigit,
+                final @NotNull StringBuilder builder) {
+      if (plain && conversion == 'L') {
+        appendMillis(millis, zeroDigit, builder);
+      } else if (plain && conversion == 'N') {
+        appendMillis(millis, zeroDigit, builder);
+        for (int i = 0; i < 6; i++) {
+          builder.append(zeroDigit);
+        }
+      } else {
+        new Formatter(builder).format(locale, spec, millis);
+      }
+    }
+
+    private static void appendMillis(final long millis,
+                                     final char zeroDigit,
+                                     final @NotNull StringBuilder builder) {
+      final int ms = (int)Math.floorMod(millis, 1000L);
+      builder.append((char)(zeroDigit + ms / 100))
+             .append((char)(zeroDigit + ms / 10 % 10))
+             .append((char)(zeroDigit + ms % 10));
+    }
+  }
+}
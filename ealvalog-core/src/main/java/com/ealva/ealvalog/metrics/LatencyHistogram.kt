@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.metrics
+
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Fixed memory histogram of nanosecond durations, recorded without locks. Buckets are log-linear
+ * as in HdrHistogram: values below 16 have their own bucket and each power of 2 above that is
+ * split into 16 sub-buckets, so a reported value is within 1/16 (about 6%) of the recorded value.
+ * Values of 2^36 ns (about 69 seconds) and longer are counted in the last bucket. Each histogram
+ * is [BUCKET_COUNT] longs.
+ */
+class LatencyHistogram {
+  private val counts = AtomicLongArray(BUCKET_COUNT)
+
+  fun record(nanos: Long) {
+    counts.incrementAndGet(indexOf(nanos))
+  }
+
+  /** Current counts. Values recorded while this runs may or may not be included. */
+  fun snapshot(): HistogramSnapshot = HistogramSnapshot(LongArray(BUCKET_COUNT) { counts.get(it) })
+
+  fun reset() {
+    for (i in 0 until BUCKET_COUNT) counts.set(i, 0)
+  }
+
+  companion object {
+    private const val SUB_BITS = 4
+    private const val SUB_COUNT = 1 shl SUB_BITS
+    private const val MAX_BITS = 36
+    const val BUCKET_COUNT = (MAX_BITS - SUB_BITS + 1) shl SUB_BITS
+
+    internal fun indexOf(nanos: Long): Int {
+      if (nanos < SUB_COUNT) return if (nanos < 0) 0 else nanos.toInt()
+      val msb = 63 - java.lang.Long.numberOfLeadingZeros(nanos)
+      if (msb >= MAX_BITS) return BUCKET_COUNT - 1
+      val subBucket = (nanos ushr (msb - SUB_BITS)).toInt() and (SUB_COUNT - 1)
+      return ((msb - SUB_BITS + 1) shl SUB_BITS) + subBucket
+    }
+
+    /** Largest value counted in bucket [index] */
+    internal fun highestValueAt(index: Int): Long {
+      if (index < SUB_COUNT) return index.toLong()
+      val msb = (index ushr SUB_BITS) + SUB_BITS - 1
+      val subBucket = (index and (SUB_COUNT - 1)).toLong()
+      val shift = msb - SUB_BITS
+      return ((SUB_COUNT + subBucket + 1) shl shift) - 1
+    }
+  }
+}
+
+/**
+ * Counts of a [LatencyHistogram] as of [LatencyHistogram.snapshot]. Values are nanoseconds.
+ */
+class HistogramSnapshot internal constructor(private val counts: LongArray) {
+  val count: Long = counts.sum()
+
+  /** Upper bound of the bucket of the largest recorded value, or 0 if nothing was recorded */
+  val max: Long
+    get() {
+      for (i in counts.indices.reversed()) {
+        if (counts[i] != 0L) return LatencyHistogram.highestValueAt(i)
+      }
+      return 0
+    }
+
+  /**
+   * Value at or below which [percentile] percent of recorded values fall, reported as the upper
+   * bound of its bucket, or 0 if nothing was recorded
+   */
+  fun valueAtPercentile(percentile: Double): Long {
+    if (count == 0L) return 0
+    val fraction = percentile.coerceIn(0.0, 100.0) / 100.0
+    val target = Math.ceil(count * fraction).toLong().coerceAtLeast(1)
+    var seen = 0L
+    for (i in counts.indices) {
+      seen += counts[i]
+      if (seen >= target) return LatencyHistogram.highestValueAt(i)
+    }
+    return max
+  }
+
+  override fun toString(): String {
+    return "count=$count p50=${valueAtPercentile(50.0)} p99=${valueAtPercentile(99.0)} " +
+      "p99.9=${valueAtPercentile(99.9)} max=$max"
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.metrics
+
+/**
+ * What [LoggerCounters] count, per logger and [com.ealva.ealvalog.LogLevel]
+ */
+enum class LogCounter {
+  /** Calls to [com.ealva.ealvalog.Logger.isLoggable] */
+  CHECKED,
+  /** isLoggable checks which returned true */
+  ACCEPTED,
+  /** isLoggable checks which returned false */
+  DENIED,
+  /** Entries passed to [com.ealva.ealvalog.Logger.logImmediate] */
+  EMITTED,
+  /** Records discarded by an async dispatcher or handler because its queue was full */
+  DROPPED,
+  /**
+   * Characters produced by [com.ealva.ealvalog.core.ExtRecordFormatter]. Characters rather than
+   * bytes as the encoding belongs to the handler.
+   */
+  FORMATTED_CHARS,
+  /**
+   * Exceptions caught while a handler formatted or wrote a record. Counted by
+   * [com.ealva.ealvalog.jul.LockingStreamHandler], [com.ealva.ealvalog.jul.AsyncHandler] and
+   * [com.ealva.ealvalog.jul.FriendlyFileHandler], and for exceptions thrown out of the stdout
+   * logger or out of Log4j's appenders. Errors a Log4j appender handles itself, with
+   * ignoreExceptions, go to its ErrorHandler and are not counted.
+   */
+  HANDLER_ERRORS
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.metrics
+
+import com.ealva.ealvalog.LogLevel
+import java.lang.management.ManagementFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicInteger
+import javax.management.MBeanServer
+
+/**
+ * Per logger, per [LogLevel] counts of the [LogCounter]s. Counting is off until [isEnabled] is
+ * set, and when off the only cost on the logging path is reading the volatile [mode]. When on, each
+ * logger's counters are looked up once and incremented through striped LongAdders, so there is no
+ * shared counter for threads to contend on.
+ *
+ * With [isTimingEnabled], each [LogStage] is timed in about 1 of [sampleRate] passes through it
+ * and recorded in a per logger [LatencyHistogram]. A stage which is not sampled pays a random
+ * draw, one which is also pays two [System.nanoTime] calls and a histogram increment. Timings
+ * show whether logging contributes to a latency spike and, if so, in which stage.
+ *
+ * Read counts with [snapshot], or call [registerMBeans] to publish a [LoggerMetricsMXBean] per
+ * logger under [JMX_DOMAIN]. Loggers which first count after registration are registered as they
+ * appear.
+ *
+ * LongAdder requires Android API 24 and JMX is not available on Android, so neither is touched
+ * unless enabled or registered.
+ */
+object LogMetrics {
+  const val JMX_DOMAIN = "com.ealva.ealvalog"
+  const val DEFAULT_SAMPLE_RATE = 100
+
+  private val countersByName = ConcurrentHashMap<String, LoggerCounters>()
+  @field:Volatile private var mBeanServer: Any? = null
+
+  /** [mode] bit set when [isEnabled] */
+  const val COUNTING = 1
+  /** [mode] bit set when [isTimingEnabled] */
+  const val TIMING = 2
+
+  private val modeBits = AtomicInteger()
+
+  /**
+   * [COUNTING] and [TIMING] bits. The logging path reads this once, so with metrics off a call
+   * pays a single volatile read for both.
+   */
+  @JvmStatic
+  val mode: Int
+    get() = modeBits.get()
+
+  /** Whether loggers, dispatchers, formatters and handlers count */
+  @JvmStatic var isEnabled: Boolean
+    get() = (modeBits.get() and COUNTING) != 0
+    set(value) = setMode(COUNTING, value)
+
+  /** Whether [LogStage]s are sampled and timed */
+  @JvmStatic var isTimingEnabled: Boolean
+    get() = (modeBits.get() and TIMING) != 0
+    set(value) = setMode(TIMING, value)
+
+  /** On average 1 of this many passes through each [LogStage] is timed. 1 times them all. */
+  @field:Volatile @JvmStatic var sampleRate = DEFAULT_SAMPLE_RATE
+    set(value) {
+      require(value > 0) { "sampleRate must be > 0" }
+      field = value
+    }
+
+  /**
+   * True if [isTimingEnabled] and this pass through a stage is sampled. Callers time the stage and
+   * pass the duration to [recordLatency].
+   */
+  @JvmStatic
+  fun shouldTime(): Boolean = shouldTime(mode)
+
+  /** As [shouldTime], given a [mode] already read */
+  @JvmStatic
+  fun shouldTime(mode: Int): Boolean {
+    if ((mode and TIMING) == 0) return false
+    val rate = sampleRate
+    return rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0
+  }
+
+  private fun setMode(bit: Int, on: Boolean) {
+    while (true) {
+      val current = modeBits.get()
+      val updated = if (on) current or bit else current and bit.inv()
+      if (current == updated || modeBits.compareAndSet(current, updated)) return
+    }
+  }
+
+  /** Record that [stage] took [nanos] for [loggerName] */
+  @JvmStatic
+  fun recordLatency(loggerName: String?, stage: LogStage, nanos: Long) {
+    countersFor(loggerName ?: "").recordLatency(stage, nanos)
+  }
+
+  /** The counters for [loggerName], created on first use */
+  @JvmStatic
+  fun countersFor(loggerName: String): LoggerCounters {
+    countersByName[loggerName]?.let { return it }
+    val counters = LoggerCounters(loggerName)
+    val existing = countersByName.putIfAbsent(loggerName, counters)
+    if (existing != null) return existing
+    if (mBeanServer == null) return counters
+    synchronized(this) {
+      // re-read under the lock, unregisterMBeans may have run since the check
+      val server = mBeanServer ?: return counters
+      LoggerMetrics.register(server as MBeanServer, counters)
+    }
+    return counters
+  }
+
+  /** If [isEnabled], add [amount] to [counter] of [loggerName] at [level] */
+  @JvmStatic
+  @JvmOverloads
+  fun count(loggerName: String?, level: LogLevel, counter: LogCounter, amount: Long = 1) {
+    if (isEnabled) countersFor(loggerName ?: "").add(counter, level, amount)
+  }
+
+  /** Counts of every logger which has counted, keyed by logger name */
+  @JvmStatic
+  fun snapshot(): Map<String, LoggerSnapshot> =
+    countersByName.values.associateBy({ it.loggerName }, { it.snapshot() })
+
+  /** Zero all counts and timings. Loggers keep their counters so cached references remain valid. */
+  @JvmStatic
+  fun reset() {
+    countersByName.values.forEach { it.reset() }
+  }
+
+  /** Register a [LoggerMetricsMXBean] for every logger, now and as they first count */
+  @JvmStatic
+  @JvmOverloads
+  fun registerMBeans(server: MBeanServer = ManagementFactory.getPlatformMBeanServer()) {
+    synchronized(this) {
+      mBeanServer = server
+      countersByName.values.forEach { LoggerMetrics.register(server, it) }
+    }
+  }
+
+  /** Unregister all MBeans registered by [registerMBeans] */
+  @JvmStatic
+  fun unregisterMBeans() {
+    synchronized(this) {
+      val server = mBeanServer ?: return
+      mBeanServer = null
+      countersByName.values.forEach { LoggerMetrics.unregister(server as MBeanServer, it) }
+    }
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.metrics
+
+/**
+ * Stages of the logging pipeline timed by [LogMetrics] when [LogMetrics.isTimingEnabled]
+ */
+enum class LogStage {
+  /** [com.ealva.ealvalog.Logger.isLoggable], level checks and filter evaluation */
+  FILTER,
+  /** Reserving and initializing a pooled record for [com.ealva.ealvalog.Logger.getLogEntry] */
+  RECORD,
+  /** Combining the client's format and arguments into the message */
+  CLIENT_FORMAT,
+  /** Laying out the full record in [com.ealva.ealvalog.core.ExtRecordFormatter] */
+  LAYOUT_FORMAT,
+  /** Passing the entry to the bridge, which publishes to the handlers/appenders */
+  PUBLISH
+}
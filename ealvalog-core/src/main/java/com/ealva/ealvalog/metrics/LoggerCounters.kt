@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.metrics
+
+import com.ealva.ealvalog.LogLevel
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.concurrent.atomic.LongAdder
+
+private val LEVELS = LogLevel.values()
+private val COUNTERS = LogCounter.values()
+private val STAGES = LogStage.values()
+
+private fun indexOf(counter: LogCounter, level: LogLevel) =
+  counter.ordinal * LEVELS.size + level.ordinal
+
+/**
+ * The [LogCounter]s of one logger, each per [LogLevel], and a [LatencyHistogram] per [LogStage].
+ * Counts are [LongAdder]s so threads logging through the same logger don't contend on a single
+ * counter. Histograms are created the first time their stage is timed. Obtained from
+ * [LogMetrics.countersFor].
+ */
+class LoggerCounters internal constructor(val loggerName: String) {
+  private val adders = Array(COUNTERS.size * LEVELS.size) { LongAdder() }
+  private val histograms = AtomicReferenceArray<LatencyHistogram?>(STAGES.size)
+
+  fun increment(counter: LogCounter, level: LogLevel) {
+    adders[indexOf(counter, level)].increment()
+  }
+
+  fun add(counter: LogCounter, level: LogLevel, amount: Long) {
+    adders[indexOf(counter, level)].add(amount)
+  }
+
+  /** Count an isLoggable check at [level] and whether it was [accepted] */
+  fun checked(level: LogLevel, accepted: Boolean) {
+    increment(LogCounter.CHECKED, level)
+    increment(if (accepted) LogCounter.ACCEPTED else LogCounter.DENIED, level)
+  }
+
+  fun sum(counter: LogCounter, level: LogLevel): Long = adders[indexOf(counter, level)].sum()
+
+  fun total(counter: LogCounter): Long =
+    LEVELS.fold(0L) { total, level -> total + sum(counter, level) }
+
+  /** Current values. Counts taken while logging continues are not an atomic snapshot. */
+  fun snapshot(): LoggerSnapshot = LoggerSnapshot(
+    loggerName,
+    LongArray(adders.size) { adders[it].sum() },
+    STAGES.mapNotNull { stage -> latency(stage)?.let { stage to it } }.toMap()
+  )
+
+  /** Record that [stage] took [nanos] */
+  fun recordLatency(stage: LogStage, nanos: Long) {
+    val index = stage.ordinal
+    val histogram = histograms.get(index) ?: LatencyHistogram().let { created ->
+      if (histograms.compareAndSet(index, null, created)) created else histograms.get(index)!!
+    }
+    histogram.record(nanos)
+  }
+
+  /** Timings of [stage], or null if it has not been timed for this logger since the last reset */
+  fun latency(stage: LogStage): HistogramSnapshot? =
+    histograms.get(stage.ordinal)?.snapshot()?.takeIf { it.count > 0 }
+
+  fun reset() {
+    adders.forEach { it.reset() }
+    for (i in STAGES.indices) histograms.get(i)?.reset()
+  }
+}
+
+/**
+ * Counts of one logger as of [LoggerCounters.snapshot]. [latencies] has an entry for each
+ * [LogStage] timed since the last reset.
+ */
+class LoggerSnapshot internal constructor(
+  val loggerName: String,
+  private val counts: LongArray,
+  val latencies: Map<LogStage, HistogramSnapshot>
+) {
+  operator fun get(counter: LogCounter, level: LogLevel): Long = counts[indexOf(counter, level)]
+
+  fun total(counter: LogCounter): Long =
+    LEVELS.fold(0L) { total, level -> total + get(counter, level) }
+
+  override fun toString(): String {
+    return COUNTERS.joinToString(prefix = "$loggerName[", postfix = "]") { "$it=${total(it)}" }
+  }
+}
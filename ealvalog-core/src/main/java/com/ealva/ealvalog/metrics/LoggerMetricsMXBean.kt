@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.metrics
+
+import com.ealva.ealvalog.LogLevel
+import javax.management.InstanceAlreadyExistsException
+import javax.management.InstanceNotFoundException
+import javax.management.MBeanServer
+import javax.management.ObjectName
+
+/**
+ * JMX view of one logger's [LoggerCounters]. Totals are summed over all levels and [levelCounts]
+ * has the non-zero counts keyed "COUNTER.LEVEL", such as "EMITTED.INFO". [latencies] has, for each
+ * timed [LogStage], the sample count and the p50, p99, p99.9 and max nanoseconds, keyed such as
+ * "PUBLISH.p99".
+ */
+interface LoggerMetricsMXBean {
+  val loggerName: String
+  val checked: Long
+  val accepted: Long
+  val denied: Long
+  val emitted: Long
+  val dropped: Long
+  val formattedChars: Long
+  val handlerErrors: Long
+  val levelCounts: Map<String, Long>
+  val latencies: Map<String, Long>
+
+  fun reset()
+}
+
+internal class LoggerMetrics(private val counters: LoggerCounters) : LoggerMetricsMXBean {
+  override val loggerName: String
+    get() = counters.loggerName
+  override val checked: Long
+    get() = counters.total(LogCounter.CHECKED)
+  override val accepted: Long
+    get() = counters.total(LogCounter.ACCEPTED)
+  override val denied: Long
+    get() = counters.total(LogCounter.DENIED)
+  override val emitted: Long
+    get() = counters.total(LogCounter.EMITTED)
+  override val dropped: Long
+    get() = counters.total(LogCounter.DROPPED)
+  override val formattedChars: Long
+    get() = counters.total(LogCounter.FORMATTED_CHARS)
+  override val handlerErrors: Long
+    get() = counters.total(LogCounter.HANDLER_ERRORS)
+  override val levelCounts: Map<String, Long>
+    get() {
+      val snapshot = counters.snapshot()
+      val counts = LinkedHashMap<String, Long>()
+      LogCounter.values().forEach { counter ->
+        LogLevel.values().forEach { level ->
+          val count = snapshot[counter, level]
+          if (count != 0L) counts["$counter.$level"] = count
+        }
+      }
+      return counts
+    }
+
+  override val latencies: Map<String, Long>
+    get() {
+      val latencies = LinkedHashMap<String, Long>()
+      LogStage.values().forEach { stage ->
+        counters.latency(stage)?.let { snapshot ->
+          latencies["$stage.count"] = snapshot.count
+          latencies["$stage.p50"] = snapshot.valueAtPercentile(50.0)
+          latencies["$stage.p99"] = snapshot.valueAtPercentile(99.0)
+          latencies["$stage.p99.9"] = snapshot.valueAtPercentile(99.9)
+          latencies["$stage.max"] = snapshot.max
+        }
+      }
+      return latencies
+    }
+
+  override fun reset() {
+    counters.reset()
+  }
+
+  companion object {
+    fun nameOf(loggerName: String): ObjectName =
+      ObjectName("${LogMetrics.JMX_DOMAIN}:type=LoggerMetrics,name=${ObjectName.quote(loggerName)}")
+
+    fun register(server: MBeanServer, counters: LoggerCounters) {
+      try {
+        server.registerMBean(LoggerMetrics(counters), nameOf(counters.loggerName))
+      } catch (e: InstanceAlreadyExistsException) {
+        // registered by a racing countersFor or registerMBeans
+      }
+    }
+
+    fun unregister(server: MBeanServer, counters: LoggerCounters) {
+      try {
+        server.unregisterMBean(nameOf(counters.loggerName))
+      } catch (e: InstanceNotFoundException) {
+        // never registered or already unregistered
+      }
+    }
+  }
+}
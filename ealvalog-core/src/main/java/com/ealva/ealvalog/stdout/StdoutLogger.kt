@@ -27,6 +27,8 @@ import com.ealva.ealvalog.MdcContext
 import com.ealva.ealvalog.core.ExtLogRecord
 import com.ealva.ealvalog.core.ExtRecordFormatter
 import com.ealva.ealvalog.filter.AlwaysNeutralFilter
+import com.ealva.ealvalog.metrics.LogCounter
+import com.ealva.ealvalog.metrics.LogMetrics
 
 private val loggerFQCN: String = StdoutLogger::class.java.name
 
@@ -68,12 +70,21 @@ class StdoutLogger(
       throwable,
       mdcContext?.mdc,
       mdcContext?.ndc
-    )
+    ).also { it.messageStyle = StdoutLoggerFactory.messageStyle }
   }
 
   override fun logImmediate(entry: LogEntry) {
-    ExtLogRecord.fromLogEntry(entry).use { record ->
+    // the formatter is a java.util.logging.Formatter, which getLogEntry already provides.
+    // Only an entry from elsewhere is copied
+    val record = ExtLogRecord.fromLogEntry(entry)
+    try {
       println(formatter.format(record))
+    } catch (e: RuntimeException) {
+      LogMetrics.count(record.loggerName, record.logLevel, LogCounter.HANDLER_ERRORS)
+      throw e
+    } finally {
+      // entry is closed by whoever obtained it
+      if (record !== entry) record.close()
     }
   }
 }
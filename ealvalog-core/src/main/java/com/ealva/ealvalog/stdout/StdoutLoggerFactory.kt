@@ -20,6 +20,7 @@ package com.ealva.ealvalog.stdout
 
 import com.ealva.ealvalog.LoggerFactory
 import com.ealva.ealvalog.Marker
+import com.ealva.ealvalog.util.MessageStyle
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentMap
 
@@ -30,6 +31,12 @@ import java.util.concurrent.ConcurrentMap
 object StdoutLoggerFactory : LoggerFactory {
   private val loggerMap: ConcurrentMap<String, StdoutLogger> = ConcurrentHashMap()
 
+  /**
+   * How the format and args of records created by [StdoutLogger]s are combined. Defaults to
+   * [MessageStyle.PRINTF]
+   */
+  @field:Volatile var messageStyle: MessageStyle = MessageStyle.PRINTF
+
   override fun get(name: String, marker: Marker?, includeLocation: Boolean): StdoutLogger {
     return loggerMap.getOrPut(name) {
       StdoutLogger(
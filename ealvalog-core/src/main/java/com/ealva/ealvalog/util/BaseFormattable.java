@@ -24,19 +24,24 @@ import java.util.Formattable;
  * Created by Eric A. Snell on 8/23/18.
  */
 abstract class BaseFormattable implements Formattable {
-  void maybePadAndJustify(final int width,
-                          final boolean leftJustify,
-                          final StringBuilder builder) {
-    if (width != -1 && width > builder.length()) {
-      builder.ensureCapacity(width);
-      final int padAmount = width - builder.length();
+  /**
+   * Pad the characters appended to {@code builder} after {@code start} with spaces, if necessary,
+   * so they occupy at least {@code width} characters
+   */
+  static void maybePadAndJustify(final int width,
+                                 final boolean leftJustify,
+                                 final StringBuilder builder,
+                                 final int start) {
+    final int padAmount = width - (builder.length() - start);
+    if (width != -1 && padAmount > 0) {
+      builder.ensureCapacity(start + width);
       if (leftJustify) {
         for (int i = 0; i < padAmount; i++) {
           builder.append(' ');
         }
       } else {
         for (int i = 0; i < padAmount; i++) {
-          builder.insert(0, ' ');
+          builder.insert(start, ' ');
         }
       }
     }
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.util;
+
+/**
+ * How objects reused across log calls, such as records, formatters, and builders, are cached.
+ * Thread locals are cheapest for long lived platform threads but a large number of short lived
+ * virtual threads would each create, use once, and discard their own set of objects. Those are
+ * better served from a pool shared by all threads. Set with
+ * {@link ObjectCache#setStrategy(CacheStrategy)}
+ */
+public enum CacheStrategy {
+  /** Thread locals for platform threads and a shared pool for virtual threads */
+  AUTO,
+
+  /** Always thread locals */
+  THREAD_LOCAL,
+
+  /** Always a shared pool */
+  SHARED
+}
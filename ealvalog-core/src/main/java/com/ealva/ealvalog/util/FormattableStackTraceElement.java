@@ -18,6 +18,7 @@
 
 package com.ealva.ealvalog.util;
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import static java.util.FormattableFlags.ALTERNATE;
@@ -33,20 +34,11 @@ import java.util.Formatter;
  * Created by Eric A. Snell on 3/15/17.
  */
 public class FormattableStackTraceElement extends BaseFormattable {
-  private static final ThreadLocal<StringBuilder> threadLocalStringBuilder =
-      new ThreadLocal<StringBuilder>() {
-        @Override
-        protected StringBuilder initialValue() {
-          return new StringBuilder(1024);
-        }
-
-        @Override
-        public StringBuilder get() {
-          StringBuilder builder = super.get();
-          builder.setLength(0);
-          return builder;
-        }
-      };
+  private static final ObjectCache<StringBuilder> builderCache = new ObjectCache<StringBuilder>() {
+    @NotNull @Override protected StringBuilder newObject() {
+      return new StringBuilder(1024);
+    }
+  };
 
   private @Nullable StackTraceElement element;
 
@@ -63,11 +55,32 @@ public class FormattableStackTraceElement extends BaseFormattable {
                        final int flags,
                        final int width,
                        final int precision) {
+    final boolean upperCase = (flags & UPPERCASE) == UPPERCASE;
+    final StringBuilder builder = builderCache.acquire();
+    try {
+      builder.setLength(0);
+      appendTo(builder, element, flags, width, precision);
+      // never use the text as a format string, it may contain '%'
+      formatter.format("%s", upperCase ? builder.toString().toUpperCase() : builder);
+    } finally {
+      builderCache.release(builder);
+    }
+  }
+
+  /**
+   * Append {@code element} to {@code builder} as {@link #formatTo(Formatter, int, int, int)} would,
+   * except {@link java.util.FormattableFlags#UPPERCASE} is ignored. Used to format directly into a
+   * destination without going through a {@link Formatter}
+   */
+  public static void appendTo(final @NotNull StringBuilder builder,
+                              final @Nullable StackTraceElement element,
+                              final int flags,
+                              final int width,
+                              final int precision) {
     final boolean useAlternate = (flags & ALTERNATE) == ALTERNATE;
     final boolean leftJustify = (flags & LEFT_JUSTIFY) == LEFT_JUSTIFY;
-    final boolean upperCase = (flags & UPPERCASE) == UPPERCASE;
+    final int start = builder.length();
 
-    final StringBuilder builder = threadLocalStringBuilder.get();
     if (element != null) {
       if (useAlternate) {
         builder.append(element.getClassName())
@@ -76,18 +89,16 @@ public class FormattableStackTraceElement extends BaseFormattable {
       builder.append(element.getMethodName())
              .append(':')
              .append(element.getLineNumber());
-      if (precision != -1 && builder.length() + 2 > precision) {
-        final int amount = builder.length() + 3 - precision;
-        builder.delete(0, amount);
-        builder.insert(0, '…');
+      final int length = builder.length() - start;
+      if (precision != -1 && length + 2 > precision) {
+        final int amount = length + 3 - precision;
+        builder.delete(start, start + amount);
+        builder.insert(start, '…');
       }
-      builder.insert(0, '(');
+      builder.insert(start, '(');
       builder.append(')');
-    } else {
-      formatter.format("");
     }
-    maybePadAndJustify(width, leftJustify, builder);
-    formatter.format(upperCase ? builder.toString().toUpperCase() : builder.toString());
+    maybePadAndJustify(width, leftJustify, builder, start);
   }
 
   @SuppressWarnings("SameParameterValue")
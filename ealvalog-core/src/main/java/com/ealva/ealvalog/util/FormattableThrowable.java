@@ -38,20 +38,11 @@ import java.util.Formatter;
  */
 @SuppressWarnings("unused")
 public class FormattableThrowable extends BaseFormattable {
-  private static final ThreadLocal<StringBuilder> threadLocalStringBuilder =
-      new ThreadLocal<StringBuilder>() {
-        @Override
-        protected StringBuilder initialValue() {
-          return new StringBuilder(1024);
-        }
-
-        @Override
-        public StringBuilder get() {
-          StringBuilder builder = super.get();
-          builder.setLength(0);
-          return builder;
-        }
-      };
+  private static final ObjectCache<StringBuilder> builderCache = new ObjectCache<StringBuilder>() {
+    @NotNull @Override protected StringBuilder newObject() {
+      return new StringBuilder(1024);
+    }
+  };
 
   @SuppressWarnings("SameParameterValue")
   public static @NotNull FormattableThrowable make(final @Nullable Throwable throwable) {
@@ -69,26 +60,44 @@ public class FormattableThrowable extends BaseFormattable {
                        final int flags,
                        final int width,
                        final int precision) {
+    final boolean upperCase = (flags & UPPERCASE) == UPPERCASE;
+    final StringBuilder builder = builderCache.acquire();
+    try {
+      builder.setLength(0);
+      appendTo(builder, realThrowable, flags, width, precision);
+      // never use the text as a format string, it may contain '%'
+      formatter.format("%s", upperCase ? builder.toString().toUpperCase() : builder);
+    } finally {
+      builderCache.release(builder);
+    }
+  }
+
+  /**
+   * Append {@code throwable} to {@code builder} as {@link #formatTo(Formatter, int, int, int)}
+   * would, except {@link FormattableFlags#UPPERCASE} is ignored. Used to format directly into a
+   * destination without going through a {@link Formatter}
+   */
+  public static void appendTo(final @NotNull StringBuilder builder,
+                              final @Nullable Throwable throwable,
+                              final int flags,
+                              final int width,
+                              final int precision) {
     final boolean useAlternate = (flags & ALTERNATE) == ALTERNATE;
     final boolean leftJustify = (flags & LEFT_JUSTIFY) == LEFT_JUSTIFY;
-    final boolean upperCase = (flags & UPPERCASE) == UPPERCASE;
-    final StringBuilder builder = threadLocalStringBuilder.get();
+    final int start = builder.length();
 
-    if (realThrowable != null) {
+    if (throwable != null) {
       if (useAlternate) {
-        getStackTraceAsString(builder, realThrowable);
+        getStackTraceAsString(builder, throwable);
       } else {
-        builder.append(realThrowable.toString());
+        builder.append(throwable.toString());
       }
-      if (precision != -1 && builder.length() > precision) {
-        builder.setLength(precision - 1);
+      if (precision != -1 && builder.length() - start > precision) {
+        builder.setLength(start + precision - 1);
         builder.append('…');
       }
-    } else {
-      formatter.format("");
     }
-    maybePadAndJustify(width, leftJustify, builder);
-    formatter.format(upperCase ? builder.toString().toUpperCase() : builder.toString());
+    maybePadAndJustify(width, leftJustify, builder, start);
   }
 
   public @Nullable Throwable getRealThrowable() {
@@ -88,7 +88,7 @@ public class LogMessageFormatterImpl implements com.ealva.ealvalog.util.LogMessa
                                                                                @NotNull final String format,
                                                                                @NotNull final Object... args) {
     if (args.length > 0) {
-      formatter.format(locale, format, args);
+      MessageTemplate.get(format).format(formatter, builder, locale, args);
     } else {
       builder.append(format);
     }
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.util;
+
+/**
+ * How the format string and arguments given to
+ * {@link com.ealva.ealvalog.LogEntry#setFormatAndArgs(String, Object...)} are combined when the
+ * record is output. Each LoggerFactory has a switch selecting the style for the records of its
+ * Loggers. {@link com.ealva.ealvalog.LogEntry#format(String, Object...)} is always
+ * {@link #PRINTF}.
+ */
+public enum MessageStyle {
+  /** printf style "%s" conversions as defined by {@link java.util.Formatter} */
+  PRINTF,
+
+  /** SLF4J style "{}" anchors, see {@link Slf4jMessageFormatter} */
+  SLF4J
+}
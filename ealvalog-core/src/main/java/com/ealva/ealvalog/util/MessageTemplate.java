@@ -0,0 +1,601 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A printf style format string, as accepted by {@link Formatter}, parsed once into a sequence of
+ * segments. Literal text and the common conversions, "%s", "%d", "%x", "%X", and "%f" with the
+ * '-' and '0' flags, width, and precision, are appended directly to the destination. Any other
+ * specifier, or an argument type not handled directly, is formatted by the given
+ * {@link Formatter} one specifier at a time. The output, and any exception thrown, is the same as
+ * {@link Formatter#format(Locale, String, Object...)}.
+ * <p>
+ * Log format strings are typically constants, so templates are cached by {@link #get(String)}.
+ * The cache is bounded by {@link #setMaxCacheSize(int)} and is cleared if it would grow larger.
+ * <p>
+ * Instances are immutable and thread safe.
+ */
+public final class MessageTemplate {
+  /** The default maximum number of templates cached */
+  public static final int DEFAULT_MAX_CACHE_SIZE = 4096;
+  private static final Pattern SPECIFIER =
+      Pattern.compile("%(\\d+\\$)?([-#+ 0,(<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])");
+  /** Index of specifiers, such as "%-5%", which don't take an argument */
+  private static final int NO_ARGUMENT = Integer.MIN_VALUE;
+  private static final ConcurrentMap<String, MessageTemplate> cache = new ConcurrentHashMap<>();
+  private static volatile int maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+  private static volatile @NotNull Symbols symbols = new Symbols(Locale.ROOT);
+
+  private final @NotNull String format;
+  /** null if the format is malformed and should be handed to Formatter as a whole */
+  private final @Nullable Segment[] segments;
+
+  private MessageTemplate(final @NotNull String format, final @Nullable List<Segment> segments) {
+    this.format = format;
+    this.segments = segments == null ? null : segments.toArray(new Segment[0]);
+  }
+
+  /**
+   * Sets the maximum number of cached templates. Don't set this too low or templates will be
+   * parsed repeatedly.
+   *
+   * @param max the maximum number of templates to cache, 0 disables caching
+   *
+   * @return the new max size
+   */
+  @SuppressWarnings("unused")
+  public static int setMaxCacheSize(final int max) {
+    maxCacheSize = Math.max(0, max);
+    cache.clear();
+    return maxCacheSize;
+  }
+
+  @SuppressWarnings("unused")
+  public static int getMaxCacheSize() {
+    return maxCacheSize;
+  }
+
+  /**
+   * Get the cached template for {@code format}, parsing and caching it if necessary
+   *
+   * @param format a {@link Formatter} format string
+   *
+   * @return the template for {@code format}
+   */
+  public static @NotNull MessageTemplate get(final @NotNull String format) {
+    MessageTemplate template = cache.get(format);
+    if (template == null) {
+      template = compile(format);
+      final int max = maxCacheSize;
+      if (max > 0) {
+        if (cache.size() >= max) {
+          cache.clear();
+        }
+        cache.put(format, template);
+      }
+    }
+    return template;
+  }
+
+  /**
+   * Parse {@code format} into a template without caching it. Never throws for a malformed format,
+   * the exception {@link Formatter} would throw is instead thrown by
+   * {@link #format(Formatter, StringBuilder, Locale, Object...)}
+   *
+   * @param format a {@link Formatter} format string
+   *
+   * @return a new template
+   */
+  public static @NotNull MessageTemplate compile(final @NotNull String format) {
+    if (!isValid(format)) {
+      return new MessageTemplate(format, null);
+    }
+    final List<Segment> segments = new ArrayList<>();
+    final StringBuilder literal = new StringBuilder();
+    final Matcher matcher = SPECIFIER.matcher(format);
+    final int length = format.length();
+    int ordinaryIndex = -1;
+    int lastIndex = -1;
+    int i = 0;
+    while (i < length) {
+      final int percent = format.indexOf('%', i);
+      if (percent < 0) {
+        literal.append(format, i, length);
+        break;
+      }
+      literal.append(format, i, percent);
+      matcher.region(percent, length);
+      // isValid() ensures there's a match
+      matcher.lookingAt();
+      i = matcher.end();
+
+      final String spec = matcher.group();
+      final char conversion = matcher.group(6).charAt(0);
+      if ("%%".equals(spec)) {
+        literal.append('%');
+        continue;
+      } else if ("%n".equals(spec)) {
+        literal.append(System.lineSeparator());
+        continue;
+      }
+      addLiteral(segments, literal);
+      if (conversion == '%' || conversion == 'n') {
+        segments.add(new FormatterSegment(spec, spec, NO_ARGUMENT));
+        continue;
+      }
+
+      final String flagsGroup = matcher.group(2);
+      final String flags = flagsGroup == null ? "" : flagsGroup.replace("<", "");
+      final int index;
+      if (flagsGroup != null && flagsGroup.indexOf('<') >= 0) {
+        index = lastIndex;
+      } else if (matcher.group(1) != null) {
+        final String explicit = matcher.group(1);
+        final int position = Integer.parseInt(explicit.substring(0, explicit.length() - 1));
+        index = position == 0 ? ++ordinaryIndex : position - 1;
+      } else {
+        index = ++ordinaryIndex;
+      }
+      lastIndex = index;
+
+      final String widthGroup = matcher.group(3);
+      final String precisionGroup = matcher.group(4);
+      final String dateGroup = matcher.group(5);
+      final String unindexed = '%' +
+          flags +
+          (widthGroup == null ? "" : widthGroup) +
+          (precisionGroup == null ? "" : precisionGroup) +
+          (dateGroup == null ? "" : dateGroup) +
+          conversion;
+      final FormatterSegment fallback = new FormatterSegment(spec, unindexed, index);
+      if (dateGroup != null) {
+        segments.add(fallback);
+      } else {
+        final int width = widthGroup == null ? -1 : Integer.parseInt(widthGroup);
+        final int precision =
+            precisionGroup == null ? -1 : Integer.parseInt(precisionGroup.substring(1));
+        segments.add(makeSegment(flags, width, precision, conversion, fallback));
+      }
+    }
+    addLiteral(segments, literal);
+    return new MessageTemplate(format, segments);
+  }
+
+  public @NotNull String getFormat() {
+    return format;
+  }
+
+  /**
+   * Append {@code args} formatted according to this template to {@code builder}
+   *
+   * @param formatter a Formatter whose destination is {@code builder}, used for specifiers not
+   *                  handled directly
+   * @param builder   the destination
+   * @param locale    the locale to apply during formatting
+   * @param args      arguments referenced by the format specifiers
+   *
+   * @throws java.util.IllegalFormatException in the same circumstances
+   *                                          {@link Formatter#format(Locale, String, Object...)}
+   *                                          would
+   */
+  public void format(final @NotNull Formatter formatter,
+                     final @NotNull StringBuilder builder,
+                     final @NotNull Locale locale,
+                     final Object @NotNull ... args) {
+    format(formatter, builder, locale, args, args.length);
+  }
+
+  /**
+   * Append the first {@code argCount} of {@code args} formatted according to this template to
+   * {@code builder}. Elements of {@code args} past {@code argCount} are ignored, so a reused
+   * argument array need not be copied to its exact length.
+   *
+   * @see #format(Formatter, StringBuilder, Locale, Object...)
+   */
+  public void format(final @NotNull Formatter formatter,
+                     final @NotNull StringBuilder builder,
+                     final @NotNull Locale locale,
+                     final Object @NotNull [] args,
+                     final int argCount) {
+    final Segment[] segments = this.segments;
+    if (segments == null) {
+      formatter.format(locale,
+                       format,
+                       argCount == args.length ? args : Arrays.copyOf(args, argCount));
+    } else {
+      for (Segment segment : segments) {
+        segment.append(formatter, builder, locale, args, argCount);
+      }
+    }
+  }
+
+  @Override public String toString() {
+    return "MessageTemplate{" + format + '}';
+  }
+
+  /**
+   * Formatter parses the entire format string before formatting any argument, so formatting with
+   * no arguments reports a malformed format string without producing output. Anything other than
+   * a missing argument means the format is malformed.
+   */
+  private static boolean isValid(final @NotNull String format) {
+    try {
+      new Formatter(new StringBuilder(), Locale.ROOT).format(format);
+      return true;
+    } catch (MissingFormatArgumentException e) {
+      return true;
+    } catch (IllegalFormatException e) {
+      return false;
+    }
+  }
+
+  private static @NotNull Segment makeSegment(final @NotNull String flags,
+                                              final int width,
+                                              final int precision,
+                                              final char conversion,
+                                              final @NotNull FormatterSegment fallback) {
+    final boolean leftJustify = "-".equals(flags);
+    final boolean zeroPad = "0".equals(flags);
+    if (!flags.isEmpty() && !leftJustify && !zeroPad) {
+      return fallback;
+    }
+    switch (conversion) {
+      case 's':
+        return zeroPad ? fallback : new StringSegment(fallback, leftJustify, width, precision);
+      case 'd':
+        return new DecimalSegment(fallback, leftJustify, zeroPad, width);
+      case 'x':
+      case 'X':
+        return new HexSegment(fallback, leftJustify, zeroPad, width, conversion == 'X');
+      case 'f':
+        return new FloatSegment(fallback, leftJustify, zeroPad, width, precision == -1 ? 6 : precision);
+      default:
+        return fallback;
+    }
+  }
+
+  private static void addLiteral(final @NotNull List<Segment> segments,
+                                 final @NotNull StringBuilder literal) {
+    if (literal.length() > 0) {
+      segments.add(new LiteralSegment(literal.toString()));
+      literal.setLength(0);
+    }
+  }
+
+  private static @NotNull Symbols symbolsFor(final @NotNull Locale locale) {
+    Symbols current = symbols;
+    if (current.locale != locale) {
+      current = new Symbols(locale);
+      symbols = current;
+    }
+    return current;
+  }
+
+  /** Insert {@code count} of {@code c} at {@code offset}, appending if at the end */
+  private static void pad(final @NotNull StringBuilder builder,
+                          final int offset,
+                          final int count,
+                          final char c) {
+    if (offset == builder.length()) {
+      for (int i = 0; i < count; i++) {
+        builder.append(c);
+      }
+    } else {
+      for (int i = 0; i < count; i++) {
+        builder.insert(offset, c);
+      }
+    }
+  }
+
+  /**
+   * Justify the characters appended after {@code start}. If zero padding, zeros are inserted after
+   * {@code signEnd}
+   */
+  private static void justify(final @NotNull StringBuilder builder,
+                              final int start,
+                              final int signEnd,
+                              final boolean leftJustify,
+                              final boolean zeroPad,
+                              final char zero,
+                              final int width) {
+    final int padAmount = width - (builder.length() - start);
+    if (padAmount > 0) {
+      if (leftJustify) {
+        pad(builder, builder.length(), padAmount, ' ');
+      } else if (zeroPad) {
+        pad(builder, signEnd, padAmount, zero);
+      } else {
+        pad(builder, start, padAmount, ' ');
+      }
+    }
+  }
+
+  /** Locale dependent characters Formatter uses for numbers */
+  private static final class Symbols {
+    final @NotNull Locale locale;
+    final char zeroDigit;
+    final char decimalSeparator;
+
+    Symbols(final @NotNull Locale locale) {
+      final DecimalFormatSymbols dfs = DecimalFormatSymbols.getInstance(locale);
+      this.locale = locale;
+      this.zeroDigit = dfs.getZeroDigit();
+      this.decimalSeparator = dfs.getDecimalSeparator();
+    }
+  }
+
+  private static abstract class Segment {
+    abstract void append(@NotNull Formatter formatter,
+                         @NotNull StringBuilder builder,
+                         @NotNull Locale locale,
+                         Object @NotNull [] args,
+                         int argCount);
+  }
+
+  private static final class LiteralSegment extends Segment {
+    private final @NotNull String text;
+
+    LiteralSegment(final @NotNull String text) {
+      this.text = text;
+    }
+
+    @Override void append(final @NotNull Formatter formatter,
+                          final @NotNull StringBuilder builder,
+                          final @NotNull Locale locale,
+                          final Object @NotNull [] args,
+                          final int argCount) {
+      builder.append(text);
+    }
+  }
+
+  /**
+   * Formats a single specifier, with its argument index removed, using a Formatter
+   */
+  private static final class FormatterSegment extends Segment {
+    private final @NotNull String spec;
+    private final @NotNull String unindexed;
+    private final int index;
+
+    FormatterSegment(final @NotNull String spec, final @NotNull String unindexed, final int index) {
+      this.spec = spec;
+      this.unindexed = unindexed;
+      this.index = index;
+    }
+
+    @Override void append(final @NotNull Formatter formatter,
+                          final @NotNull StringBuilder builder,
+                          final @NotNull Locale locale,
+                          final Object @NotNull [] args,
+                          final int argCount) {
+      if (index == NO_ARGUMENT) {
+        formatter.format(locale, unindexed);
+      } else {
+        formatter.format(locale, unindexed, arg(args, argCount));
+      }
+    }
+
+    @Nullable Object arg(final Object @NotNull [] args, final int argCount) {
+      if (index < 0 || index >= argCount) {
+        throw new MissingFormatArgumentException(spec);
+      }
+      return args[index];
+    }
+  }
+
+  private static final class StringSegment extends Segment {
+    private final @NotNull FormatterSegment fallback;
+    private final boolean leftJustify;
+    private final int width;
+    private final int precision;
+
+    StringSegment(final @NotNull FormatterSegment fallback,
+                  final boolean leftJustify,
+                  final int width,
+                  final int precision) {
+      this.fallback = fallback;
+      this.leftJustify = leftJustify;
+      this.width = width;
+      this.precision = precision;
+    }
+
+    @Override void append(final @NotNull Formatter formatter,
+                          final @NotNull StringBuilder builder,
+                          final @NotNull Locale locale,
+                          final Object @NotNull [] args,
+                          final int argCount) {
+      final Object arg = fallback.arg(args, argCount);
+      if (arg instanceof Formattable) {
+        fallback.append(formatter, builder, locale, args, argCount);
+        return;
+      }
+      final String text = String.valueOf(arg);
+      final int length = precision != -1 && precision < text.length() ? precision : text.length();
+      final int start = builder.length();
+      builder.append(text, 0, length);
+      justify(builder, start, start, leftJustify, false, ' ', width);
+    }
+  }
+
+  private static final class DecimalSegment extends Segment {
+    private final @NotNull FormatterSegment fallback;
+    private final boolean leftJustify;
+    private final boolean zeroPad;
+    private final int width;
+
+    DecimalSegment(final @NotNull FormatterSegment fallback,
+                   final boolean leftJustify,
+                   final boolean zeroPad,
+                   final int width) {
+      this.fallback = fallback;
+      this.leftJustify = leftJustify;
+      this.zeroPad = zeroPad;
+      this.width = width;
+    }
+
+    @Override void append(final @NotNull Formatter formatter,
+                          final @NotNull StringBuilder builder,
+                          final @NotNull Locale locale,
+                          final Object @NotNull [] args,
+                          final int argCount) {
+      final Object arg = fallback.arg(args, argCount);
+      final long value;
+      if (arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte) {
+        value = ((Number)arg).longValue();
+      } else {
+        fallback.append(formatter, builder, locale, args, argCount);
+        return;
+      }
+      final Symbols symbols = symbolsFor(locale);
+      if (symbols.zeroDigit != '0') {
+        fallback.append(formatter, builder, locale, args, argCount);
+        return;
+      }
+      final int start = builder.length();
+      builder.append(value);
+      justify(builder, start, value < 0 ? start + 1 : start, leftJustify, zeroPad, '0', width);
+    }
+  }
+
+  private static final class HexSegment extends Segment {
+    private final @NotNull FormatterSegment fallback;
+    private final boolean leftJustify;
+    private final boolean zeroPad;
+    private final int width;
+    private final boolean upperCase;
+
+    HexSegment(final @NotNull FormatterSegment fallback,
+               final boolean leftJustify,
+               final boolean zeroPad,
+               final int width,
+               final boolean upperCase) {
+      this.fallback = fallback;
+      this.leftJustify = leftJustify;
+      this.zeroPad = zeroPad;
+      this.width = width;
+      this.upperCase = upperCase;
+    }
+
+    @Override void append(final @NotNull Formatter formatter,
+                          final @NotNull StringBuilder builder,
+                          final @NotNull Locale locale,
+                          final Object @NotNull [] args,
+                          final int argCount) {
+      final Object arg = fallback.arg(args, argCount);
+      final String hex;
+      if (arg instanceof Integer) {
+        hex = Integer.toHexString((Integer)arg);
+      } else if (arg instanceof Long) {
+        hex = Long.toHexString((Long)arg);
+      } else {
+        fallback.append(formatter, builder, locale, args, argCount);
+        return;
+      }
+      final int start = builder.length();
+      if (upperCase) {
+        for (int i = 0, length = hex.length(); i < length; i++) {
+          builder.append(Character.toUpperCase(hex.charAt(i)));
+        }
+      } else {
+        builder.append(hex);
+      }
+      justify(builder, start, start, leftJustify, zeroPad, '0', width);
+    }
+  }
+
+  /**
+   * Formatter rounds the shortest decimal representation of the value, as produced by
+   * {@link Double#toString(double)}, half up to the precision. Float arguments are widened to
+   * double first.
+   */
+  private static final class FloatSegment extends Segment {
+    private final @NotNull FormatterSegment fallback;
+    private final boolean leftJustify;
+    private final boolean zeroPad;
+    private final int width;
+    private final int precision;
+
+    FloatSegment(final @NotNull FormatterSegment fallback,
+                 final boolean leftJustify,
+                 final boolean zeroPad,
+                 final int width,
+                 final int precision) {
+      this.fallback = fallback;
+      this.leftJustify = leftJustify;
+      this.zeroPad = zeroPad;
+      this.width = width;
+      this.precision = precision;
+    }
+
+    @Override void append(final @NotNull Formatter formatter,
+                          final @NotNull StringBuilder builder,
+                          final @NotNull Locale locale,
+                          final Object @NotNull [] args,
+                          final int argCount) {
+      final Object arg = fallback.arg(args, argCount);
+      final double value;
+      if (arg instanceof Double || arg instanceof Float) {
+        value = ((Number)arg).doubleValue();
+      } else {
+        fallback.append(formatter, builder, locale, args, argCount);
+        return;
+      }
+      final Symbols symbols = symbolsFor(locale);
+      if (Double.isNaN(value) || Double.isInfinite(value) || symbols.zeroDigit != '0') {
+        fallback.append(formatter, builder, locale, args, argCount);
+        return;
+      }
+      final int start = builder.length();
+      final boolean negative = Double.compare(value, 0.0) < 0;
+      if (negative) {
+        builder.append('-');
+      }
+      final String digits = new BigDecimal(Double.toString(Math.abs(value)))
+          .setScale(precision, RoundingMode.HALF_UP)
+          .toPlainString();
+      final int dot = digits.indexOf('.');
+      if (dot < 0) {
+        builder.append(digits);
+      } else {
+        builder.append(digits, 0, dot)
+               .append(symbols.decimalSeparator)
+               .append(digits, dot + 1, digits.length());
+      }
+      justify(builder, start, negative ? start + 1 : start, leftJustify, zeroPad, '0', width);
+    }
+  }
+}
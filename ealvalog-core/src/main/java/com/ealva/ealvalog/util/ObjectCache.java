@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+
+/**
+ * Caches an object which is reused across log calls, such as a builder or formatter. Depending on
+ * the {@link CacheStrategy} and the calling thread, the object comes from a thread local or from a
+ * {@link SharedPool}. Every {@link #acquire()} must be paired with a {@link #release(Object)} on
+ * the same thread, typically in a finally block. Releasing does nothing for thread locals.
+ * <p>
+ * Virtual threads are detected at runtime so this works unchanged on JVMs without them, where
+ * {@link CacheStrategy#AUTO} always uses thread locals. Thread.isVirtual is found with plain
+ * reflection, as java.lang.invoke is not available on Android before API 26.
+ *
+ * @param <T> the type of cached object
+ */
+public abstract class ObjectCache<T> {
+  private static final Object[] NO_ARGS = new Object[0];
+  private static final @Nullable Method IS_VIRTUAL = findIsVirtual();
+  private static volatile CacheStrategy strategy = CacheStrategy.AUTO;
+
+  private final ThreadLocal<T> threadLocal = new ThreadLocal<T>() {
+    @Override protected T initialValue() {
+      return newObject();
+    }
+  };
+  private final SharedPool<T> sharedPool = new SharedPool<>();
+
+  /**
+   * Set how reusable objects are cached. This should be set before logging begins, as an object
+   * acquired under one strategy is released under the same strategy.
+   */
+  public static void setStrategy(final @NotNull CacheStrategy cacheStrategy) {
+    strategy = cacheStrategy;
+  }
+
+  public static @NotNull CacheStrategy getStrategy() {
+    return strategy;
+  }
+
+  /**
+   * @return true if objects for the current thread should come from a shared pool rather than a
+   * thread local
+   */
+  public static boolean useSharedPool() {
+    switch (strategy) {
+      case THREAD_LOCAL:
+        return false;
+      case SHARED:
+        return true;
+      default:
+        return isVirtual(Thread.currentThread());
+    }
+  }
+
+  /** @return true if {@code thread} is a virtual thread, always false if the JVM has none */
+  public static boolean isVirtual(final @NotNull Thread thread) {
+    if (IS_VIRTUAL == null) {
+      return false;
+    }
+    try {
+      return (Boolean)IS_VIRTUAL.invoke(thread, NO_ARGS);
+    } catch (Throwable e) {
+      return false;
+    }
+  }
+
+  /** @return a new object to be cached */
+  protected abstract @NotNull T newObject();
+
+  /**
+   * @return the object to use for the current call, which must be passed to
+   * {@link #release(Object)} when the call completes
+   */
+  public @NotNull T acquire() {
+    if (useSharedPool()) {
+      final T item = sharedPool.poll();
+      return item != null ? item : newObject();
+    }
+    return threadLocal.get();
+  }
+
+  /** Make {@code item}, obtained from {@link #acquire()}, available for reuse */
+  public void release(final @NotNull T item) {
+    if (useSharedPool()) {
+      sharedPool.offer(item);
+    }
+  }
+
+  private static @Nullable Method findIsVirtual() {
+    try {
+      return Thread.class.getMethod("isVirtual");
+    } catch (Throwable e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed number of slots holding objects available to any thread. {@link #poll()} atomically
+ * takes an object out of a slot so it is never handed to two threads at once, and
+ * {@link #offer(Object)} puts it back if there's an empty slot. Threads start scanning at a slot
+ * derived from their id to spread contention.
+ *
+ * @param <T> the type of pooled object
+ */
+public final class SharedPool<T> {
+  private static final int DEFAULT_SIZE =
+      Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+  private final AtomicReferenceArray<T> slots;
+  private final int mask;
+
+  /** Create a pool sized to twice the number of processors, rounded up to a power of 2 */
+  public SharedPool() {
+    this(DEFAULT_SIZE);
+  }
+
+  /**
+   * @param size number of slots, rounded up to a power of 2
+   */
+  public SharedPool(final int size) {
+    final int slotCount = size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    slots = new AtomicReferenceArray<>(slotCount);
+    mask = slotCount - 1;
+  }
+
+  /** @return an object removed from the pool, or null if the pool is empty */
+  public @Nullable T poll() {
+    final int start = startIndex();
+    for (int i = 0, size = slots.length(); i < size; i++) {
+      final int index = (start + i) & mask;
+      if (slots.get(index) != null) {
+        final T item = slots.getAndSet(index, null);
+        if (item != null) {
+          return item;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Return {@code item} to the pool. The caller must not use {@code item} after it is offered
+   *
+   * @return true if pooled, false if the pool is full and {@code item} should be discarded
+   */
+  public boolean offer(final @NotNull T item) {
+    final int start = startIndex();
+    for (int i = 0, size = slots.length(); i < size; i++) {
+      final int index = (start + i) & mask;
+      if (slots.get(index) == null && slots.compareAndSet(index, null, item)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Empty the pool */
+  public void clear() {
+    for (int i = 0, size = slots.length(); i < size; i++) {
+      slots.set(i, null);
+    }
+  }
+
+  private int startIndex() {
+    final long id = Thread.currentThread().getId();
+    return (int)(id ^ (id >>> 32)) & mask;
+  }
+}
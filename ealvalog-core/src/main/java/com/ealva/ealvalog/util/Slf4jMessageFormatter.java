@@ -0,0 +1,244 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A {@link LogMessageFormatter} which substitutes arguments for "{}" anchors, as SLF4J does,
+ * instead of using {@link java.util.Formatter}. The format is scanned once and each argument is
+ * appended directly to the contained {@link StringBuilder}.
+ * <ul>
+ * <li>"\{}" escapes an anchor and is output as "{}"</li>
+ * <li>"\\{}" is output as "\" followed by the argument</li>
+ * <li>Arrays are output as "[a, b, c]", with "[...]" marking a self reference</li>
+ * <li>Anchors without an argument are output as is, extra arguments are ignored</li>
+ * </ul>
+ * The locale is ignored.
+ */
+public class Slf4jMessageFormatter implements LogMessageFormatter {
+  private static final String ANCHOR = "{}";
+  private static final char ESCAPE = '\\';
+
+  private final StringBuilder builder;
+
+  @SuppressWarnings("WeakerAccess") public Slf4jMessageFormatter() {
+    builder = new StringBuilder(1024);
+  }
+
+  /**
+   * Append {@code format}, with the first {@code argCount} {@code args} substituted for "{}"
+   * anchors, to {@code builder}
+   */
+  public static void appendTo(final @NotNull StringBuilder builder,
+                              final @NotNull String format,
+                              final @Nullable Object @NotNull [] args,
+                              final int argCount) {
+    int i = 0;
+    int argIndex = 0;
+    final int count = Math.min(argCount, args.length);
+    while (argIndex < count) {
+      final int anchor = format.indexOf(ANCHOR, i);
+      if (anchor < 0) {
+        break;
+      }
+      if (isEscaped(format, anchor)) {
+        if (isEscaped(format, anchor - 1)) {
+          // escaped escape, output one escape character and the arg
+          builder.append(format, i, anchor - 1);
+          appendArg(builder, args[argIndex++]);
+          i = anchor + 2;
+        } else {
+          builder.append(format, i, anchor - 1).append('{');
+          i = anchor + 1;
+        }
+      } else {
+        builder.append(format, i, anchor);
+        appendArg(builder, args[argIndex++]);
+        i = anchor + 2;
+      }
+    }
+    builder.append(format, i, format.length());
+  }
+
+  @NotNull @Override public Slf4jMessageFormatter reset() {
+    builder.setLength(0);
+    return this;
+  }
+
+  @NotNull @Override public LogMessageFormatter append(@NotNull final String str) {
+    builder.append(str);
+    return this;
+  }
+
+  @NotNull @Override public LogMessageFormatter append(boolean b) {
+    builder.append(b);
+    return this;
+  }
+
+  @NotNull @Override public LogMessageFormatter append(final char c) {
+    builder.append(c);
+    return this;
+  }
+
+  @NotNull @Override public LogMessageFormatter append(int i) {
+    builder.append(i);
+    return this;
+  }
+
+  @NotNull @Override public LogMessageFormatter append(long lng) {
+    builder.append(lng);
+    return this;
+  }
+
+  @NotNull @Override public LogMessageFormatter append(float f) {
+    builder.append(f);
+    return this;
+  }
+
+  @NotNull @Override public LogMessageFormatter append(double d) {
+    builder.append(d);
+    return this;
+  }
+
+  @NotNull @Override public LogMessageFormatter append(@NotNull final String format,
+                                                       @NotNull final Object... args) {
+    appendTo(builder, format, args, args.length);
+    return this;
+  }
+
+  @NotNull @Override public LogMessageFormatter append(@NotNull final Locale locale,
+                                                       @NotNull final String format,
+                                                       @NotNull final Object... args) {
+    appendTo(builder, format, args, args.length);
+    return this;
+  }
+
+  /**
+   * Format {@code format} with the first {@code argCount} of {@code args}, for when the args array
+   * may be larger than the actual number of arguments
+   *
+   * @return self
+   */
+  public @NotNull Slf4jMessageFormatter append(final @NotNull String format,
+                                               final @Nullable Object @NotNull [] args,
+                                               final int argCount) {
+    appendTo(builder, format, args, argCount);
+    return this;
+  }
+
+  @Override public Appendable append(final CharSequence csq) {
+    builder.append(csq);
+    return this;
+  }
+
+  @Override public Appendable append(final CharSequence csq, final int start, final int end) {
+    builder.append(csq, start, end);
+    return this;
+  }
+
+  @Override public String toString() {
+    return builder.toString();
+  }
+
+  private static boolean isEscaped(final @NotNull String format, final int index) {
+    return index > 0 && format.charAt(index - 1) == ESCAPE;
+  }
+
+  private static void appendArg(final @NotNull StringBuilder builder, final @Nullable Object arg) {
+    if (arg == null) {
+      builder.append("null");
+    } else if (arg instanceof String) {
+      builder.append((String)arg);
+    } else if (arg instanceof Integer) {
+      builder.append(((Integer)arg).intValue());
+    } else if (arg instanceof Long) {
+      builder.append(((Long)arg).longValue());
+    } else if (arg instanceof Boolean) {
+      builder.append(((Boolean)arg).booleanValue());
+    } else if (arg instanceof Character) {
+      builder.append(((Character)arg).charValue());
+    } else if (arg.getClass().isArray()) {
+      appendArray(builder, arg, null);
+    } else {
+      appendObject(builder, arg);
+    }
+  }
+
+  private static void appendObject(final @NotNull StringBuilder builder, final @NotNull Object arg) {
+    final int start = builder.length();
+    try {
+      builder.append(arg.toString());
+    } catch (Throwable t) {
+      builder.setLength(start);
+      builder.append("[FAILED toString()]");
+    }
+  }
+
+  private static void appendArray(final @NotNull StringBuilder builder,
+                                  final @NotNull Object array,
+                                  @Nullable Map<Object, Object> seen) {
+    if (array instanceof Object[]) {
+      if (seen == null) {
+        seen = new IdentityHashMap<>();
+      }
+      if (seen.put(array, array) != null) {
+        builder.append("[...]");
+        return;
+      }
+      final Object[] objects = (Object[])array;
+      builder.append('[');
+      for (int i = 0; i < objects.length; i++) {
+        if (i > 0) {
+          builder.append(", ");
+        }
+        final Object element = objects[i];
+        if (element != null && element.getClass().isArray()) {
+          appendArray(builder, element, seen);
+        } else {
+          appendArg(builder, element);
+        }
+      }
+      builder.append(']');
+      seen.remove(array);
+    } else if (array instanceof int[]) {
+      builder.append(Arrays.toString((int[])array));
+    } else if (array instanceof long[]) {
+      builder.append(Arrays.toString((long[])array));
+    } else if (array instanceof byte[]) {
+      builder.append(Arrays.toString((byte[])array));
+    } else if (array instanceof short[]) {
+      builder.append(Arrays.toString((short[])array));
+    } else if (array instanceof char[]) {
+      builder.append(Arrays.toString((char[])array));
+    } else if (array instanceof boolean[]) {
+      builder.append(Arrays.toString((boolean[])array));
+    } else if (array instanceof float[]) {
+      builder.append(Arrays.toString((float[])array));
+    } else {
+      builder.append(Arrays.toString((double[])array));
+    }
+  }
+}
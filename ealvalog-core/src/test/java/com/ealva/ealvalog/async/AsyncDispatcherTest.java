@@ -0,0 +1,250 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.async;
+
+import com.ealva.ealvalog.LogEntry;
+import com.ealva.ealvalog.LogLevel;
+import com.ealva.ealvalog.Logger;
+import com.ealva.ealvalog.LoggerFactory;
+import com.ealva.ealvalog.core.ExtLogRecord;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+public class AsyncDispatcherTest {
+  private static final String BLOCK = "block";
+
+  @Mock Logger logger;
+  @Mock LoggerFactory factory;
+
+  /** Copies of logged entries, as the dispatcher reuses its records once logged */
+  private final List<LogEntry> received = new CopyOnWriteArrayList<>();
+  private final List<LogEntry> logged = new CopyOnWriteArrayList<>();
+  private final List<Thread> receivedOn = new CopyOnWriteArrayList<>();
+  private final CountDownLatch blocked = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private AsyncDispatcher dispatcher;
+
+  @Before
+  public void setup() {
+    MockitoAnnotations.initMocks(this);
+    ExtLogRecord.clearCachedRecord();
+    doAnswer(invocation -> {
+      final LogEntry entry = invocation.getArgument(0);
+      if (BLOCK.equals(entry.getMessage())) {
+        blocked.countDown();
+        release.await(10, TimeUnit.SECONDS);
+      } else {
+        logged.add(entry);
+        received.add(((ExtLogRecord)entry).copyOf());
+        receivedOn.add(Thread.currentThread());
+      }
+      return null;
+    }).when(logger).logImmediate(any());
+  }
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    if (dispatcher != null) {
+      dispatcher.close();
+    }
+  }
+
+  @Test
+  public void testRecordsAreCopiedAndLoggedOnDispatchThread() {
+    dispatcher = new AsyncDispatcher();
+    for (int i = 0; i < 10; i++) {
+      try (ExtLogRecord record = record(LogLevel.INFO)) {
+        record.setFormatAndArgs("%d", i);
+        dispatcher.dispatch(logger, record);
+      }
+    }
+    final ExtLogRecord last = record(LogLevel.INFO);
+    last.close();
+    dispatcher.close();
+
+    assertThat(received.size(), is(10));
+    for (int i = 0; i < 10; i++) {
+      final ExtLogRecord record = (ExtLogRecord)received.get(i);
+      assertThat(logged.get(i), is(not(sameInstance(last))));
+      assertThat(record.getMessage(), is("%d"));
+      assertThat(record.getParameterCount(), is(1));
+      assertThat(record.getParameters()[0], is(i));
+      assertThat(receivedOn.get(i), is(not(sameInstance(Thread.currentThread()))));
+    }
+  }
+
+  @Test
+  public void testLogsOnCallerAfterClose() {
+    dispatcher = new AsyncDispatcher();
+    dispatcher.close();
+    try (ExtLogRecord record = record(LogLevel.INFO)) {
+      record.append("msg");
+      dispatcher.dispatch(logger, record);
+      assertThat(logged.get(0), is(sameInstance(record)));
+      assertThat(receivedOn.get(0), is(sameInstance(Thread.currentThread())));
+    }
+  }
+
+  @Test
+  public void testSlotRecordsAreReused() {
+    dispatcher = new AsyncDispatcher(2);
+    for (int i = 0; i < 20; i++) {
+      log(LogLevel.INFO, Integer.toString(i));
+    }
+    dispatcher.close();
+
+    assertThat(received.size(), is(20));
+    for (int i = 0; i < 20; i++) {
+      assertThat(received.get(i).getMessage(), is(Integer.toString(i)));
+    }
+    // a record per slot plus the background thread's spare
+    final Set<LogEntry> records = Collections.newSetFromMap(new IdentityHashMap<>());
+    records.addAll(logged);
+    assertThat(records.size(), is(lessThanOrEqualTo(3)));
+  }
+
+  @Test
+  public void testErrorDoesNotStopDispatchThread() {
+    final Thread.UncaughtExceptionHandler saved = Thread.getDefaultUncaughtExceptionHandler();
+    final List<Throwable> uncaught = new CopyOnWriteArrayList<>();
+    Thread.setDefaultUncaughtExceptionHandler((thread, e) -> uncaught.add(e));
+    try {
+      dispatcher = new AsyncDispatcher(2);
+      final Logger failing = Mockito.mock(Logger.class);
+      doThrow(new AssertionError("boom")).when(failing).logImmediate(any());
+      try (ExtLogRecord record = record(LogLevel.INFO)) {
+        record.append("fails");
+        dispatcher.dispatch(failing, record);
+      }
+      log(LogLevel.INFO, "0", "1", "2", "3");
+      dispatcher.close();
+
+      assertThat(messages(), contains("0", "1", "2", "3"));
+      assertThat(receivedOn.get(3), is(not(sameInstance(Thread.currentThread()))));
+      assertThat(uncaught.size(), is(1));
+    } finally {
+      Thread.setDefaultUncaughtExceptionHandler(saved);
+    }
+  }
+
+  @Test
+  public void testDropBelowLevel() throws InterruptedException {
+    dispatcher = new AsyncDispatcher(4, WaitStrategy.PARK, OverflowPolicy.DROP_BELOW_LEVEL,
+                                     LogLevel.WARN);
+    block();
+    log(LogLevel.INFO, "0", "1", "2", "3");
+    assertThat(dispatcher.getQueueDepth(), is(4));
+    log(LogLevel.DEBUG, "dropped");
+    log(LogLevel.INFO, "dropped");
+    assertThat(dispatcher.getDroppedCount(), is(2L));
+    release.countDown();
+    dispatcher.close();
+    assertThat(messages(), contains("0", "1", "2", "3"));
+  }
+
+  @Test
+  public void testDropOldest() throws InterruptedException {
+    dispatcher = new AsyncDispatcher(4, WaitStrategy.YIELD, OverflowPolicy.DROP_OLDEST);
+    block();
+    log(LogLevel.DEBUG, "0", "1", "2", "3", "4", "5");
+    assertThat(dispatcher.getDroppedCount(), is(2L));
+    release.countDown();
+    dispatcher.close();
+    assertThat(messages(), contains("2", "3", "4", "5"));
+  }
+
+  @Test
+  public void testPriorityQueueBypassesBacklog() throws InterruptedException {
+    dispatcher = new AsyncDispatcher(4, WaitStrategy.SPIN, OverflowPolicy.DROP_OLDEST);
+    block();
+    log(LogLevel.DEBUG, "0", "1", "2", "3", "4");
+    log(LogLevel.ERROR, "error");
+    log(LogLevel.CRITICAL, "critical");
+    assertThat(dispatcher.getPriorityQueueDepth(), is(2));
+    release.countDown();
+    dispatcher.close();
+    assertThat(messages(), contains("error", "critical", "1", "2", "3", "4"));
+    assertThat(dispatcher.getDroppedCount(), is(1L));
+  }
+
+  @Test
+  public void testFactoryWrapsLoggers() {
+    when(factory.get("name")).thenReturn(logger);
+    dispatcher = new AsyncDispatcher();
+    final AsyncLoggerFactory asyncFactory = new AsyncLoggerFactory(factory, dispatcher);
+    final AsyncLogger asyncLogger = asyncFactory.get("name");
+    assertThat(asyncLogger.getDelegate(), is(sameInstance(logger)));
+    assertThat(asyncFactory.get("name"), is(sameInstance(asyncLogger)));
+    try (ExtLogRecord record = record(LogLevel.WARN)) {
+      record.append("msg");
+      asyncLogger.logImmediate(record);
+    }
+    asyncFactory.close();
+    assertThat(messages(), contains("msg"));
+    assertThat(dispatcher.isClosed(), is(true));
+  }
+
+  private void block() throws InterruptedException {
+    log(LogLevel.INFO, BLOCK);
+    assertThat(blocked.await(10, TimeUnit.SECONDS), is(true));
+  }
+
+  private void log(LogLevel level, String... messages) {
+    for (String message : messages) {
+      try (ExtLogRecord record = record(level)) {
+        record.append(message);
+        dispatcher.dispatch(logger, record);
+      }
+    }
+  }
+
+  private List<String> messages() {
+    return received.stream().map(LogEntry::getMessage).collect(Collectors.toList());
+  }
+
+  private static ExtLogRecord record(LogLevel level) {
+    return ExtLogRecord.get("fqcn", level, "name", null, null, null, null);
+  }
+}
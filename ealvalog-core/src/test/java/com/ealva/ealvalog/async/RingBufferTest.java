@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.async;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class RingBufferTest {
+
+  @Test
+  public void testCapacityRoundedToPowerOf2() {
+    assertThat(new RingBuffer<String, String>(1).getCapacity(), is(1));
+    assertThat(new RingBuffer<String, String>(5).getCapacity(), is(8));
+    assertThat(new RingBuffer<String, String>(1024).getCapacity(), is(1024));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroCapacity() {
+    new RingBuffer<String, String>(0);
+  }
+
+  @Test
+  public void testFifoAcrossLaps() {
+    final RingBuffer<String, Integer> buffer = new RingBuffer<>(4);
+    final List<Integer> received = new ArrayList<>();
+    final RingBuffer.Sink<String, Integer> sink = (target, element) -> received.add(element);
+    int next = 0;
+    for (int lap = 0; lap < 3; lap++) {
+      for (int i = 0; i < 4; i++) {
+        assertThat(buffer.offer("target", next++), is(true));
+      }
+      assertThat(buffer.offer("target", next), is(false));
+      assertThat(buffer.getSize(), is(4));
+      while (buffer.poll(sink)) {
+      }
+      assertThat(buffer.isEmpty(), is(true));
+    }
+    assertThat(received, contains(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11));
+  }
+
+  @Test
+  public void testTranslatorRefillsSpare() {
+    final RingBuffer<String, StringBuilder> buffer = new RingBuffer<>(2);
+    final List<String> received = new ArrayList<>();
+    final RingBuffer.Sink<String, StringBuilder> sink =
+        (target, element) -> received.add(element.toString());
+    final RingBuffer.Translator<String, StringBuilder> translator = (held, source) -> {
+      final StringBuilder builder = held == null ? new StringBuilder() : held;
+      builder.setLength(0);
+      return builder.append(source);
+    };
+    final StringBuilder spare = new StringBuilder();
+
+    assertThat(buffer.offer("target", "first", translator), is(true));
+    assertThat(buffer.offer("target", "second", translator), is(true));
+    assertThat(buffer.offer("target", "full", translator), is(false));
+    assertThat(buffer.poll(sink, spare), is(true));
+    assertThat(buffer.poll(sink), is(true));
+    // the first slot now holds the spare, which is refilled rather than replaced
+    assertThat(buffer.offer("target", "third", translator), is(true));
+    final List<StringBuilder> polled = new ArrayList<>();
+    assertThat(buffer.poll((target, element) -> polled.add(element), null), is(true));
+
+    assertThat(received, contains("first", "second"));
+    assertThat(polled.get(0), is(sameInstance(spare)));
+    assertThat(polled.get(0).toString(), is("third"));
+  }
+
+  @Test
+  public void testConcurrentProducers() throws InterruptedException {
+    final int producers = 4;
+    final int perProducer = 10_000;
+    final RingBuffer<String, Integer> buffer = new RingBuffer<>(64);
+    final long[] sums = new long[1];
+    final int[] count = new int[1];
+    final RingBuffer.Sink<String, Integer> sink = (target, element) -> {
+      sums[0] += element;
+      count[0]++;
+    };
+    final List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      final Thread thread = new Thread(() -> {
+        for (int i = 1; i <= perProducer; i++) {
+          while (!buffer.offer("target", i)) {
+            Thread.yield();
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    while (count[0] < producers * perProducer) {
+      if (!buffer.poll(sink)) {
+        Thread.yield();
+      }
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(sums[0], is((long)producers * perProducer * (perProducer + 1) / 2));
+    assertThat(buffer.isEmpty(), is(true));
+  }
+}
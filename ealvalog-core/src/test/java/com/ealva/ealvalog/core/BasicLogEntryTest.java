@@ -0,0 +1,251 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.core;
+
+import com.ealva.ealvalog.LogEntry;
+import com.ealva.ealvalog.LogLevel;
+import com.ealva.ealvalog.Marker;
+import com.ealva.ealvalog.Markers;
+import com.ealva.ealvalog.util.CacheStrategy;
+import com.ealva.ealvalog.util.MessageStyle;
+import com.ealva.ealvalog.util.ObjectCache;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+
+/**
+ * Test {@link BasicLogEntry} reuse, copying, and adapting to a LogRecord
+ */
+public class BasicLogEntryTest {
+  private static @NotNull final String LOGGER_FQCN = "com.acme.loggers.TheLogger";
+  private static @NotNull final String LOGGER_NAME = "LoggerName";
+
+  @Before
+  public void setup() {
+    BasicLogEntry.clearCachedEntry();
+    ExtLogRecord.clearCachedRecord();
+  }
+
+  @Test
+  public void testGetReusesClosedEntry() {
+    final Marker marker = Markers.INSTANCE.get("marker");
+    final Throwable throwable = new RuntimeException();
+    final BasicLogEntry first = BasicLogEntry.get(LOGGER_FQCN, LogLevel.ERROR, LOGGER_NAME, marker,
+                                                  throwable, null, null);
+    assertThat(first.getLogLevel(), is(LogLevel.ERROR));
+    assertThat(first.getLoggerName(), is(LOGGER_NAME));
+    assertThat(first.getLoggerFQCN(), is(LOGGER_FQCN));
+    assertThat(first.getMarker(), is(marker));
+    assertThat(first.getThrown(), is(throwable));
+    assertThat(first.getThreadName(), is(Thread.currentThread().getName()));
+    final long firstSequence = first.getSequenceNumber();
+    first.close();
+
+    final BasicLogEntry second = BasicLogEntry.get(LOGGER_FQCN, LogLevel.WARN, "Other", null, null,
+                                                   null, null);
+    assertThat(second, is(sameInstance(first)));
+    assertThat(second.getLogLevel(), is(LogLevel.WARN));
+    assertThat(second.getMessage(), is(""));
+    assertThat(second.getSequenceNumber(), is(not(firstSequence)));
+
+    final BasicLogEntry nested = BasicLogEntry.get(LOGGER_FQCN, LogLevel.WARN, "Other", null, null,
+                                                   null, null);
+    assertThat(nested, is(not(sameInstance(second))));
+  }
+
+  @Test
+  public void testNestedEntriesArePooled() {
+    final BasicLogEntry outer = BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME, null,
+                                                  null, null, null);
+    final BasicLogEntry inner = BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME, null,
+                                                  null, null, null);
+    assertThat(inner, is(not(sameInstance(outer))));
+    inner.close();
+    outer.close();
+
+    final BasicLogEntry outerAgain = BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME,
+                                                       null, null, null, null);
+    final BasicLogEntry innerAgain = BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME,
+                                                       null, null, null, null);
+    assertThat(outerAgain, is(sameInstance(outer)));
+    assertThat(innerAgain, is(sameInstance(inner)));
+    innerAgain.close();
+    outerAgain.close();
+  }
+
+  @Test
+  public void testSharedStrategyReusesClosedEntries() {
+    ObjectCache.setStrategy(CacheStrategy.SHARED);
+    try {
+      final BasicLogEntry outer = BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME, null,
+                                                    null, null, null);
+      final BasicLogEntry inner = BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME, null,
+                                                    null, null, null);
+      assertThat(inner, is(not(sameInstance(outer))));
+      outer.close();
+      outer.close(); // a second close must not pool the entry twice
+
+      final BasicLogEntry again = BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME, null,
+                                                    null, null, null);
+      final BasicLogEntry another = BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME,
+                                                      null, null, null, null);
+      assertThat(again, is(sameInstance(outer)));
+      assertThat(another, is(not(sameInstance(outer))));
+      another.close();
+      again.close();
+      inner.close();
+    } finally {
+      ObjectCache.setStrategy(CacheStrategy.AUTO);
+      BasicLogEntry.clearCachedEntry();
+    }
+  }
+
+  @Test
+  public void testPoolDepthExceeded() {
+    final int depth = RecordPool.getMaxDepth();
+    final BasicLogEntry[] entries = new BasicLogEntry[depth + 1];
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME, null, null, null,
+                                     null);
+    }
+    for (int i = entries.length - 1; i >= 0; i--) {
+      entries[i].close();
+    }
+    for (int i = 0; i < depth; i++) {
+      final BasicLogEntry entry = BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME, null,
+                                                    null, null, null);
+      assertThat(entry, is(sameInstance(entries[i])));
+    }
+    final BasicLogEntry unpooled = BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME, null,
+                                                     null, null, null);
+    assertThat(unpooled, is(not(sameInstance(entries[depth]))));
+  }
+
+  @Test
+  public void testCloseClearsReferences() {
+    final BasicLogEntry entry =
+        BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME, null, new RuntimeException(),
+                          Collections.singletonMap("key", "value"),
+                          Collections.singletonList("ndc"));
+    entry.setFormatAndArgs("%s %s", "a", "b");
+    entry.close();
+    assertThat(entry.getThrown(), is(nullValue()));
+    assertThat(entry.getMdc(), is(nullValue()));
+    assertThat(entry.getNdc(), is(nullValue()));
+    assertThat(entry.getParameterCount(), is(0));
+    assertThat(entry.getParameters()[0], is(nullValue()));
+    assertThat(entry.getParameters()[1], is(nullValue()));
+  }
+
+  @Test
+  public void testParameters() {
+    try (BasicLogEntry entry = BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME, null,
+                                                 null, null, null)) {
+      entry.setFormatAndArgs("%s %s %s", "a", "b", "c");
+      assertThat(entry.getParameterCount(), is(3));
+      entry.setFormatAndArgs("%s", "d");
+      assertThat(entry.getMessage(), is("%s"));
+      assertThat(entry.getParameterCount(), is(1));
+      assertThat(entry.getParameters()[0], is((Object)"d"));
+      assertThat(entry.getParameters()[1], is(nullValue()));
+    }
+  }
+
+  @Test
+  public void testCopyOf() {
+    final BasicLogEntry entry = BasicLogEntry.get(LOGGER_FQCN, LogLevel.INFO, LOGGER_NAME, null,
+                                                  null, null, null);
+    entry.setMessageStyle(MessageStyle.SLF4J);
+    entry.setFormatAndArgs("{} {}", 1, 2);
+    final BasicLogEntry copy = entry.copyOf();
+    entry.close();
+    BasicLogEntry.get(LOGGER_FQCN, LogLevel.WARN, "Other", null, null, null, null)
+        .append("reused");
+
+    assertThat(copy.getLogLevel(), is(LogLevel.INFO));
+    assertThat(copy.getLoggerName(), is(LOGGER_NAME));
+    assertThat(copy.getMessage(), is("{} {}"));
+    assertThat(copy.getMessageStyle(), is(MessageStyle.SLF4J));
+    assertThat(copy.getParameterCount(), is(2));
+    assertThat(copy.getParameters()[1], is((Object)2));
+  }
+
+  @Test
+  public void testAdaptToLogRecord() {
+    final Throwable throwable = new RuntimeException();
+    final BasicLogEntry entry = BasicLogEntry.get(LOGGER_FQCN, LogLevel.WARN, LOGGER_NAME, null,
+                                                  throwable, null, null);
+    entry.setFormatAndArgs("%d", 5);
+    entry.addLocation(0);
+    try (BasicLogEntry owned = entry; ExtLogRecord record = ExtLogRecord.fromLogEntry(owned)) {
+      // the copy is closed by the caller of fromLogEntry, the entry by its owner
+      assertThat(entry.isReserved(), is(true));
+      assertThat(record.getLogLevel(), is(LogLevel.WARN));
+      assertThat(record.getLevel(), is(LogLevel.WARN.getJdkLevel()));
+      assertThat(record.getLoggerName(), is(LOGGER_NAME));
+      assertThat(record.getLoggerFQCN(), is(LOGGER_FQCN));
+      assertThat(record.getThrown(), is(throwable));
+      assertThat(record.getMessage(), is("%d"));
+      assertThat(record.getParameterCount(), is(1));
+      assertThat(record.getParameters()[0], is((Object)5));
+      assertThat(record.getMillis(), is(entry.getMillis()));
+      assertThat(record.getSequenceNumber(), is(entry.getSequenceNumber()));
+      assertThat(record.getSourceClassName(), is(BasicLogEntryTest.class.getName()));
+      assertThat(record.getSourceMethodName(), is("testAdaptToLogRecord"));
+    }
+  }
+
+  @Test
+  public void testSerialization() throws IOException, ClassNotFoundException {
+    final BasicLogEntry entry = BasicLogEntry.get(LOGGER_FQCN, LogLevel.WARN, LOGGER_NAME, null,
+                                                  null, null, null);
+    entry.setFormatAndArgs("%s", new Object());
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(entry);
+    }
+    final LogEntry read;
+    try (ObjectInputStream in =
+             new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      read = (LogEntry)in.readObject();
+    }
+    final BasicLogEntry readEntry = (BasicLogEntry)read;
+    assertThat(readEntry.getLogLevel(), is(LogLevel.WARN));
+    assertThat(readEntry.getLoggerName(), is(equalTo(LOGGER_NAME)));
+    assertThat(readEntry.getMessage(), is("%s"));
+    assertThat(readEntry.getParameterCount(), is(1));
+    assertThat(readEntry.getParameters()[0], is((Object)String.valueOf(entry.getParameters()[0])));
+    assertThat(readEntry.isReserved(), is(false));
+  }
+}
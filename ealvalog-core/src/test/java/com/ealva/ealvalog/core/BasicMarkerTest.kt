@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.core
+
+import org.hamcrest.CoreMatchers.`is`
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+
+/**
+ * Test [BasicMarker] containment through its cached reference closure
+ */
+class BasicMarkerTest {
+  private val factory = BasicMarkerFactory()
+
+  @Test
+  fun testDirectContainment() {
+    val parent = factory.get("BasicMarkerTest.direct.parent")
+    val child = factory.get("BasicMarkerTest.direct.child")
+    assertThat(parent.isOrContains(parent), `is`(true))
+    assertThat(parent.isOrContains(child), `is`(false))
+
+    parent.add(child)
+    assertThat(parent.isOrContains(child), `is`(true))
+    assertThat(parent.isOrContains(child.name), `is`(true))
+    assertThat(child.isOrContains(parent), `is`(false))
+  }
+
+  @Test
+  fun testNestedContainment() {
+    val markers = (0..4).map { factory.get("BasicMarkerTest.nested.$it") }
+    markers.zipWithNext { parent, child -> parent.add(child) }
+
+    val top = markers.first()
+    val bottom = markers.last()
+    assertThat(top.isOrContains(bottom), `is`(true))
+    assertThat(top.isOrContains(bottom.name), `is`(true))
+    assertThat(bottom.isOrContains(top), `is`(false))
+    assertThat(markers[2].isOrContains(markers[1]), `is`(false))
+  }
+
+  @Test
+  fun testRemoveInvalidatesAncestors() {
+    val top = factory.get("BasicMarkerTest.remove.top")
+    val middle = factory.get("BasicMarkerTest.remove.middle")
+    val bottom = factory.get("BasicMarkerTest.remove.bottom")
+    top.add(middle)
+    middle.add(bottom)
+    assertThat(top.isOrContains(bottom), `is`(true))
+
+    middle.remove(bottom)
+    assertThat(top.isOrContains(bottom), `is`(false))
+    assertThat(top.isOrContains(bottom.name), `is`(false))
+
+    middle.add(bottom)
+    assertThat(top.isOrContains(bottom), `is`(true))
+  }
+
+  @Test
+  fun testCycle() {
+    val first = factory.get("BasicMarkerTest.cycle.first")
+    val second = factory.get("BasicMarkerTest.cycle.second")
+    first.add(second)
+    second.add(first)
+    assertThat(first.isOrContains(second), `is`(true))
+    assertThat(second.isOrContains(first), `is`(true))
+    assertThat(first.isOrContains("BasicMarkerTest.cycle.unknown"), `is`(false))
+  }
+
+  @Test
+  fun testOrphanMatchesByName() {
+    val parent = factory.get("BasicMarkerTest.orphan.parent")
+    parent.add(factory.get("BasicMarkerTest.orphan.child"))
+    assertThat(parent.isOrContains(factory.makeOrphan("BasicMarkerTest.orphan.child")), `is`(true))
+  }
+
+  @Test
+  fun testSerializedMarkerContainment() {
+    val parent = BasicMarker("BasicMarkerTest.serial.parent")
+    val middle = BasicMarker("BasicMarkerTest.serial.middle")
+    parent.add(middle)
+    middle.add(BasicMarker("BasicMarkerTest.serial.child"))
+
+    val bytes = ByteArrayOutputStream().apply {
+      ObjectOutputStream(this).use { it.writeObject(parent) }
+    }.toByteArray()
+    val copy = ObjectInputStream(ByteArrayInputStream(bytes)).use { it.readObject() as BasicMarker }
+
+    assertThat(copy.isOrContains("BasicMarkerTest.serial.child"), `is`(true))
+    assertThat(copy.isOrContains(middle), `is`(true))
+  }
+}
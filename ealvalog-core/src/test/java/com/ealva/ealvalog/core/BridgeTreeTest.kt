@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.core
+
+import com.ealva.ealvalog.Logger
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import org.hamcrest.CoreMatchers.`is`
+import org.hamcrest.CoreMatchers.equalTo
+import org.hamcrest.CoreMatchers.not
+import org.hamcrest.CoreMatchers.nullValue
+import org.hamcrest.CoreMatchers.sameInstance
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.empty
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Test the [BridgeTree] finds the nearest bridge and only re-links the affected subtree
+ */
+class BridgeTreeTest {
+  private lateinit var rootBridge: Bridge
+  private lateinit var tree: BridgeTree<Bridge, Logger>
+  private val parents = HashMap<Bridge, Bridge>()
+  private val updated = ArrayList<String>()
+
+  @Before
+  fun setup() {
+    rootBridge = bridge("")
+    parents.clear()
+    updated.clear()
+    tree = BridgeTree(
+      rootBridge,
+      { bridge, parent -> parents[bridge] = parent },
+      { logger -> updated.add(logger.name) }
+    )
+  }
+
+  @Test
+  fun testNearestBridge() {
+    assertThat(tree.getBridge("com.acme.Foo"), `is`(sameInstance(rootBridge)))
+    val acme = tree.modifyOrMake("com.acme", {}) { bridge("com.acme") }
+    assertThat(tree.getBridge("com.acme"), `is`(sameInstance(acme)))
+    assertThat(tree.getBridge("com.acme.Foo"), `is`(sameInstance(acme)))
+    assertThat(tree.getBridge("com.acme.sub.Bar"), `is`(sameInstance(acme)))
+    assertThat(tree.getBridge("com.acmeX"), `is`(sameInstance(rootBridge)))
+    assertThat(tree.getBridge("com"), `is`(sameInstance(rootBridge)))
+    assertThat(tree.getExactBridge("com.acme.Foo"), `is`(nullValue()))
+    assertThat(tree.getExactBridge(""), `is`(sameInstance(rootBridge)))
+  }
+
+  @Test
+  fun testModifyExisting() {
+    val acme = tree.modifyOrMake("com.acme", {}) { bridge("com.acme") }
+    var modified: Bridge? = null
+    val result = tree.modifyOrMake("com.acme", { modified = it }) { bridge("com.acme") }
+    assertThat(result, `is`(sameInstance(acme)))
+    assertThat(modified, `is`(sameInstance(acme)))
+  }
+
+  @Test
+  fun testParentsRelinked() {
+    val foo = tree.modifyOrMake("com.acme.Foo", {}) { bridge("com.acme.Foo") }
+    assertThat(parents[foo], `is`(sameInstance(rootBridge)))
+    val com = tree.modifyOrMake("com", {}) { bridge("com") }
+    assertThat(parents[com], `is`(sameInstance(rootBridge)))
+    assertThat(parents[foo], `is`(sameInstance(com)))
+    val acme = tree.modifyOrMake("com.acme", {}) { bridge("com.acme") }
+    assertThat(parents[acme], `is`(sameInstance(com)))
+    assertThat(parents[foo], `is`(sameInstance(acme)))
+  }
+
+  @Test
+  fun testOnlySubtreeLoggersUpdated() {
+    val made = ArrayList<String>()
+    for (name in listOf("com.acme.Foo", "com.acme.sub.Bar", "com.other.Baz", "org.Qux")) {
+      tree.getOrMakeLogger(name, { logger(name) }) { made.add(it.name) }
+    }
+    assertThat(made.size, `is`(equalTo(4)))
+    assertThat(updated, `is`(empty()))
+
+    tree.modifyOrMake("com.acme", {}) { bridge("com.acme") }
+    assertThat(updated, contains("com.acme.Foo", "com.acme.sub.Bar"))
+
+    updated.clear()
+    tree.modifyOrMake("com.acme.sub.Bar", {}) { bridge("com.acme.sub.Bar") }
+    assertThat(updated, contains("com.acme.sub.Bar"))
+
+    updated.clear()
+    tree.modifyOrMake("com", {}) { bridge("com") }
+    assertThat(updated, contains("com.other.Baz"))
+  }
+
+  @Test
+  fun testGetOrMakeLoggerReturnsExisting() {
+    val first = tree.getOrMakeLogger("com.acme.Foo", { logger("com.acme.Foo") }) {}
+    var madeAgain = false
+    val second = tree.getOrMakeLogger("com.acme.Foo", { logger("com.acme.Foo") }) {
+      madeAgain = true
+    }
+    assertThat(second, `is`(sameInstance(first)))
+    assertThat(madeAgain, `is`(false))
+  }
+
+  @Test
+  fun testEmptySegmentsAreDistinctNames() {
+    val acme = tree.getOrMakeLogger("com.acme", { logger("com.acme") }) {}
+    val trailing = tree.getOrMakeLogger("com.acme.", { logger("com.acme.") }) {}
+    val leading = tree.getOrMakeLogger(".foo", { logger(".foo") }) {}
+    val inner = tree.getOrMakeLogger("com..acme", { logger("com..acme") }) {}
+    assertThat(trailing, `is`(not(sameInstance(acme))))
+    assertThat(trailing.name, `is`("com.acme."))
+    assertThat(leading.name, `is`(".foo"))
+    assertThat(inner.name, `is`("com..acme"))
+    assertThat(tree.getExactBridge(""), `is`(sameInstance(rootBridge)))
+
+    val acmeBridge = tree.modifyOrMake("com.acme", {}) { bridge("com.acme") }
+    assertThat(tree.getBridge("com.acme."), `is`(sameInstance(acmeBridge)))
+    assertThat(tree.getBridge("com.acme..x"), `is`(sameInstance(acmeBridge)))
+    assertThat(tree.getBridge(".foo"), `is`(sameInstance(rootBridge)))
+    assertThat(tree.getBridge("com..acme"), `is`(sameInstance(rootBridge)))
+    assertThat(updated, contains("com.acme", "com.acme."))
+
+    val trailingBridge = tree.modifyOrMake("com.acme.", {}) { bridge("com.acme.") }
+    assertThat(tree.getBridge("com.acme."), `is`(sameInstance(trailingBridge)))
+    assertThat(tree.getBridge("com.acme"), `is`(sameInstance(acmeBridge)))
+    assertThat(parents[trailingBridge], `is`(sameInstance(acmeBridge)))
+  }
+
+  @Test
+  fun testClear() {
+    tree.modifyOrMake("com.acme", {}) { bridge("com.acme") }
+    tree.getOrMakeLogger("com.acme.Foo", { logger("com.acme.Foo") }) {}
+    tree.clear()
+    assertThat(tree.getBridge("com.acme.Foo"), `is`(sameInstance(rootBridge)))
+    assertThat(tree.getLogger("com.acme.Foo"), `is`(nullValue()))
+  }
+
+  private fun bridge(name: String): Bridge = mock { on { this.name } doReturn name }
+
+  private fun logger(name: String): Logger = mock { on { this.name } doReturn name }
+}
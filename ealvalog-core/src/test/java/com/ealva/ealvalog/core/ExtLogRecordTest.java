@@ -22,6 +22,8 @@ import com.ealva.ealvalog.LogLevel;
 import com.ealva.ealvalog.Marker;
 import com.ealva.ealvalog.Markers;
 import com.ealva.ealvalog.NullMarker;
+import com.ealva.ealvalog.util.CacheStrategy;
+import com.ealva.ealvalog.util.ObjectCache;
 
 import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
@@ -42,6 +44,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.Collections;
 
 /**
  * Created by Eric A. Snell on 7/4/18.
@@ -135,6 +138,66 @@ public class ExtLogRecordTest {
     assertThat(third.getLoggerName(), is(loggerName));
   }
 
+  @Test
+  public void testNestedRecordsArePooled() {
+    final ExtLogRecord first =
+        ExtLogRecord.get(LOGGER_FQCN, LogLevel.ERROR, "LoggerName", null, null, null, null);
+    final ExtLogRecord second =
+        ExtLogRecord.get(LOGGER_FQCN, LogLevel.ERROR, "LoggerName", null, null, null, null);
+    second.close();
+    first.close();
+    final ExtLogRecord third =
+        ExtLogRecord.get(LOGGER_FQCN, LogLevel.ERROR, "LoggerName", null, null, null, null);
+    final ExtLogRecord fourth =
+        ExtLogRecord.get(LOGGER_FQCN, LogLevel.ERROR, "LoggerName", null, null, null, null);
+    assertThat(third, sameInstance(first));
+    assertThat(fourth, sameInstance(second));
+  }
+
+  @Test
+  public void testCloseClearsReferences() {
+    final ExtLogRecord record =
+        ExtLogRecord.get(LOGGER_FQCN, LogLevel.ERROR, "LoggerName", null, new RuntimeException(),
+                         Collections.singletonMap("key", "value"),
+                         Collections.singletonList("ndc"));
+    record.setParameters(new Object[]{"first"});
+    record.close();
+    assertThat(record.getThrown(), nullValue());
+    assertThat(record.getMdc(), nullValue());
+    assertThat(record.getNdc(), nullValue());
+    assertThat(record.getParameterCount(), is(0));
+    assertThat(record.getParameters()[0], nullValue());
+  }
+
+  @Test
+  public void testFromLogEntryLeavesEntryToItsOwner() {
+    ObjectCache.setStrategy(CacheStrategy.SHARED);
+    try {
+      final BasicLogEntry entry = BasicLogEntry.get(LOGGER_FQCN, LogLevel.ERROR, "LoggerName",
+                                                    null, null, null, null);
+      entry.setFormatAndArgs("%s", "first");
+      final ExtLogRecord record = ExtLogRecord.fromLogEntry(entry);
+      assertThat(entry.isReserved(), is(true));
+      assertThat(entry.getParameterCount(), is(1));
+      record.close();
+      entry.close();
+      entry.close();
+
+      final BasicLogEntry again = BasicLogEntry.get(LOGGER_FQCN, LogLevel.ERROR, "LoggerName",
+                                                    null, null, null, null);
+      final BasicLogEntry another = BasicLogEntry.get(LOGGER_FQCN, LogLevel.ERROR, "LoggerName",
+                                                      null, null, null, null);
+      assertThat(again, is(sameInstance(entry)));
+      assertThat(another, is(not(sameInstance(entry))));
+      another.close();
+      again.close();
+    } finally {
+      ObjectCache.setStrategy(CacheStrategy.AUTO);
+      BasicLogEntry.clearCachedEntry();
+      ExtLogRecord.clearCachedRecord();
+    }
+  }
+
   @Test
   public void testSerialize() throws IOException, ClassNotFoundException {
     final LogLevel level = LogLevel.ERROR;
@@ -52,8 +52,17 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.startsWith;
 
+import com.ealva.ealvalog.util.FormattableStackTraceElement;
+import com.ealva.ealvalog.util.FormattableThrowable;
+import com.ealva.ealvalog.util.MessageStyle;
+
+import java.util.FormatFlagsConversionMismatchException;
 import java.util.IllegalFormatConversionException;
 import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+import java.util.UnknownFormatConversionException;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
 
 /**
  * Test LogRecord formatting
@@ -309,4 +318,111 @@ public class ExtRecordFormatterTest {
         formatter = new com.ealva.ealvalog.core.ExtRecordFormatter("%1$s");
     assertThat(formatter.format(record), is(equalTo(MESSAGE_FORMAT)));
   }
+
+  @Test
+  public void testMatchesStringFormat() {
+    record.setLocation(new StackTraceElement(DECLARING_CLASS,
+                                             METHOD_NAME,
+                                             FILE_NAME_JAVA,
+                                             LINE_NUMBER));
+    record.setSourceClassName(DECLARING_CLASS);
+    record.setSourceMethodName(METHOD_NAME);
+    final String[] formats = {
+        ExtRecordFormatter.TYPICAL_FORMAT,
+        ExtRecordFormatter.TYPICAL_ANDROID_FORMAT,
+        ExtRecordFormatter.DAY_DATE_TIME_FORMAT,
+        "%1$20s|%1$-20s|%1$.3s|%1$10.3s|%1$-10.3s|",
+        "%2$8d|%2$-8d|%2$08d|%2$,d|%2$s|%12$5s|%13$-6d|",
+        "%6$40s|%6$-40s|%6$.10s|%6$S|",
+        "%9$30s|%9$-30s|%9$#s|%9$#-40s|%9$.8s|%9$S|",
+        "%4$-10s|%4$S|%3$s %7$s.%8$s %10$s %11$s %14$s",
+        "%s %<S %s %s %1$s %s",
+        "100%% %n%5$tY",
+        "%5$tT 50%% %5$tL %<tN|%5$-12tA|%3$s %5$tH%n%5$tB %5$ts%5$tQ",
+    };
+    for (String format : formats) {
+      assertThat(format,
+                 new ExtRecordFormatter(format).format(record),
+                 is(equalTo(String.format(format, expectedArgs(record)))));
+    }
+  }
+
+  @Test
+  public void testPlainLogRecord() {
+    final LogRecord logRecord = new LogRecord(Level.WARNING, "Plain %s");
+    logRecord.setParameters(new Object[]{"message"});
+    logRecord.setLoggerName(LOGGER_NAME);
+    final ExtRecordFormatter formatter =
+        new ExtRecordFormatter("%1$s|%3$s|%4$s|%10$s|%9$s|%11$s|%14$s");
+    assertThat(formatter.format(logRecord),
+               is(equalTo("Plain message|" + LOGGER_NAME + "|WARN|||" + "|Unknown")));
+  }
+
+  @Test
+  public void testThrowableMessageWithFormatCharacters() {
+    record.setThrown(new IllegalStateException("100% %s"));
+    final ExtRecordFormatter formatter = new ExtRecordFormatter("%6$s");
+    assertThat(formatter.format(record),
+               is(equalTo(IllegalStateException.class.getName() + ": 100% %s")));
+  }
+
+  @Test
+  public void testSetFormatRecompiles() {
+    final ExtRecordFormatter formatter = new ExtRecordFormatter("%1$s");
+    formatter.setFormat("[%3$s] %1$s");
+    assertThat(formatter.getFormat(), is(equalTo("[%3$s] %1$s")));
+    assertThat(formatter.format(record), is(equalTo("[" + LOGGER_NAME + "] " + MESSAGE_ARG)));
+    formatter.setFormat(null);
+    assertThat(formatter.getFormat(), is(equalTo(ExtRecordFormatter.TYPICAL_FORMAT)));
+  }
+
+  @Test
+  public void testSlf4jMessageStyle() {
+    record.close();
+    record = ExtLogRecord.get(LOGGER_FQCN, LOG_LEVEL, LOGGER_NAME, MARKER, THROWABLE, null, null);
+    record.setMessageStyle(MessageStyle.SLF4J);
+    record.setFormatAndArgs("{} and {} 100%", MESSAGE_ARG, null);
+    final ExtRecordFormatter formatter = new ExtRecordFormatter("%1$s");
+    assertThat(formatter.format(record), is(equalTo(MESSAGE_ARG + " and null 100%")));
+    record.setMessageStyle(MessageStyle.PRINTF);
+    record.setFormatAndArgs("%s", MESSAGE_ARG);
+    assertThat(formatter.format(record), is(equalTo(MESSAGE_ARG)));
+  }
+
+  @Test(expected = MissingFormatArgumentException.class)
+  public void testPositionOutOfRange() {
+    new ExtRecordFormatter("%17$s").format(record);
+  }
+
+  @Test(expected = FormatFlagsConversionMismatchException.class)
+  public void testBadTimestampFlag() {
+    new ExtRecordFormatter("%5$tT.%5$#tL").format(record);
+  }
+
+  @Test(expected = UnknownFormatConversionException.class)
+  public void testTrailingPercent() {
+    new ExtRecordFormatter("%1$s %").format(record);
+  }
+
+  /** The arguments, in position order, documented by ExtRecordFormatter */
+  private static Object[] expectedArgs(final ExtLogRecord record) {
+    return new Object[]{
+        record.getMessage(),
+        record.getThreadID(),
+        record.getLoggerName(),
+        record.getLogLevel(),
+        record.getMillis(),
+        FormattableThrowable.make(record.getThrown()),
+        record.getSourceClassName(),
+        record.getSourceMethodName(),
+        FormattableStackTraceElement.make(record.getLocation()),
+        record.getThreadName(),
+        record.getMarker(),
+        record.getThreadPriority(),
+        record.getNanoTime(),
+        record.getLoggerFQCN(),
+        record.getMdc(),
+        record.getNdc()
+    };
+  }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.core
+
+import com.ealva.ealvalog.FilterResult
+import com.ealva.ealvalog.LogEntry
+import com.ealva.ealvalog.LogLevel
+import com.ealva.ealvalog.Marker
+import com.ealva.ealvalog.MdcContext
+import com.ealva.ealvalog.NullLogEntry
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.anyOrNull
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.never
+import com.nhaarman.mockitokotlin2.times
+import com.nhaarman.mockitokotlin2.verify
+import com.nhaarman.mockitokotlin2.whenever
+import org.hamcrest.CoreMatchers.`is`
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Test [CoreLogger] caches [Bridge.levelCacheBits] until the [LevelCache] is invalidated
+ */
+class LevelCacheTest {
+  private lateinit var bridge: Bridge
+  private lateinit var logger: CoreLogger<Bridge>
+
+  @Before
+  fun setup() {
+    bridge = mock()
+    val config = mock<LoggerConfiguration<Bridge>> {
+      on { getBridge(NAME) } doReturn bridge
+    }
+    logger = TestLogger(config)
+  }
+
+  @Test
+  fun testLevelsOnly() {
+    whenever(bridge.levelCacheBits()).thenReturn(
+      LevelCache.LEVELS_ONLY or LevelCache.levelBit(LogLevel.WARN) or
+        LevelCache.levelBit(LogLevel.ERROR) or LevelCache.EXCLUDE_LOCATION
+    )
+    assertThat(logger.isLoggable(LogLevel.INFO, null, null), `is`(false))
+    assertThat(logger.isLoggable(LogLevel.WARN, null, null), `is`(true))
+    assertThat(logger.isLoggable(LogLevel.ERROR, null, null), `is`(true))
+    assertThat(logger.shouldIncludeLocation(LogLevel.ERROR, null, null), `is`(false))
+    verify(bridge, never()).isLoggable(any(), any(), anyOrNull(), anyOrNull())
+    verify(bridge, never()).shouldIncludeLocation(any(), anyOrNull(), anyOrNull())
+    verify(bridge, times(1)).levelCacheBits()
+  }
+
+  @Test
+  fun testInvalidateRefreshes() {
+    whenever(bridge.levelCacheBits()).thenReturn(
+      LevelCache.LEVELS_ONLY or LevelCache.levelBit(LogLevel.ERROR)
+    )
+    assertThat(logger.isLoggable(LogLevel.WARN, null, null), `is`(false))
+    whenever(bridge.levelCacheBits()).thenReturn(
+      LevelCache.LEVELS_ONLY or LevelCache.levelBit(LogLevel.WARN) or
+        LevelCache.INCLUDE_LOCATION
+    )
+    assertThat(logger.isLoggable(LogLevel.WARN, null, null), `is`(false))
+    LevelCache.invalidate()
+    assertThat(logger.isLoggable(LogLevel.WARN, null, null), `is`(true))
+    assertThat(logger.shouldIncludeLocation(LogLevel.WARN, null, null), `is`(true))
+    verify(bridge, times(2)).levelCacheBits()
+  }
+
+  @Test
+  fun testNotLevelsOnlyAsksBridge() {
+    whenever(bridge.levelCacheBits()).thenReturn(LevelCache.ALL_LEVELS)
+    whenever(bridge.isLoggable(any(), any(), anyOrNull(), anyOrNull()))
+      .thenReturn(FilterResult.DENY)
+    whenever(bridge.shouldIncludeLocation(any(), anyOrNull(), anyOrNull())).thenReturn(true)
+    assertThat(logger.isLoggable(LogLevel.WARN, null, null), `is`(false))
+    assertThat(logger.shouldIncludeLocation(LogLevel.WARN, null, null), `is`(true))
+    verify(bridge).isLoggable(NAME, LogLevel.WARN, null, null)
+  }
+
+  private class TestLogger(config: LoggerConfiguration<Bridge>) :
+    CoreLogger<Bridge>(NAME, null, config) {
+    override val name: String = NAME
+
+    override fun getLogEntry(
+      logLevel: LogLevel,
+      marker: Marker?,
+      throwable: Throwable?,
+      mdcContext: MdcContext?
+    ): LogEntry = NullLogEntry
+  }
+
+  companion object {
+    private const val NAME = "com.acme.Test"
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test TimestampFormat produces the same output as {@link String#format(String, Object...)}
+ */
+public class TimestampFormatTest {
+  private static final long MAR_8_2017_10_40_23_002 = 1488987623002L;
+  private static final String DATE_TIME = "%tF %<tT.%<tL";
+  private final Locale defaultLocale = Locale.getDefault();
+
+  @After
+  public void tearDown() {
+    Locale.setDefault(defaultLocale);
+  }
+
+  @Test
+  public void testWithinSecond() {
+    final TimestampFormat format = TimestampFormat.make("%tF %tT.%tL");
+    for (long millis = MAR_8_2017_10_40_23_002; millis < MAR_8_2017_10_40_23_002 + 2500; millis += 7) {
+      assertThat(format.format(millis), is(equalTo(String.format(DATE_TIME, millis))));
+    }
+  }
+
+  @Test
+  public void testOutOfOrder() {
+    final TimestampFormat format = TimestampFormat.make("%tT.%tL");
+    final long[] times = {
+        MAR_8_2017_10_40_23_002,
+        MAR_8_2017_10_40_23_002 + 1000,
+        MAR_8_2017_10_40_23_002 + 999,
+        MAR_8_2017_10_40_23_002 - 5000,
+        MAR_8_2017_10_40_23_002 + 1001
+    };
+    for (long millis : times) {
+      assertThat(format.format(millis),
+                 is(equalTo(String.format("%tT.%<tL", millis))));
+    }
+  }
+
+  @Test
+  public void testBeforeEpoch() {
+    final TimestampFormat format = TimestampFormat.make("%tF %tT.%tL");
+    for (long millis = -1500; millis < 1500; millis += 250) {
+      assertThat(format.format(millis), is(equalTo(String.format(DATE_TIME, millis))));
+    }
+  }
+
+  @Test
+  public void testConversions() {
+    final String pattern = "%ta %tA %tb %tB %tc %tD %tH:%tM:%tS %tI %tp %tj %tN %tQ %ts %tz %tZ" +
+        " %TA %-12tB| 100%% %n";
+    final TimestampFormat format = TimestampFormat.make(pattern);
+    final String expected = pattern.replace("%t", "%1$t").replace("%T", "%1$T")
+                                   .replace("%-12t", "%1$-12t");
+    assertThat(format.format(MAR_8_2017_10_40_23_002),
+               is(equalTo(String.format(expected, MAR_8_2017_10_40_23_002))));
+    assertThat(format.format(MAR_8_2017_10_40_23_002 + 123),
+               is(equalTo(String.format(expected, MAR_8_2017_10_40_23_002 + 123))));
+  }
+
+  @Test
+  public void testLocaleChange() {
+    final TimestampFormat format = TimestampFormat.make("%ta %tB");
+    Locale.setDefault(Locale.US);
+    assertThat(format.format(MAR_8_2017_10_40_23_002), is(equalTo("Wed March")));
+    Locale.setDefault(Locale.FRANCE);
+    assertThat(format.format(MAR_8_2017_10_40_23_002),
+               is(equalTo(String.format("%ta %<tB", MAR_8_2017_10_40_23_002))));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotDateConversion() {
+    TimestampFormat.make("%tF %s");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadDateConversion() {
+    TimestampFormat.make("%tq");
+  }
+
+  @Test
+  public void testConcurrentFormatting() throws Exception {
+    final TimestampFormat format = TimestampFormat.make("%tF %tT.%tL");
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        final Random random = new Random(i);
+        results.add(executor.submit(new Callable<Boolean>() {
+          @Override public Boolean call() {
+            for (int j = 0; j < 5000; j++) {
+              final long millis = MAR_8_2017_10_40_23_002 + random.nextInt(5000);
+              if (!format.format(millis).equals(String.format(DATE_TIME, millis))) {
+                return false;
+              }
+            }
+            return true;
+          }
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertThat(result.get(), is(true));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
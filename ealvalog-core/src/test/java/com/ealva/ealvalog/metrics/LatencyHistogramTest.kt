@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.metrics
+
+import org.hamcrest.CoreMatchers.`is`
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.both
+import org.hamcrest.Matchers.greaterThanOrEqualTo
+import org.hamcrest.Matchers.lessThanOrEqualTo
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+/**
+ * Test [LatencyHistogram] bucketing and percentiles
+ */
+class LatencyHistogramTest {
+  @Test
+  fun testSmallValuesExact() {
+    for (value in 0L..31L) {
+      val index = LatencyHistogram.indexOf(value)
+      assertThat(LatencyHistogram.highestValueAt(index), `is`(value))
+    }
+  }
+
+  @Test
+  fun testBucketsContainTheirValues() {
+    var value = 1L
+    while (value < (1L shl 36)) {
+      for (candidate in longArrayOf(value - 1, value, value + 1, value * 3 / 2)) {
+        val index = LatencyHistogram.indexOf(candidate)
+        val highest = LatencyHistogram.highestValueAt(index)
+        assertThat(highest, `is`(greaterThanOrEqualTo(candidate)))
+        assertThat(highest - candidate, `is`(lessThanOrEqualTo(candidate / 16)))
+        if (index > 0) {
+          assertThat(LatencyHistogram.highestValueAt(index - 1), `is`(lessThanOrEqualTo(candidate)))
+        }
+      }
+      value = value shl 1
+    }
+  }
+
+  @Test
+  fun testLargeAndNegativeValuesClamped() {
+    assertThat(LatencyHistogram.indexOf(-5), `is`(0))
+    assertThat(LatencyHistogram.indexOf(Long.MAX_VALUE), `is`(LatencyHistogram.BUCKET_COUNT - 1))
+    assertThat(
+      LatencyHistogram.indexOf(TimeUnit.HOURS.toNanos(1)),
+      `is`(LatencyHistogram.BUCKET_COUNT - 1)
+    )
+  }
+
+  @Test
+  fun testPercentiles() {
+    val histogram = LatencyHistogram()
+    for (i in 1..990) histogram.record(1_000)
+    for (i in 1..10) histogram.record(1_000_000)
+
+    val snapshot = histogram.snapshot()
+    assertThat(snapshot.count, `is`(1000L))
+    assertThat(snapshot.valueAtPercentile(50.0), `is`(within(1_000)))
+    assertThat(snapshot.valueAtPercentile(99.0), `is`(within(1_000)))
+    assertThat(snapshot.valueAtPercentile(99.9), `is`(within(1_000_000)))
+    assertThat(snapshot.max, `is`(within(1_000_000)))
+
+    histogram.reset()
+    assertThat(histogram.snapshot().count, `is`(0L))
+    assertThat(histogram.snapshot().valueAtPercentile(99.0), `is`(0L))
+  }
+
+  private fun within(value: Long) =
+    both(greaterThanOrEqualTo(value)).and(lessThanOrEqualTo(value + value / 16))
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.metrics
+
+import com.ealva.ealvalog.LogEntry
+import com.ealva.ealvalog.LogLevel
+import com.ealva.ealvalog.MdcContext
+import com.ealva.ealvalog.Marker
+import com.ealva.ealvalog.NullLogEntry
+import com.ealva.ealvalog.core.Bridge
+import com.ealva.ealvalog.core.CoreLogger
+import com.ealva.ealvalog.core.ExtLogRecord
+import com.ealva.ealvalog.core.ExtRecordFormatter
+import com.ealva.ealvalog.core.LevelCache
+import com.ealva.ealvalog.core.LoggerConfiguration
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.whenever
+import org.hamcrest.CoreMatchers.`is`
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.lang.management.ManagementFactory
+import javax.management.ObjectName
+
+/**
+ * Test [LogMetrics] counting from [CoreLogger] and [ExtRecordFormatter], and the JMX view
+ */
+class LogMetricsTest {
+  private lateinit var bridge: Bridge
+  private lateinit var logger: TestLogger
+
+  @Before
+  fun setup() {
+    bridge = mock()
+    whenever(bridge.levelCacheBits()).thenReturn(
+      LevelCache.LEVELS_ONLY or LevelCache.levelBit(LogLevel.WARN) or
+        LevelCache.levelBit(LogLevel.ERROR)
+    )
+    val config = mock<LoggerConfiguration<Bridge>> {
+      on { getBridge(NAME) } doReturn bridge
+    }
+    logger = TestLogger(config)
+    LevelCache.invalidate()
+    LogMetrics.reset()
+    LogMetrics.isEnabled = true
+  }
+
+  @After
+  fun tearDown() {
+    LogMetrics.isEnabled = false
+    LogMetrics.isTimingEnabled = false
+    LogMetrics.sampleRate = LogMetrics.DEFAULT_SAMPLE_RATE
+    LogMetrics.unregisterMBeans()
+    LogMetrics.reset()
+  }
+
+  @Test
+  fun testLoggerCounts() {
+    logger.isLoggable(LogLevel.INFO, null, null)
+    logger.isLoggable(LogLevel.WARN, null, null)
+    logger.isLoggable(LogLevel.WARN, null, null)
+    logger.logImmediate(NullLogEntry)
+
+    val snapshot = LogMetrics.snapshot().getValue(NAME)
+    assertThat(snapshot.total(LogCounter.CHECKED), `is`(3L))
+    assertThat(snapshot[LogCounter.DENIED, LogLevel.INFO], `is`(1L))
+    assertThat(snapshot[LogCounter.ACCEPTED, LogLevel.WARN], `is`(2L))
+    assertThat(snapshot.total(LogCounter.DENIED), `is`(1L))
+    assertThat(snapshot[LogCounter.EMITTED, NullLogEntry.logLevel], `is`(1L))
+  }
+
+  @Test
+  fun testDisabledDoesNotCount() {
+    LogMetrics.isEnabled = false
+    logger.isLoggable(LogLevel.WARN, null, null)
+    LogMetrics.count(NAME, LogLevel.WARN, LogCounter.DROPPED)
+    val snapshot = LogMetrics.snapshot()[NAME]
+    assertThat(snapshot?.total(LogCounter.CHECKED) ?: 0L, `is`(0L))
+    assertThat(snapshot?.total(LogCounter.DROPPED) ?: 0L, `is`(0L))
+  }
+
+  @Test
+  fun testFormattedCharsCounted() {
+    val record = ExtLogRecord.get("fqcn", LogLevel.ERROR, NAME, null, null, null, null)
+    record.setFormatAndArgs("message")
+    try {
+      val formatted = ExtRecordFormatter().format(record)
+      val snapshot = LogMetrics.snapshot().getValue(NAME)
+      assertThat(
+        snapshot[LogCounter.FORMATTED_CHARS, LogLevel.ERROR],
+        `is`(formatted.length.toLong())
+      )
+    } finally {
+      record.close()
+    }
+  }
+
+  @Test
+  fun testMBeanPublishesCounts() {
+    val server = ManagementFactory.getPlatformMBeanServer()
+    LogMetrics.registerMBeans(server)
+    logger.isLoggable(LogLevel.ERROR, null, null)
+    LogMetrics.count(OTHER_NAME, LogLevel.INFO, LogCounter.DROPPED, 3)
+
+    val name = objectName(NAME)
+    assertThat(server.getAttribute(name, "Accepted") as Long, `is`(1L))
+    val other = objectName(OTHER_NAME)
+    assertThat(server.getAttribute(other, "Dropped") as Long, `is`(3L))
+
+    LogMetrics.unregisterMBeans()
+    assertThat(server.isRegistered(name), `is`(false))
+  }
+
+  @Test
+  fun testStagesTimed() {
+    LogMetrics.isTimingEnabled = true
+    LogMetrics.sampleRate = 1
+    logger.isLoggable(LogLevel.WARN, null, null)
+    logger.logImmediate(NullLogEntry)
+    val record = ExtLogRecord.get("fqcn", LogLevel.WARN, NAME, null, null, null, null)
+    try {
+      record.setFormatAndArgs("%s", "message")
+      ExtRecordFormatter().format(record)
+    } finally {
+      record.close()
+    }
+
+    val latencies = LogMetrics.snapshot().getValue(NAME).latencies
+    LogStage.values().forEach { stage ->
+      assertThat(stage.name, latencies.getValue(stage).count, `is`(1L))
+    }
+    val mBean = LoggerMetrics(LogMetrics.countersFor(NAME))
+    assertThat(mBean.latencies["PUBLISH.count"], `is`(1L))
+  }
+
+  @Test
+  fun testTimingDisabledByDefault() {
+    logger.isLoggable(LogLevel.WARN, null, null)
+    assertThat(LogMetrics.snapshot().getValue(NAME).latencies.isEmpty(), `is`(true))
+  }
+
+  private fun objectName(loggerName: String) =
+    ObjectName("${LogMetrics.JMX_DOMAIN}:type=LoggerMetrics,name=${ObjectName.quote(loggerName)}")
+
+  private class TestLogger(config: LoggerConfiguration<Bridge>) :
+    CoreLogger<Bridge>(NAME, null, config) {
+    override val name: String = NAME
+
+    override fun getLogEntry(
+      logLevel: LogLevel,
+      marker: Marker?,
+      throwable: Throwable?,
+      mdcContext: MdcContext?
+    ): LogEntry = NullLogEntry
+  }
+
+  companion object {
+    private const val NAME = "com.acme.Metrics"
+    private const val OTHER_NAME = "com.acme.MetricsOther"
+  }
+}
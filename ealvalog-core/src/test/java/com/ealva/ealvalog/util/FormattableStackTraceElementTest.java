@@ -64,6 +64,13 @@ public class FormattableStackTraceElementTest {
     assertThat(formatter.toString(), is(equalTo("")));
   }
 
+  @Test
+  public void testPercentInMethodNotFormatted() {
+    FormattableStackTraceElement.make(new StackTraceElement(DECLARING_CLASS, "lambda%s", null, 7))
+                                .formatTo(formatter, 0, -1, -1);
+    assertThat(formatter.toString(), is(equalTo("(lambda%s:7)")));
+  }
+
   @Test
   public void formatTo() {
     com.ealva.ealvalog.util.FormattableStackTraceElement
@@ -62,6 +62,15 @@ public class FormattableThrowableTest {
     assertThat(formatter.toString(), is(equalTo("java.lang.IllegalArgumentException: Blah")));
   }
 
+  @Test
+  public void testPercentInMessageNotFormatted() {
+    FormattableThrowable formattableThrowable =
+        FormattableThrowable.make(new IllegalArgumentException("100%s %d"));
+    formattableThrowable.formatTo(formatter, 0, -1, -1);
+    assertThat(formatter.toString(),
+               is(equalTo("java.lang.IllegalArgumentException: 100%s %d")));
+  }
+
   @Test
   public void testFormatUppercase() {
     com.ealva.ealvalog.util.FormattableThrowable
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Formatter;
+import java.util.IllegalFormatConversionException;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+import java.util.UnknownFormatConversionException;
+
+/**
+ * Test MessageTemplate produces the same output as {@link Formatter}
+ */
+public class MessageTemplateTest {
+  private static final Locale THAI_DIGITS = Locale.forLanguageTag("th-TH-u-nu-thai");
+
+  @After
+  public void tearDown() {
+    MessageTemplate.setMaxCacheSize(MessageTemplate.DEFAULT_MAX_CACHE_SIZE);
+  }
+
+  @Test
+  public void testStrings() {
+    assertSame("No args here", "ignored");
+    assertSame("%s|%10s|%-10s|%.2s|%8.3s|%S", "abcdef", "ab", "cd", "efgh", "ijklm", "up");
+    assertSame("%s %s", null, new StringBuilder("builder"));
+    assertSame("%s", BasicFormattable.INSTANCE);
+    assertSame("%-8s|%#s", BasicFormattable.INSTANCE, BasicFormattable.INSTANCE);
+  }
+
+  @Test
+  public void testIntegers() {
+    assertSame("%d|%5d|%-5d|%05d|%05d|%,d|%+d|%(d",
+               42, 42, 42, 42, -42, 1234567, 7, -7);
+    assertSame("%d %d %d %d", (byte)-3, (short)300, Long.MIN_VALUE, Integer.MIN_VALUE);
+    assertSame("%x|%X|%08x|%-8x|%x|%x|%#x|%x", 255, 0xABCDEF, 255, 255, -1, -1L, 16, (byte)-1);
+  }
+
+  @Test
+  public void testFloats() {
+    assertSame("%f|%.2f|%5.2f|%-8.1f|%08.3f|%.0f|%.2f|%.2f",
+               Math.PI, 1.005, 2.5, -0.25, -3.14159, 2.5, -0.001, 0.125f);
+    assertSame("%.2f %.2f %.3f %f", Double.NaN, Double.NEGATIVE_INFINITY, 1e20, 1e-7);
+    assertSame("%e %g %a %,.2f", 12345.678, 12345.678, 1.0, 12345.678);
+  }
+
+  @Test
+  public void testIndices() {
+    assertSame("%2$s %1$s %<s %s %s %1$d", 1, 2, 3);
+    assertSame("%%|%n|%-5%|100%%", 1);
+    assertSame("%tF %<tT %b %c %h", 1488987623002L, true, 'c', "hash");
+  }
+
+  @Test
+  public void testLocales() {
+    for (Locale locale : new Locale[]{Locale.GERMANY, Locale.FRANCE, THAI_DIGITS}) {
+      assertSame(locale, "%d|%05d|%.3f|%08.2f|%x|%s", 1234, -12, 3.14159, -2.5, 255, "s");
+    }
+  }
+
+  @Test(expected = IllegalFormatConversionException.class)
+  public void testBadConversion() {
+    format(Locale.US, "%d", "not a number");
+  }
+
+  @Test(expected = MissingFormatArgumentException.class)
+  public void testMissingArgument() {
+    format(Locale.US, "%s %s %s", 1, 2);
+  }
+
+  @Test(expected = UnknownFormatConversionException.class)
+  public void testMalformed() {
+    format(Locale.US, "%s %q", 1);
+  }
+
+  @Test
+  public void testMalformedProducesNoOutput() {
+    final StringBuilder builder = new StringBuilder();
+    try {
+      MessageTemplate.compile("%s %").format(new Formatter(builder), builder, Locale.US, "arg");
+    } catch (UnknownFormatConversionException e) {
+      assertThat(builder.toString(), is(equalTo("")));
+    }
+  }
+
+  @Test
+  public void testCached() {
+    final String format = "cached %s";
+    assertThat(MessageTemplate.get(format), is(sameInstance(MessageTemplate.get(format))));
+  }
+
+  @Test
+  public void testCacheBounded() {
+    MessageTemplate.setMaxCacheSize(2);
+    final MessageTemplate first = MessageTemplate.get("1 %s");
+    assertThat(MessageTemplate.get("1 %s"), is(sameInstance(first)));
+    MessageTemplate.get("2 %s");
+    MessageTemplate.get("3 %s");
+    assertThat(MessageTemplate.get("1 %s") == first, is(false));
+  }
+
+  private static void assertSame(final String format, final Object... args) {
+    assertSame(Locale.US, format, args);
+  }
+
+  private static void assertSame(final Locale locale, final String format, final Object... args) {
+    assertThat(format, format(locale, format, args), is(equalTo(String.format(locale, format, args))));
+  }
+
+  private static String format(final Locale locale, final String format, final Object... args) {
+    final StringBuilder builder = new StringBuilder("prefix:");
+    MessageTemplate.get(format).format(new Formatter(builder), builder, locale, args);
+    return builder.substring("prefix:".length());
+  }
+
+  private enum BasicFormattable implements java.util.Formattable {
+    INSTANCE;
+
+    @Override
+    public void formatTo(final Formatter formatter, final int flags, final int width, final int precision) {
+      formatter.format("flags=%d width=%d precision=%d", flags, width, precision);
+    }
+  }
+}
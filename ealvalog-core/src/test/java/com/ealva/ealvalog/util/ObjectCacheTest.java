@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test ObjectCache strategies and the SharedPool behind them
+ */
+public class ObjectCacheTest {
+  private final ObjectCache<StringBuilder> cache = new ObjectCache<StringBuilder>() {
+    @NotNull @Override protected StringBuilder newObject() {
+      return new StringBuilder();
+    }
+  };
+
+  @After
+  public void tearDown() {
+    ObjectCache.setStrategy(CacheStrategy.AUTO);
+  }
+
+  @Test
+  public void testPlatformThreadIsNotVirtual() {
+    assertThat(ObjectCache.isVirtual(Thread.currentThread()), is(false));
+    assertThat(ObjectCache.useSharedPool(), is(false));
+  }
+
+  @Test
+  public void testThreadLocalReturnsSameObjectPerThread() throws InterruptedException {
+    ObjectCache.setStrategy(CacheStrategy.THREAD_LOCAL);
+    final StringBuilder first = cache.acquire();
+    cache.release(first);
+    assertThat(cache.acquire(), is(sameInstance(first)));
+
+    final AtomicReference<StringBuilder> other = new AtomicReference<>();
+    final Thread thread = new Thread(new Runnable() {
+      @Override public void run() {
+        other.set(cache.acquire());
+      }
+    });
+    thread.start();
+    thread.join();
+    assertThat(other.get(), is(not(sameInstance(first))));
+  }
+
+  @Test
+  public void testSharedReusesReleasedObjects() throws InterruptedException {
+    ObjectCache.setStrategy(CacheStrategy.SHARED);
+    final StringBuilder first = cache.acquire();
+    final StringBuilder second = cache.acquire();
+    assertThat(second, is(not(sameInstance(first))));
+    cache.release(first);
+
+    final AtomicReference<StringBuilder> other = new AtomicReference<>();
+    final Thread thread = new Thread(new Runnable() {
+      @Override public void run() {
+        other.set(cache.acquire());
+      }
+    });
+    thread.start();
+    thread.join();
+    assertThat(other.get(), is(sameInstance(first)));
+  }
+
+  @Test
+  public void testSharedPoolPollAndOffer() {
+    final SharedPool<String> pool = new SharedPool<>(3); // rounded up to 4
+    assertThat(pool.poll(), is(nullValue()));
+    for (int i = 0; i < 4; i++) {
+      assertThat(pool.offer("item" + i), is(true));
+    }
+    assertThat(pool.offer("full"), is(false));
+    for (int i = 0; i < 4; i++) {
+      assertThat(pool.poll(), is(not(nullValue())));
+    }
+    assertThat(pool.poll(), is(nullValue()));
+  }
+}
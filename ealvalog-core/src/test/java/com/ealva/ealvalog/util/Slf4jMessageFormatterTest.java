@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Locale;
+
+/**
+ * Test "{}" substitution matches SLF4J
+ */
+public class Slf4jMessageFormatterTest {
+
+  @Test
+  public void testSubstitution() {
+    assertThat(format("a={} b={}", 1, "two"), is(equalTo("a=1 b=two")));
+    assertThat(format("{}{}{}", 'c', true, 5L), is(equalTo("ctrue5")));
+    assertThat(format("{} {}", null, 2.5), is(equalTo("null 2.5")));
+  }
+
+  @Test
+  public void testNoArgsLeavesFormat() {
+    assertThat(format("no {} args \\{}"), is(equalTo("no {} args \\{}")));
+  }
+
+  @Test
+  public void testArgCountMismatch() {
+    assertThat(format("{} {} {}", 1, 2), is(equalTo("1 2 {}")));
+    assertThat(format("{}", 1, 2), is(equalTo("1")));
+    assertThat(format("no anchors", 1), is(equalTo("no anchors")));
+  }
+
+  @Test
+  public void testEscapes() {
+    assertThat(format("\\{} {}", 1), is(equalTo("{} 1")));
+    assertThat(format("C:\\\\{}", "dir"), is(equalTo("C:\\dir")));
+    assertThat(format("{ } {x} {}", 1), is(equalTo("{ } {x} 1")));
+  }
+
+  @Test
+  public void testArrays() {
+    assertThat(format("{} {} {}", new int[]{1, 2}, new String[]{"a", "b"}, new boolean[]{true}),
+               is(equalTo("[1, 2] [a, b] [true]")));
+    final Object[] nested = {"x", new long[]{3L}, null};
+    assertThat(format("{}", (Object)nested), is(equalTo("[x, [3], null]")));
+    final Object[] cycle = {"self", null};
+    cycle[1] = cycle;
+    assertThat(format("{}", (Object)cycle), is(equalTo("[self, [...]]")));
+  }
+
+  @Test
+  public void testFailedToString() {
+    final Object bad = new Object() {
+      @Override public String toString() {
+        throw new IllegalStateException("bad");
+      }
+    };
+    assertThat(format("value={}", bad), is(equalTo("value=[FAILED toString()]")));
+  }
+
+  @Test
+  public void testArgCount() {
+    final Object[] reused = {"a", "b", null, null};
+    final Slf4jMessageFormatter formatter = new Slf4jMessageFormatter();
+    assertThat(formatter.append("{} {} {}", reused, 2).toString(), is(equalTo("a b {}")));
+  }
+
+  @Test
+  public void testReset() {
+    final Slf4jMessageFormatter formatter = new Slf4jMessageFormatter();
+    formatter.append(Locale.US, "{}", 1);
+    formatter.reset().append("x={}", 2);
+    assertThat(formatter.toString(), is(equalTo("x=2")));
+  }
+
+  private static String format(final String format, final Object... args) {
+    return new Slf4jMessageFormatter().append(format, args).toString();
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.java;
+
+import com.ealva.ealvalog.LogLevel;
+import com.ealva.ealvalog.Marker;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Supplier;
+
+/**
+ * Targets of calls rewritten by the ealvalog-callsite build time transform. A call to a
+ * {@link JLogger} log, caught, or throwing method is replaced with a call to the static method of
+ * the same name here, passing the logger first and the call site's location last. The location is
+ * a constant built once per call site, so a logger which includes location does not need to
+ * examine the call stack.
+ * <p>
+ * Only {@link JLoggerImpl}, which {@link JLoggerFactory} makes, and {@link NullJLogger}, which
+ * never logs, are supported. Any other JLogger is called as usual from here, which adds a frame to
+ * the call stack, so if it finds the location by stack depth it reports this class as the caller.
+ * Don't transform classes which log through other JLogger implementations with location enabled.
+ * <p>
+ * Not intended to be called directly.
+ */
+@SuppressWarnings("unused")
+public final class JLoggerCallSites {
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final String msg,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, msg);
+    } else {
+      logger.log(level, msg);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final Marker marker,
+                         @NotNull final String msg,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, marker, msg);
+    } else {
+      logger.log(level, marker, msg);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final Throwable throwable,
+                         @NotNull final String msg,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, throwable, msg);
+    } else {
+      logger.log(level, throwable, msg);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final Marker marker,
+                         @NotNull final Throwable throwable,
+                         @NotNull final String msg,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, marker, throwable, msg);
+    } else {
+      logger.log(level, marker, throwable, msg);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final Marker marker,
+                         @NotNull final String format,
+                         @NotNull final Object[] formatArgs,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, marker, format, formatArgs);
+    } else {
+      logger.log(level, marker, format, formatArgs);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final Throwable throwable,
+                         @NotNull final String format,
+                         @NotNull final Object[] formatArgs,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, throwable, format, formatArgs);
+    } else {
+      logger.log(level, throwable, format, formatArgs);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final Marker marker,
+                         @NotNull final Throwable throwable,
+                         @NotNull final String format,
+                         @NotNull final Object[] formatArgs,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, marker, throwable, format, formatArgs);
+    } else {
+      logger.log(level, marker, throwable, format, formatArgs);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final String format,
+                         @NotNull final Object arg1,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, format, arg1);
+    } else {
+      logger.log(level, format, arg1);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final String format,
+                         @NotNull final Object arg1,
+                         @NotNull final Object arg2,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, format, arg1, arg2);
+    } else {
+      logger.log(level, format, arg1, arg2);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final String format,
+                         @NotNull final Object arg1,
+                         @NotNull final Object arg2,
+                         @NotNull final Object arg3,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, format, arg1, arg2, arg3);
+    } else {
+      logger.log(level, format, arg1, arg2, arg3);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final String format,
+                         @NotNull final Object arg1,
+                         @NotNull final Object arg2,
+                         @NotNull final Object arg3,
+                         @NotNull final Object arg4,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, format, arg1, arg2, arg3, arg4);
+    } else {
+      logger.log(level, format, arg1, arg2, arg3, arg4);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final String format,
+                         @NotNull final Object arg1,
+                         @NotNull final Object arg2,
+                         @NotNull final Object arg3,
+                         @NotNull final Object arg4,
+                         @NotNull final Object[] remaining,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, format, arg1, arg2, arg3, arg4, remaining);
+    } else {
+      logger.log(level, format, arg1, arg2, arg3, arg4, remaining);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final Supplier<?> supplier,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, supplier);
+    } else {
+      logger.log(level, supplier);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final Marker marker,
+                         @NotNull final Supplier<?> supplier,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, marker, supplier);
+    } else {
+      logger.log(level, marker, supplier);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final Throwable throwable,
+                         @NotNull final Supplier<?> supplier,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, throwable, supplier);
+    } else {
+      logger.log(level, throwable, supplier);
+    }
+  }
+
+  public static void log(@NotNull final JLogger logger,
+                         @NotNull final LogLevel level,
+                         @NotNull final Marker marker,
+                         @NotNull final Throwable throwable,
+                         @NotNull final Supplier<?> supplier,
+                         @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).logAt(site, level, marker, throwable, supplier);
+    } else {
+      logger.log(level, marker, throwable, supplier);
+    }
+  }
+
+  public static void caught(@NotNull final JLogger logger,
+                            @NotNull final LogLevel level,
+                            @NotNull final Throwable throwable,
+                            @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      ((JLoggerImpl)logger).caughtAt(site, level, throwable);
+    } else {
+      logger.caught(level, throwable);
+    }
+  }
+
+  public static <T extends Throwable> T throwing(@NotNull final JLogger logger,
+                                                 @NotNull final LogLevel level,
+                                                 @NotNull final T throwable,
+                                                 @NotNull final StackTraceElement site) {
+    if (logger instanceof JLoggerImpl) {
+      return ((JLoggerImpl)logger).throwingAt(site, level, throwable);
+    }
+    return logger.throwing(level, throwable);
+  }
+
+  private JLoggerCallSites() {
+  }
+}
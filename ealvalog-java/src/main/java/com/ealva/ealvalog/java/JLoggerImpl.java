@@ -57,13 +57,19 @@ public class JLoggerImpl implements JLogger {
   }
 
   @Override public void log(@NotNull final LogLevel level, @NotNull final String msg) {
+    logAt(null, level, msg);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final String msg) {
     if (isLoggable(level, realLogger.getMarker(), null)) {
       try (LogEntry record = realLogger.getLogEntry(level,
                                                     realLogger.getMarker(),
                                                     null,
                                                     null)) {
         if (realLogger.shouldIncludeLocation(level, realLogger.getMarker(), null)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.append(msg);
         logImmediate(record);
@@ -75,10 +81,17 @@ public class JLoggerImpl implements JLogger {
   public void log(@NotNull final LogLevel level,
                   @NotNull final Marker marker,
                   @NotNull final String msg) {
+    logAt(null, level, marker, msg);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final Marker marker,
+             @NotNull final String msg) {
     if (isLoggable(level, marker, null)) {
       try (LogEntry record = realLogger.getLogEntry(level, marker, null, null)) {
         if (realLogger.shouldIncludeLocation(level, marker, null)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.append(msg);
         logImmediate(record);
@@ -90,13 +103,20 @@ public class JLoggerImpl implements JLogger {
   public void log(@NotNull final LogLevel level,
                   @NotNull final Throwable throwable,
                   @NotNull final String msg) {
+    logAt(null, level, throwable, msg);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final Throwable throwable,
+             @NotNull final String msg) {
     if (isLoggable(level, realLogger.getMarker(), throwable)) {
       try (LogEntry record = realLogger.getLogEntry(level,
                                                     realLogger.getMarker(),
                                                     throwable,
                                                     null)) {
         if (realLogger.shouldIncludeLocation(level, realLogger.getMarker(), throwable)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.append(msg);
         logImmediate(record);
@@ -109,10 +129,18 @@ public class JLoggerImpl implements JLogger {
                   @NotNull final Marker marker,
                   @NotNull final Throwable throwable,
                   @NotNull final String msg) {
+    logAt(null, level, marker, throwable, msg);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final Marker marker,
+             @NotNull final Throwable throwable,
+             @NotNull final String msg) {
     if (isLoggable(level, marker, throwable)) {
       try (LogEntry record = realLogger.getLogEntry(level, marker, throwable, null)) {
         if (realLogger.shouldIncludeLocation(level, marker, throwable)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.append(msg);
         logImmediate(record);
@@ -125,10 +153,18 @@ public class JLoggerImpl implements JLogger {
                   @NotNull final Marker marker,
                   @NotNull final String format,
                   @NotNull final Object... formatArgs) {
+    logAt(null, level, marker, format, formatArgs);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final Marker marker,
+             @NotNull final String format,
+             @NotNull final Object... formatArgs) {
     if (isLoggable(level, marker, null)) {
       try (LogEntry record = realLogger.getLogEntry(level, marker, null, null)) {
         if (realLogger.shouldIncludeLocation(level, marker, null)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.setFormatAndArgs(format, formatArgs);
         logImmediate(record);
@@ -141,13 +177,21 @@ public class JLoggerImpl implements JLogger {
                   @NotNull final Throwable throwable,
                   @NotNull final String format,
                   @NotNull final Object... formatArgs) {
+    logAt(null, level, throwable, format, formatArgs);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final Throwable throwable,
+             @NotNull final String format,
+             @NotNull final Object... formatArgs) {
     if (isLoggable(level, realLogger.getMarker(), throwable)) {
       try (LogEntry record = realLogger.getLogEntry(level,
                                                     realLogger.getMarker(),
                                                     throwable,
                                                     null)) {
         if (realLogger.shouldIncludeLocation(level, realLogger.getMarker(), throwable)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.setFormatAndArgs(format, formatArgs);
         logImmediate(record);
@@ -161,10 +205,19 @@ public class JLoggerImpl implements JLogger {
                   @NotNull final Throwable throwable,
                   @NotNull final String format,
                   @NotNull final Object... formatArgs) {
+    logAt(null, level, marker, throwable, format, formatArgs);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final Marker marker,
+             @NotNull final Throwable throwable,
+             @NotNull final String format,
+             @NotNull final Object... formatArgs) {
     if (isLoggable(level, marker, throwable)) {
       try (LogEntry record = realLogger.getLogEntry(level, marker, throwable, null)) {
         if (realLogger.shouldIncludeLocation(level, marker, throwable)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.setFormatAndArgs(format, formatArgs);
         logImmediate(record);
@@ -176,13 +229,20 @@ public class JLoggerImpl implements JLogger {
   public void log(@NotNull final LogLevel level,
                   @NotNull final String format,
                   @NotNull final Object arg1) {
+    logAt(null, level, format, arg1);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final String format,
+             @NotNull final Object arg1) {
     if (isLoggable(level, realLogger.getMarker(), null)) {
       try (LogEntry record = realLogger.getLogEntry(level,
                                                     realLogger.getMarker(),
                                                     null,
                                                     null)) {
         if (realLogger.shouldIncludeLocation(level, realLogger.getMarker(), null)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.setFormatAndArgs(format, arg1);
         logImmediate(record);
@@ -195,13 +255,21 @@ public class JLoggerImpl implements JLogger {
                   @NotNull final String format,
                   @NotNull final Object arg1,
                   @NotNull final Object arg2) {
+    logAt(null, level, format, arg1, arg2);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final String format,
+             @NotNull final Object arg1,
+             @NotNull final Object arg2) {
     if (isLoggable(level, realLogger.getMarker(), null)) {
       try (LogEntry record = realLogger.getLogEntry(level,
                                                     realLogger.getMarker(),
                                                     null,
                                                     null)) {
         if (realLogger.shouldIncludeLocation(level, realLogger.getMarker(), null)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.setFormatAndArgs(format, arg1, arg2);
         logImmediate(record);
@@ -215,13 +283,22 @@ public class JLoggerImpl implements JLogger {
                   @NotNull final Object arg1,
                   @NotNull final Object arg2,
                   @NotNull final Object arg3) {
+    logAt(null, level, format, arg1, arg2, arg3);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final String format,
+             @NotNull final Object arg1,
+             @NotNull final Object arg2,
+             @NotNull final Object arg3) {
     if (isLoggable(level, realLogger.getMarker(), null)) {
       try (LogEntry record = realLogger.getLogEntry(level,
                                                     realLogger.getMarker(),
                                                     null,
                                                     null)) {
         if (realLogger.shouldIncludeLocation(level, realLogger.getMarker(), null)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.setFormatAndArgs(format, arg1, arg2, arg3);
         logImmediate(record);
@@ -236,13 +313,23 @@ public class JLoggerImpl implements JLogger {
                   @NotNull final Object arg2,
                   @NotNull final Object arg3,
                   @NotNull final Object arg4) {
+    logAt(null, level, format, arg1, arg2, arg3, arg4);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final String format,
+             @NotNull final Object arg1,
+             @NotNull final Object arg2,
+             @NotNull final Object arg3,
+             @NotNull final Object arg4) {
     if (isLoggable(level, realLogger.getMarker(), null)) {
       try (LogEntry record = realLogger.getLogEntry(level,
                                                     realLogger.getMarker(),
                                                     null,
                                                     null)) {
         if (realLogger.shouldIncludeLocation(level, realLogger.getMarker(), null)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.setFormatAndArgs(format, arg1, arg2, arg3, arg4);
         logImmediate(record);
@@ -258,13 +345,24 @@ public class JLoggerImpl implements JLogger {
                   @NotNull final Object arg3,
                   @NotNull final Object arg4,
                   @NotNull final Object... remaining) {
+    logAt(null, level, format, arg1, arg2, arg3, arg4, remaining);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final String format,
+             @NotNull final Object arg1,
+             @NotNull final Object arg2,
+             @NotNull final Object arg3,
+             @NotNull final Object arg4,
+             @NotNull final Object... remaining) {
     if (isLoggable(level, realLogger.getMarker(), null)) {
       try (LogEntry record = realLogger.getLogEntry(level,
                                                     realLogger.getMarker(),
                                                     null,
                                                     null)) {
         if (realLogger.shouldIncludeLocation(level, realLogger.getMarker(), null)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         // JLoggerImpl and ExtLogRecord are Java to avoid Kotlin's SpreadBuilder
         // used when passing vararg to vararg and the spread operator is required. Instead
@@ -277,13 +375,19 @@ public class JLoggerImpl implements JLogger {
   }
 
   public void log(@NotNull final LogLevel level, @NotNull final Supplier<?> supplier) {
+    logAt(null, level, supplier);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final Supplier<?> supplier) {
     if (isLoggable(level, realLogger.getMarker(), null)) {
       try (LogEntry record = realLogger.getLogEntry(level,
                                                     realLogger.getMarker(),
                                                     null,
                                                     null)) {
         if (realLogger.shouldIncludeLocation(level, realLogger.getMarker(), null)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.append(supplier.get().toString());
         logImmediate(record);
@@ -295,10 +399,17 @@ public class JLoggerImpl implements JLogger {
   public void log(@NotNull final LogLevel level,
                   @NotNull final Marker marker,
                   @NotNull final Supplier<?> supplier) {
+    logAt(null, level, marker, supplier);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final Marker marker,
+             @NotNull final Supplier<?> supplier) {
     if (isLoggable(level, marker, null)) {
       try (LogEntry record = realLogger.getLogEntry(level, marker, null, null)) {
         if (realLogger.shouldIncludeLocation(level, marker, null)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.append(supplier.get().toString());
         logImmediate(record);
@@ -310,13 +421,20 @@ public class JLoggerImpl implements JLogger {
   public void log(@NotNull final LogLevel level,
                   @NotNull final Throwable throwable,
                   @NotNull final Supplier<?> supplier) {
+    logAt(null, level, throwable, supplier);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final Throwable throwable,
+             @NotNull final Supplier<?> supplier) {
     if (isLoggable(level, realLogger.getMarker(), throwable)) {
       try (LogEntry record = realLogger.getLogEntry(level,
                                                     realLogger.getMarker(),
                                                     throwable,
                                                     null)) {
         if (realLogger.shouldIncludeLocation(level, realLogger.getMarker(), throwable)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.append(supplier.get().toString());
         logImmediate(record);
@@ -329,10 +447,18 @@ public class JLoggerImpl implements JLogger {
                   @NotNull final Marker marker,
                   @NotNull final Throwable throwable,
                   @NotNull final Supplier<?> supplier) {
+    logAt(null, level, marker, throwable, supplier);
+  }
+
+  void logAt(final @Nullable StackTraceElement site,
+             @NotNull final LogLevel level,
+             @NotNull final Marker marker,
+             @NotNull final Throwable throwable,
+             @NotNull final Supplier<?> supplier) {
     if (isLoggable(level, marker, throwable)) {
       try (LogEntry record = realLogger.getLogEntry(level, marker, throwable, null)) {
         if (realLogger.shouldIncludeLocation(level, marker, throwable)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.append(supplier.get().toString());
         logImmediate(record);
@@ -341,13 +467,19 @@ public class JLoggerImpl implements JLogger {
   }
 
   @Override public void caught(@NotNull final LogLevel level, @NotNull final Throwable throwable) {
+    caughtAt(null, level, throwable);
+  }
+
+  void caughtAt(final @Nullable StackTraceElement site,
+                @NotNull final LogLevel level,
+                @NotNull final Throwable throwable) {
     if (isLoggable(level, realLogger.getMarker(), throwable)) {
       try (LogEntry record = realLogger.getLogEntry(level,
                                                     realLogger.getMarker(),
                                                     throwable,
                                                     null)) {
         if (realLogger.shouldIncludeLocation(level, realLogger.getMarker(), null)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.format("Caught: %s", throwable.getMessage());
         logImmediate(record);
@@ -358,13 +490,19 @@ public class JLoggerImpl implements JLogger {
   @NotNull @Override
   public <T extends Throwable> T throwing(@NotNull final LogLevel level,
                                           @NotNull final T throwable) {
+    return throwingAt(null, level, throwable);
+  }
+
+  <T extends Throwable> T throwingAt(final @Nullable StackTraceElement site,
+                                     @NotNull final LogLevel level,
+                                     @NotNull final T throwable) {
     if (isLoggable(level, realLogger.getMarker(), throwable)) {
       try (LogEntry record = realLogger.getLogEntry(level,
                                                     realLogger.getMarker(),
                                                     throwable,
                                                     null)) {
         if (realLogger.shouldIncludeLocation(level, realLogger.getMarker(), null)) {
-          record.addLocation(STACK_DEPTH);
+          addLocation(record, site);
         }
         record.format("Throwing: %s", throwable.getMessage());
         logImmediate(record);
@@ -373,6 +511,19 @@ public class JLoggerImpl implements JLogger {
     return throwable;
   }
 
+  /**
+   * Add {@code site} as the location of {@code record} if not null, else find the location by
+   * examining the call stack, skipping this method and the xxxAt method calling it
+   */
+  private static void addLocation(final @NotNull LogEntry record,
+                                  final @Nullable StackTraceElement site) {
+    if (site != null) {
+      record.addLocation(site);
+    } else {
+      record.addLocation(STACK_DEPTH + 2);
+    }
+  }
+
   @NotNull @Override public String getName() {
     return realLogger.getName();
   }
@@ -18,6 +18,7 @@
 
 package com.ealva.ealvalog.java;
 
+import com.ealva.ealvalog.LogEntry;
 import com.ealva.ealvalog.LogLevel;
 import com.ealva.ealvalog.Logger;
 import com.ealva.ealvalog.Marker;
@@ -43,6 +44,7 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
@@ -55,11 +57,17 @@ public class JLoggerImplTest {
   private static final String LOGGER_NAME = "LoggerName";
   private static final String LOGGER_FQCN = "com.acme.loggers.TheLogger";
   @Mock Logger realLogger;
+  /** Records are cleared when closed, so capture the throwable when it's logged */
+  private Throwable thrownWhenLogged;
 
   @Before
   public void setup() {
     MockitoAnnotations.initMocks(this);
     when(realLogger.getName()).thenReturn(LOGGER_NAME);
+    doAnswer(invocation -> {
+      thrownWhenLogged = invocation.<LogEntry>getArgument(0).getThrown();
+      return null;
+    }).when(realLogger).logImmediate(any(LogEntry.class));
   }
 
   @Test
@@ -350,7 +358,7 @@ public class JLoggerImplTest {
     assertThat(record.getLevel(), is(level.getJdkLevel()));
     assertThat(record.getMessage(), is(equalTo(MSG)));
     assertThat(record.getMarker(), is(nullValue()));
-    assertThat(record.getThrown(), is(throwable));
+    assertThat(thrownWhenLogged, is(throwable));
   }
 
   @Test
@@ -371,7 +379,7 @@ public class JLoggerImplTest {
     assertThat(record.getLevel(), is(level.getJdkLevel()));
     assertThat(record.getMessage(), is(equalTo("java.lang.RuntimeException: Test")));
     assertThat(record.getMarker(), is(NullMarker.INSTANCE));
-    assertThat(record.getThrown(), is(throwable));
+    assertThat(thrownWhenLogged, is(throwable));
   }
 
   @Test
@@ -391,7 +399,7 @@ public class JLoggerImplTest {
     final ExtLogRecord record = recordCaptor.getValue();
     assertThat(record, is(notNullValue()));
     assertThat(record.getLevel(), is(level.getJdkLevel()));
-    assertThat(record.getThrown(), is(throwable));
+    assertThat(thrownWhenLogged, is(throwable));
   }
 
   @Test
@@ -412,7 +420,7 @@ public class JLoggerImplTest {
     final ExtLogRecord record = recordCaptor.getValue();
     assertThat(record, is(notNullValue()));
     assertThat(record.getLevel(), is(level.getJdkLevel()));
-    assertThat(record.getThrown(), is(throwable));
+    assertThat(thrownWhenLogged, is(throwable));
   }
 
 
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.jul
+
+import com.ealva.ealvalog.LogLevel
+import com.ealva.ealvalog.async.OverflowPolicy
+import com.ealva.ealvalog.async.RingBuffer
+import com.ealva.ealvalog.async.WaitStrategy
+import com.ealva.ealvalog.core.ExtLogRecord
+import com.ealva.ealvalog.core.logLevel
+import com.ealva.ealvalog.metrics.LogCounter
+import com.ealva.ealvalog.metrics.LogMetrics
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.LockSupport
+import java.util.logging.ErrorManager
+import java.util.logging.Handler
+import java.util.logging.LogRecord
+
+/**
+ * Publishes records to [handler] on a dedicated thread so logging threads don't contend on the
+ * wrapped handler's lock or wait on its I/O. Records are copied, as [ExtLogRecord]s are reused
+ * once closed, and placed on a bounded queue. The publishing thread removes up to [maxBatchSize]
+ * records at a time, publishes each, and then flushes [handler] once per batch. Note a
+ * [java.util.logging.FileHandler] flushes in every publish regardless.
+ *
+ * When the queue is full, [overflowPolicy] determines if the logging thread waits for space or a
+ * record is discarded. [OverflowPolicy.DROP_BELOW_LEVEL] discards records below [discardLevel].
+ *
+ * Records below the wrapped handler's level are discarded before being copied. The wrapped
+ * handler's filter and formatter run on the publishing thread.
+ *
+ * [close] stops accepting records, publishes everything queued and then closes [handler].
+ */
+class AsyncHandler @JvmOverloads constructor(
+  val handler: Handler,
+  queueSize: Int = DEFAULT_QUEUE_SIZE,
+  val overflowPolicy: OverflowPolicy = OverflowPolicy.BLOCK,
+  val discardLevel: LogLevel = LogLevel.WARN,
+  val maxBatchSize: Int = DEFAULT_MAX_BATCH_SIZE,
+  val waitStrategy: WaitStrategy = WaitStrategy.PARK,
+  threadName: String = DEFAULT_THREAD_NAME
+) : Handler() {
+  init {
+    require(maxBatchSize > 0) { "maxBatchSize must be > 0" }
+  }
+
+  private val queue = RingBuffer<Handler, LogRecord>(queueSize)
+  private val submitted = AtomicLong()
+  private val completed = AtomicLong()
+  private val dropped = AtomicLong()
+  @field:Volatile private var closed = false
+  @field:Volatile private var publisherParked = false
+
+  private val publishSink = object : RingBuffer.Sink<Handler, LogRecord> {
+    override fun accept(target: Handler, element: LogRecord) {
+      try {
+        target.publish(element)
+      } catch (e: Throwable) {
+        // an Error must not end the publishing thread, producers and close() depend on it
+        LogMetrics.count(element.loggerName, element.logLevel, LogCounter.HANDLER_ERRORS)
+        reportError(null, e.asException(), ErrorManager.WRITE_FAILURE)
+      }
+    }
+  }
+
+  private val discardSink = object : RingBuffer.Sink<Handler, LogRecord> {
+    override fun accept(target: Handler, element: LogRecord) {
+      dropped.incrementAndGet()
+      LogMetrics.count(element.loggerName, element.logLevel, LogCounter.DROPPED)
+    }
+  }
+
+  private val thread = Thread({ publishBatches() }, threadName).apply {
+    isDaemon = true
+    start()
+  }
+
+  /** Approximate number of records waiting to be published */
+  val queueDepth: Int
+    get() = queue.size
+
+  /** Number of records discarded due to the [overflowPolicy] */
+  val droppedCount: Long
+    get() = dropped.get()
+
+  override fun publish(record: LogRecord?) {
+    if (record == null || !isLoggable(record) ||
+      record.level.intValue() < handler.level.intValue()) {
+      return
+    }
+    if (closed || Thread.currentThread() === thread) {
+      handler.publish(record)
+      return
+    }
+    val copy = if (record is ExtLogRecord) {
+      record.copyOf()
+    } else {
+      // infer the caller now, it can't be determined on the publishing thread
+      record.sourceClassName
+      record
+    }
+    while (!queue.offer(handler, copy)) {
+      when (overflowPolicy) {
+        OverflowPolicy.BLOCK -> waitForSpace()
+        OverflowPolicy.DROP_BELOW_LEVEL -> {
+          if (copy.level.intValue() < discardLevel.jdkLevel.intValue()) {
+            dropped.incrementAndGet()
+            LogMetrics.count(copy.loggerName, copy.logLevel, LogCounter.DROPPED)
+            return
+          }
+          waitForSpace()
+        }
+        OverflowPolicy.DROP_OLDEST -> if (queue.poll(discardSink)) completed.incrementAndGet()
+      }
+    }
+    submitted.incrementAndGet()
+    if (publisherParked) {
+      LockSupport.unpark(thread)
+    }
+    if (closed) {
+      // raced with close and the publishing thread may have already exited
+      drain()
+    }
+  }
+
+  private fun waitForSpace() {
+    when (waitStrategy) {
+      WaitStrategy.SPIN -> {
+      }
+      WaitStrategy.YIELD -> Thread.yield()
+      WaitStrategy.PARK -> LockSupport.parkNanos(this, PRODUCER_PARK_NANOS)
+    }
+  }
+
+  private fun publishBatches() {
+    while (true) {
+      if (publishBatch() > 0) {
+        continue
+      }
+      if (closed) {
+        if (queue.isEmpty) {
+          return
+        }
+        continue
+      }
+      when (waitStrategy) {
+        WaitStrategy.SPIN -> {
+        }
+        WaitStrategy.YIELD -> Thread.yield()
+        WaitStrategy.PARK -> {
+          publisherParked = true
+          if (queue.isEmpty && !closed) {
+            LockSupport.parkNanos(this, PUBLISHER_PARK_NANOS)
+          }
+          publisherParked = false
+        }
+      }
+    }
+  }
+
+  private fun publishBatch(): Int {
+    var count = 0
+    while (count < maxBatchSize && queue.poll(publishSink)) {
+      count++
+    }
+    if (count > 0) {
+      try {
+        handler.flush()
+      } catch (e: Throwable) {
+        reportError(null, e.asException(), ErrorManager.FLUSH_FAILURE)
+      }
+      completed.addAndGet(count.toLong())
+    }
+    return count
+  }
+
+  private fun Throwable.asException(): Exception = this as? Exception ?: Exception(this)
+
+  private fun drain() {
+    while (publishBatch() > 0) {
+    }
+  }
+
+  /**
+   * Waits until all records queued before this call have been published, then flushes [handler]
+   */
+  override fun flush() {
+    if (!closed && Thread.currentThread() !== thread) {
+      val target = submitted.get()
+      while (completed.get() < target && thread.isAlive) {
+        if (publisherParked) {
+          LockSupport.unpark(thread)
+        }
+        waitForSpace()
+      }
+    }
+    handler.flush()
+  }
+
+  @Throws(SecurityException::class)
+  override fun close() {
+    if (!closed) {
+      closed = true
+      LockSupport.unpark(thread)
+      if (Thread.currentThread() !== thread) {
+        var interrupted = false
+        while (thread.isAlive) {
+          try {
+            thread.join()
+          } catch (e: InterruptedException) {
+            interrupted = true
+          }
+        }
+        drain()
+        if (interrupted) Thread.currentThread().interrupt()
+      }
+    }
+    handler.close()
+  }
+
+  companion object {
+    const val DEFAULT_QUEUE_SIZE = 8192
+    const val DEFAULT_MAX_BATCH_SIZE = 256
+    const val DEFAULT_THREAD_NAME = "ealvalog-async-handler"
+    private const val PRODUCER_PARK_NANOS = 50_000L
+    private const val PUBLISHER_PARK_NANOS = 1_000_000L
+  }
+}
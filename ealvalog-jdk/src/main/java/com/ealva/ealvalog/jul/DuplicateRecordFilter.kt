@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.jul
+
+import com.ealva.ealvalog.core.ExtLogRecord
+import java.io.Closeable
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.logging.Filter
+import java.util.logging.Level
+import java.util.logging.LogRecord
+import java.util.logging.Logger
+
+/**
+ * Suppresses repeats of a record within a window. A record's fingerprint is its logger name,
+ * level, unformatted message (the format given to
+ * [com.ealva.ealvalog.LogEntry.setFormatAndArgs]), parameter hashes and thrown class. The first
+ * record with a fingerprint passes and repeats within [windowMillis] of it are dropped. The first
+ * repeat after the window passes as a new first occurrence, preceded by a "Suppressed N repeats"
+ * record logged through the same [Logger], so a flood produces one line plus one count per window.
+ * Summary records are recognized and never fingerprinted, so the filter may sit on that [Logger].
+ * Each record which passes also checks one slot, in turn, and reports the count of a slot whose
+ * window has ended, so the count of a burst which is not repeated later is still logged once other
+ * records pass. [close] reports all pending counts.
+ *
+ * Set the filter on a [java.util.logging.Logger], where it runs before any formatting or I/O. It
+ * is not meant for a [java.util.logging.Handler]: summaries are logged through the [Logger], so
+ * they would reach every handler of that logger and its parents, not only the filtered one.
+ * Fingerprints are kept in a fixed-size table of [tableSize] slots (rounded up to a power of 2)
+ * updated by compare and set. A colliding fingerprint evicts the slot, first reporting its count,
+ * so heavy collisions only let more duplicates through. The message of an [ExtLogRecord] is read
+ * from its builder, so a String is only created when a slot is filled.
+ */
+class DuplicateRecordFilter @JvmOverloads constructor(
+  windowMillis: Long = DEFAULT_WINDOW_MILLIS,
+  tableSize: Int = DEFAULT_TABLE_SIZE
+) : Filter, Closeable {
+  private val windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis)
+  private val slots: AtomicReferenceArray<Slot?>
+  private val mask: Int
+  private val sweepIndex = AtomicInteger()
+
+  /** Source of [System.nanoTime], replaced in tests */
+  internal var ticker: () -> Long = { System.nanoTime() }
+
+  init {
+    require(windowMillis > 0) { "windowMillis must be > 0" }
+    require(tableSize in 1..MAX_TABLE_SIZE) { "tableSize must be in 1..$MAX_TABLE_SIZE" }
+    val size = Integer.highestOneBit(tableSize - 1 shl 1).coerceAtLeast(1)
+    slots = AtomicReferenceArray(size)
+    mask = size - 1
+  }
+
+  override fun isLoggable(record: LogRecord?): Boolean {
+    if (record == null || record.parameters === SUMMARY_PARAMETERS) return true
+    val message: CharSequence =
+      (if (record is ExtLogRecord) record.messageChars else record.message) ?: return true
+    val fingerprint = fingerprintOf(record, message)
+    val index = (fingerprint xor (fingerprint ushr 32)).toInt() and mask
+    val now = ticker()
+    var text: String? = null
+    while (true) {
+      val slot = slots.get(index)
+      if (slot != null && slot.matches(fingerprint, message) && now - slot.start < windowNanos) {
+        slot.suppressed.incrementAndGet()
+        return false
+      }
+      val slotText = text ?: message.toString().also { text = it }
+      val fresh = Slot(fingerprint, slotText, record.loggerName, record.level, now)
+      if (slots.compareAndSet(index, slot, fresh)) {
+        slot?.let { summarize(it) }
+        sweep(now)
+        return true
+      }
+    }
+  }
+
+  /** Log the counts of all slots and empty the table */
+  override fun close() {
+    for (i in 0 until slots.length()) {
+      slots.getAndSet(i, null)?.let { summarize(it) }
+    }
+  }
+
+  /** Empty the next slot, reporting its count, if its window has ended with repeats suppressed */
+  private fun sweep(now: Long) {
+    val index = sweepIndex.getAndIncrement() and mask
+    val slot = slots.get(index) ?: return
+    if (now - slot.start >= windowNanos && slot.suppressed.get() > 0 &&
+      slots.compareAndSet(index, slot, null)) {
+      summarize(slot)
+    }
+  }
+
+  private fun summarize(slot: Slot) {
+    val count = slot.suppressed.getAndSet(0)
+    if (count > 0) {
+      val summary = LogRecord(slot.level, String.format(SUMMARY_FORMAT, count, slot.message))
+      summary.loggerName = slot.loggerName
+      summary.parameters = SUMMARY_PARAMETERS
+      Logger.getLogger(slot.loggerName ?: "").log(summary)
+    }
+  }
+
+  private class Slot(
+    val fingerprint: Long,
+    val message: String,
+    val loggerName: String?,
+    val level: Level,
+    val start: Long
+  ) {
+    val suppressed = AtomicLong(0)
+
+    fun matches(fingerprint: Long, message: CharSequence): Boolean =
+      this.fingerprint == fingerprint &&
+        (this.message === message || this.message.contentEquals(message))
+  }
+
+  companion object {
+    const val DEFAULT_WINDOW_MILLIS = 10_000L
+    const val DEFAULT_TABLE_SIZE = 1024
+    private const val MAX_TABLE_SIZE = 1 shl 20
+    private const val SUMMARY_FORMAT = "Suppressed %d repeats of: %s"
+    private const val MULTIPLIER = -0x61c8864680b583ebL // 2^64 / golden ratio
+
+    /** Marks summary records by identity. Empty, so formatters leave the message as is */
+    private val SUMMARY_PARAMETERS = arrayOfNulls<Any>(0)
+
+    private fun fingerprintOf(record: LogRecord, message: CharSequence): Long {
+      var hash = mix(0L, record.loggerName?.hashCode() ?: 0)
+      hash = mix(hash, record.level.intValue())
+      hash = mix(hash, hashOf(message))
+      val parameters = record.parameters
+      if (parameters != null) {
+        // an ExtLogRecord reuses its array, slots past the count are stale nulls
+        val count = if (record is ExtLogRecord) record.parameterCount else parameters.size
+        for (i in 0 until count) {
+          hash = mix(hash, parameters[i]?.hashCode() ?: 0)
+        }
+      }
+      return mix(hash, record.thrown?.javaClass?.hashCode() ?: 0)
+    }
+
+    /** Same value as [String.hashCode], without creating a String */
+    private fun hashOf(chars: CharSequence): Int {
+      if (chars is String) return chars.hashCode()
+      var hash = 0
+      for (i in 0 until chars.length) {
+        hash = 31 * hash + chars[i].toInt()
+      }
+      return hash
+    }
+
+    private fun mix(hash: Long, value: Int): Long {
+      val h = (hash + value) * MULTIPLIER
+      return h xor (h ushr 29)
+    }
+  }
+}
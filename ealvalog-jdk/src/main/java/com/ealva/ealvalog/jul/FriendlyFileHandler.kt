@@ -20,17 +20,24 @@ package com.ealva.ealvalog.jul
 
 import com.ealva.ealvalog.LoggerFilter
 import com.ealva.ealvalog.core.ExtRecordFormatter
+import com.ealva.ealvalog.core.logLevel
 import com.ealva.ealvalog.filter.AlwaysNeutralFilter
+import com.ealva.ealvalog.metrics.LogCounter
+import com.ealva.ealvalog.metrics.LogMetrics
 import java.io.File
 import java.io.IOException
 import java.util.logging.ErrorManager
 import java.util.logging.FileHandler
+import java.util.logging.LogRecord
 import java.util.regex.Pattern
 
 @Suppress("unused")
 /**
  * [Original on stackoverflow](https://stackoverflow.com/a/31536584/2660904)
  *
+ * Writing and flushing hold monitors, which pin virtual threads to their carrier. Use
+ * [LockingFileHandler] where records are logged from virtual threads.
+ *
  * Created by Eric A. Snell on 8/18/18.
  */
 class FriendlyFileHandler @Throws(IOException::class, SecurityException::class) constructor(
@@ -44,6 +51,8 @@ class FriendlyFileHandler @Throws(IOException::class, SecurityException::class)
   manager: ErrorManager? = null
 ) :
   FileHandler(fileNamePattern, byteLimitPerFile, fileCount, appendToExistingFile) {
+  /** The record being published, so errors FileHandler reports can be counted against it */
+  private var publishing: LogRecord? = null
 
   init {
     formatter = ExtRecordFormatter(formatterPattern, formatterLogErrors)
@@ -101,6 +110,20 @@ class FriendlyFileHandler @Throws(IOException::class, SecurityException::class)
     }
   }
 
+  @Synchronized override fun publish(record: LogRecord?) {
+    publishing = record
+    try {
+      super.publish(record)
+    } finally {
+      publishing = null
+    }
+  }
+
+  override fun reportError(msg: String?, ex: Exception?, code: Int) {
+    publishing?.let { LogMetrics.count(it.loggerName, it.logLevel, LogCounter.HANDLER_ERRORS) }
+    super.reportError(msg, ex, code)
+  }
+
   @Synchronized override fun flush() {
     // only let one Handler flush at a time.
     synchronized(FriendlyFileHandler) {
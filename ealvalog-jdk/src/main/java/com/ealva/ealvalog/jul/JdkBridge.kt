@@ -27,6 +27,8 @@ import com.ealva.ealvalog.Marker
 import com.ealva.ealvalog.core.Bridge
 import com.ealva.ealvalog.core.CoreLogger
 import com.ealva.ealvalog.core.ExtLogRecord
+import com.ealva.ealvalog.core.LevelCache
+import com.ealva.ealvalog.filter.AlwaysAcceptFilter
 import com.ealva.ealvalog.filter.AlwaysNeutralFilter
 import java.util.logging.Handler
 
@@ -53,9 +55,14 @@ class JdkBridge internal constructor(
     get() = LogLevel.fromLevel(jdkLogger.level)
     set(logLevel) {
       jdkLogger.level = logLevel.jdkLevel
+      LevelCache.invalidate()
     }
 
   override var includeLocation: Boolean = false
+    set(value) {
+      field = value
+      LevelCache.invalidate()
+    }
 
   override var logToParent: Boolean
     get() = jdkLogger.useParentHandlers
@@ -72,6 +79,7 @@ class JdkBridge internal constructor(
 
   override fun setFilter(filter: LoggerFilter?) {
     this.filter = filter ?: AlwaysNeutralFilter
+    LevelCache.invalidate()
   }
 
   override fun shouldIncludeLocation(
@@ -82,6 +90,29 @@ class JdkBridge internal constructor(
     return includeLocation || parent?.shouldIncludeLocation(level, marker, throwable) == true
   }
 
+  /**
+   * Unless [JdkLoggerFactory.cacheLevels] all levels are reported, without [LevelCache.LEVELS_ONLY],
+   * so every check asks java.util.logging.Logger.isLoggable and level changes made directly to
+   * java.util.logging are always seen. Otherwise levels come from isLoggable, which also accounts
+   * for levels inherited from parent loggers, and filters other than always neutral or always
+   * accept make the levels non-definitive.
+   */
+  override fun levelCacheBits(): Int {
+    var bits = LevelCache.ALL_LEVELS
+    if (JdkLoggerFactory.cacheLevels) {
+      bits = if (filter === AlwaysNeutralFilter || filter === AlwaysAcceptFilter) {
+        LevelCache.LEVELS_ONLY
+      } else 0
+      for (level in LogLevel.values()) {
+        if (jdkLogger.isLoggable(level.jdkLevel)) {
+          bits = bits or LevelCache.levelBit(level)
+        }
+      }
+    }
+    val location = shouldIncludeLocation(LogLevel.ALL, null, null)
+    return bits or if (location) LevelCache.INCLUDE_LOCATION else LevelCache.EXCLUDE_LOCATION
+  }
+
   override fun willLogToParent(loggerName: String): Boolean {
     return !bridgeIsLoggerPeer(loggerName) || jdkLogger.useParentHandlers
   }
@@ -105,8 +136,12 @@ class JdkBridge internal constructor(
   }
 
   override fun log(logEntry: LogEntry) {
-    ExtLogRecord.fromLogEntry(logEntry).use { record ->
+    // logEntry is closed by whoever obtained it, only a copy made here is closed here
+    val record = ExtLogRecord.fromLogEntry(logEntry)
+    try {
       jdkLogger.log(record)
+    } finally {
+      if (record !== logEntry) record.close()
     }
   }
 
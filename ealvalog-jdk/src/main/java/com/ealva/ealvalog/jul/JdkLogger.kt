@@ -63,7 +63,7 @@ class JdkLogger internal constructor(
       throwable,
       mdcContext?.mdc,
       mdcContext?.ndc
-    )
+    ).also { it.messageStyle = messageStyle }
   }
 
   val bridgeForTest: JdkBridge
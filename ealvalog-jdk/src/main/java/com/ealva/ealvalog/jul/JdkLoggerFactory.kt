@@ -23,24 +23,49 @@ import com.ealva.ealvalog.Logger
 import com.ealva.ealvalog.LoggerFactory
 import com.ealva.ealvalog.LoggerFilter
 import com.ealva.ealvalog.Marker
-import com.ealva.ealvalog.filter.AlwaysNeutralFilter
-import java.util.concurrent.ConcurrentHashMap
-import java.util.concurrent.ConcurrentMap
-import java.util.concurrent.locks.ReentrantLock
+import com.ealva.ealvalog.core.BridgeTree
+import com.ealva.ealvalog.core.LevelCache
+import com.ealva.ealvalog.util.MessageStyle
 import java.util.logging.Handler
 import java.util.logging.LogManager
 
 /**
  * Factory for [JdkLogger] instances
  *
+ * By default every level check asks the java.util.logging.Logger, so level changes made directly
+ * to java.util.logging are seen. See [cacheLevels] to cache them instead.
  *
  * Created by Eric A. Snell on 3/4/17.
  */
 object JdkLoggerFactory : LoggerFactory {
-  private val bridgeMap: ConcurrentHashMap<String, JdkBridge> = ConcurrentHashMap()
-  private val loggerMap: ConcurrentMap<String, JdkLogger> = ConcurrentHashMap()
-  private val bridgeTreeLock = ReentrantLock()
-  private val bridgeRoot = JdkBridge(LoggerFactory.ROOT_LOGGER_NAME)
+  private val bridgeTree = BridgeTree<JdkBridge, JdkLogger>(
+    JdkBridge(LoggerFactory.ROOT_LOGGER_NAME),
+    { bridge, parent -> bridge.parent = parent },
+    { logger -> logger.update(configuration) }
+  )
+
+  /**
+   * How the format and args of records created by [JdkLogger]s are combined. Defaults to
+   * [MessageStyle.PRINTF]. Set [MessageStyle.SLF4J] if format strings use "{}" anchors.
+   */
+  @field:Volatile var messageStyle: MessageStyle = MessageStyle.PRINTF
+
+  /**
+   * If true, loggers cache which levels their java.util.logging.Logger allows, see [LevelCache],
+   * so a disabled level costs a volatile read and a bit test. Defaults to false. Changes made
+   * through ealvalog invalidate the cache, and on Java 9 and later so do
+   * LogManager.readConfiguration and updateConfiguration. Anything else, such as
+   * java.util.logging.Logger.setLevel called directly or via the LoggingMXBean, or any
+   * configuration change on Java 8 and Android, is not seen until [LevelCache.invalidate] is
+   * called. Only enable if java.util.logging levels are changed through ealvalog.
+   */
+  @JvmStatic var cacheLevels: Boolean
+    get() = cachingLevels
+    set(value) {
+      cachingLevels = value
+      LevelCache.invalidate()
+    }
+  @field:Volatile private var cachingLevels = false
 
   private val configuration: JdkLoggerConfiguration = object :
     JdkLoggerConfiguration {
@@ -65,8 +90,15 @@ object JdkLoggerFactory : LoggerFactory {
     }
 
     override fun getBridge(loggerClassName: String): JdkBridge {
-      return getTheJdkBridge(loggerClassName)
+      return bridgeTree.getBridge(loggerClassName)
     }
+
+    override val messageStyle: MessageStyle
+      get() = this@JdkLoggerFactory.messageStyle
+  }
+
+  init {
+    addConfigurationListener()
   }
 
   val root = JdkLogger(LoggerFactory.ROOT_LOGGER_NAME, null, configuration)
@@ -86,41 +118,20 @@ object JdkLoggerFactory : LoggerFactory {
         handler.close()
       }
 
-      for (bridge in bridgeMap.values) {
-        bridge.setToDefault()
-      }
+      bridgeTree.forEachBridge { it.setToDefault() }
     }
 
-    bridgeMap.clear()
-    loggerMap.clear()
-    setParents()
-    updateLoggers()
+    bridgeTree.clear()
   }
 
   override fun get(name: String, marker: Marker?, includeLocation: Boolean): JdkLogger {
     if (LoggerFactory.ROOT_LOGGER_NAME == name) {
       return root
     }
-    bridgeTreeLock.lock()
-    try {
-      var created = false
-      val logger = loggerMap.getOrPut(name) {
-        created = true // if we create a new one we need to ensure the parent hierarchy is correct
-        JdkLogger(
-          name,
-          marker,
-          configuration
-        )
+    return bridgeTree.getOrMakeLogger(name, { JdkLogger(name, marker, configuration) }) { logger ->
+      if (includeLocation) {
+        logger.includeLocation = true
       }
-      if (created) {
-        setParents()
-        if (includeLocation) {
-          logger.includeLocation = true
-        }
-      }
-      return logger
-    } finally {
-      bridgeTreeLock.unlock()
     }
   }
 
@@ -128,158 +139,45 @@ object JdkLoggerFactory : LoggerFactory {
     return get(name, null, false)
   }
 
-  private fun setFilter(loggerName: String, filter: LoggerFilter) {
-    bridgeTreeLock.lock()
+  /**
+   * LogManager.addConfigurationListener is Java 9+ and this is compiled for Java 8, so it's found
+   * reflectively. If unavailable, or denied by a SecurityManager, configuration changes must be
+   * followed by [LevelCache.invalidate].
+   */
+  private fun addConfigurationListener() {
     try {
-      val bridge = getTheJdkBridge(loggerName)
-      if (bridge.name == loggerName) {
-        bridge.setFilter(filter)
-      } else {
-        makeNewBridge(
-          bridge,
-          loggerName,
-          filter,
-          null,
-          null
-        )
-      }
-    } finally {
-      bridgeTreeLock.unlock()
+      LogManager::class.java.getMethod("addConfigurationListener", Runnable::class.java)
+        .invoke(LogManager.getLogManager(), Runnable { LevelCache.invalidate() })
+    } catch (e: Exception) {
+      // Java 8, Android, or not permitted
     }
   }
 
+  private fun setFilter(loggerName: String, filter: LoggerFilter) {
+    bridgeTree.modifyOrMake(loggerName, { it.setFilter(filter) }) { JdkBridge(loggerName, filter) }
+  }
+
   private fun addHandler(loggerName: String, loggerHandler: Handler) {
-    bridgeTreeLock.lock()
-    try {
-      val bridge = getTheJdkBridge(loggerName)
-      if (bridge.name == loggerName) {
-        bridge.addLoggerHandler(loggerHandler)
-      } else {
-        makeNewBridge(
-          bridge,
-          loggerName,
-          null,
-          loggerHandler,
-          null
-        )
-      }
-    } finally {
-      bridgeTreeLock.unlock()
+    bridgeTree.modifyOrMake(loggerName, { it.addLoggerHandler(loggerHandler) }) {
+      JdkBridge(loggerName, handler = loggerHandler)
     }
   }
 
   private fun setLevel(loggerName: String, logLevel: LogLevel) {
-    bridgeTreeLock.lock()
-    try {
-      val bridge = getTheJdkBridge(loggerName)
-      if (bridge.name == loggerName) {
-        bridge.logLevel = logLevel
-      } else {
-        makeNewBridge(
-          bridge,
-          loggerName,
-          null,
-          null,
-          logLevel
-        )
-      }
-    } finally {
-      bridgeTreeLock.unlock()
+    bridgeTree.modifyOrMake(loggerName, { it.logLevel = logLevel }) {
+      JdkBridge(loggerName, logLevel = logLevel)
     }
   }
 
   private fun setShouldLogToParent(loggerName: String, logToParent: Boolean) {
-    bridgeTreeLock.lock()
-    try {
-      val bridge = getTheJdkBridge(loggerName)
-      if (bridge.name == loggerName) {
-        bridge.logToParent = logToParent
-      } else {
-        makeNewBridge(bridge, loggerName, null, null, null).logToParent = logToParent
-      }
-    } finally {
-      bridgeTreeLock.unlock()
+    bridgeTree.modifyOrMake(loggerName, { it.logToParent = logToParent }) {
+      JdkBridge(loggerName).apply { this.logToParent = logToParent }
     }
   }
 
   private fun setShouldIncludeLocation(loggerName: String, includeLocation: Boolean) {
-    bridgeTreeLock.lock()
-    try {
-      val bridge = getTheJdkBridge(loggerName)
-      if (bridge.name == loggerName) {
-        bridge.includeLocation = includeLocation
-      } else {
-        makeNewBridge(bridge, loggerName, null, null, null).includeLocation = includeLocation
-      }
-    } finally {
-      bridgeTreeLock.unlock()
-    }
-  }
-
-  private fun makeNewBridge(
-    parent: JdkBridge,
-    loggerName: String,
-    filter: LoggerFilter?,
-    handler: Handler?,
-    logLevel: LogLevel?
-  ): JdkBridge {
-    val newBridge =
-      JdkBridge(loggerName, filter ?: AlwaysNeutralFilter, handler, logLevel)
-    newBridge.parent = parent
-    bridgeMap.putIfAbsent(loggerName, newBridge)
-    setParents()
-    updateLoggers()
-    return newBridge
-  }
-
-  private fun updateLoggers() {
-    for (logger in loggerMap.values) {
-      logger.update(configuration)
-    }
-  }
-
-  private fun getTheJdkBridge(loggerClassName: String): JdkBridge {
-    var bridge: JdkBridge? = bridgeMap[loggerClassName]
-    if (bridge != null) {
-      return bridge
-    }
-    var className: String? = getParentName(loggerClassName)
-    while (className != null) {
-      bridge = bridgeMap[className]
-      if (bridge != null) {
-        return bridge
-      }
-      className = getParentName(className)
-    }
-    return bridgeRoot
-  }
-
-  private fun setParents() {
-    for (entry in bridgeMap.entries) {
-      val bridge = entry.value
-      var key = entry.key
-      if (key.isNotEmpty()) {
-        val i = key.lastIndexOf('.')
-        if (i > 0) {
-          key = key.substring(0, i)
-          var parent: JdkBridge? =
-            getTheJdkBridge(key)
-          if (parent == null) {
-            parent = bridgeRoot
-          }
-          bridge.parent = parent
-        } else {
-          bridge.parent = bridgeRoot
-        }
-      }
-    }
-  }
-
-  private fun getParentName(name: String): String? {
-    if (name.isEmpty()) {
-      return null
+    bridgeTree.modifyOrMake(loggerName, { it.includeLocation = includeLocation }) {
+      JdkBridge(loggerName).apply { this.includeLocation = includeLocation }
     }
-    val i = name.lastIndexOf('.')
-    return if (i > 0) name.substring(0, i) else ""
   }
 }
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.jul
+
+import com.ealva.ealvalog.LoggerFilter
+import com.ealva.ealvalog.core.ExtRecordFormatter
+import com.ealva.ealvalog.filter.AlwaysNeutralFilter
+import java.io.BufferedOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.FilterOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.io.Writer
+import java.nio.channels.FileChannel
+import java.nio.file.FileAlreadyExistsException
+import java.nio.file.Files
+import java.nio.file.LinkOption
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.ConcurrentHashMap
+import java.util.logging.ErrorManager
+import java.util.regex.Pattern
+import kotlin.concurrent.withLock
+
+private const val MAX_LOCKS = 100
+
+/**
+ * A drop-in replacement for [FriendlyFileHandler] built on [LockingStreamHandler], so writing,
+ * rotating and flushing never hold a monitor. Use it where records are logged from virtual
+ * threads. Each handler has its own lock, so unlike [FriendlyFileHandler] handlers writing
+ * different files don't wait on one another to flush.
+ *
+ * [fileNamePattern], [byteLimitPerFile], [fileCount] and [appendToExistingFile] have the same
+ * meaning as for [java.util.logging.FileHandler]: "%t", "%h", "%g", "%u" and "%%" are supported,
+ * and a ".lck" file marks the files in use by this handler.
+ */
+class LockingFileHandler @JvmOverloads @Throws(IOException::class, SecurityException::class)
+constructor(
+  private val fileNamePattern: String,
+  byteLimitPerFile: Int,
+  fileCount: Int,
+  appendToExistingFile: Boolean = true,
+  formatterPattern: String = ExtRecordFormatter.TYPICAL_FORMAT,
+  formatterLogErrors: Boolean = true,
+  loggerFilter: LoggerFilter = AlwaysNeutralFilter,
+  manager: ErrorManager? = null
+) : LockingStreamHandler(null, ExtRecordFormatter(formatterPattern, formatterLogErrors)) {
+  private val limit = if (byteLimitPerFile < 0) 0 else byteLimitPerFile.toLong()
+  private val files: Array<File>
+  private val lockFile: File
+  private val lockChannel: FileChannel
+  private lateinit var meter: MeteredStream
+
+  init {
+    require(fileCount >= 1) { "fileCount must be >= 1" }
+    require(fileNamePattern.isNotEmpty()) { "fileNamePattern must not be empty" }
+    filter = JdkFilter(loggerFilter)
+    manager?.let { mgr -> errorManager = mgr }
+
+    var unique = 0
+    var channel: FileChannel? = null
+    var lockName = ""
+    while (channel == null) {
+      if (unique == MAX_LOCKS) throw IOException("Couldn't get lock for $fileNamePattern")
+      lockName = generate(fileNamePattern, fileCount, 0, unique).path + ".lck"
+      channel = tryLock(lockName)
+      unique++
+    }
+    lockChannel = channel
+    lockFile = File(lockName)
+    files = Array(fileCount) { generation ->
+      generate(fileNamePattern, fileCount, generation, unique - 1)
+    }
+    try {
+      lock.withLock { open(files[0], appendToExistingFile) }
+    } catch (e: Exception) {
+      // otherwise later handlers would skip to the next "%u" file
+      releaseLockFile()
+      throw e
+    }
+  }
+
+  /***
+   * Finds the most recent log file matching the pattern.
+   * This is just a guess - if you have a complicated pattern
+   * format it may not work.
+   *
+   * Currently supported format strings: g, u
+   *
+   * @return A File of the current log file, or null on error.
+   */
+  val currentLogFile: File?
+    get() = lock.withLock {
+      // so the file has the most recent date on it. Holding the lock prevents a rotation
+      flush()
+
+      // handle incremental number formats and handle default case where %g is appended to end
+      val patternRegex = "${fileNamePattern.replace("%[gu]".toRegex(), "\\\\d*")}(\\.\\d*)?$"
+      val matcher = Pattern.compile(patternRegex).matcher("")
+
+      // check all files in the directory where this log would be
+      val logs = File(fileNamePattern).absoluteFile.parentFile.listFiles { pathname ->
+        matcher.reset(pathname.absolutePath)
+        matcher.find()
+      }
+      logs?.maxBy { it.lastModified() }
+    }
+
+  override fun afterWrite(writer: Writer) {
+    super.afterWrite(writer)
+    if (limit > 0 && meter.written >= limit) {
+      rotate()
+    }
+  }
+
+  override fun close() {
+    lock.withLock {
+      super.close()
+      releaseLockFile()
+    }
+  }
+
+  private fun releaseLockFile() {
+    try {
+      lockChannel.close()
+    } catch (e: IOException) {
+      // ignore
+    }
+    lockFile.delete()
+    locks.remove(lockFile.path)
+  }
+
+  /** Call with [lock] held */
+  private fun rotate() {
+    flushAndClose()
+    for (i in files.size - 2 downTo 0) {
+      val file = files[i]
+      if (file.isFile) {
+        val next = files[i + 1]
+        next.delete()
+        file.renameTo(next)
+      }
+    }
+    try {
+      open(files[0], false)
+    } catch (e: IOException) {
+      reportError(null, e, ErrorManager.OPEN_FAILURE)
+    }
+  }
+
+  /** Call with [lock] held */
+  private fun open(file: File, append: Boolean) {
+    val existing = if (append) file.length() else 0L
+    meter = MeteredStream(BufferedOutputStream(FileOutputStream(file, append)), existing)
+    setOutputStream(meter)
+  }
+
+  private class MeteredStream(out: OutputStream, var written: Long) : FilterOutputStream(out) {
+    override fun write(b: Int) {
+      out.write(b)
+      written++
+    }
+
+    override fun write(b: ByteArray, off: Int, len: Int) {
+      out.write(b, off, len)
+      written += len
+    }
+  }
+
+  companion object {
+    /** Lock files held by handlers in this JVM */
+    private val locks: MutableSet<String> = ConcurrentHashMap.newKeySet()
+
+    private fun tryLock(lockName: String): FileChannel? {
+      if (!locks.add(lockName)) return null
+      try {
+        val path = File(lockName).toPath()
+        val channel = try {
+          FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+        } catch (e: FileAlreadyExistsException) {
+          // possibly left by a process which ended without closing, reuse it if it's not locked
+          if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+              FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+            } catch (e: IOException) {
+              null
+            }
+          } else null
+        }
+        val locked = try {
+          channel?.tryLock() != null
+        } catch (e: IOException) {
+          false
+        }
+        if (!locked) {
+          channel?.close()
+          locks.remove(lockName)
+          return null
+        }
+        return channel
+      } catch (e: Throwable) {
+        // eg. the directory doesn't exist. Left in locks, later handlers would skip this name
+        locks.remove(lockName)
+        throw e
+      }
+    }
+
+    /**
+     * Generate a file name from [pattern] as [java.util.logging.FileHandler] does
+     */
+    private fun generate(pattern: String, count: Int, generation: Int, unique: Int): File {
+      val builder = StringBuilder()
+      var sawGeneration = false
+      var sawUnique = false
+      var i = 0
+      while (i < pattern.length) {
+        val ch = pattern[i++]
+        if (ch == '/' || ch == File.separatorChar) {
+          builder.append(File.separatorChar)
+          continue
+        }
+        if (ch == '%' && i < pattern.length) {
+          val replacement: Any? = when (pattern[i]) {
+            't' -> System.getProperty("java.io.tmpdir")
+            'h' -> System.getProperty("user.home")
+            'g' -> generation.also { sawGeneration = true }
+            'u' -> unique.also { sawUnique = true }
+            '%' -> '%'
+            else -> null
+          }
+          if (replacement != null) {
+            builder.append(replacement)
+            i++
+            continue
+          }
+        }
+        builder.append(ch)
+      }
+      if (count > 1 && !sawGeneration) builder.append('.').append(generation)
+      if (unique > 0 && !sawUnique) builder.append('.').append(unique)
+      return File(builder.toString())
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.jul
+
+import com.ealva.ealvalog.core.ExtRecordFormatter
+import com.ealva.ealvalog.core.logLevel
+import com.ealva.ealvalog.metrics.LogCounter
+import com.ealva.ealvalog.metrics.LogMetrics
+import java.io.IOException
+import java.io.OutputStream
+import java.io.OutputStreamWriter
+import java.io.UnsupportedEncodingException
+import java.io.Writer
+import java.util.concurrent.locks.ReentrantLock
+import java.util.logging.ErrorManager
+import java.util.logging.Formatter
+import java.util.logging.Handler
+import java.util.logging.LogRecord
+import kotlin.concurrent.withLock
+
+/**
+ * Writes formatted records to an [OutputStream] as [java.util.logging.StreamHandler] does, but
+ * guards the stream with a [ReentrantLock] instead of synchronizing on the handler. A virtual
+ * thread waiting on, or doing I/O while holding, a monitor pins its carrier thread. Waiting on a
+ * [ReentrantLock] does not.
+ *
+ * Records are formatted before the lock is taken so only the write is serialized. The formatter
+ * must therefore be safe for concurrent use, as [ExtRecordFormatter] is.
+ */
+open class LockingStreamHandler @JvmOverloads constructor(
+  outputStream: OutputStream? = null,
+  formatter: Formatter = ExtRecordFormatter()
+) : Handler() {
+  /** Guards the output stream, subclasses hold it while replacing or rotating the stream */
+  protected val lock = ReentrantLock()
+  @field:Volatile private var writer: Writer? = null
+  private var output: OutputStream? = null
+  private var wroteHead = false
+
+  init {
+    this.formatter = formatter
+    outputStream?.let { setOutputStream(it) }
+  }
+
+  override fun publish(record: LogRecord?) {
+    if (record == null || !isLoggable(record)) return
+    val msg = try {
+      formatter.format(record)
+    } catch (e: Exception) {
+      LogMetrics.count(record.loggerName, record.logLevel, LogCounter.HANDLER_ERRORS)
+      reportError(null, e, ErrorManager.FORMAT_FAILURE)
+      return
+    }
+    lock.withLock {
+      val current = writer ?: return
+      try {
+        writeHead(current)
+        current.write(msg)
+        afterWrite(current)
+      } catch (e: Exception) {
+        LogMetrics.count(record.loggerName, record.logLevel, LogCounter.HANDLER_ERRORS)
+        reportError(null, e, ErrorManager.WRITE_FAILURE)
+      }
+    }
+  }
+
+  /**
+   * Called with [lock] held after each record is written. Flushes [writer], subclasses may also
+   * rotate the stream
+   */
+  @Throws(IOException::class)
+  protected open fun afterWrite(writer: Writer) {
+    writer.flush()
+  }
+
+  /** @return true if there's an output stream and [record] passes the level and filter */
+  override fun isLoggable(record: LogRecord?): Boolean {
+    return writer != null && record != null && super.isLoggable(record)
+  }
+
+  override fun flush() {
+    lock.withLock {
+      try {
+        writer?.flush()
+      } catch (e: Exception) {
+        reportError(null, e, ErrorManager.FLUSH_FAILURE)
+      }
+    }
+  }
+
+  override fun close() {
+    lock.withLock { flushAndClose() }
+  }
+
+  @Throws(SecurityException::class, UnsupportedEncodingException::class)
+  override fun setEncoding(encoding: String?) {
+    lock.withLock {
+      super.setEncoding(encoding)
+      output?.let { writer = makeWriter(it) }
+    }
+  }
+
+  /**
+   * Close any current stream, writing the formatter's tail, and write to [out] from now on
+   */
+  protected fun setOutputStream(out: OutputStream) {
+    lock.withLock {
+      flushAndClose()
+      output = out
+      wroteHead = false
+      writer = try {
+        makeWriter(out)
+      } catch (e: UnsupportedEncodingException) {
+        reportError(null, e, ErrorManager.OPEN_FAILURE)
+        OutputStreamWriter(out)
+      }
+    }
+  }
+
+  /** Writes any head and the tail, then closes the current stream. Call with [lock] held */
+  protected fun flushAndClose() {
+    val current = writer ?: return
+    try {
+      writeHead(current)
+      current.write(formatter.getTail(this))
+      current.flush()
+      current.close()
+    } catch (e: Exception) {
+      reportError(null, e, ErrorManager.CLOSE_FAILURE)
+    }
+    writer = null
+    output = null
+  }
+
+  private fun writeHead(current: Writer) {
+    if (!wroteHead) {
+      current.write(formatter.getHead(this))
+      wroteHead = true
+    }
+  }
+
+  private fun makeWriter(out: OutputStream): Writer {
+    val encoding = encoding
+    return if (encoding == null) OutputStreamWriter(out) else OutputStreamWriter(out, encoding)
+  }
+}
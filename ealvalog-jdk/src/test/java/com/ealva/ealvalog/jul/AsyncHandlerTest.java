@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.jul;
+
+import com.ealva.ealvalog.LogLevel;
+import com.ealva.ealvalog.async.OverflowPolicy;
+import com.ealva.ealvalog.async.WaitStrategy;
+import com.ealva.ealvalog.core.ExtLogRecord;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class AsyncHandlerTest {
+  private static final String BLOCK = "block";
+  private static final String ERROR = "error";
+
+  private final RecordingHandler recorder = new RecordingHandler();
+  private AsyncHandler handler;
+
+  @After
+  public void tearDown() {
+    recorder.release.countDown();
+    if (handler != null) {
+      handler.close();
+    }
+  }
+
+  @Test
+  public void testPublishesCopiesInBatches() throws InterruptedException {
+    handler = new AsyncHandler(recorder);
+    block();
+    for (int i = 0; i < 10; i++) {
+      try (ExtLogRecord record = record(LogLevel.INFO)) {
+        record.setFormatAndArgs("%d", i);
+        handler.publish(record);
+      }
+    }
+    recorder.release.countDown();
+    handler.close();
+
+    assertThat(recorder.records.size(), is(10));
+    for (int i = 0; i < 10; i++) {
+      final ExtLogRecord record = (ExtLogRecord)recorder.records.get(i);
+      assertThat(record.getParameters()[0], is(i));
+    }
+    assertThat(recorder.records.get(0), is(not(sameInstance(recorder.records.get(1)))));
+    assertThat(recorder.publishThreads.get(0), is(not(sameInstance(Thread.currentThread()))));
+    // the 10 queued behind the blocked record are published in the same batch
+    assertThat(recorder.flushCount.get(), is(1));
+    assertThat(recorder.closed, is(true));
+  }
+
+  @Test
+  public void testMaxBatchSize() throws InterruptedException {
+    handler = new AsyncHandler(recorder, 16, OverflowPolicy.BLOCK, LogLevel.WARN, 4);
+    block();
+    log(LogLevel.INFO, "0", "1", "2", "3", "4", "5", "6", "7", "8", "9");
+    recorder.release.countDown();
+    handler.close();
+    assertThat(messages(), contains("0", "1", "2", "3", "4", "5", "6", "7", "8", "9"));
+    // block+0..2, 3..6, 7..9
+    assertThat(recorder.flushCount.get(), is(3));
+  }
+
+  @Test
+  public void testDiscardBelowLevel() throws InterruptedException {
+    handler = new AsyncHandler(recorder, 2, OverflowPolicy.DROP_BELOW_LEVEL, LogLevel.WARN);
+    block();
+    log(LogLevel.INFO, "0", "1", "dropped");
+    log(LogLevel.DEBUG, "dropped");
+    assertThat(handler.getDroppedCount(), is(2L));
+    recorder.release.countDown();
+    handler.close();
+    assertThat(messages(), contains("0", "1"));
+  }
+
+  @Test
+  public void testDropOldest() throws InterruptedException {
+    handler = new AsyncHandler(recorder, 2, OverflowPolicy.DROP_OLDEST, LogLevel.WARN, 8,
+                               WaitStrategy.YIELD);
+    block();
+    log(LogLevel.INFO, "0", "1", "2", "3");
+    assertThat(handler.getDroppedCount(), is(2L));
+    assertThat(handler.getQueueDepth(), is(2));
+    recorder.release.countDown();
+    handler.close();
+    assertThat(messages(), contains("2", "3"));
+  }
+
+  @Test
+  public void testBelowWrappedLevelNotQueued() {
+    recorder.setLevel(Level.WARNING);
+    handler = new AsyncHandler(recorder);
+    log(LogLevel.INFO, "info");
+    handler.flush();
+    assertThat(recorder.records, is(empty()));
+  }
+
+  @Test
+  public void testFlushWaitsForQueuedRecords() {
+    handler = new AsyncHandler(recorder);
+    log(LogLevel.INFO, "0", "1", "2");
+    handler.flush();
+    assertThat(messages(), contains("0", "1", "2"));
+  }
+
+  @Test
+  public void testPlainRecordPassedThrough() {
+    handler = new AsyncHandler(recorder);
+    final java.util.logging.Logger julLogger =
+        java.util.logging.Logger.getLogger(AsyncHandlerTest.class.getName());
+    julLogger.setUseParentHandlers(false);
+    julLogger.addHandler(handler);
+    try {
+      julLogger.info("plain");
+      handler.flush();
+    } finally {
+      julLogger.removeHandler(handler);
+    }
+    final LogRecord record = recorder.records.get(0);
+    assertThat(record, is(not(instanceOf(ExtLogRecord.class))));
+    assertThat(record.getSourceMethodName(), is("testPlainRecordPassedThrough"));
+  }
+
+  @Test
+  public void testErrorFromWrappedHandlerDoesNotStopPublishing() {
+    handler = new AsyncHandler(recorder, 2, OverflowPolicy.BLOCK, LogLevel.WARN, 1);
+    handler.setErrorManager(new ErrorManager() {
+      @Override public synchronized void error(String msg, Exception ex, int code) {
+      }
+    });
+    log(LogLevel.INFO, "0", ERROR, "1", "2", "3");
+    handler.close();
+    assertThat(messages(), contains("0", "1", "2", "3"));
+  }
+
+  private void block() throws InterruptedException {
+    log(LogLevel.INFO, BLOCK);
+    assertThat(recorder.blocked.await(10, TimeUnit.SECONDS), is(true));
+  }
+
+  private void log(LogLevel level, String... messages) {
+    for (String message : messages) {
+      try (ExtLogRecord record = record(level)) {
+        record.append(message);
+        handler.publish(record);
+      }
+    }
+  }
+
+  private List<String> messages() {
+    return recorder.records.stream().map(LogRecord::getMessage).collect(Collectors.toList());
+  }
+
+  private static ExtLogRecord record(LogLevel level) {
+    return ExtLogRecord.get("fqcn", level, "name", null, null, null, null);
+  }
+
+  private static class RecordingHandler extends Handler {
+    final List<LogRecord> records = new CopyOnWriteArrayList<>();
+    final List<Thread> publishThreads = new CopyOnWriteArrayList<>();
+    final AtomicInteger flushCount = new AtomicInteger();
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    volatile boolean closed;
+
+    RecordingHandler() {
+      setLevel(Level.ALL);
+    }
+
+    @Override public void publish(final LogRecord record) {
+      if (ERROR.equals(record.getMessage())) {
+        throw new AssertionError(ERROR);
+      }
+      if (BLOCK.equals(record.getMessage())) {
+        blocked.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {
+        }
+      } else {
+        records.add(record);
+        publishThreads.add(Thread.currentThread());
+      }
+    }
+
+    @Override public void flush() {
+      flushCount.incrementAndGet();
+    }
+
+    @Override public void close() {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.jul
+
+import com.ealva.ealvalog.LogLevel
+import com.ealva.ealvalog.core.ExtLogRecord
+import org.hamcrest.CoreMatchers.`is`
+import org.hamcrest.Matchers.contains
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+import java.util.logging.Handler
+import java.util.logging.Level
+import java.util.logging.LogRecord
+import java.util.logging.Logger
+
+/**
+ * Test [DuplicateRecordFilter] suppression and repeat counts
+ */
+class DuplicateRecordFilterTest {
+  private var now = 0L
+  private val published = mutableListOf<LogRecord>()
+  private val handler = object : Handler() {
+    override fun publish(record: LogRecord) {
+      published.add(record)
+    }
+
+    override fun flush() {}
+    override fun close() {}
+  }
+  private val logger = Logger.getLogger(NAME)
+
+  @Before
+  fun setup() {
+    logger.useParentHandlers = false
+    logger.level = Level.ALL
+    logger.addHandler(handler)
+  }
+
+  @After
+  fun tearDown() {
+    logger.removeHandler(handler)
+  }
+
+  @Test
+  fun testRepeatsSuppressedWithinWindow() {
+    val filter = newFilter(DuplicateRecordFilter(1_000))
+    assertThat(filter.isLoggable(record(Level.SEVERE, "failed %s", "db")), `is`(true))
+    repeat(3) {
+      assertThat(filter.isLoggable(record(Level.SEVERE, "failed %s", "db")), `is`(false))
+    }
+    assertThat(filter.isLoggable(record(Level.SEVERE, "failed %s", "cache")), `is`(true))
+    assertThat(filter.isLoggable(record(Level.WARNING, "failed %s", "db")), `is`(true))
+    assertThat(filter.isLoggable(record(Level.SEVERE, "other %s", "db")), `is`(true))
+    assertThat(published.size, `is`(0))
+  }
+
+  @Test
+  fun testCountReportedAfterWindow() {
+    val filter = newFilter(DuplicateRecordFilter(1_000))
+    assertThat(filter.isLoggable(record(Level.SEVERE, "failed %s", "db")), `is`(true))
+    repeat(5) {
+      advanceMillis(100)
+      assertThat(filter.isLoggable(record(Level.SEVERE, "failed %s", "db")), `is`(false))
+    }
+
+    advanceMillis(500)
+    assertThat(filter.isLoggable(record(Level.SEVERE, "failed %s", "db")), `is`(true))
+    assertThat(published.size, `is`(1))
+    assertThat(published[0].level, `is`(Level.SEVERE))
+    assertThat(published[0].loggerName, `is`(NAME))
+    assertThat(published[0].message, `is`("Suppressed 5 repeats of: failed %s"))
+
+    advanceMillis(1_000)
+    assertThat(filter.isLoggable(record(Level.SEVERE, "failed %s", "db")), `is`(true))
+    assertThat(published.size, `is`(1))
+  }
+
+  @Test
+  fun testEvictedSlotReportsCount() {
+    val filter = newFilter(DuplicateRecordFilter(1_000, 1))
+    assertThat(filter.isLoggable(record(Level.INFO, "first")), `is`(true))
+    assertThat(filter.isLoggable(record(Level.INFO, "first")), `is`(false))
+    assertThat(filter.isLoggable(record(Level.INFO, "second")), `is`(true))
+    assertThat(published.size, `is`(1))
+    assertThat(published[0].message, `is`("Suppressed 1 repeats of: first"))
+  }
+
+  @Test
+  fun testPassingRecordsReportEndedBurst() {
+    val filter = newFilter(DuplicateRecordFilter(1_000, 2))
+    assertThat(filter.isLoggable(record(Level.INFO, "first")), `is`(true))
+    repeat(2) { assertThat(filter.isLoggable(record(Level.INFO, "first")), `is`(false)) }
+    advanceMillis(1_000)
+    assertThat(filter.isLoggable(record(Level.INFO, "other %s", 1)), `is`(true))
+    assertThat(filter.isLoggable(record(Level.INFO, "other %s", 2)), `is`(true))
+    assertThat(published.map { it.message }, contains("Suppressed 2 repeats of: first"))
+  }
+
+  @Test
+  fun testCloseReportsPendingCounts() {
+    val filter = newFilter(DuplicateRecordFilter(1_000))
+    assertThat(filter.isLoggable(record(Level.INFO, "first")), `is`(true))
+    assertThat(filter.isLoggable(record(Level.INFO, "first")), `is`(false))
+    filter.close()
+    assertThat(published.map { it.message }, contains("Suppressed 1 repeats of: first"))
+    assertThat(filter.isLoggable(record(Level.INFO, "first")), `is`(true))
+  }
+
+  @Test
+  fun testSummaryThroughFilteredLoggerKeepsSlot() {
+    logger.filter = newFilter(DuplicateRecordFilter(1_000, 1))
+    try {
+      logger.log(record(Level.INFO, "first"))
+      logger.log(record(Level.INFO, "first"))
+      advanceMillis(1_000)
+      logger.log(record(Level.INFO, "first"))
+      logger.log(record(Level.INFO, "first"))
+    } finally {
+      logger.filter = null
+    }
+    assertThat(
+      published.map { it.message },
+      contains("first", "Suppressed 1 repeats of: first", "first")
+    )
+  }
+
+  @Test
+  fun testExtLogRecordMatchesPlainRecord() {
+    val filter = newFilter(DuplicateRecordFilter(1_000))
+    assertThat(filter.isLoggable(record(Level.SEVERE, "failed %s", "db")), `is`(true))
+    ExtLogRecord.get("fqcn", LogLevel.ERROR, NAME, null, null, null, null).use { ext ->
+      ext.setParameters(arrayOf("db", "stale"))
+      ext.setParameters(arrayOf("db"))
+      ext.append("failed %s")
+      assertThat(filter.isLoggable(ext), `is`(false))
+    }
+  }
+
+  private fun newFilter(filter: DuplicateRecordFilter) = filter.apply { ticker = { now } }
+
+  private fun advanceMillis(millis: Long) {
+    now += TimeUnit.MILLISECONDS.toNanos(millis)
+  }
+
+  private fun record(level: Level, message: String, vararg args: Any) =
+    LogRecord(level, message).apply {
+      loggerName = NAME
+      if (args.isNotEmpty()) parameters = arrayOf(*args)
+    }
+
+  companion object {
+    private const val NAME = "com.ealva.ealvalog.jul.DuplicateRecordFilterTest"
+  }
+}
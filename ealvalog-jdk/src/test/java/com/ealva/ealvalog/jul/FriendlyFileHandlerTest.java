@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.jul;
+
+import com.ealva.ealvalog.LogLevel;
+import com.ealva.ealvalog.core.ExtRecordFormatter;
+import com.ealva.ealvalog.filter.AlwaysNeutralFilter;
+import com.ealva.ealvalog.metrics.LogCounter;
+import com.ealva.ealvalog.metrics.LogMetrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class FriendlyFileHandlerTest {
+  private static final String NAME = "com.ealva.ealvalog.jul.FriendlyFileHandlerTest";
+
+  private File dir;
+  private FriendlyFileHandler handler;
+
+  @Before
+  public void setup() throws IOException {
+    dir = Files.createTempDirectory("FriendlyFileHandlerTest").toFile();
+    handler = new FriendlyFileHandler(new File(dir, "log%g.txt").getPath(),
+                                      0,
+                                      1,
+                                      false,
+                                      ExtRecordFormatter.TYPICAL_FORMAT,
+                                      true,
+                                      AlwaysNeutralFilter.INSTANCE,
+                                      new ErrorManager() {
+                                        @Override
+                                        public synchronized void error(String msg,
+                                                                       Exception ex,
+                                                                       int code) {
+                                        }
+                                      });
+    LogMetrics.reset();
+    LogMetrics.setEnabled(true);
+  }
+
+  @After
+  public void tearDown() {
+    LogMetrics.setEnabled(false);
+    LogMetrics.reset();
+    handler.close();
+    final File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+      }
+    }
+    //noinspection ResultOfMethodCallIgnored
+    dir.delete();
+  }
+
+  @Test
+  public void testFormatErrorCounted() {
+    handler.setFormatter(new Formatter() {
+      @Override public String format(final LogRecord record) {
+        throw new IllegalStateException("format");
+      }
+    });
+    final LogRecord record = new LogRecord(Level.WARNING, "message");
+    record.setLoggerName(NAME);
+    handler.publish(record);
+    handler.flush();
+    assertThat(LogMetrics.snapshot().get(NAME).get(LogCounter.HANDLER_ERRORS, LogLevel.WARN),
+               is(1L));
+  }
+}
@@ -22,10 +22,14 @@ import com.ealva.ealvalog.Logger;
 import com.ealva.ealvalog.LoggerFactory;
 import com.ealva.ealvalog.LoggerFilter;
 import com.ealva.ealvalog.Loggers;
+import com.ealva.ealvalog.core.LevelCache;
 import com.ealva.ealvalog.filter.AlwaysAcceptFilter;
 
+import java.util.logging.LogManager;
+
 import static com.ealva.ealvalog.LoggerFactory.ROOT_LOGGER_NAME;
 
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -136,4 +140,16 @@ public class JdkLoggerFactoryTest {
     assertThat(bridge, is(theRootBridge));  // no filter set so will be the root
   }
 
+  @Test
+  public void testReadConfigurationInvalidatesLevelCache() throws Exception {
+    try {
+      LogManager.class.getMethod("addConfigurationListener", Runnable.class);
+    } catch (NoSuchMethodException e) {
+      Assume.assumeNoException(e);
+    }
+    final int generation = LevelCache.getGeneration();
+    LogManager.getLogManager().readConfiguration();
+    assertThat(LevelCache.getGeneration(), is(not(generation)));
+    JdkLoggerFactory.INSTANCE.reset(true);
+  }
 }
@@ -20,6 +20,9 @@ package com.ealva.ealvalog.jul;
 
 import com.ealva.ealvalog.core.ExtLogRecord;
 import com.ealva.ealvalog.LogLevel;
+import com.ealva.ealvalog.util.CacheStrategy;
+import com.ealva.ealvalog.util.MessageStyle;
+import com.ealva.ealvalog.util.ObjectCache;
 
 import static com.ealva.ealvalog.LogLevel.CRITICAL;
 import static com.ealva.ealvalog.LogLevel.ERROR;
@@ -34,7 +37,9 @@ import org.mockito.MockitoAnnotations;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.then;
@@ -81,6 +86,20 @@ public class JdkLoggerTest {
     rootLogger.addHandler(rootHandler);
   }
 
+  @Test
+  public void testDirectJulLevelChangeIsSeen() {
+    final Logger julRoot = Logger.getLogger("");
+    final java.util.logging.Level saved = julRoot.getLevel();
+    try {
+      julRoot.setLevel(WARN.getJdkLevel());
+      assertThat(childLogger.isLoggable(TRACE, null, null), is(false));
+      julRoot.setLevel(TRACE.getJdkLevel());
+      assertThat(childLogger.isLoggable(TRACE, null, null), is(true));
+    } finally {
+      julRoot.setLevel(saved);
+    }
+  }
+
   @Test
   public void testChildLogsToRootHandler() {
     try (ExtLogRecord extRecord = ExtLogRecord.get(LOGGER_FQCN, CRITICAL, CHILD_NAME, null, null,
@@ -98,6 +117,46 @@ public class JdkLoggerTest {
     }
   }
 
+  @Test
+  public void testLogImmediateLeavesCallerRecordReserved() {
+    ObjectCache.setStrategy(CacheStrategy.SHARED);
+    try {
+      final ExtLogRecord extRecord = ExtLogRecord.get(LOGGER_FQCN, CRITICAL, CHILD_NAME, null,
+                                                      null, null, null);
+      extRecord.append(MSG);
+      childLogger.logImmediate(extRecord);
+      // the bridge must not close a record it did not obtain, or the caller closes it twice
+      assertThat(extRecord.isReserved(), is(true));
+      extRecord.close();
+      extRecord.close();
+
+      final ExtLogRecord again = ExtLogRecord.get(LOGGER_FQCN, CRITICAL, CHILD_NAME, null, null,
+                                                  null, null);
+      final ExtLogRecord another = ExtLogRecord.get(LOGGER_FQCN, CRITICAL, CHILD_NAME, null, null,
+                                                    null, null);
+      assertThat(again, is(sameInstance(extRecord)));
+      assertThat(another, is(not(sameInstance(extRecord))));
+      another.close();
+      again.close();
+    } finally {
+      ObjectCache.setStrategy(CacheStrategy.AUTO);
+      ExtLogRecord.clearCachedRecord();
+    }
+  }
+
+  @Test
+  public void testMessageStyle() {
+    final JdkLoggerFactory loggerFactory = JdkLoggerFactory.INSTANCE;
+    try (ExtLogRecord record = (ExtLogRecord)childLogger.getLogEntry(ERROR, null, null, null)) {
+      assertThat(record.getMessageStyle(), is(MessageStyle.PRINTF));
+    }
+    loggerFactory.setMessageStyle(MessageStyle.SLF4J);
+    try (ExtLogRecord record = (ExtLogRecord)childLogger.getLogEntry(ERROR, null, null, null)) {
+      assertThat(record.getMessageStyle(), is(MessageStyle.SLF4J));
+    } finally {
+      loggerFactory.setMessageStyle(MessageStyle.PRINTF);
+    }
+  }
 
   @Test
   public void testSetLogLevel() {
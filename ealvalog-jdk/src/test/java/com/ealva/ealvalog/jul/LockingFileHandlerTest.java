@@ -0,0 +1,238 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.jul;
+
+import com.ealva.ealvalog.filter.AlwaysNeutralFilter;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+public class LockingFileHandlerTest {
+  private static final String FORMAT = "%1$s%n";
+  private static final String MESSAGE = "0123456789";
+  private static final int VIRTUAL_THREADS = 2000;
+  private static final int RECORDS_PER_THREAD = 5;
+
+  private File dir;
+  private final List<LockingFileHandler> handlers = new ArrayList<>();
+
+  @Before
+  public void setup() throws IOException {
+    dir = Files.createTempDirectory("LockingFileHandlerTest").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    for (LockingFileHandler handler : handlers) {
+      handler.close();
+    }
+    final File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+      }
+    }
+    //noinspection ResultOfMethodCallIgnored
+    dir.delete();
+  }
+
+  @Test
+  public void testWritesRecords() throws IOException {
+    final LockingFileHandler handler = makeHandler("test.log", 0, 1);
+    for (int i = 0; i < 3; i++) {
+      handler.publish(record(MESSAGE));
+    }
+    assertThat(lines(new File(dir, "test.log")).size(), is(3));
+    assertThat(new File(dir, "test.log.lck").exists(), is(true));
+    handler.close();
+    assertThat(new File(dir, "test.log.lck").exists(), is(false));
+  }
+
+  @Test
+  public void testRotatesAtLimit() throws IOException {
+    final LockingFileHandler handler = makeHandler("test%g.log", 50, 3);
+    for (int i = 0; i < 20; i++) {
+      handler.publish(record(MESSAGE));
+    }
+    handler.close();
+    final int lineLength = MESSAGE.length() + System.lineSeparator().length();
+    for (int i = 0; i < 3; i++) {
+      final File file = new File(dir, "test" + i + ".log");
+      assertThat(file.exists(), is(true));
+      assertThat(file.length(), is(lessThanOrEqualTo(50L + lineLength)));
+    }
+    assertThat(new File(dir, "test3.log").exists(), is(false));
+  }
+
+  @Test
+  public void testHandlersSharingPatternGetUniqueFiles() throws IOException {
+    final LockingFileHandler first = makeHandler("test%u.log", 0, 1);
+    final LockingFileHandler second = makeHandler("test%u.log", 0, 1);
+    first.publish(record("first"));
+    second.publish(record("second"));
+    assertThat(lines(new File(dir, "test0.log")).get(0), is("first"));
+    assertThat(lines(new File(dir, "test1.log")).get(0), is("second"));
+  }
+
+  @Test
+  public void testFailedOpenReleasesLock() throws IOException {
+    final File blocker = new File(dir, "test0.log");
+    assertThat(blocker.mkdir(), is(true));
+    try {
+      makeHandler("test%u.log", 0, 1);
+      fail("Expected IOException opening a directory");
+    } catch (IOException expected) {
+      // the log file is a directory
+    }
+    assertThat(new File(dir, "test0.log.lck").exists(), is(false));
+
+    assertThat(blocker.delete(), is(true));
+    final LockingFileHandler handler = makeHandler("test%u.log", 0, 1);
+    handler.publish(record("after"));
+    assertThat(lines(new File(dir, "test0.log")).get(0), is("after"));
+  }
+
+  @Test
+  public void testMissingDirectoryReleasesLockName() throws IOException {
+    final File missing = new File(dir, "missing");
+    try {
+      makeHandler("missing/test%u.log", 0, 1);
+      fail("Expected IOException opening in a missing directory");
+    } catch (IOException expected) {
+      // the directory doesn't exist
+    }
+
+    assertThat(missing.mkdir(), is(true));
+    final LockingFileHandler handler = makeHandler("missing/test%u.log", 0, 1);
+    handler.publish(record("after"));
+    assertThat(lines(new File(missing, "test0.log")).get(0), is("after"));
+
+    handler.close();
+    final File[] files = missing.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+      }
+    }
+    //noinspection ResultOfMethodCallIgnored
+    missing.delete();
+  }
+
+  @Test
+  public void testCurrentLogFile() throws IOException {
+    final LockingFileHandler handler = makeHandler("test%g.log", 0, 2);
+    handler.publish(record(MESSAGE));
+    final File current = handler.getCurrentLogFile();
+    assertThat(current, is(not(nullValue())));
+    //noinspection ConstantConditions
+    assertThat(current.getName(), is("test0.log"));
+  }
+
+  @Test
+  public void testVirtualThreadsLogWithoutPinning() throws Exception {
+    final Method startVirtualThread;
+    try {
+      startVirtualThread = Thread.class.getMethod("startVirtualThread", Runnable.class);
+    } catch (NoSuchMethodException e) {
+      Assume.assumeTrue("JVM has no virtual threads", false);
+      return;
+    }
+    final LockingFileHandler handler = makeHandler("virtual.log", 0, 1);
+    final File jfrFile = new File(dir, "pinning.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+      recording.start();
+      final List<Thread> threads = new ArrayList<>(VIRTUAL_THREADS);
+      for (int i = 0; i < VIRTUAL_THREADS; i++) {
+        final Runnable task = () -> {
+          for (int j = 0; j < RECORDS_PER_THREAD; j++) {
+            handler.publish(record(MESSAGE));
+          }
+        };
+        threads.add((Thread)startVirtualThread.invoke(null, task));
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      recording.stop();
+      recording.dump(jfrFile.toPath());
+    }
+
+    final List<RecordedEvent> pinned = RecordingFile.readAllEvents(jfrFile.toPath())
+                                                    .stream()
+                                                    .filter(e -> e.getEventType()
+                                                                  .getName()
+                                                                  .equals("jdk.VirtualThreadPinned"))
+                                                    .collect(Collectors.toList());
+    assertThat(pinned, is(empty()));
+    assertThat(lines(new File(dir, "virtual.log")).size(),
+               is(VIRTUAL_THREADS * RECORDS_PER_THREAD));
+  }
+
+  private LockingFileHandler makeHandler(final String pattern, final int limit, final int count)
+      throws IOException {
+    final LockingFileHandler handler = new LockingFileHandler(new File(dir, pattern).getPath(),
+                                                              limit,
+                                                              count,
+                                                              false,
+                                                              FORMAT,
+                                                              true,
+                                                              AlwaysNeutralFilter.INSTANCE);
+    handlers.add(handler);
+    return handler;
+  }
+
+  private static LogRecord record(final String msg) {
+    final LogRecord record = new LogRecord(Level.INFO, msg);
+    record.setLoggerName(LockingFileHandlerTest.class.getName());
+    return record;
+  }
+
+  private static List<String> lines(final File file) throws IOException {
+    return Files.readAllLines(file.toPath(), Charset.defaultCharset());
+  }
+}
@@ -23,37 +23,58 @@ import org.apache.logging.log4j.spi.MutableThreadContextStack
 import org.apache.logging.log4j.spi.ThreadContextStack
 
 /**
+ * A [ThreadContextStack] view of a list, typically the NDC of a log record. The list is not
+ * copied unless the stack is modified.
+ *
  * Created by Eric A. Snell on 9/17/18.
  */
-class ContextStackAdapter(var list: MutableList<String> = mutableListOf()) : ThreadContextStack {
+class ContextStackAdapter(list: List<String> = emptyList()) : ThreadContextStack {
+  private var owned = false
+
+  var list: List<String> = list
+    set(value) {
+      field = value
+      owned = false
+    }
+
+  private fun mutableList(): MutableList<String> {
+    if (!owned) {
+      list = ArrayList(list)
+      owned = true
+    }
+    return list as MutableList<String>
+  }
 
   override fun contains(element: String): Boolean {
     return list.contains(element)
   }
 
   override fun add(element: String): Boolean {
-    return list.add(element)
+    return mutableList().add(element)
   }
 
   override fun addAll(elements: Collection<String>): Boolean {
-    return list.addAll(elements)
+    return mutableList().addAll(elements)
   }
 
   override fun clear() {
-    list.clear()
+    list = emptyList()
   }
 
   override fun trim(depth: Int) {
     require(depth >= 0) { "Maximum stack depth cannot be negative" }
-    list = list.subList(0, Math.min(depth, list.size)).toMutableList()
+    if (list.size > depth) {
+      list = list.subList(0, depth).toMutableList()
+      owned = true
+    }
   }
 
   override fun push(message: String) {
-    list.add(message)
+    mutableList().add(message)
   }
 
   override fun asList(): MutableList<String> {
-    return list
+    return mutableList()
   }
 
   override fun copy(): ThreadContext.ContextStack {
@@ -69,7 +90,7 @@ class ContextStackAdapter(var list: MutableList<String> = mutableListOf()) : Thr
   }
 
   override fun iterator(): MutableIterator<String> {
-    return list.iterator()
+    return mutableList().iterator()
   }
 
   override fun peek(): String? {
@@ -77,11 +98,11 @@ class ContextStackAdapter(var list: MutableList<String> = mutableListOf()) : Thr
   }
 
   override fun remove(element: String): Boolean {
-    return list.remove(element)
+    return mutableList().remove(element)
   }
 
   override fun removeAll(elements: Collection<String>): Boolean {
-    return list.removeAll(elements)
+    return mutableList().removeAll(elements)
   }
 
   override fun getDepth(): Int {
@@ -89,7 +110,7 @@ class ContextStackAdapter(var list: MutableList<String> = mutableListOf()) : Thr
   }
 
   override fun retainAll(elements: Collection<String>): Boolean {
-    return list.retainAll(elements)
+    return mutableList().retainAll(elements)
   }
 
   override fun getImmutableStackOrNull(): ThreadContext.ContextStack {
@@ -98,10 +119,13 @@ class ContextStackAdapter(var list: MutableList<String> = mutableListOf()) : Thr
 
   override fun pop(): String {
     if (list.isEmpty()) throw NoSuchElementException("Stack is empty")
-    return list.removeAt(list.lastIndex)
+    return mutableList().removeAt(list.lastIndex)
   }
 
   override val size: Int
     get() = list.size
 
-}
\ No newline at end of file
+  override fun toString(): String {
+    return list.toString()
+  }
+}
@@ -25,21 +25,30 @@ import com.ealva.ealvalog.Logger
 import com.ealva.ealvalog.LoggerFilter
 import com.ealva.ealvalog.Marker
 import com.ealva.ealvalog.core.Bridge
+import com.ealva.ealvalog.core.LevelCache
+import com.ealva.ealvalog.filter.AlwaysAcceptFilter
 import com.ealva.ealvalog.filter.AlwaysNeutralFilter
 import com.ealva.ealvalog.log4j.Log4jMarkerFactory.asLog4jMarker
+import com.ealva.ealvalog.metrics.LogCounter
+import com.ealva.ealvalog.metrics.LogMetrics
 import org.apache.logging.log4j.LogManager
 import org.apache.logging.log4j.ThreadContext
+import org.apache.logging.log4j.core.LogEvent
 import org.apache.logging.log4j.core.LoggerContext
+import org.apache.logging.log4j.core.config.Configuration
 import org.apache.logging.log4j.core.config.Configurator
 import org.apache.logging.log4j.core.config.LoggerConfig
 import org.apache.logging.log4j.core.config.Property
 import org.apache.logging.log4j.core.impl.ContextDataFactory
 import org.apache.logging.log4j.core.impl.ContextDataInjectorFactory
+import org.apache.logging.log4j.core.impl.ThreadContextDataInjector
+import org.apache.logging.log4j.core.impl.ThreadContextDataProvider
 import org.apache.logging.log4j.core.lookup.Interpolator
 import org.apache.logging.log4j.core.lookup.StrSubstitutor
 import org.apache.logging.log4j.spi.ExtendedLogger
 import org.apache.logging.log4j.util.StringMap
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * Created by Eric A. Snell on 8/24/18.
@@ -56,16 +65,21 @@ class Log4jBridge(
       }
     }
 
-  private val configuration =
-    (LogManager.getContext(javaClass.classLoader, false) as LoggerContext).configuration
+  @field:Volatile private var configState = ConfigState(name, configGeneration.get())
 
-  private val loggerConfig: LoggerConfig =configuration.getLoggerConfig(name)
+  /** The LoggerConfig this bridge logs to, refreshed when the [context] is reconfigured */
+  private val loggerConfig: LoggerConfig
+    get() = currentConfigState().loggerConfig
 
   private val subst = StrSubstitutor(Interpolator(ConcurrentHashMap()))
 
   @field:Volatile var parent: Log4jBridge? = null  // root bridge will have a null parent
 
   override var includeLocation: Boolean = false
+    set(value) {
+      field = value
+      LevelCache.invalidate()
+    }
 
   override var logLevel: LogLevel
     get() = log4jLogger.level.logLevel
@@ -79,6 +93,7 @@ class Log4jBridge(
 
   override fun setFilter(filter: LoggerFilter?) {
     this.filter = filter ?: AlwaysNeutralFilter
+    LevelCache.invalidate()
   }
 
   override fun shouldIncludeLocation(
@@ -89,6 +104,31 @@ class Log4jBridge(
     return includeLocation || loggerConfig.isIncludeLocation
   }
 
+  /**
+   * Level changes made through Log4j, by Configurator or a reconfiguration, fire a configuration
+   * change on the [context] which invalidates the [LevelCache]. If the configuration has no
+   * context-wide filter, Log4j enablement depends only on level and is cached. Otherwise all
+   * levels are reported and [isLoggable] asks Log4j.
+   */
+  override fun levelCacheBits(): Int {
+    val state = currentConfigState()
+    var bits = 0
+    if (state.configuration.hasFilter()) {
+      bits = LevelCache.ALL_LEVELS
+    } else {
+      if (filter === AlwaysNeutralFilter || filter === AlwaysAcceptFilter) {
+        bits = LevelCache.LEVELS_ONLY
+      }
+      for (level in LogLevel.values()) {
+        if (log4jLogger.isEnabled(level.log4jLevel)) {
+          bits = bits or LevelCache.levelBit(level)
+        }
+      }
+    }
+    val location = includeLocation || state.loggerConfig.isIncludeLocation
+    return bits or if (location) LevelCache.INCLUDE_LOCATION else LevelCache.EXCLUDE_LOCATION
+  }
+
   override fun willLogToParent(loggerName: String): Boolean {
     return loggerName == name && loggerConfig.isAdditive
   }
@@ -100,27 +140,63 @@ class Log4jBridge(
     }
 
   override fun log(logEntry: LogEntry) {
-    LogRecordEvent.fromLogEntry(logEntry).use { record ->
+    val state = currentConfigState()
+    // logEntry is closed by whoever obtained it, only a copy made here is closed here
+    val record = LogRecordEvent.fromLogEntry(logEntry)
+    try {
       if (record.mdc == null) {
-        record.setMdc(createContextData(
-          if (!loggerConfig.isPropertiesRequireLookup) {
-            loggerConfig.propertyList ?: emptyList()
-          } else {
-            loggerConfig.propertyList?.mapTo(ArrayList(loggerConfig.propertyList.size)) {
-              Property.createProperty(
-                it.name,
-                if (it.isValueNeedsLookup)
-                  subst.replace(record.logEvent, it.value)
-                else
-                  it.value
-              )
-            } ?: emptyList()
-          }).toMap())
+        injectContextData(record, state.properties)
       }
       if (record.ndc == null && ThreadContext.getDepth() > 0) {
-        record.setNdc(ThreadContext.cloneStack().asList())
+        // copy-on-write, so the current stack is not copied
+        record.setNdc(ThreadContext.getImmutableStack().asList())
+      }
+      state.loggerConfig.log(record.logEvent)
+    } catch (e: RuntimeException) {
+      // thrown by an appender which doesn't ignore exceptions
+      LogMetrics.count(record.loggerName, record.logLevel, LogCounter.HANDLER_ERRORS)
+      throw e
+    } finally {
+      if (record !== logEntry) record.close()
+    }
+  }
+
+  /**
+   * Give [record] the config properties and the thread's context data, with the thread's data
+   * taking precedence, as Log4j's own injectors do. If there are no properties the thread's data
+   * is used directly, otherwise both are copied into a map owned by the record. If Log4j is
+   * configured with a custom injector or additional context data providers, Log4j's injector is
+   * used instead.
+   */
+  private fun injectContextData(record: LogRecordEvent, properties: ConfigProperties) {
+    if (!INJECT_THREAD_CONTEXT_ONLY) {
+      record.setContextData(
+        CONTEXT_DATA_INJECTOR.injectContextData(
+          properties.resolve(record.logEvent, subst),
+          ContextDataFactory.createContextData()
+        )
+      )
+      return
+    }
+    val threadContextMap = ThreadContext.getThreadContextMap() // null if default implementation
+    if (properties.isEmpty) {
+      if (threadContextMap != null) {
+        record.setContextData(threadContextMap.readOnlyContextData)
+      } else {
+        // copy-on-write, so the current map is not copied
+        record.setMdc(ThreadContext.getImmutableContext())
       }
-      loggerConfig.log(record.logEvent)
+    } else {
+      val data = record.getReusableContextData()
+      properties.copyTo(data, record.logEvent, subst)
+      if (threadContextMap != null) {
+        data.putAll(threadContextMap.readOnlyContextData)
+      } else {
+        for ((key, value) in ThreadContext.getImmutableContext()) {
+          data.putValue(key, value)
+        }
+      }
+      record.setContextData(data)
     }
   }
 
@@ -158,14 +234,86 @@ class Log4jBridge(
     return LogRecordEvent.get(fqcn, logLevel, name, marker, throwable, mdc, ndc)
   }
 
+  private fun currentConfigState(): ConfigState {
+    val generation = configGeneration.get()
+    val state = configState
+    if (state.generation == generation) {
+      return state
+    }
+    return ConfigState(name, generation).also { configState = it }
+  }
+
+  /** The [context] configuration and this bridge's LoggerConfig as of a [configGeneration] */
+  private class ConfigState(name: String, val generation: Int) {
+    val configuration: Configuration = context.configuration
+    val loggerConfig: LoggerConfig = configuration.getLoggerConfig(name)
+    val properties = ConfigProperties(loggerConfig)
+  }
+
+  /** The properties of [loggerConfig], split by whether their values require a lookup */
+  private class ConfigProperties(loggerConfig: LoggerConfig) {
+    private val all: List<Property> = loggerConfig.propertyList ?: emptyList()
+    private val constant: List<Property>
+    private val lookup: List<Property>
+
+    init {
+      val (needLookup, noLookup) = if (loggerConfig.isPropertiesRequireLookup)
+        all.partition { it.isValueNeedsLookup }
+      else
+        Pair(emptyList(), all)
+      constant = noLookup
+      lookup = needLookup
+    }
+
+    val isEmpty: Boolean
+      get() = all.isEmpty()
+
+    fun copyTo(data: StringMap, event: LogEvent, subst: StrSubstitutor) {
+      for (i in constant.indices) {
+        val property = constant[i]
+        data.putValue(property.name, property.value)
+      }
+      for (i in lookup.indices) {
+        val property = lookup[i]
+        data.putValue(property.name, subst.replace(event, property.value))
+      }
+    }
+
+    fun resolve(event: LogEvent, subst: StrSubstitutor): List<Property> {
+      return if (lookup.isEmpty()) all else all.map { property ->
+        if (property.isValueNeedsLookup)
+          Property.createProperty(property.name, subst.replace(event, property.value))
+        else
+          property
+      }
+    }
+  }
+
   companion object {
-    private val CONTEXT_DATA_INJECTOR = ContextDataInjectorFactory.createInjector()
+    private val context = LogManager.getContext(Log4jBridge::class.java.classLoader, false) as
+      LoggerContext
 
-    private fun createContextData(properties: List<Property>): StringMap {
-      val reusable = ContextDataFactory.createContextData()
-      return CONTEXT_DATA_INJECTOR.injectContextData(properties, reusable)
+    /**
+     * Advanced, and the [LevelCache] invalidated, each time the [context] configuration changes,
+     * which includes Configurator level changes
+     */
+    private val configGeneration = AtomicInteger()
+
+    init {
+      context.addPropertyChangeListener { event ->
+        if (LoggerContext.PROPERTY_CONFIG == event.propertyName) {
+          configGeneration.incrementAndGet()
+          LevelCache.invalidate()
+        }
+      }
     }
 
+    private val CONTEXT_DATA_INJECTOR = ContextDataInjectorFactory.createInjector()
+
+    /** Providers are loaded when the injector is created */
+    private val INJECT_THREAD_CONTEXT_ONLY =
+      CONTEXT_DATA_INJECTOR.javaClass.enclosingClass == ThreadContextDataInjector::class.java &&
+        ThreadContextDataInjector.contextDataProviders.all { it is ThreadContextDataProvider }
   }
 
 }
@@ -49,7 +49,7 @@ class Log4jLoggerAdapter internal constructor(
       throwable,
       mdcContext?.mdc,
       mdcContext?.ndc
-    )
+    ).also { it.messageStyle = messageStyle }
   }
 
   internal fun update(configuration: Log4jLoggerConfiguration) {
@@ -23,19 +23,25 @@ import com.ealva.ealvalog.Logger
 import com.ealva.ealvalog.LoggerFactory
 import com.ealva.ealvalog.LoggerFilter
 import com.ealva.ealvalog.Marker
-import com.ealva.ealvalog.filter.AlwaysNeutralFilter
-import java.util.concurrent.ConcurrentHashMap
-import java.util.concurrent.ConcurrentMap
-import java.util.concurrent.locks.ReentrantLock
+import com.ealva.ealvalog.core.BridgeTree
+import com.ealva.ealvalog.util.MessageStyle
 
 /**
  * Created by Eric A. Snell on 8/29/18.
  */
 object Log4jLoggerFactory : LoggerFactory {
-  private val bridgeMap: ConcurrentHashMap<String, Log4jBridge> = ConcurrentHashMap()
-  private val loggerMap: ConcurrentMap<String, Log4jLoggerAdapter> = ConcurrentHashMap()
-  private val bridgeTreeLock = ReentrantLock()
-  private val bridgeRoot = Log4jBridge(LoggerFactory.ROOT_LOGGER_NAME)
+  private val bridgeTree = BridgeTree<Log4jBridge, Log4jLoggerAdapter>(
+    Log4jBridge(LoggerFactory.ROOT_LOGGER_NAME),
+    { bridge, parent -> bridge.parent = parent },
+    { logger -> logger.update(configuration) }
+  )
+
+  /**
+   * How the format and args of records created by [Log4jLoggerAdapter]s are combined. Defaults to
+   * [MessageStyle.SLF4J], which are passed to Log4j as a parameterized message. If
+   * [MessageStyle.PRINTF] the message is formatted before being passed to Log4j.
+   */
+  @field:Volatile var messageStyle: MessageStyle = MessageStyle.SLF4J
 
   private val configuration: Log4jLoggerConfiguration = object :
     Log4jLoggerConfiguration {
@@ -56,8 +62,11 @@ object Log4jLoggerFactory : LoggerFactory {
     }
 
     override fun getBridge(loggerClassName: String): Log4jBridge {
-      return getTheLog4jBridge(loggerClassName)
+      return bridgeTree.getBridge(loggerClassName)
     }
+
+    override val messageStyle: MessageStyle
+      get() = this@Log4jLoggerFactory.messageStyle
   }
 
   init {
@@ -79,40 +88,22 @@ object Log4jLoggerFactory : LoggerFactory {
 //      handler.close()
 //    }
 //
-//    for (bridge in bridgeMap.values) {
-//      bridge.setToDefault()
-//    }
+//    bridgeTree.forEachBridge { it.setToDefault() }
 
-    bridgeMap.clear()
-    loggerMap.clear()
-    setParents()
-    updateLoggers()
+    bridgeTree.clear()
   }
 
   override fun get(name: String, marker: Marker?, includeLocation: Boolean): Log4jLoggerAdapter {
     if (LoggerFactory.ROOT_LOGGER_NAME == name) {
       return root
     }
-    bridgeTreeLock.lock()
-    try {
-      var created = false
-      val logger = loggerMap.getOrPut(name) {
-        created = true // if we create a new one we need to ensure the parent hierarchy is correct
-        Log4jLoggerAdapter(
-          name,
-          marker,
-          configuration
-        )
-      }
-      if (created) {
-        setParents()
-        if (includeLocation) {
-          logger.includeLocation = true
-        }
+    return bridgeTree.getOrMakeLogger(
+      name,
+      { Log4jLoggerAdapter(name, marker, configuration) }
+    ) { logger ->
+      if (includeLocation) {
+        logger.includeLocation = true
       }
-      return logger
-    } finally {
-      bridgeTreeLock.unlock()
     }
   }
 
@@ -121,135 +112,26 @@ object Log4jLoggerFactory : LoggerFactory {
   }
 
   private fun setFilter(loggerName: String, filter: LoggerFilter) {
-    bridgeTreeLock.lock()
-    try {
-      val bridge = getTheLog4jBridge(loggerName)
-      if (bridge.name == loggerName) {
-        bridge.setFilter(filter)
-      } else {
-        makeNewBridge(
-          bridge,
-          loggerName,
-          filter,
-          null
-        )
-      }
-    } finally {
-      bridgeTreeLock.unlock()
+    bridgeTree.modifyOrMake(loggerName, { it.setFilter(filter) }) {
+      Log4jBridge(loggerName, filter)
     }
   }
 
   private fun setLevel(loggerName: String, logLevel: LogLevel) {
-    bridgeTreeLock.lock()
-    try {
-      val bridge = getTheLog4jBridge(loggerName)
-      if (bridge.name == loggerName) {
-        bridge.logLevel = logLevel
-      } else {
-        makeNewBridge(
-          bridge,
-          loggerName,
-          null,
-          logLevel
-        )
-      }
-    } finally {
-      bridgeTreeLock.unlock()
+    bridgeTree.modifyOrMake(loggerName, { it.logLevel = logLevel }) {
+      Log4jBridge(loggerName, logLevel = logLevel)
     }
   }
 
   private fun setShouldLogToParent(loggerName: String, logToParent: Boolean) {
-    bridgeTreeLock.lock()
-    try {
-      val bridge = getTheLog4jBridge(loggerName)
-      if (bridge.name == loggerName) {
-        bridge.logToParent = logToParent
-      } else {
-        makeNewBridge(bridge, loggerName, null, null).logToParent = logToParent
-      }
-    } finally {
-      bridgeTreeLock.unlock()
+    bridgeTree.modifyOrMake(loggerName, { it.logToParent = logToParent }) {
+      Log4jBridge(loggerName).apply { this.logToParent = logToParent }
     }
   }
 
   private fun setShouldIncludeLocation(loggerName: String, includeLocation: Boolean) {
-    bridgeTreeLock.lock()
-    try {
-      val bridge = getTheLog4jBridge(loggerName)
-      if (bridge.name == loggerName) {
-        bridge.includeLocation = includeLocation
-      } else {
-        makeNewBridge(bridge, loggerName, null, null).includeLocation = includeLocation
-      }
-    } finally {
-      bridgeTreeLock.unlock()
-    }
-  }
-
-  private fun makeNewBridge(
-    parent: Log4jBridge,
-    loggerName: String,
-    filter: LoggerFilter?,
-    logLevel: LogLevel?
-  ): Log4jBridge {
-    val newBridge =
-      Log4jBridge(loggerName, filter ?: AlwaysNeutralFilter, logLevel)
-    newBridge.parent = parent
-    bridgeMap.putIfAbsent(loggerName, newBridge)
-    setParents()
-    updateLoggers()
-    return newBridge
-  }
-
-  private fun updateLoggers() {
-    for (logger in loggerMap.values) {
-      logger.update(configuration)
-    }
-  }
-
-  private fun getTheLog4jBridge(loggerClassName: String): Log4jBridge {
-    var bridge: Log4jBridge? = bridgeMap[loggerClassName]
-    if (bridge != null) {
-      return bridge
-    }
-    var className: String? = getParentName(loggerClassName)
-    while (className != null) {
-      bridge = bridgeMap[className]
-      if (bridge != null) {
-        return bridge
-      }
-      className = getParentName(className)
-    }
-    return bridgeRoot
-  }
-
-  private fun setParents() {
-    for (entry in bridgeMap.entries) {
-      val bridge = entry.value
-      var key = entry.key
-      if (key.isNotEmpty()) {
-        val i = key.lastIndexOf('.')
-        if (i > 0) {
-          key = key.substring(0, i)
-          var parent: Log4jBridge? =
-            getTheLog4jBridge(key)
-          if (parent == null) {
-            parent = bridgeRoot
-          }
-          bridge.parent = parent
-        } else {
-          bridge.parent = bridgeRoot
-        }
-      }
+    bridgeTree.modifyOrMake(loggerName, { it.includeLocation = includeLocation }) {
+      Log4jBridge(loggerName).apply { this.includeLocation = includeLocation }
     }
   }
-
-  private fun getParentName(name: String): String? {
-    if (name.isEmpty()) {
-      return null
-    }
-    val i = name.lastIndexOf('.')
-    return if (i > 0) name.substring(0, i) else ""
-  }
-
-}
\ No newline at end of file
+}
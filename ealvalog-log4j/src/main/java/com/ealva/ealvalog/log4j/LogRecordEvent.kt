@@ -21,7 +21,10 @@ package com.ealva.ealvalog.log4j
 import com.ealva.ealvalog.LogEntry
 import com.ealva.ealvalog.LogLevel
 import com.ealva.ealvalog.Marker
-import com.ealva.ealvalog.core.ExtLogRecord
+import com.ealva.ealvalog.core.BasicLogEntry
+import com.ealva.ealvalog.core.RecordPool
+import com.ealva.ealvalog.util.MessageStyle
+import com.ealva.ealvalog.util.MessageTemplate
 import org.apache.logging.log4j.Level
 import org.apache.logging.log4j.ThreadContext
 import org.apache.logging.log4j.core.LogEvent
@@ -29,37 +32,184 @@ import org.apache.logging.log4j.core.impl.ThrowableProxy
 import org.apache.logging.log4j.core.time.Instant
 import org.apache.logging.log4j.core.time.MutableInstant
 import org.apache.logging.log4j.message.Message
+import org.apache.logging.log4j.message.ReusableMessage
+import org.apache.logging.log4j.message.ReusableSimpleMessage
+import org.apache.logging.log4j.message.SimpleMessage
 import org.apache.logging.log4j.message.ReusableMessageFactory
 import org.apache.logging.log4j.util.ReadOnlyStringMap
+import org.apache.logging.log4j.util.SortedArrayStringMap
+import org.apache.logging.log4j.util.StringMap
+import java.util.Formatter
+import java.util.Locale
 
 /**
+ * A [BasicLogEntry] which is also a Log4j [LogEvent], via [logEvent]. Reading the event does not
+ * allocate: the instant, context data and context stack are per record instances updated in
+ * place, the [ThrowableProxy] is created once per throwable, and the [Message] is made once per
+ * use of the record and released when the record is closed or reused. Parameterized messages come
+ * from Log4j's [ReusableMessageFactory], while text messages use a [ReusableSimpleMessage] owned
+ * by this record: the factory's thread local instance would be taken over by a nested log call on
+ * this thread, such as one from an appender. A message without arguments is not copied into a
+ * String.
+ *
  * Created by Eric A. Snell on 8/29/18.
  */
-class LogRecordEvent(logEntry: LogEntry?) : ExtLogRecord(logEntry) {
+class LogRecordEvent(logEntry: LogEntry?) : BasicLogEntry(logEntry) {
   @field:Transient private val contextData = ReadOnlyStringMapAdapter()
   @field:Transient private val contextStack = ContextStackAdapter()
+  @field:Transient private val mutableInstant = MutableInstant()
+  @field:Transient private var cachedThrownProxy: ThrowableProxy? = null
+  @field:Transient private var reusableMessage: Message? = null
+  @field:Transient private var simpleMessage: ReusableSimpleMessage? = null
+  @field:Transient private var messageText: StringBuilder? = null
+  @field:Transient private var messageFormatter: Formatter? = null
+  @field:Transient private var cachedFormat: String? = null
+  @field:Transient private var cachedTemplate: MessageTemplate? = null
+  @field:Transient private var contextDataView: ReadOnlyStringMap? = null
+  @field:Transient private var reusableContextData: StringMap? = null
+
+  init {
+    // a copy must not share another record's view of a thread's context
+    if (logEntry is LogRecordEvent && logEntry.mdc == null) {
+      logEntry.contextDataView?.let { view -> setMdc(view.toMap()) }
+    }
+  }
 
   override fun reserve(): LogRecordEvent {
     super.reserve()
+    releaseMessage()
+    contextDataView = null
     return this
   }
 
+  override fun copyOf(): LogRecordEvent {
+    return LogRecordEvent(this)
+  }
+
+  override fun setThrown(thrown: Throwable?) {
+    super.setThrown(thrown)
+    cachedThrownProxy = null
+  }
+
+  override fun clear() {
+    releaseMessage()
+    cachedThrownProxy = null
+    contextDataView = null
+    reusableContextData?.clear()
+    super.clear()
+  }
+
+  override fun copyFrom(other: BasicLogEntry): LogRecordEvent {
+    super.copyFrom(other)
+    releaseMessage()
+    contextDataView = null
+    // as when copying, this record must not share another record's view of a thread's context
+    if (other is LogRecordEvent && other.mdc == null) {
+      other.contextDataView?.let { view -> setMdc(view.toMap()) }
+    }
+    return this
+  }
+
+  override fun releaseToPool() {
+    pool.release(this)
+  }
+
+  /**
+   * Use [data] as the context data of the event when no MDC has been set. [data] is not copied and
+   * must not change while the event is being logged.
+   */
+  internal fun setContextData(data: ReadOnlyStringMap?) {
+    contextDataView = data
+  }
+
+  /**
+   * @return a cleared [StringMap] owned by this record, which may be filled and then passed to
+   * [setContextData]
+   */
+  internal fun getReusableContextData(): StringMap {
+    return (reusableContextData ?: SortedArrayStringMap().also { reusableContextData = it })
+      .apply { clear() }
+  }
+
+  private fun releaseMessage() {
+    reusableMessage?.let { message ->
+      reusableMessage = null
+      ReusableMessageFactory.release(message)
+    }
+  }
+
+  private fun makeMessage(): Message {
+    val count = parameterCount
+    return when {
+      count == 0 -> makeSimpleMessage(messageBuilder)
+      messageStyle == MessageStyle.PRINTF -> {
+        val text = messageText ?: StringBuilder().also { messageText = it }
+        val formatter = messageFormatter ?: Formatter(text).also { messageFormatter = it }
+        text.setLength(0)
+        template().format(formatter, text, Locale.getDefault(), parameters, count)
+        makeSimpleMessage(text)
+      }
+      else -> makeParameterizedMessage(formatKey(), parameters, count)
+    }
+  }
+
+  private fun makeSimpleMessage(text: CharSequence): Message {
+    return (simpleMessage ?: ReusableSimpleMessage().also { simpleMessage = it })
+      .apply { set(text) }
+  }
+
+  /**
+   * Uses the factory's fixed arity methods so [parameters], which may be longer than [count], is
+   * neither copied nor read past [count]
+   */
+  private fun makeParameterizedMessage(key: String, p: Array<Any?>, count: Int): Message {
+    return when (count) {
+      1 -> messageFactory.newMessage(key, p[0])
+      2 -> messageFactory.newMessage(key, p[0], p[1])
+      3 -> messageFactory.newMessage(key, p[0], p[1], p[2])
+      4 -> messageFactory.newMessage(key, p[0], p[1], p[2], p[3])
+      5 -> messageFactory.newMessage(key, p[0], p[1], p[2], p[3], p[4])
+      6 -> messageFactory.newMessage(key, p[0], p[1], p[2], p[3], p[4], p[5])
+      7 -> messageFactory.newMessage(key, p[0], p[1], p[2], p[3], p[4], p[5], p[6])
+      8 -> messageFactory.newMessage(key, p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7])
+      9 -> messageFactory.newMessage(key, p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7], p[8])
+      10 -> messageFactory.newMessage(
+        key, p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7], p[8], p[9]
+      )
+      else -> messageFactory.newMessage(key, *p.copyOf(count))
+    }
+  }
+
+  /**
+   * The format as a String, reused while the message builder holds the same format, which for
+   * constant formats logged repeatedly from a thread is every time
+   */
+  private fun formatKey(): String {
+    val key = cachedFormat
+    if (key != null && key.contentEquals(messageBuilder)) {
+      return key
+    }
+    cachedTemplate = null
+    return messageBuilder.toString().also { cachedFormat = it }
+  }
+
+  private fun template(): MessageTemplate {
+    val key = formatKey()
+    return cachedTemplate ?: MessageTemplate.get(key).also { cachedTemplate = it }
+  }
+
   val logEvent: LogEvent = object : LogEvent {
     override fun getLevel(): Level {
       return logLevel.log4jLevel
     }
 
     /**
-     * We are obtaining a thread local [org.apache.logging.log4j.message.ReusableSimpleMessage] or
-     * [org.apache.logging.log4j.message.ParameterizedMessage] from the factory, so any client
-     * should not use the returned [Message] past the lifetime of this LogRecordEvent.
+     * The message is this record's [ReusableSimpleMessage] or a
+     * [org.apache.logging.log4j.message.ReusableParameterizedMessage] from the factory, so any
+     * client should not use the returned [Message] past the lifetime of this LogRecordEvent.
      */
     override fun getMessage(): Message {
-      return if (parameterCount == 0) {
-        messageFactory.newMessage(this@LogRecordEvent.message)
-      } else {
-        messageFactory.newMessage(this@LogRecordEvent.message, *parameters)
-      }
+      return reusableMessage ?: makeMessage().also { reusableMessage = it }
     }
 
     override fun getThreadName(): String? {
@@ -71,7 +221,7 @@ class LogRecordEvent(logEntry: LogEntry?) : ExtLogRecord(logEntry) {
     }
 
     override fun getInstant(): Instant {
-      return MutableInstant().apply { initFromEpochMilli(millis, 0) }
+      return mutableInstant.apply { initFromEpochMilli(millis, 0) }
     }
 
     override fun getSource(): StackTraceElement? {
@@ -109,8 +259,21 @@ class LogRecordEvent(logEntry: LogEntry?) : ExtLogRecord(logEntry) {
 
     override fun setEndOfBatch(endOfBatch: Boolean) {}
 
+    /**
+     * Log4j requires a snapshot here, which is only requested by components which hold onto
+     * events, such as async appenders. This is the only accessor which allocates. The snapshot's
+     * message is an immutable memento of this record's message, as the reusable message belongs
+     * to this thread and is released when this record is closed.
+     */
     override fun toImmutable(): LogEvent {
-      return LogRecordEvent(this@LogRecordEvent).logEvent
+      val current = getMessage()
+      val snapshot = when (current) {
+        // its memento would still refer to this record's text
+        is ReusableSimpleMessage -> SimpleMessage(current.formattedMessage)
+        is ReusableMessage -> current.memento()
+        else -> current
+      }
+      return copyOf().also { copy -> copy.reusableMessage = snapshot }.logEvent
     }
 
     override fun getTimeMillis(): Long {
@@ -126,19 +289,19 @@ class LogRecordEvent(logEntry: LogEntry?) : ExtLogRecord(logEntry) {
     }
 
     override fun getContextData(): ReadOnlyStringMap {
-      return this@LogRecordEvent.contextData.apply { map = mdc ?: emptyMap() }
+      val mdc = this@LogRecordEvent.mdc
+      val view = contextDataView
+      return if (mdc == null && view != null) view else
+        this@LogRecordEvent.contextData.apply { map = mdc ?: emptyMap() }
     }
 
     override fun getContextStack(): ThreadContext.ContextStack {
-      return this@LogRecordEvent.contextStack.apply {
-        list = ndc?.toMutableList() ?: mutableListOf()
-      }
+      return this@LogRecordEvent.contextStack.apply { list = ndc ?: emptyList() }
     }
 
     override fun getThrownProxy(): ThrowableProxy? {
-      this@LogRecordEvent.thrown?.let { thrown ->
-        return ThrowableProxy(thrown)
-      } ?: return null
+      return cachedThrownProxy ?: this@LogRecordEvent.thrown?.let { ThrowableProxy(it) }
+        ?.also { cachedThrownProxy = it }
     }
 
     override fun getThreadId(): Long {
@@ -165,7 +328,11 @@ class LogRecordEvent(logEntry: LogEntry?) : ExtLogRecord(logEntry) {
 
     private val messageFactory = ReusableMessageFactory.INSTANCE
 
-    private val threadLocal = ThreadLocal<LogRecordEvent>().apply { set(LogRecordEvent(null)) }
+    private val pool = object : RecordPool<LogRecordEvent>() {
+      override fun newRecord() = LogRecordEvent(null)
+
+      override fun isReserved(record: LogRecordEvent) = record.isReserved
+    }
 
     fun get(
       loggerFQCN: String,
@@ -177,7 +344,7 @@ class LogRecordEvent(logEntry: LogEntry?) : ExtLogRecord(logEntry) {
       ndc: List<String>?
     ): LogRecordEvent {
       return reserveRecord().apply {
-        setLogLevel(logLevel) // sets LogLevel and java.util.logging.Level
+        setLogLevel(logLevel)
         this.marker = marker
         setThrown(throwable)
         setLoggerName(name)
@@ -188,12 +355,7 @@ class LogRecordEvent(logEntry: LogEntry?) : ExtLogRecord(logEntry) {
     }
 
     private fun reserveRecord(): LogRecordEvent {
-      val record = threadLocal.get()
-      return if (record.isReserved) {
-        LogRecordEvent(null).reserve()
-      } else {
-        record.reserve()
-      }
+      return pool.get().reserve()
     }
   }
 }
\ No newline at end of file
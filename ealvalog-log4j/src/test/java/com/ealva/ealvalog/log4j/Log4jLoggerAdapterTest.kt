@@ -18,13 +18,17 @@
 
 package com.ealva.ealvalog.log4j
 
+import com.ealva.ealvalog.LogLevel
 import com.ealva.ealvalog.Markers
 import com.ealva.ealvalog.e
 import com.ealva.ealvalog.i
 import com.ealva.ealvalog.invoke
 import com.ealva.ealvalog.logger
+import com.ealva.ealvalog.util.MessageStyle
 import com.nhaarman.expect.expect
+import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.argumentCaptor
+import com.nhaarman.mockitokotlin2.doAnswer
 import com.nhaarman.mockitokotlin2.doReturn
 import com.nhaarman.mockitokotlin2.mock
 import com.nhaarman.mockitokotlin2.never
@@ -34,9 +38,13 @@ import org.apache.logging.log4j.Level
 import org.apache.logging.log4j.LogManager
 import org.apache.logging.log4j.ThreadContext
 import org.apache.logging.log4j.core.Appender
+import org.apache.logging.log4j.core.Filter
 import org.apache.logging.log4j.core.LogEvent
 import org.apache.logging.log4j.core.Logger
+import org.apache.logging.log4j.core.LoggerContext
 import org.apache.logging.log4j.core.config.Configurator
+import org.apache.logging.log4j.core.filter.MarkerFilter
+import org.apache.logging.log4j.message.ReusableMessage
 import org.junit.After
 import org.junit.Before
 import org.junit.Test
@@ -46,12 +54,16 @@ import org.junit.Test
  */
 class Log4jLoggerAdapterTest {
   private lateinit var appender: Appender
+  /** Events are reused after append, so keep immutable copies as an async appender would */
+  private val appended = mutableListOf<LogEvent>()
 
   @Before
   fun setup() {
+    appended.clear()
     appender = mock {
       on { isStarted }.doReturn(true)
       on { name }.doReturn("Appender")
+      on { append(any()) }.doAnswer { appended.add(it.getArgument<LogEvent>(0).toImmutable()); Unit }
     }
     val rootLogger = LogManager.getRootLogger() as Logger
     rootLogger.addAppender(appender)
@@ -76,7 +88,7 @@ class Log4jLoggerAdapterTest {
     // Then
     val captor = argumentCaptor<LogEvent>()
     verify(appender, times(1)).append(captor.capture())
-    val event = captor.firstValue
+    val event = appended.single()
     expect(event.loggerName).toBe(loggerName)
     expect(event.loggerFqcn).toBe(Log4jLoggerAdapter::class.java.name)
     expect(event.level).toBe(Level.ERROR)
@@ -97,13 +109,77 @@ class Log4jLoggerAdapterTest {
     // Then
     val captor = argumentCaptor<LogEvent>()
     verify(appender, times(1)).append(captor.capture())
-    val event = captor.firstValue
+    val event = appended.single()
     expect(event.loggerName).toBe(loggerName)
     expect(event.loggerFqcn).toBe(Log4jLoggerAdapter::class.java.name)
     expect(event.level).toBe(Level.ERROR)
     expect(event.message.formattedMessage).toBe("$message $arg")
   }
 
+  @Test
+  fun testImmutableEventKeepsItsMessage() {
+    val logger = logger("Test")
+
+    logger.e { it("first {}", 1) }
+    logger.e { it("second") }
+
+    expect(appended.size).toBe(2)
+    appended.forEach { event -> expect(event.message is ReusableMessage).toBe(false) }
+    expect(appended[0].message.formattedMessage).toBe("first 1")
+    expect(appended[1].message.formattedMessage).toBe("second")
+  }
+
+  @Test
+  fun testMessageSurvivesLoggingFromAnAppender() {
+    val inner = logger("Inner")
+    val seen = mutableListOf<String>()
+    val reentrant = mock<Appender> {
+      on { isStarted }.doReturn(true)
+      on { name }.doReturn("ReentrantAppender")
+      on { append(any()) }.doAnswer { invocation ->
+        val event = invocation.getArgument<LogEvent>(0)
+        if (event.loggerName == "Outer") {
+          seen.add(event.message.formattedMessage)
+          inner.e { it("inner") }
+          seen.add(event.message.formattedMessage)
+        }
+        Unit
+      }
+    }
+    val rootLogger = LogManager.getRootLogger() as Logger
+    rootLogger.addAppender(reentrant)
+    try {
+      logger("Outer").e { it("outer") }
+    } finally {
+      rootLogger.removeAppender(reentrant)
+    }
+
+    expect(seen).toBe(listOf("outer", "outer"))
+    expect(appended.any { event -> event.message.formattedMessage == "inner" }).toBe(true)
+  }
+
+  @Test
+  fun testLogParamsPrintf() {
+    // Given
+    val loggerName = "Test"
+    val logger = logger(loggerName)
+    val message = "Message"
+    val arg = 1
+    Log4jLoggerFactory.messageStyle = MessageStyle.PRINTF
+
+    // When
+    try {
+      logger.e { it("$message %d {}", arg) }
+    } finally {
+      Log4jLoggerFactory.messageStyle = MessageStyle.SLF4J
+    }
+
+    // Then
+    val captor = argumentCaptor<LogEvent>()
+    verify(appender, times(1)).append(captor.capture())
+    expect(appended.single().message.formattedMessage).toBe("$message $arg {}")
+  }
+
   @Test
   fun testLogThrown() {
     // Given
@@ -119,7 +195,7 @@ class Log4jLoggerAdapterTest {
     // Then
     val captor = argumentCaptor<LogEvent>()
     verify(appender, times(1)).append(captor.capture())
-    val event = captor.firstValue
+    val event = appended.single()
     expect(event.loggerName).toBe(loggerName)
     expect(event.loggerFqcn).toBe(Log4jLoggerAdapter::class.java.name)
     expect(event.level).toBe(Level.ERROR)
@@ -145,7 +221,7 @@ class Log4jLoggerAdapterTest {
     // Then
     val captor = argumentCaptor<LogEvent>()
     verify(appender, times(1)).append(captor.capture())
-    val event = captor.firstValue
+    val event = appended.single()
     expect(event.loggerName).toBe(loggerName)
     expect(event.loggerFqcn).toBe(Log4jLoggerAdapter::class.java.name)
     expect(event.level).toBe(Level.ERROR)
@@ -170,7 +246,7 @@ class Log4jLoggerAdapterTest {
     // Then
     val captor = argumentCaptor<LogEvent>()
     verify(appender, times(1)).append(captor.capture())
-    val event = captor.firstValue
+    val event = appended.single()
     expect(event.loggerName).toBe(loggerName)
     expect(event.loggerFqcn).toBe(Log4jLoggerAdapter::class.java.name)
     expect(event.level).toBe(Level.ERROR)
@@ -198,6 +274,45 @@ class Log4jLoggerAdapterTest {
     verify(appender, never()).append(captor.capture())
   }
 
+  @Test
+  fun testConfiguratorLevelChangeInvalidatesCache() {
+    // Given
+    val loggerName = "CacheTest"
+    val logger = logger(loggerName)
+    logger.logLevel = LogLevel.DEBUG
+    expect(logger.isLoggable(LogLevel.DEBUG)).toBe(true)
+
+    // When
+    Configurator.setLevel(loggerName, Level.ERROR)
+
+    // Then
+    expect(logger.isLoggable(LogLevel.DEBUG)).toBe(false)
+    expect(logger.isLoggable(LogLevel.ERROR)).toBe(true)
+  }
+
+  @Test
+  fun testContextFilterIsConsulted() {
+    // Given
+    val loggerName = "FilterTest"
+    val logger = logger(loggerName)
+    logger.logLevel = LogLevel.ERROR
+    val marker = Markers["FilterTestMarker"]
+    val context = LogManager.getContext(false) as LoggerContext
+    val filter = MarkerFilter.createFilter(marker.name, Filter.Result.ACCEPT, Filter.Result.NEUTRAL)
+    context.configuration.addFilter(filter)
+    context.updateLoggers()
+
+    try {
+      // Then
+      expect(logger.isLoggable(LogLevel.DEBUG, marker)).toBe(true)
+      expect(logger.isLoggable(LogLevel.DEBUG)).toBe(false)
+    } finally {
+      context.configuration.removeFilter(filter)
+      context.updateLoggers()
+    }
+    expect(logger.isLoggable(LogLevel.DEBUG, marker)).toBe(false)
+  }
+
   @Test
   fun testMdcNdc() {
     // Given
@@ -218,7 +333,7 @@ class Log4jLoggerAdapterTest {
     // Then
     val captor = argumentCaptor<LogEvent>()
     verify(appender, times(1)).append(captor.capture())
-    val event = captor.firstValue
+    val event = appended.single()
     expect(event.loggerName).toBe(loggerName)
     expect(event.loggerFqcn).toBe(Log4jLoggerAdapter::class.java.name)
     expect(event.level).toBe(Level.ERROR)
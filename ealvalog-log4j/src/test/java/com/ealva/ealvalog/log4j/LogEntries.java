@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.log4j;
+
+import com.ealva.ealvalog.LogEntry;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Passes an existing argument array to {@link LogEntry#setFormatAndArgs(String, Object...)}.
+ * Kotlin copies an array spread into a vararg, which would be counted against the logging call.
+ */
+final class LogEntries {
+  private LogEntries() {
+  }
+
+  static void setFormatAndArgs(final @NotNull LogEntry entry,
+                               final @NotNull String format,
+                               final @NotNull Object[] args) {
+    entry.setFormatAndArgs(format, args);
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.log4j
+
+import com.ealva.ealvalog.LogEntry
+import com.ealva.ealvalog.LogLevel
+import com.ealva.ealvalog.util.MessageStyle
+import com.nhaarman.expect.expect
+import org.apache.logging.log4j.Level
+import org.apache.logging.log4j.LogManager
+import org.apache.logging.log4j.ThreadContext
+import org.apache.logging.log4j.core.LogEvent
+import org.apache.logging.log4j.core.LoggerContext
+import org.apache.logging.log4j.core.appender.AbstractAppender
+import org.apache.logging.log4j.core.config.Property
+import org.apache.logging.log4j.core.layout.ByteBufferDestination
+import org.apache.logging.log4j.core.layout.ByteBufferDestinationHelper
+import org.apache.logging.log4j.core.layout.PatternLayout
+import org.junit.After
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import java.lang.management.ManagementFactory
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+/**
+ * Logs through [Log4jLoggerAdapter] to an appender which encodes each event with a garbage-free
+ * [PatternLayout], reading the event's instant, level, thread, logger, marker, context data and
+ * message, and measures the bytes allocated by the logging thread. The thread context, which the
+ * bridge hands to the event, has an MDC and NDC entry. Messages are plain, parameterized, and
+ * printf formatted.
+ */
+class LogRecordEventAllocationTest {
+  private val context = LogManager.getContext(false) as LoggerContext
+  private val rootConfig = context.configuration.rootLogger
+  private val savedAppenders = rootConfig.appenders.values.toList()
+  private val savedLevel = rootConfig.level
+  private val appender = EncodingAppender()
+
+  @Before
+  fun setup() {
+    savedAppenders.forEach { rootConfig.removeAppender(it.name) }
+    appender.start()
+    rootConfig.addAppender(appender, null, null)
+    rootConfig.level = Level.INFO
+    context.updateLoggers()
+    Log4jLoggerFactory.reset()
+    ThreadContext.clearAll()
+    ThreadContext.put("key", "value")
+    ThreadContext.push("ndc")
+  }
+
+  @After
+  fun tearDown() {
+    rootConfig.removeAppender(appender.name)
+    savedAppenders.forEach { rootConfig.addAppender(it, null, null) }
+    rootConfig.level = savedLevel
+    context.updateLoggers()
+    Log4jLoggerFactory.reset()
+    Log4jLoggerFactory.messageStyle = MessageStyle.SLF4J
+    ThreadContext.clearAll()
+  }
+
+  @Test
+  fun testEnabledLogIsGarbageFree() {
+    expectGarbageFree("garbage free message") { entry -> entry.append("garbage free message") }
+  }
+
+  @Test
+  fun testParameterizedLogIsGarbageFree() {
+    expectGarbageFree("value 5 of ten") { entry ->
+      LogEntries.setFormatAndArgs(entry, "value {} of {}", TWO_ARGS)
+    }
+  }
+
+  @Test
+  fun testPrintfLogIsGarbageFree() {
+    Log4jLoggerFactory.messageStyle = MessageStyle.PRINTF
+    expectGarbageFree("value 5 of ten") { entry ->
+      LogEntries.setFormatAndArgs(entry, "value %d of %s", TWO_ARGS)
+    }
+  }
+
+  @Test
+  fun testParametersFromPreviousRecordAreNotReused() {
+    val logger = Log4jLoggerFactory.get(LogRecordEventAllocationTest::class.java.name)
+    log(logger) { entry -> LogEntries.setFormatAndArgs(entry, "{} {}", TWO_ARGS) }
+    log(logger) { entry -> LogEntries.setFormatAndArgs(entry, "{} {}", ONE_ARG) }
+    expect(appender.lastEncoded).toContain("one {}")
+  }
+
+  private fun expectGarbageFree(expected: String, fill: (LogEntry) -> Unit) {
+    val threadBean = ManagementFactory.getThreadMXBean()
+    assumeTrue(threadBean is com.sun.management.ThreadMXBean)
+    val allocationBean = threadBean as com.sun.management.ThreadMXBean
+    assumeTrue(allocationBean.isThreadAllocatedMemorySupported)
+    allocationBean.isThreadAllocatedMemoryEnabled = true
+    val threadId = Thread.currentThread().id
+
+    val logger = Log4jLoggerFactory.get(LogRecordEventAllocationTest::class.java.name)
+    repeat(WARM_UP) { log(logger, fill) }
+    expect(appender.lastEncoded).toContain("INFO")
+    expect(appender.lastEncoded).toContain(expected)
+    expect(appender.lastEncoded).toContain("{key=value}")
+
+    val before = allocationBean.getThreadAllocatedBytes(threadId)
+    repeat(MEASURED) { log(logger, fill) }
+    val allocated = allocationBean.getThreadAllocatedBytes(threadId) - before
+
+    // integer division absorbs the few bytes the measurement itself may allocate
+    expect(allocated / MEASURED).toBe(0L)
+    expect(appender.count).toBe((WARM_UP + MEASURED).toLong())
+  }
+
+  private fun log(logger: Log4jLoggerAdapter, fill: (LogEntry) -> Unit) {
+    if (logger.isLoggable(LogLevel.INFO)) {
+      logger.getLogEntry(LogLevel.INFO, null, null, null).use { entry ->
+        fill(entry)
+        logger.logImmediate(entry)
+      }
+    }
+  }
+
+  private class EncodingAppender : AbstractAppender(
+    "EncodingAppender",
+    null,
+    PatternLayout.newBuilder()
+      .withPattern("%d{HH:mm:ss.SSS} %-5level [%t] %logger %marker %X %m%n")
+      .build(),
+    true,
+    Property.EMPTY_ARRAY
+  ), ByteBufferDestination {
+    private val buffer = ByteBuffer.allocate(4096)
+    var count = 0L
+
+    val lastEncoded: String
+      get() = String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8)
+
+    override fun append(event: LogEvent) {
+      count++
+      buffer.clear()
+      layout.encode(event, this)
+    }
+
+    override fun getByteBuffer(): ByteBuffer = buffer
+
+    override fun drain(buf: ByteBuffer): ByteBuffer {
+      buf.clear()
+      return buf
+    }
+
+    override fun writeBytes(data: ByteBuffer) {
+      ByteBufferDestinationHelper.writeToUnsynchronized(data, this)
+    }
+
+    override fun writeBytes(data: ByteArray, offset: Int, length: Int) {
+      ByteBufferDestinationHelper.writeToUnsynchronized(data, offset, length, this)
+    }
+  }
+
+  companion object {
+    private const val WARM_UP = 200_000
+    private const val MEASURED = 10_000
+    private val TWO_ARGS = arrayOf<Any>(5, "ten")
+    private val ONE_ARG = arrayOf<Any>("one")
+  }
+}
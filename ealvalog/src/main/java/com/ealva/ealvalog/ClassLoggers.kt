@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog
+
+/**
+ * Class to [Logger] lookup bound to a single [LoggerFactory]. [Loggers] replaces its instance
+ * whenever the factory is set, so loggers from a previous factory are never returned.
+ *
+ * Where [ClassValue] is available the logger is computed once per class and later lookups are
+ * lock free. Otherwise every lookup goes to the factory.
+ */
+internal abstract class ClassLoggers(protected val factory: LoggerFactory) {
+  abstract operator fun get(type: Class<*>): Logger
+
+  companion object {
+    private val HAS_CLASS_VALUE = try {
+      Class.forName("java.lang.ClassValue")
+      true
+    } catch (e: ClassNotFoundException) {
+      false
+    }
+
+    fun make(factory: LoggerFactory): ClassLoggers =
+      if (HAS_CLASS_VALUE) CachedClassLoggers(factory) else UncachedClassLoggers(factory)
+
+    /** A companion object logs under the name of its enclosing class */
+    fun nameOf(type: Class<*>): String = type.name.substringBefore("\$Companion")
+  }
+}
+
+private class CachedClassLoggers(factory: LoggerFactory) : ClassLoggers(factory) {
+  private val loggers = object : ClassValue<Logger>() {
+    override fun computeValue(type: Class<*>): Logger = factory.get(nameOf(type), null, false)
+  }
+
+  override fun get(type: Class<*>): Logger = loggers.get(type)
+}
+
+private class UncachedClassLoggers(factory: LoggerFactory) : ClassLoggers(factory) {
+  override fun get(type: Class<*>): Logger = factory.get(nameOf(type), null, false)
+}
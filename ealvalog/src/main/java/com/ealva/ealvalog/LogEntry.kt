@@ -46,7 +46,8 @@ operator fun LogEntry.invoke(format: String, vararg args: Any): LogEntry {
 
 /**
  * Add the source location, determined by examining the call stack, to the log record. This is
- * an expensive operation as the JVM has to fill out the entire stack frame.
+ * an expensive operation as the JVM has to fill out the entire stack frame. Classes processed by
+ * the ealvalog-callsite transform instead pass a location precomputed at build time.
  *
  * See [LogEntry.addLocation]
  */
@@ -189,4 +190,12 @@ interface LogEntry : Appendable, Closeable, Serializable {
    */
   fun addLocation(stackDepth: Int): LogEntry
 
+  /**
+   * Set the source location to [location], typically a call site precomputed at build time, see
+   * the ealvalog-callsite module. This avoids examining the call stack.
+   *
+   * @return this LogEntry
+   */
+  fun addLocation(location: StackTraceElement): LogEntry
+
 }
@@ -30,7 +30,7 @@ fun <T : Any> logger(
   forClass: KClass<T>,
   marker: Marker? = null,
   includeLocation: Boolean = false
-): Logger = logger(forClass.java.name, marker, includeLocation)
+): Logger = Loggers.get(forClass.java, marker, includeLocation)
 
 fun logger(
   name: String,
@@ -43,7 +43,7 @@ fun <T : Any> lazyLogger(
   forClass: KClass<T>,
   marker: Marker? = null,
   includeLocation: Boolean = false
-): Lazy<Logger> = lazyLogger(forClass.java.name, marker, includeLocation)
+): Lazy<Logger> = lazy { logger(forClass, marker, includeLocation) }
 
 fun lazyLogger(
   name: String,
@@ -54,7 +54,7 @@ fun lazyLogger(
 inline fun <reified R : Any> R.logger(
   marker: Marker? = null,
   includeLocation: Boolean = false
-): Logger = Loggers.get(this.javaClass.name.substringBefore("\$Companion"), marker, includeLocation)
+): Logger = Loggers.get(this.javaClass, marker, includeLocation)
 
 inline fun <reified R : Any> R.lazyLogger(
   marker: Marker? = null,
@@ -179,6 +179,7 @@ inline fun Logger.wtf(
 object Loggers {
   private const val STACK_DEPTH = 1
   @field:Volatile private var loggerFactory: LoggerFactory = NullLoggerFactory
+  @field:Volatile private var classLoggers: ClassLoggers = ClassLoggers.make(NullLoggerFactory)
 
   /**
    * Get the root logger. Logger with name [LoggerFactory.ROOT_LOGGER_NAME]
@@ -191,12 +192,28 @@ object Loggers {
   /** Set the [LoggerFactory] to be used for all calls to obtain a Logger  */
   fun setFactory(factory: LoggerFactory) {
     loggerFactory = factory
+    classLoggers = ClassLoggers.make(factory)
   }
 
   fun get(name: String, marker: Marker? = null, includeLocation: Boolean = false): Logger {
     return loggerFactory.get(name, marker, includeLocation)
   }
 
+  /**
+   * Get the [Logger] for [forClass]. A "$Companion" suffix is dropped so a companion object
+   * shares the logger of its enclosing class. With no [marker] and no [includeLocation] the
+   * logger is cached per class, per factory, and repeated lookups neither lock nor allocate.
+   *
+   * @return a logger named for [forClass]
+   */
+  fun get(forClass: Class<*>, marker: Marker? = null, includeLocation: Boolean = false): Logger {
+    return if (marker == null && !includeLocation) {
+      classLoggers[forClass]
+    } else {
+      loggerFactory.get(ClassLoggers.nameOf(forClass), marker, includeLocation)
+    }
+  }
+
   /**
    * Convenience method to obtain a [Logger] for the current object's class.
    *
@@ -55,6 +55,7 @@ object NullLogEntry : LogEntry {
   override fun format(locale: Locale, format: String, vararg args: Any) = this
   override fun setFormatAndArgs(format: String, vararg args: Any) = this
   override fun addLocation(stackDepth: Int) = this
+  override fun addLocation(location: StackTraceElement) = this
   @Throws(ObjectStreamException::class)
   private fun readResolve(): Any = NullLogEntry
 }
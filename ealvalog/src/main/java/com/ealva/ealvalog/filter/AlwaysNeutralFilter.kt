@@ -20,7 +20,6 @@ package com.ealva.ealvalog.filter
 
 import com.ealva.ealvalog.FilterResult
 import com.ealva.ealvalog.LogLevel
-import com.ealva.ealvalog.LoggerFilter
 import com.ealva.ealvalog.Marker
 import java.util.logging.LogRecord
 
@@ -30,7 +29,7 @@ import java.util.logging.LogRecord
  *
  * Created by Eric A. Snell on 3/8/17.
  */
-object AlwaysNeutralFilter : LoggerFilter {
+object AlwaysNeutralFilter : PureFilter {
   override fun isLoggable(
     loggerName: String,
     logLevel: LogLevel,
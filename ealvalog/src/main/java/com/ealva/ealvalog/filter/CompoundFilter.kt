@@ -22,28 +22,43 @@ import com.ealva.ealvalog.FilterResult
 import com.ealva.ealvalog.LogLevel
 import com.ealva.ealvalog.LoggerFilter
 import com.ealva.ealvalog.Marker
+import java.util.IdentityHashMap
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CopyOnWriteArraySet
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
+ * Returns the first non-[FilterResult.NEUTRAL] result of its filters, in the order they were
+ * added, or NEUTRAL if every filter is neutral.
+ *
+ * The filters are compiled into an array before use: nested CompoundFilters are flattened into
+ * this one, [AlwaysNeutralFilter] is dropped, and [AlwaysAcceptFilter] or [AlwaysDenyFilter] ends
+ * the chain as a constant. Results of consecutive [PureFilter]s are cached per logger name, level
+ * and marker. Any [add], [remove], [addAll] or [clear], on this or any other CompoundFilter,
+ * discards the compiled chain and its cached results.
+ *
  * Created by Eric A. Snell on 8/17/18.
  */
 class CompoundFilter(vararg filters: LoggerFilter) : LoggerFilter {
   private val filters = CopyOnWriteArraySet<LoggerFilter>().apply { addAll(filters) }
+  @Volatile private var compiled: Compiled? = null
 
   fun add(filter: LoggerFilter): Boolean {
-    return filters.add(filter)
+    return filters.add(filter).also { added -> if (added) changed() }
   }
 
   fun remove(filter: LoggerFilter): Boolean {
-    return filters.remove(filter)
+    return filters.remove(filter).also { removed -> if (removed) changed() }
   }
 
   fun clear() {
     filters.clear()
+    changed()
   }
 
   fun addAll(vararg filters: LoggerFilter) {
     this.filters.addAll(filters)
+    changed()
   }
 
   override fun isLoggable(
@@ -52,11 +67,123 @@ class CompoundFilter(vararg filters: LoggerFilter) : LoggerFilter {
     marker: Marker?,
     throwable: Throwable?
   ): FilterResult {
-    filters.forEach {
-      val result = it.isLoggable(loggerName, logLevel, marker, throwable)
+    val chain = currentChain()
+    val steps = chain.steps
+    for (i in steps.indices) {
+      val result = steps[i].isLoggable(loggerName, logLevel, marker, throwable)
       if (result !== FilterResult.NEUTRAL) return result
     }
-    return FilterResult.NEUTRAL
+    return chain.terminal
+  }
+
+  private fun currentChain(): Compiled {
+    val current = compiled
+    if (current != null && current.version == modifications.get()) return current
+    return compile().also { compiled = it }
+  }
+
+  private fun compile(): Compiled {
+    val version = modifications.get()
+    val flattened = ArrayList<LoggerFilter>()
+    val terminal = flatten(this, flattened, IdentityHashMap())
+
+    val steps = ArrayList<LoggerFilter>(flattened.size)
+    var pure = ArrayList<LoggerFilter>()
+    flattened.forEach { filter ->
+      if (filter is PureFilter) {
+        pure.add(filter)
+      } else {
+        if (pure.isNotEmpty()) {
+          steps.add(PureSegment(pure.toTypedArray()))
+          pure = ArrayList()
+        }
+        steps.add(filter)
+      }
+    }
+    if (pure.isNotEmpty()) steps.add(PureSegment(pure.toTypedArray()))
+    return Compiled(version, steps.toTypedArray(), terminal)
+  }
+
+  private class Compiled(
+    val version: Int,
+    val steps: Array<LoggerFilter>,
+    val terminal: FilterResult
+  )
+
+  /** Consecutive [PureFilter]s evaluated as one, with results cached */
+  private class PureSegment(private val filters: Array<LoggerFilter>) : LoggerFilter {
+    private val byLevel = Array(LogLevel.values().size) { ConcurrentHashMap<String, Decisions>() }
+    private val size = AtomicInteger(0)
+
+    override fun isLoggable(
+      loggerName: String,
+      logLevel: LogLevel,
+      marker: Marker?,
+      throwable: Throwable?
+    ): FilterResult {
+      val byName = byLevel[logLevel.ordinal]
+      val decisions = byName[loggerName]
+      val cached = if (marker == null) decisions?.noMarker else decisions?.byMarker?.get(marker)
+      if (cached != null) return cached
+
+      var result = FilterResult.NEUTRAL
+      for (i in filters.indices) {
+        result = filters[i].isLoggable(loggerName, logLevel, marker, throwable)
+        if (result !== FilterResult.NEUTRAL) break
+      }
+      if (size.get() < MAX_CACHED) {
+        size.incrementAndGet()
+        val target = decisions ?: Decisions().let { byName.putIfAbsent(loggerName, it) ?: it }
+        if (marker == null) target.noMarker = result else target.byMarker.put(marker, result)
+      }
+      return result
+    }
   }
 
+  private class Decisions {
+    @Volatile var noMarker: FilterResult? = null
+    val byMarker = ConcurrentHashMap<Marker, FilterResult>(4)
+  }
+
+  companion object {
+    /** Bound on cached decisions per run of pure filters; later results are computed each time */
+    private const val MAX_CACHED = 4096
+
+    /** Bumped by every change to any CompoundFilter, as compiled chains may include others */
+    private val modifications = AtomicInteger(0)
+
+    private fun changed() {
+      modifications.incrementAndGet()
+    }
+
+    /**
+     * Append the filters of [compound] to [into], descending into nested CompoundFilters. Returns
+     * the result when all of [into] is neutral, which is ACCEPT or DENY if an always filter was
+     * reached, as nothing after it can be evaluated.
+     */
+    private fun flatten(
+      compound: CompoundFilter,
+      into: MutableList<LoggerFilter>,
+      visiting: IdentityHashMap<CompoundFilter, Boolean>
+    ): FilterResult {
+      visiting[compound] = true
+      try {
+        compound.filters.forEach { filter ->
+          when {
+            filter === AlwaysNeutralFilter -> Unit
+            filter === AlwaysAcceptFilter -> return FilterResult.ACCEPT
+            filter === AlwaysDenyFilter -> return FilterResult.DENY
+            filter is CompoundFilter && !visiting.containsKey(filter) -> {
+              val result = flatten(filter, into, visiting)
+              if (result !== FilterResult.NEUTRAL) return result
+            }
+            else -> into.add(filter)
+          }
+        }
+        return FilterResult.NEUTRAL
+      } finally {
+        visiting.remove(compound)
+      }
+    }
+  }
 }
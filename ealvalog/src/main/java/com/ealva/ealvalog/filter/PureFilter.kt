@@ -0,0 +1,28 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.filter
+
+import com.ealva.ealvalog.LoggerFilter
+
+/**
+ * A [LoggerFilter] whose result depends only on the logger name, level and marker. It must not
+ * look at the throwable or at any state which changes over time. [CompoundFilter] caches the
+ * results of consecutive pure filters instead of calling them on every log.
+ */
+interface PureFilter : LoggerFilter
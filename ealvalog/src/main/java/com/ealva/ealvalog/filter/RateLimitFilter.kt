@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.filter
+
+import com.ealva.ealvalog.FilterResult
+import com.ealva.ealvalog.FilterResult.DENY
+import com.ealva.ealvalog.FilterResult.NEUTRAL
+import com.ealva.ealvalog.LogLevel
+import com.ealva.ealvalog.Loggers
+import com.ealva.ealvalog.Marker
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Filter which limits how many records per second pass, keyed by logger name, marker, or logger
+ * name and level (see [LimitBy]). Records within the limit get [whenMatched] and the rest get
+ * [whenDiffer]. Set as a [com.ealva.ealvalog.Logger.filter] the check happens before a LogEntry
+ * is obtained, so suppressed records cost no allocation or formatting.
+ *
+ * Each key has a lock-free token bucket holding up to [burst] tokens, refilled at
+ * [recordsPerSecond]. The bucket is a single theoretical arrival time advanced by compare and set
+ * against [System.nanoTime], which is equivalent to counting tokens.
+ *
+ * When a record passes and at least [summaryIntervalMillis] have elapsed since the last summary,
+ * a "records suppressed" entry is first logged, at the passing record's level, if any were
+ * suppressed for that key. A summary therefore waits for the next record which passes. With
+ * [LimitBy.MARKER], records without a marker are not limited.
+ *
+ * A filter is only given the logger's name, so the summary is logged through
+ * [Loggers.get] with that name. This is the logger which owns the filter when loggers are
+ * obtained through [Loggers], but for a logger created directly by some other
+ * [com.ealva.ealvalog.LoggerFactory] the summary goes to the same named logger of the factory set
+ * on [Loggers]. The summary text is appended, not formatted, so it reads the same whatever
+ * message style that logger uses.
+ */
+class RateLimitFilter(
+  private val recordsPerSecond: Double,
+  private val burst: Int = defaultBurst(recordsPerSecond),
+  private val limitBy: LimitBy = LimitBy.LOGGER,
+  private val summaryIntervalMillis: Long = DEFAULT_SUMMARY_INTERVAL_MILLIS,
+  whenMatched: FilterResult = NEUTRAL,
+  whenDiffer: FilterResult = DENY
+) : BaseFilter(whenMatched, whenDiffer) {
+  /** What each token bucket is keyed on */
+  enum class LimitBy {
+    LOGGER,
+    MARKER,
+    LOGGER_AND_LEVEL
+  }
+
+  private val nanosPerRecord: Long
+  private val tolerance: Long
+  private val summaryIntervalNanos = TimeUnit.MILLISECONDS.toNanos(summaryIntervalMillis)
+  private val buckets: Array<ConcurrentHashMap<Any, Bucket>>
+  /** Set while a thread logs a summary, so the summary itself passes this filter */
+  private val summarizing = ThreadLocal<Boolean>()
+  private val limitText = String.format(Locale.ROOT, "%.1f", recordsPerSecond)
+
+  /** Source of [System.nanoTime], replaced in tests */
+  internal var ticker: () -> Long = { System.nanoTime() }
+
+  init {
+    require(recordsPerSecond > 0.0) { "recordsPerSecond must be > 0" }
+    require(burst > 0) { "burst must be > 0" }
+    nanosPerRecord = (TimeUnit.SECONDS.toNanos(1) / recordsPerSecond).toLong().coerceAtLeast(1)
+    tolerance = nanosPerRecord * (burst - 1)
+    val tables = if (limitBy == LimitBy.LOGGER_AND_LEVEL) LogLevel.values().size else 1
+    buckets = Array(tables) { ConcurrentHashMap<Any, Bucket>() }
+  }
+
+  /** For Java clients */
+  class Builder(private val recordsPerSecond: Double) {
+    private var burst = defaultBurst(recordsPerSecond)
+    private var limitBy = LimitBy.LOGGER
+    private var summaryIntervalMillis = DEFAULT_SUMMARY_INTERVAL_MILLIS
+    private var whenMatched = NEUTRAL
+    private var whenDiffer = DENY
+
+    fun burst(burst: Int): Builder {
+      this.burst = burst
+      return this
+    }
+
+    fun limitBy(limitBy: LimitBy): Builder {
+      this.limitBy = limitBy
+      return this
+    }
+
+    fun summaryIntervalMillis(summaryIntervalMillis: Long): Builder {
+      this.summaryIntervalMillis = summaryIntervalMillis
+      return this
+    }
+
+    fun whenMatched(whenMatched: FilterResult): Builder {
+      this.whenMatched = whenMatched
+      return this
+    }
+
+    fun whenDiffer(whenDiffer: FilterResult): Builder {
+      this.whenDiffer = whenDiffer
+      return this
+    }
+
+    /**
+     * @throws IllegalArgumentException if recordsPerSecond or burst is not positive
+     */
+    @Throws(IllegalArgumentException::class)
+    fun build(): RateLimitFilter {
+      return RateLimitFilter(
+        recordsPerSecond,
+        burst,
+        limitBy,
+        summaryIntervalMillis,
+        whenMatched,
+        whenDiffer
+      )
+    }
+  }
+
+  override fun isLoggable(
+    loggerName: String,
+    logLevel: LogLevel,
+    marker: Marker?,
+    throwable: Throwable?
+  ): FilterResult {
+    if (summarizing.get() == true) return whenMatched
+    val key: Any = when (limitBy) {
+      LimitBy.MARKER -> marker ?: return whenMatched
+      else -> loggerName
+    }
+    val table = buckets[if (limitBy == LimitBy.LOGGER_AND_LEVEL) logLevel.ordinal else 0]
+    val now = ticker()
+    val bucket = table[key] ?: Bucket(now).let { table.putIfAbsent(key, it) ?: it }
+
+    if (!bucket.tryAcquire(now)) {
+      bucket.suppressed.incrementAndGet()
+      return whenDiffer
+    }
+    if (bucket.suppressed.get() > 0) {
+      maybeSummarize(bucket, now, loggerName, logLevel, marker)
+    }
+    return whenMatched
+  }
+
+  private fun maybeSummarize(
+    bucket: Bucket,
+    now: Long,
+    loggerName: String,
+    logLevel: LogLevel,
+    marker: Marker?
+  ) {
+    val last = bucket.lastSummary.get()
+    if (now - last < summaryIntervalNanos) return
+    summarizing.set(true)
+    try {
+      if (!bucket.lastSummary.compareAndSet(last, now)) return
+      val count = bucket.suppressed.getAndSet(0)
+      if (count > 0) {
+        val logger = Loggers.get(loggerName)
+        logger.getLogEntry(logLevel, marker, null, null).use { entry ->
+          entry.append(count)
+            .append(SUMMARY_SUPPRESSED)
+            .append(limitText)
+            .append(SUMMARY_PER_SECOND)
+          logger.logImmediate(entry)
+        }
+      }
+    } finally {
+      summarizing.set(false)
+    }
+  }
+
+  private inner class Bucket(now: Long) {
+    /** Time at which the bucket would next be full. Starts full. */
+    private val fullAt = AtomicLong(now)
+    val suppressed = AtomicLong(0)
+    val lastSummary = AtomicLong(now)
+
+    fun tryAcquire(now: Long): Boolean {
+      while (true) {
+        val current = fullAt.get()
+        val start = if (current - now > 0) current else now
+        if (start - now > tolerance) return false
+        if (fullAt.compareAndSet(current, start + nanosPerRecord)) return true
+      }
+    }
+  }
+
+  companion object {
+    const val DEFAULT_SUMMARY_INTERVAL_MILLIS = 10_000L
+    private const val SUMMARY_SUPPRESSED = " records suppressed, limit "
+    private const val SUMMARY_PER_SECOND = " per second"
+
+    /** Default burst allows one second's worth of records */
+    private fun defaultBurst(recordsPerSecond: Double) =
+      Math.ceil(recordsPerSecond).toInt().coerceAtLeast(1)
+
+    /** For Java clients */
+    fun builder(recordsPerSecond: Double): Builder {
+      return Builder(recordsPerSecond)
+    }
+  }
+}
@@ -27,6 +27,8 @@ import org.jetbrains.annotations.NotNull;
  */
 public final class LogUtil {
   private static final int MAX_TAG_LENGTH = 23;
+  private static final boolean HAS_STACK_WALKER = hasStackWalker();
+  private static volatile boolean cacheCallerLocations = false;
 
   /**
    * For Android, convert a class name to an acceptable Android Log tag, removing any inner class suffixes
@@ -97,14 +99,56 @@ public final class LogUtil {
    */
   public static @NotNull
   StackTraceElement getCallerLocation(final int currentStackDepthFromCallSite) {
+    if (HAS_STACK_WALKER) {
+      final StackTraceElement element =
+          StackWalkerLocator.locate(currentStackDepthFromCallSite + 1, cacheCallerLocations);
+      if (element == null) {
+        throw notEnoughElements();
+      }
+      return element;
+    }
     StackTraceElement[] stackTrace = new Throwable().getStackTrace();
     if (stackTrace.length <= currentStackDepthFromCallSite + 1) {
-      throw new IllegalStateException(
-          "Not enough stack trace elements for given call depth. Possible optimizer/obfuscator?");
+      throw notEnoughElements();
     }
     return stackTrace[currentStackDepthFromCallSite + 1];
   }
 
+  /**
+   * Set if {@link #getCallerLocation(int)} reuses the StackTraceElement previously found for the
+   * same call site. Only used on Java 10 and above, where the stack is walked one frame at a time.
+   * Caching saves building the element, including its file name and line number, on every call.
+   * The cache holds one element per call site which has requested its location. Default is false
+   *
+   * @param cache true to cache elements per call site
+   */
+  @SuppressWarnings("unused")
+  public static void setCacheCallerLocations(final boolean cache) {
+    cacheCallerLocations = cache;
+  }
+
+  public static boolean getCacheCallerLocations() {
+    return cacheCallerLocations;
+  }
+
+  private static IllegalStateException notEnoughElements() {
+    return new IllegalStateException(
+        "Not enough stack trace elements for given call depth. Possible optimizer/obfuscator?");
+  }
+
+  /**
+   * Java 9+ has StackWalker which only creates the frames requested. Otherwise, as on Java 8 and
+   * Android, the entire stack trace is created on each call
+   */
+  private static boolean hasStackWalker() {
+    try {
+      Class.forName("java.lang.StackWalker");
+      return StackWalkerLocator.isAvailable();
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
   @SuppressWarnings("unused")
   public static String getCallerClassNameStripInner(final int currentStackDepthFromCallSite) {
     return stripInnerClassesFromName(getCallerLocation(currentStackDepthFromCallSite +
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Finds a caller's {@link StackTraceElement} with java.lang.StackWalker, which only creates the
+ * requested frame rather than the entire stack. This source is compiled for Java 8 and shared
+ * with Android, so StackWalker is reached through reflective {@link Method}s resolved when this
+ * class is initialized: method handles can't be dexed below Android API 26. Initialization fails
+ * if StackWalker doesn't exist, so only load this class after checking
+ * {@link #isAvailable()} inside a try/catch of {@link LinkageError}.
+ * <p>
+ * The frames of the reflective call to walk precede {@link #locate(int, boolean)}, so frames are
+ * counted from locate's own frame.
+ * <p>
+ * Optionally elements are cached per call site, keyed by declaring class, method, and bytecode
+ * index, so a call site's element, including its file and line number, is only built once.
+ */
+final class StackWalkerLocator {
+  private static final Object[] NO_ARGS = new Object[0];
+  private static final String LOCATE = "locate";
+  private static final Object WALKER;
+  private static final Method WALK;
+  private static final Method TO_ELEMENT;
+  private static final Method DECLARING_CLASS;
+  private static final Method METHOD_NAME;
+  private static final Method BYTECODE_INDEX;
+  /** Method descriptor, Java 10+. Call sites are not cached without it, as overloads collide */
+  private static final @Nullable Method DESCRIPTOR;
+
+  private static final ClassValue<Map<Site, StackTraceElement>> sites =
+      new ClassValue<Map<Site, StackTraceElement>>() {
+        @Override protected Map<Site, StackTraceElement> computeValue(final Class<?> type) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
+  static {
+    try {
+      final Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+      final Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+
+      WALKER = walkerClass.getMethod("getInstance", Set.class)
+                          .invoke(null, options("RETAIN_CLASS_REFERENCE", "SHOW_REFLECT_FRAMES"));
+      WALK = walkerClass.getMethod("walk", Function.class);
+      TO_ELEMENT = frameClass.getMethod("toStackTraceElement");
+      DECLARING_CLASS = frameClass.getMethod("getDeclaringClass");
+      METHOD_NAME = frameClass.getMethod("getMethodName");
+      BYTECODE_INDEX = frameClass.getMethod("getByteCodeIndex");
+      DESCRIPTOR = findDescriptor(frameClass);
+    } catch (Throwable e) {
+      throw new IllegalStateException("StackWalker unavailable", e);
+    }
+  }
+
+  /** @return true, if this class initialized without error */
+  static boolean isAvailable() {
+    return WALKER != null;
+  }
+
+  /**
+   * @param depth number of frames to skip, where frame 0 is the caller of this method
+   * @param cache if true, reuse the element previously returned for the same call site
+   *
+   * @return the element at {@code depth} or null if the stack isn't that deep
+   */
+  static @Nullable StackTraceElement locate(final int depth, final boolean cache) {
+    final Function<Stream<Object>, Object> function =
+        frames -> toElement(frameAt(frames.iterator(), depth), cache);
+    return (StackTraceElement)invoke(WALK, WALKER, function);
+  }
+
+  /** @return the frame {@code depth} + 1 frames after the frame of locate, or null */
+  private static @Nullable Object frameAt(final Iterator<Object> frames, final int depth) {
+    while (frames.hasNext()) {
+      final Object frame = frames.next();
+      if (invoke(DECLARING_CLASS, frame) == StackWalkerLocator.class &&
+          LOCATE.equals(invoke(METHOD_NAME, frame))) {
+        for (int i = 0; i < depth && frames.hasNext(); i++) {
+          frames.next();
+        }
+        return frames.hasNext() ? frames.next() : null;
+      }
+    }
+    return null;
+  }
+
+  private static @Nullable StackTraceElement toElement(final @Nullable Object frame,
+                                                       final boolean cache) {
+    if (frame == null) {
+      return null;
+    }
+    if (!cache || DESCRIPTOR == null) {
+      return (StackTraceElement)invoke(TO_ELEMENT, frame);
+    }
+    final Map<Site, StackTraceElement> classSites =
+        sites.get((Class<?>)invoke(DECLARING_CLASS, frame));
+    final Site site = new Site((String)invoke(METHOD_NAME, frame),
+                               (String)invoke(DESCRIPTOR, frame),
+                               (Integer)invoke(BYTECODE_INDEX, frame));
+    StackTraceElement element = classSites.get(site);
+    if (element == null) {
+      element = (StackTraceElement)invoke(TO_ELEMENT, frame);
+      classSites.put(site, element);
+    }
+    return element;
+  }
+
+  private static Object invoke(final Method method, final Object target, final Object... args) {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw new IllegalStateException(cause);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Object invoke(final Method method, final Object target) {
+    return invoke(method, target, NO_ARGS);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Set<?> options(final String... names) throws ClassNotFoundException {
+    final Class<Enum> optionClass = (Class<Enum>)Class.forName("java.lang.StackWalker$Option");
+    final Set<Enum> options = EnumSet.noneOf(optionClass);
+    for (String name : names) {
+      options.add(Enum.valueOf(optionClass, name));
+    }
+    return options;
+  }
+
+  private static @Nullable Method findDescriptor(final Class<?> frameClass) {
+    try {
+      return frameClass.getMethod("getDescriptor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private StackWalkerLocator() {
+  }
+
+  private static final class Site {
+    private final String methodName;
+    private final String descriptor;
+    private final int bytecodeIndex;
+
+    Site(final String methodName, final String descriptor, final int bytecodeIndex) {
+      this.methodName = methodName;
+      this.descriptor = descriptor;
+      this.bytecodeIndex = bytecodeIndex;
+    }
+
+    @Override public boolean equals(final Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Site)) return false;
+      final Site site = (Site)o;
+      return bytecodeIndex == site.bytecodeIndex &&
+          methodName.equals(site.methodName) &&
+          descriptor.equals(site.descriptor);
+    }
+
+    @Override public int hashCode() {
+      return 31 * (31 * methodName.hashCode() + descriptor.hashCode()) + bytecodeIndex;
+    }
+  }
+}
@@ -28,7 +28,11 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.only;
+import static org.mockito.Mockito.times;
 
 
 /**
@@ -62,4 +66,52 @@ public class LoggersTest {
     then(mockFactory).should(only()).get(LoggersTest.class.getName(), null, false);
     assertThat(logger, is(mockLogger));  // not really testing anything, but using that variable
   }
+
+  @Test
+  public void testClassLoggerIsCached() {
+    given(mockFactory.get(LoggersTest.class.getName(), null, false)).willReturn(mockLogger);
+
+    final Logger first = Loggers.INSTANCE.get(LoggersTest.class, null, false);
+    final Logger second = Loggers.INSTANCE.get(LoggersTest.class, null, false);
+
+    then(mockFactory).should(only()).get(LoggersTest.class.getName(), null, false);
+    assertThat(first, is(mockLogger));
+    assertThat(second, is(sameInstance(first)));
+  }
+
+  @Test
+  public void testSetFactoryInvalidatesClassLoggers() {
+    given(mockFactory.get(LoggersTest.class.getName(), null, false)).willReturn(mockLogger);
+    assertThat(Loggers.INSTANCE.get(LoggersTest.class, null, false), is(mockLogger));
+
+    final LoggerFactory otherFactory = mock(LoggerFactory.class);
+    final Logger otherLogger = mock(Logger.class);
+    given(otherFactory.get(LoggersTest.class.getName(), null, false)).willReturn(otherLogger);
+    Loggers.INSTANCE.setFactory(otherFactory);
+
+    assertThat(Loggers.INSTANCE.get(LoggersTest.class, null, false), is(otherLogger));
+    then(mockFactory).should(times(1)).get(LoggersTest.class.getName(), null, false);
+  }
+
+  @Test
+  public void testCompanionSharesEnclosingClassName() {
+    given(mockFactory.get(LoggersTest.class.getName(), null, false)).willReturn(mockLogger);
+
+    assertThat(Loggers.INSTANCE.get(Companion.class, null, false), is(mockLogger));
+  }
+
+  @Test
+  public void testMarkerBypassesClassCache() {
+    final Marker marker = mock(Marker.class);
+    given(mockFactory.get(LoggersTest.class.getName(), marker, false)).willReturn(mockLogger);
+
+    Loggers.INSTANCE.get(LoggersTest.class, marker, false);
+    Loggers.INSTANCE.get(LoggersTest.class, marker, false);
+
+    then(mockFactory).should(times(2)).get(LoggersTest.class.getName(), marker, false);
+    then(mockFactory).should(never()).get(LoggersTest.class.getName(), null, false);
+  }
+
+  /** Named like a Kotlin companion object, "LoggersTest$Companion" */
+  static final class Companion {}
 }
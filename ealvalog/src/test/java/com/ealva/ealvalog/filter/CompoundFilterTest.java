@@ -21,6 +21,7 @@ package com.ealva.ealvalog.filter;
 import com.ealva.ealvalog.FilterResult;
 import com.ealva.ealvalog.LogLevel;
 import com.ealva.ealvalog.LoggerFilter;
+import com.ealva.ealvalog.Marker;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -32,6 +33,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.only;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
 
 /**
@@ -43,6 +45,8 @@ public class CompoundFilterTest {
   @Mock LoggerFilter accept;
   @Mock LoggerFilter neutral;
   @Mock LoggerFilter deny;
+  @Mock PureFilter pure;
+  @Mock Marker marker;
 
   @Before
   public void setup() {
@@ -68,6 +72,8 @@ public class CompoundFilterTest {
         null
          )
     ).thenReturn(FilterResult.DENY);
+    when(pure.isLoggable(LOGGER_NAME, LOG_LEVEL, null, null)).thenReturn(FilterResult.DENY);
+    when(pure.isLoggable(LOGGER_NAME, LOG_LEVEL, marker, null)).thenReturn(FilterResult.ACCEPT);
   }
 
   @Test
@@ -154,4 +160,54 @@ public class CompoundFilterTest {
     then(neutral).should(never()).isLoggable(LOGGER_NAME, LOG_LEVEL, null, null);
   }
 
+  @Test
+  public void testNestedCompoundChangesSeen() {
+    CompoundFilter inner = new CompoundFilter(neutral);
+    CompoundFilter filter = new CompoundFilter(inner);
+    assertThat(filter.isLoggable(LOGGER_NAME, LOG_LEVEL, null, null), is(FilterResult.NEUTRAL));
+
+    inner.add(deny);
+    assertThat(filter.isLoggable(LOGGER_NAME, LOG_LEVEL, null, null), is(FilterResult.DENY));
+
+    inner.remove(deny);
+    assertThat(filter.isLoggable(LOGGER_NAME, LOG_LEVEL, null, null), is(FilterResult.NEUTRAL));
+  }
+
+  @Test
+  public void testAlwaysFilterEndsChain() {
+    CompoundFilter filter = new CompoundFilter(
+        AlwaysNeutralFilter.INSTANCE,
+        new CompoundFilter(neutral, AlwaysDenyFilter.INSTANCE),
+        accept
+    );
+    assertThat(filter.isLoggable(LOGGER_NAME, LOG_LEVEL, null, null), is(FilterResult.DENY));
+    then(neutral).should(only()).isLoggable(LOGGER_NAME, LOG_LEVEL, null, null);
+    then(accept).should(never()).isLoggable(LOGGER_NAME, LOG_LEVEL, null, null);
+  }
+
+  @Test
+  public void testPureFilterDecisionsCached() {
+    when(neutral.isLoggable(LOGGER_NAME, LOG_LEVEL, marker, null)).thenReturn(FilterResult.NEUTRAL);
+    CompoundFilter filter = new CompoundFilter(neutral, pure);
+    for (int i = 0; i < 3; i++) {
+      assertThat(filter.isLoggable(LOGGER_NAME, LOG_LEVEL, null, null), is(FilterResult.DENY));
+      assertThat(filter.isLoggable(LOGGER_NAME, LOG_LEVEL, marker, null), is(FilterResult.ACCEPT));
+    }
+    then(neutral).should(times(3)).isLoggable(LOGGER_NAME, LOG_LEVEL, null, null);
+    then(neutral).should(times(3)).isLoggable(LOGGER_NAME, LOG_LEVEL, marker, null);
+    then(pure).should(times(1)).isLoggable(LOGGER_NAME, LOG_LEVEL, null, null);
+    then(pure).should(times(1)).isLoggable(LOGGER_NAME, LOG_LEVEL, marker, null);
+  }
+
+  @Test
+  public void testChangeDiscardsCachedDecisions() {
+    CompoundFilter filter = new CompoundFilter(pure);
+    assertThat(filter.isLoggable(LOGGER_NAME, LOG_LEVEL, null, null), is(FilterResult.DENY));
+    filter.add(neutral);
+    assertThat(filter.isLoggable(LOGGER_NAME, LOG_LEVEL, null, null), is(FilterResult.DENY));
+    then(pure).should(times(2)).isLoggable(LOGGER_NAME, LOG_LEVEL, null, null);
+
+    filter.clear();
+    assertThat(filter.isLoggable(LOGGER_NAME, LOG_LEVEL, null, null), is(FilterResult.NEUTRAL));
+  }
 }
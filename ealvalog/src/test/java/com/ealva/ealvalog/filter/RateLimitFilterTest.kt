@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 Eric A. Snell
+ *
+ * This file is part of eAlvaLog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ealva.ealvalog.filter
+
+import com.ealva.ealvalog.FilterResult
+import com.ealva.ealvalog.LogEntry
+import com.ealva.ealvalog.LogLevel
+import com.ealva.ealvalog.Logger
+import com.ealva.ealvalog.LoggerFactory
+import com.ealva.ealvalog.Loggers
+import com.ealva.ealvalog.Marker
+import com.ealva.ealvalog.NullLoggerFactory
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.anyOrNull
+import com.nhaarman.mockitokotlin2.anyVararg
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.eq
+import com.nhaarman.mockitokotlin2.inOrder
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.never
+import com.nhaarman.mockitokotlin2.verify
+import org.hamcrest.CoreMatchers.`is`
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mockito.RETURNS_SELF
+import java.util.concurrent.TimeUnit
+
+/**
+ * Test [RateLimitFilter] token buckets and suppression summaries
+ */
+class RateLimitFilterTest {
+  private var now = 0L
+  private lateinit var entry: LogEntry
+  private lateinit var logger: Logger
+
+  @Before
+  fun setup() {
+    entry = mock(defaultAnswer = RETURNS_SELF)
+    logger = mock {
+      on { getLogEntry(any(), anyOrNull(), anyOrNull(), anyOrNull()) } doReturn entry
+    }
+    val factory = mock<LoggerFactory> {
+      on { get(NAME, null, false) } doReturn logger
+    }
+    Loggers.setFactory(factory)
+  }
+
+  @After
+  fun tearDown() {
+    Loggers.setFactory(NullLoggerFactory)
+  }
+
+  @Test
+  fun testBurstThenRefill() {
+    val filter = newFilter(RateLimitFilter(2.0, burst = 3))
+    repeat(3) { assertThat(filter.check(), `is`(FilterResult.NEUTRAL)) }
+    assertThat(filter.check(), `is`(FilterResult.DENY))
+
+    advanceMillis(499)
+    assertThat(filter.check(), `is`(FilterResult.DENY))
+    advanceMillis(1)
+    assertThat(filter.check(), `is`(FilterResult.NEUTRAL))
+    assertThat(filter.check(), `is`(FilterResult.DENY))
+
+    advanceMillis(10_000)
+    repeat(3) { assertThat(filter.check(), `is`(FilterResult.NEUTRAL)) }
+    assertThat(filter.check(), `is`(FilterResult.DENY))
+  }
+
+  @Test
+  fun testLimitByLogger() {
+    val filter = newFilter(RateLimitFilter(1.0))
+    assertThat(filter.check(), `is`(FilterResult.NEUTRAL))
+    assertThat(filter.check(level = LogLevel.ERROR), `is`(FilterResult.DENY))
+    assertThat(filter.check(name = OTHER_NAME), `is`(FilterResult.NEUTRAL))
+  }
+
+  @Test
+  fun testLimitByLoggerAndLevel() {
+    val filter = newFilter(RateLimitFilter(1.0, limitBy = RateLimitFilter.LimitBy.LOGGER_AND_LEVEL))
+    assertThat(filter.check(), `is`(FilterResult.NEUTRAL))
+    assertThat(filter.check(), `is`(FilterResult.DENY))
+    assertThat(filter.check(level = LogLevel.ERROR), `is`(FilterResult.NEUTRAL))
+  }
+
+  @Test
+  fun testLimitByMarker() {
+    val first = mock<Marker>()
+    val second = mock<Marker>()
+    val filter = newFilter(RateLimitFilter(1.0, limitBy = RateLimitFilter.LimitBy.MARKER))
+    assertThat(filter.check(marker = first), `is`(FilterResult.NEUTRAL))
+    assertThat(filter.check(name = OTHER_NAME, marker = first), `is`(FilterResult.DENY))
+    assertThat(filter.check(marker = second), `is`(FilterResult.NEUTRAL))
+    repeat(3) { assertThat(filter.check(), `is`(FilterResult.NEUTRAL)) }
+  }
+
+  @Test
+  fun testSummaryLoggedAfterInterval() {
+    val filter = newFilter(RateLimitFilter(1.0, summaryIntervalMillis = 5_000))
+    assertThat(filter.check(), `is`(FilterResult.NEUTRAL))
+    repeat(4) { assertThat(filter.check(), `is`(FilterResult.DENY)) }
+
+    advanceMillis(1_000)
+    assertThat(filter.check(), `is`(FilterResult.NEUTRAL))
+    verify(logger, never()).logImmediate(any())
+
+    advanceMillis(4_000)
+    assertThat(filter.check(level = LogLevel.WARN), `is`(FilterResult.NEUTRAL))
+    verify(logger).getLogEntry(eq(LogLevel.WARN), anyOrNull(), anyOrNull(), anyOrNull())
+    val inOrder = inOrder(entry)
+    inOrder.verify(entry).append(4L)
+    inOrder.verify(entry).append(" records suppressed, limit ")
+    inOrder.verify(entry).append("1.0")
+    inOrder.verify(entry).append(" per second")
+    verify(entry, never()).setFormatAndArgs(any(), anyVararg())
+    verify(logger).logImmediate(entry)
+  }
+
+  private fun newFilter(filter: RateLimitFilter) = filter.apply { ticker = { now } }
+
+  private fun advanceMillis(millis: Long) {
+    now += TimeUnit.MILLISECONDS.toNanos(millis)
+  }
+
+  private fun RateLimitFilter.check(
+    name: String = NAME,
+    level: LogLevel = LogLevel.DEBUG,
+    marker: Marker? = null
+  ) = isLoggable(name, level, marker, null)
+
+  companion object {
+    private const val NAME = "com.ealva.RateLimited"
+    private const val OTHER_NAME = "com.ealva.Other"
+  }
+}
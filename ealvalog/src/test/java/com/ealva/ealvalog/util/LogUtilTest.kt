@@ -18,12 +18,16 @@
 
 package com.ealva.ealvalog.util
 
+import org.junit.After
 import org.junit.Before
 import org.junit.Test
 
 import org.hamcrest.CoreMatchers.equalTo
 import org.hamcrest.CoreMatchers.`is`
+import org.hamcrest.CoreMatchers.not
+import org.hamcrest.CoreMatchers.sameInstance
 import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.greaterThan
 
 /**
  * Test some utility methods
@@ -48,6 +52,11 @@ class LogUtilTest {
     innerInner = "com.test.OuterClass\$InnerClass\$InnerInnerClass"
   }
 
+  @After
+  fun tearDown() {
+    LogUtil.setCacheCallerLocations(false)
+  }
+
   @Test
   fun tesTagFromName() {
     val result = "OuterClass"
@@ -92,4 +101,43 @@ class LogUtilTest {
     val actual = LogUtil.combineArgs(arrayOf<Any>(nextToLast, last), first, second)
     assertThat(actual, `is`(equalTo(desired)))
   }
+
+  @Test
+  fun testCallerLocation() {
+    val location = LogUtil.getCallerLocation(0)
+    assertThat(location.className, `is`(equalTo(LogUtilTest::class.java.name)))
+    assertThat(location.methodName, `is`(equalTo("testCallerLocation")))
+    assertThat(location.lineNumber, `is`(greaterThan(0)))
+  }
+
+  @Test
+  fun testCallerLocationDepth() {
+    val location = locationOfCaller()
+    assertThat(location.methodName, `is`(equalTo("testCallerLocationDepth")))
+    assertThat(LogUtil.getCallerClassName(0), `is`(equalTo(LogUtilTest::class.java.name)))
+  }
+
+  @Test(expected = IllegalStateException::class)
+  fun testCallerLocationTooDeep() {
+    LogUtil.getCallerLocation(100_000)
+  }
+
+  @Test
+  fun testCachedCallerLocations() {
+    LogUtil.setCacheCallerLocations(true)
+    val locations = (0..1).map { LogUtil.getCallerLocation(0) }
+    val other = LogUtil.getCallerLocation(0)
+    assertThat(locations[1], `is`(equalTo(locations[0])))
+    assertThat(other, `is`(not(equalTo(locations[0]))))
+    if (javaVersion() >= 10) {
+      assertThat(locations[1], `is`(sameInstance(locations[0])))
+    }
+  }
+
+  private fun locationOfCaller() = LogUtil.getCallerLocation(1)
+
+  private fun javaVersion(): Int {
+    val version = System.getProperty("java.specification.version")
+    return if (version.startsWith("1.")) version.substring(2).toInt() else version.toInt()
+  }
 }